@@ -30,6 +30,6 @@ public class ApplicationControllerAdvice {
     @ExceptionHandler(ResponseStatusException.class)
     @ResponseStatus
     public ResponseEntity handleResponseStatusException(ResponseStatusException ex) {
-        return new ResponseEntity(new ApiErrors(ex), ex.getStatus());
+        return new ResponseEntity(new ApiErrors(ex), ex.getResponseHeaders(), ex.getStatus());
     }
 }
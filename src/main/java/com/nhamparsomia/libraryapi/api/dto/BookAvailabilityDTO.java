@@ -0,0 +1,17 @@
+package com.nhamparsomia.libraryapi.api.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@Data
+public class BookAvailabilityDTO {
+    private Long id;
+    private String isbn;
+    private boolean found;
+    private Boolean available;
+}
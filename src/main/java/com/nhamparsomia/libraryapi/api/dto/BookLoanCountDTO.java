@@ -0,0 +1,17 @@
+package com.nhamparsomia.libraryapi.api.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@Data
+public class BookLoanCountDTO {
+    private Long bookId;
+    private String isbn;
+    private String title;
+    private long totalLoans;
+}
@@ -0,0 +1,20 @@
+package com.nhamparsomia.libraryapi.api.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@Data
+public class BookReferencesDTO {
+    @Builder.Default
+    private List<Long> ids = new ArrayList<>();
+    @Builder.Default
+    private List<String> isbns = new ArrayList<>();
+}
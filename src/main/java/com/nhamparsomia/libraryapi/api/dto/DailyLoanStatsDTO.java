@@ -0,0 +1,19 @@
+package com.nhamparsomia.libraryapi.api.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@Data
+public class DailyLoanStatsDTO {
+    private LocalDate day;
+    private long checkouts;
+    private long returns;
+    private long openLoans;
+}
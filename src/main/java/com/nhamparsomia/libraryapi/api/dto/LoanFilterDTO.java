@@ -12,4 +12,6 @@ import lombok.NoArgsConstructor;
 public class LoanFilterDTO {
     private String isbn;
     private String customer;
+    private String customerPrefix;
+    private Boolean matchAll;
 }
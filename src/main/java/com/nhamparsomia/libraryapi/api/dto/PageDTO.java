@@ -0,0 +1,59 @@
+package com.nhamparsomia.libraryapi.api.dto;
+
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.nhamparsomia.libraryapi.api.serializer.PageDTOSerializer;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+
+import java.util.AbstractList;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Page envelope returned by the listing endpoints:
+ * {@code {"content":[...],"page":0,"size":10,"totalElements":1,"totalPages":1}}.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonSerialize(using = PageDTOSerializer.class)
+public class PageDTO<T> {
+    private List<T> content;
+    private int page;
+    private int size;
+    private long totalElements;
+    private int totalPages;
+
+    /**
+     * Wraps a result page without copying it: each row is mapped only when the serializer
+     * writes it, so no intermediate list of DTOs is built.
+     */
+    public static <S, T> PageDTO<T> of(Page<S> result, Pageable pageable, Function<? super S, ? extends T> mapper) {
+        List<S> rows = result.getContent();
+        int size = pageable.isPaged() ? pageable.getPageSize() : rows.size();
+        int totalPages = size == 0 ? 1 : (int) Math.ceil(result.getTotalElements() / (double) size);
+
+        List<T> content = new AbstractList<T>() {
+            @Override
+            public T get(int index) {
+                return mapper.apply(rows.get(index));
+            }
+
+            @Override
+            public int size() {
+                return rows.size();
+            }
+        };
+
+        return new PageDTO<>(
+                content,
+                pageable.isPaged() ? pageable.getPageNumber() : 0,
+                size,
+                result.getTotalElements(),
+                totalPages
+        );
+    }
+}
@@ -5,10 +5,13 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import javax.validation.constraints.NotNull;
+
 @Builder
 @AllArgsConstructor
 @NoArgsConstructor
 @Data
 public class ReturnedLoanDTO {
+    @NotNull
     private Boolean returned;
 }
@@ -0,0 +1,80 @@
+package com.nhamparsomia.libraryapi.api.resource;
+
+import com.nhamparsomia.libraryapi.api.dto.BookLoanCountDTO;
+import com.nhamparsomia.libraryapi.api.dto.DailyLoanStatsDTO;
+import com.nhamparsomia.libraryapi.api.dto.LoanSummaryDTO;
+import com.nhamparsomia.libraryapi.service.LoanAnalyticsService;
+
+import io.swagger.annotations.Api;
+import io.swagger.annotations.ApiOperation;
+import lombok.RequiredArgsConstructor;
+
+import org.modelmapper.ModelMapper;
+import org.springframework.context.annotation.Profile;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.stream.Collectors;
+
+@RestController
+@RequestMapping("/api/analytics")
+@RequiredArgsConstructor
+@Api("Analytics API")
+@Profile("!in-memory")
+public class AnalyticsController {
+
+    private static final int DEFAULT_DAYS = 30;
+    private static final int MAX_TOP_BOOKS = 100;
+
+    private final LoanAnalyticsService service;
+    private final ModelMapper modelMapper;
+
+    @GetMapping("loans/daily")
+    @ApiOperation("Get checkouts, returns and open loans per day, for the last 30 days by default")
+    public List<DailyLoanStatsDTO> getDailyStats(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        LocalDate end = to == null ? LocalDate.now() : to;
+        LocalDate start = from == null ? end.minusDays(DEFAULT_DAYS - 1) : from;
+
+        if (start.isAfter(end)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "from must not be after to");
+        }
+
+        return service.getDailyStats(start, end)
+                .stream()
+                .map(stats -> modelMapper.map(stats, DailyLoanStatsDTO.class))
+                .collect(Collectors.toList());
+    }
+
+    @GetMapping("loans/summary")
+    @ApiOperation("Get the number of open and overdue loans")
+    public LoanSummaryDTO getSummary() {
+        return LoanSummaryDTO.builder()
+                .openLoans(service.getOpenLoans())
+                .overdueLoans(service.getOverdueLoans())
+                .build();
+    }
+
+    @GetMapping("books/top")
+    @ApiOperation("Get the most borrowed books")
+    public List<BookLoanCountDTO> getMostBorrowedBooks(@RequestParam(defaultValue = "10") int limit) {
+        if (limit < 1 || limit > MAX_TOP_BOOKS) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "limit must be between 1 and " + MAX_TOP_BOOKS);
+        }
+
+        return service.getMostBorrowedBooks(limit)
+                .stream()
+                .map(book -> BookLoanCountDTO.builder()
+                        .bookId(book.getId())
+                        .isbn(book.getIsbn())
+                        .title(book.getTitle())
+                        .totalLoans(book.getTotalLoans())
+                        .build())
+                .collect(Collectors.toList());
+    }
+}
@@ -1,7 +1,12 @@
 package com.nhamparsomia.libraryapi.api.resource;
 
+import com.nhamparsomia.libraryapi.api.dto.BookAvailabilityDTO;
+import com.nhamparsomia.libraryapi.api.dto.BookReferencesDTO;
 import com.nhamparsomia.libraryapi.api.dto.BookDTO;
+import com.nhamparsomia.libraryapi.api.dto.BookLookupDTO;
 import com.nhamparsomia.libraryapi.api.dto.LoanDTO;
+import com.nhamparsomia.libraryapi.api.dto.PageDTO;
+import com.nhamparsomia.libraryapi.config.bulkhead.Bulkheads;
 import com.nhamparsomia.libraryapi.model.entity.Book;
 import com.nhamparsomia.libraryapi.model.entity.Loan;
 import com.nhamparsomia.libraryapi.service.BookService;
@@ -15,15 +20,21 @@ import lombok.extern.slf4j.Slf4j;
 import org.modelmapper.ModelMapper;
 
 import org.springframework.data.domain.Page;
-import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
 import org.springframework.http.HttpStatus;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.server.ResponseStatusException;
 
 import javax.validation.Valid;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @RestController
 @RequestMapping("/api/books")
@@ -31,14 +42,19 @@ import java.util.stream.Collectors;
 @Slf4j
 public class BookController {
 
+    public static final int MAX_AVAILABILITY_ITEMS = 500;
+    public static final int MAX_LOOKUP_ITEMS = 5000;
+
     private final BookService service;
     private final ModelMapper modelMapper;
     private final LoanService loanService;
+    private final Bulkheads bulkheads;
 
-    public BookController(BookService service, ModelMapper modelMapper, LoanService loanService) {
+    public BookController(BookService service, ModelMapper modelMapper, LoanService loanService, Bulkheads bulkheads) {
         this.service = service;
         this.modelMapper = modelMapper;
         this.loanService = loanService;
+        this.bulkheads = bulkheads;
     }
 
     @PostMapping
@@ -82,58 +98,157 @@ public class BookController {
 
     @PutMapping("{id}")
     @ResponseStatus(HttpStatus.OK)
-    @ApiOperation("Update book information by id")
+    @ApiOperation("Update book author and title by id; the isbn is not changed")
     public BookDTO update(@PathVariable Long id, @RequestBody @Valid BookDTO dto) {
-        Book book = service
-                .getById(id)
-                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND));
+        if (service.updateAuthorAndTitle(id, dto.getAuthor(), dto.getTitle()) == 0) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND);
+        }
 
-        book.setAuthor(dto.getAuthor());
-        book.setTitle(dto.getAuthor());
+        log.info("Book with id {} successfully updated", id);
 
-        book = service.update(book);
-
-        log.info("Book with isbn {} successfully updated", book.getIsbn());
-
-        return modelMapper.map(book, BookDTO.class);
+        // built from the request so the update stays a single round-trip
+        dto.setId(id);
+        return dto;
     }
 
     @GetMapping
     @ResponseStatus(HttpStatus.OK)
     @ApiOperation("Retrieve page result with books that contains information related to the given parameters")
-    public Page<BookDTO> find(BookDTO dto, Pageable pageRequest) {
-        Book filter = modelMapper.map(dto, Book.class);
-        Page<Book> result = service.find(filter, pageRequest);
-
-        List<BookDTO> bookListResult = result
-                .getContent()
-                .stream()
-                .map(entity -> modelMapper.map(entity, BookDTO.class))
-                .collect(Collectors.toList());
+    public CompletableFuture<PageDTO<BookDTO>> find(BookDTO dto, Pageable pageRequest) {
+        return bulkheads.search().supply(() -> {
+            Book filter = modelMapper.map(dto, Book.class);
+            Page<Book> result = service.find(filter, pageRequest);
 
-        return new PageImpl<BookDTO>(bookListResult, pageRequest, result.getTotalElements());
+            return PageDTO.of(result, pageRequest, entity -> modelMapper.map(entity, BookDTO.class));
+        });
     }
 
     @GetMapping("{id}/loans")
     @ResponseStatus(HttpStatus.OK)
     @ApiOperation("Retrieve page result with loans related to the book id")
-    public Page<LoanDTO> findLoansByBook(@PathVariable Long id, Pageable pageable) {
-        Book book = service.getById(id)
-                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND));
+    public CompletableFuture<PageDTO<LoanDTO>> findLoansByBook(@PathVariable Long id, Pageable pageable) {
+        return bulkheads.search().supply(() -> {
+            Book book = service.getById(id)
+                    .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND));
+
+            Page<Loan> result = loanService.getLoansByBook(book, pageable);
+
+            return PageDTO.of(result, pageable, loan -> {
+                Book loanBook = loan.getBook();
+                BookDTO bookDTO = modelMapper.map(loanBook, BookDTO.class);
+                LoanDTO loanDTO = modelMapper.map(loan, LoanDTO.class);
+                loanDTO.setBook(bookDTO);
+                return loanDTO;
+            });
+        });
+    }
 
-        Page<Loan> result = loanService.getLoansByBook(book, pageable);
+    @GetMapping("lookup")
+    @ResponseStatus(HttpStatus.OK)
+    @ApiOperation("Retrieve the books with the given ids and isbns, in the order requested")
+    public CompletableFuture<List<BookLookupDTO>> lookup(@RequestParam(required = false) List<Long> ids,
+                                                         @RequestParam(required = false) List<String> isbns) {
+        return lookup(BookReferencesDTO.builder().ids(ids).isbns(isbns).build());
+    }
+
+    @PostMapping("lookup")
+    @ResponseStatus(HttpStatus.OK)
+    @ApiOperation("Retrieve the books with the given ids and isbns, in the order requested, for lists too long for a query string")
+    public CompletableFuture<List<BookLookupDTO>> lookup(@RequestBody BookReferencesDTO dto) {
+        List<Long> ids = orEmpty(dto.getIds());
+        List<String> isbns = orEmpty(dto.getIsbns());
+        checkSize(ids, isbns, MAX_LOOKUP_ITEMS);
+
+        return bulkheads.search().supply(() -> {
+            Map<Long, Book> booksById = booksById(ids);
+            Map<String, Book> booksByIsbn = booksByIsbn(isbns);
+
+            List<BookLookupDTO> results = new ArrayList<>();
+            ids.forEach(id -> results.add(lookupOf(booksById.get(id), id, null)));
+            isbns.forEach(isbn -> results.add(lookupOf(booksByIsbn.get(isbn), null, isbn)));
+
+            return results;
+        });
+    }
 
-        List<LoanDTO> loansByBookResult = result
-                .getContent()
+    @PostMapping("availability")
+    @ResponseStatus(HttpStatus.OK)
+    @ApiOperation("Retrieve whether each of the given books, by id or isbn, is available for loan")
+    public CompletableFuture<List<BookAvailabilityDTO>> availability(@RequestBody BookReferencesDTO dto) {
+        List<Long> ids = orEmpty(dto.getIds());
+        List<String> isbns = orEmpty(dto.getIsbns());
+        checkSize(ids, isbns, MAX_AVAILABILITY_ITEMS);
+
+        return bulkheads.search().supply(() -> {
+            Map<Long, Book> booksById = booksById(ids);
+            Map<String, Book> booksByIsbn = booksByIsbn(isbns);
+
+            Set<Long> takenBookIds = loanService.getTakenBookIds(
+                    Stream.concat(booksById.keySet().stream(), booksByIsbn.values().stream().map(Book::getId))
+                            .collect(Collectors.toSet())
+            );
+
+            List<BookAvailabilityDTO> results = new ArrayList<>();
+            ids.forEach(id -> results.add(availabilityOf(booksById.get(id), id, null, takenBookIds)));
+            isbns.forEach(isbn -> results.add(availabilityOf(booksByIsbn.get(isbn), null, isbn, takenBookIds)));
+
+            return results;
+        });
+    }
+
+    private Map<Long, Book> booksById(List<Long> ids) {
+        return service.getBooksById(ids)
                 .stream()
-                .map(loan -> {
-                    Book loanBook = loan.getBook();
-                    BookDTO bookDTO = modelMapper.map(loanBook, BookDTO.class);
-                    LoanDTO loanDTO = modelMapper.map(loan, LoanDTO.class);
-                    loanDTO.setBook(bookDTO);
-                    return loanDTO;
-                }).collect(Collectors.toList());
-
-        return new PageImpl<LoanDTO>(loansByBookResult, pageable, result.getTotalElements());
+                .collect(Collectors.toMap(Book::getId, Function.identity(), (first, second) -> first));
+    }
+
+    private Map<String, Book> booksByIsbn(List<String> isbns) {
+        return service.getBooksByIsbn(isbns)
+                .stream()
+                .collect(Collectors.toMap(Book::getIsbn, Function.identity(), (first, second) -> first));
+    }
+
+    private BookLookupDTO lookupOf(Book book, Long id, String isbn) {
+        if (book == null) {
+            return BookLookupDTO.builder()
+                    .id(id)
+                    .isbn(isbn)
+                    .found(false)
+                    .build();
+        }
+
+        return BookLookupDTO.builder()
+                .id(book.getId())
+                .isbn(book.getIsbn())
+                .found(true)
+                .book(modelMapper.map(book, BookDTO.class))
+                .build();
+    }
+
+    private static BookAvailabilityDTO availabilityOf(Book book, Long id, String isbn, Set<Long> takenBookIds) {
+        if (book == null) {
+            return BookAvailabilityDTO.builder()
+                    .id(id)
+                    .isbn(isbn)
+                    .found(false)
+                    .build();
+        }
+
+        return BookAvailabilityDTO.builder()
+                .id(book.getId())
+                .isbn(book.getIsbn())
+                .found(true)
+                .available(!takenBookIds.contains(book.getId()))
+                .build();
+    }
+
+    private static void checkSize(List<Long> ids, List<String> isbns, int maxItems) {
+        if (ids.size() + isbns.size() > maxItems) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "At most " + maxItems + " books per request");
+        }
+    }
+
+    private static <T> List<T> orEmpty(List<T> references) {
+        return references != null ? references : Collections.emptyList();
     }
 }
@@ -1,13 +1,18 @@
 package com.nhamparsomia.libraryapi.api.resource;
 
 import com.nhamparsomia.libraryapi.api.dto.BookDTO;
+import com.nhamparsomia.libraryapi.api.dto.LoanBatchResultDTO;
 import com.nhamparsomia.libraryapi.api.dto.LoanDTO;
 import com.nhamparsomia.libraryapi.api.dto.LoanFilterDTO;
+import com.nhamparsomia.libraryapi.api.dto.PageDTO;
+import com.nhamparsomia.libraryapi.api.dto.ReturnedLoanBatchDTO;
 import com.nhamparsomia.libraryapi.api.dto.ReturnedLoanDTO;
+import com.nhamparsomia.libraryapi.config.bulkhead.Bulkheads;
 import com.nhamparsomia.libraryapi.model.entity.Book;
 import com.nhamparsomia.libraryapi.model.entity.Loan;
 import com.nhamparsomia.libraryapi.service.BookService;
 import com.nhamparsomia.libraryapi.service.LoanService;
+import com.nhamparsomia.libraryapi.service.checkout.LoanCheckoutBatcher;
 
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
@@ -16,14 +21,21 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.modelmapper.ModelMapper;
 import org.springframework.data.domain.Page;
-import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
 import org.springframework.http.HttpStatus;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.server.ResponseStatusException;
 
+import javax.validation.Valid;
+
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @RestController
@@ -33,71 +45,147 @@ import java.util.stream.Collectors;
 @Slf4j
 public class LoanController {
 
+    public static final int MAX_BATCH_ITEMS = 500;
+
     private final LoanService service;
     private final BookService bookService;
+    private final LoanCheckoutBatcher checkoutBatcher;
+    private final Bulkheads bulkheads;
     private final ModelMapper modelMapper;
 
     @PostMapping
     @ResponseStatus(HttpStatus.CREATED)
     @ApiOperation("Create a new loan")
-    public Long create(@RequestBody LoanDTO dto) {
-        Book book = bookService
-                .getBookByIsbn(dto.getIsbn())
-                .orElseThrow(() -> new ResponseStatusException(
-                        HttpStatus.BAD_REQUEST,
-                        "Book not found for given isbn")
-                );
-
-        Loan entity = Loan.builder()
-                .book(book)
-                .customer(dto.getCustomer())
-                .loanDate(LocalDate.now())
-                .build();
-
-        entity = service.save(entity);
-
-        log.info("Loan for book with isbn {} successfully created at {}",
-                entity.getBook().getIsbn(),
-                LocalDate.now());
-
-        return entity.getId();
+    public CompletableFuture<Long> create(@RequestBody LoanDTO dto) {
+        return bulkheads.mutation().supply(() -> {
+            Book book = bookService
+                    .getBookByIsbn(dto.getIsbn())
+                    .orElseThrow(() -> new ResponseStatusException(
+                            HttpStatus.BAD_REQUEST,
+                            "Book not found for given isbn")
+                    );
+
+            Loan entity = Loan.builder()
+                    .book(book)
+                    .customer(dto.getCustomer())
+                    .customerEmail(dto.getCustomerEmail())
+                    .loanDate(LocalDate.now())
+                    .build();
+
+            entity = checkoutBatcher.isEnabled() ? checkoutBatcher.checkout(entity) : service.save(entity);
+
+            log.info("Loan for book with isbn {} successfully created at {}",
+                    entity.getBook().getIsbn(),
+                    LocalDate.now());
+
+            return entity.getId();
+        });
+    }
+
+    @PostMapping("batch")
+    @ResponseStatus(HttpStatus.OK)
+    @ApiOperation("Create a batch of loans, returning one result per requested loan")
+    public CompletableFuture<List<LoanBatchResultDTO>> createBatch(@RequestBody List<LoanDTO> dtos) {
+        checkSize(dtos);
+
+        return bulkheads.mutation().supply(() -> {
+            Set<String> isbns = dtos.stream()
+                    .map(LoanDTO::getIsbn)
+                    .collect(Collectors.toSet());
+
+            Map<String, Book> booksByIsbn = bookService.getBooksByIsbn(isbns)
+                    .stream()
+                    .collect(Collectors.toMap(Book::getIsbn, Function.identity(), (first, second) -> first));
+
+            List<LoanBatchResultDTO> results = new ArrayList<>(Collections.nCopies(dtos.size(), null));
+            List<Integer> loanPositions = new ArrayList<>();
+            List<Loan> loans = new ArrayList<>();
+            LocalDate loanDate = LocalDate.now();
+
+            for (int index = 0; index < dtos.size(); index++) {
+                LoanDTO dto = dtos.get(index);
+                Book book = booksByIsbn.get(dto.getIsbn());
+
+                if (book == null) {
+                    results.set(index, LoanBatchResultDTO.builder()
+                            .index(index)
+                            .status(HttpStatus.BAD_REQUEST.value())
+                            .error("Book not found for given isbn")
+                            .build());
+                    continue;
+                }
+
+                loanPositions.add(index);
+                loans.add(Loan.builder()
+                        .book(book)
+                        .customer(dto.getCustomer())
+                        .customerEmail(dto.getCustomerEmail())
+                        .loanDate(loanDate)
+                        .build());
+            }
+
+            List<LoanBatchResultDTO> loanResults = service.saveAll(loans);
+
+            for (int position = 0; position < loanResults.size(); position++) {
+                LoanBatchResultDTO result = loanResults.get(position);
+                result.setIndex(loanPositions.get(position));
+                results.set(result.getIndex(), result);
+            }
+
+            log.info("Batch of {} loans processed at {}", dtos.size(), loanDate);
+
+            return results;
+        });
     }
 
     @PatchMapping("{id}")
     @ResponseStatus(HttpStatus.OK)
     @ApiOperation("Returns back to library the book borrowed by customer")
-    public void giveBackTheBook(@PathVariable Long id, @RequestBody ReturnedLoanDTO dto) {
-        Loan loan = service.getById(id)
-                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND));
+    public CompletableFuture<Void> giveBackTheBook(@PathVariable Long id, @RequestBody @Valid ReturnedLoanDTO dto) {
+        return bulkheads.mutation().run(() -> {
+            if (service.updateReturned(id, dto.getReturned()) == 0) {
+                throw new ResponseStatusException(HttpStatus.NOT_FOUND);
+            }
+
+            log.info("Book returned back to library at {}. Loan code: {}", LocalDate.now(), id);
+        });
+    }
+
+    @PatchMapping("batch")
+    @ResponseStatus(HttpStatus.OK)
+    @ApiOperation("Returns back to library a batch of books, returning one result per requested loan")
+    public CompletableFuture<List<LoanBatchResultDTO>> giveBackTheBooks(@RequestBody List<ReturnedLoanBatchDTO> dtos) {
+        checkSize(dtos);
 
-        loan.setReturned(dto.getReturned());
+        return bulkheads.mutation().supply(() -> {
+            List<LoanBatchResultDTO> results = service.updateReturned(dtos);
 
-        service.update(loan);
+            log.info("Batch of {} loan returns processed at {}", dtos.size(), LocalDate.now());
 
-        log.info("Book with isbn {} returned back to library at {}. Loan code: {}",
-                loan.getBook().getIsbn(),
-                LocalDate.now(),
-                loan.getId());
+            return results;
+        });
     }
 
     @GetMapping
     @ResponseStatus(HttpStatus.OK)
     @ApiOperation("Retrieve page result with loans that contains information related to the given parameters")
-    public Page<LoanDTO> find(LoanFilterDTO dto, Pageable pageRequest) {
-        Page<Loan> result = service.find(dto, pageRequest);
-
-        List<LoanDTO> loans = result
-                .getContent()
-                .stream()
-                .map(entity -> {
-                    Book book = entity.getBook();
-                    BookDTO bookDTO = modelMapper.map(book, BookDTO.class);
-                    LoanDTO loanDTO = modelMapper.map(entity, LoanDTO.class);
-                    loanDTO.setBook(bookDTO);
-                    return loanDTO;
-                })
-                .collect(Collectors.toList());
-
-        return new PageImpl<LoanDTO>(loans, pageRequest, result.getTotalElements());
+    public CompletableFuture<PageDTO<LoanDTO>> find(LoanFilterDTO dto, Pageable pageRequest) {
+        return bulkheads.search().supply(() -> {
+            Page<Loan> result = service.find(dto, pageRequest);
+
+            return PageDTO.of(result, pageRequest, entity -> {
+                Book book = entity.getBook();
+                BookDTO bookDTO = modelMapper.map(book, BookDTO.class);
+                LoanDTO loanDTO = modelMapper.map(entity, LoanDTO.class);
+                loanDTO.setBook(bookDTO);
+                return loanDTO;
+            });
+        });
+    }
+
+    private static void checkSize(List<?> dtos) {
+        if (dtos.size() > MAX_BATCH_ITEMS) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "At most " + MAX_BATCH_ITEMS + " loans per request");
+        }
     }
 }
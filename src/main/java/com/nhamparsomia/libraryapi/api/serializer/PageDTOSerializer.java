@@ -0,0 +1,75 @@
+package com.nhamparsomia.libraryapi.api.serializer;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+import com.nhamparsomia.libraryapi.api.dto.PageDTO;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Streams a {@link PageDTO} into the generator: rows are written one by one, with the row
+ * serializer resolved once per row type and field names pre-encoded.
+ */
+public class PageDTOSerializer extends StdSerializer<PageDTO<?>> {
+
+    private static final SerializableString CONTENT = new SerializedString("content");
+    private static final SerializableString PAGE = new SerializedString("page");
+    private static final SerializableString SIZE = new SerializedString("size");
+    private static final SerializableString TOTAL_ELEMENTS = new SerializedString("totalElements");
+    private static final SerializableString TOTAL_PAGES = new SerializedString("totalPages");
+
+    @SuppressWarnings("unchecked")
+    public PageDTOSerializer() {
+        super((Class<PageDTO<?>>) (Class<?>) PageDTO.class);
+    }
+
+    @Override
+    public void serialize(PageDTO<?> page, JsonGenerator generator, SerializerProvider provider) throws IOException {
+        generator.writeStartObject();
+
+        generator.writeFieldName(CONTENT);
+        writeContent(page.getContent(), generator, provider);
+
+        generator.writeFieldName(PAGE);
+        generator.writeNumber(page.getPage());
+        generator.writeFieldName(SIZE);
+        generator.writeNumber(page.getSize());
+        generator.writeFieldName(TOTAL_ELEMENTS);
+        generator.writeNumber(page.getTotalElements());
+        generator.writeFieldName(TOTAL_PAGES);
+        generator.writeNumber(page.getTotalPages());
+
+        generator.writeEndObject();
+    }
+
+    private void writeContent(List<?> content, JsonGenerator generator, SerializerProvider provider) throws IOException {
+        int size = content == null ? 0 : content.size();
+        generator.writeStartArray(size);
+
+        Class<?> rowType = null;
+        JsonSerializer<Object> rowSerializer = null;
+
+        for (int index = 0; index < size; index++) {
+            Object row = content.get(index);
+
+            if (row == null) {
+                provider.defaultSerializeNull(generator);
+                continue;
+            }
+
+            if (row.getClass() != rowType) {
+                rowType = row.getClass();
+                rowSerializer = provider.findValueSerializer(rowType);
+            }
+
+            rowSerializer.serialize(row, generator, provider);
+        }
+
+        generator.writeEndArray();
+    }
+}
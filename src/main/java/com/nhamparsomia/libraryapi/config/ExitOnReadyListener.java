@@ -0,0 +1,21 @@
+package com.nhamparsomia.libraryapi.config;
+
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.stereotype.Component;
+
+/**
+ * Shuts the application down as soon as it is ready. Used by the fast-startup build to record
+ * the classes loaded during a real startup when generating the class-data-sharing archive.
+ */
+@Component
+@ConditionalOnProperty("application.startup.exit-on-ready")
+public class ExitOnReadyListener implements ApplicationListener<ApplicationReadyEvent> {
+
+    @Override
+    public void onApplicationEvent(ApplicationReadyEvent event) {
+        System.exit(SpringApplication.exit(event.getApplicationContext()));
+    }
+}
@@ -0,0 +1,43 @@
+package com.nhamparsomia.libraryapi.config;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Replaces the springfox resource endpoints when runtime scanning is disabled, pointing
+ * swagger-ui.html to the document generated during the build.
+ */
+@RestController
+@RequestMapping("/swagger-resources")
+@ConditionalOnProperty(name = "application.swagger.enabled", havingValue = "false")
+public class StaticApiDocsController {
+
+    public static final String API_DOCS_LOCATION = "/api-docs/swagger.json";
+
+    @GetMapping
+    public List<Map<String, String>> resources() {
+        Map<String, String> resource = new LinkedHashMap<>();
+        resource.put("name", "default");
+        resource.put("location", API_DOCS_LOCATION);
+        resource.put("swaggerVersion", "2.0");
+
+        return Collections.singletonList(resource);
+    }
+
+    @GetMapping("configuration/ui")
+    public Map<String, Object> uiConfiguration() {
+        return Collections.singletonMap("validatorUrl", null);
+    }
+
+    @GetMapping("configuration/security")
+    public Map<String, Object> securityConfiguration() {
+        return Collections.emptyMap();
+    }
+}
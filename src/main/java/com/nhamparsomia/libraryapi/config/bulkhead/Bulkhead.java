@@ -0,0 +1,176 @@
+package com.nhamparsomia.libraryapi.config.bulkhead;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * A bounded pool of threads and database connections for one kind of work. Tasks beyond the
+ * threads wait in a bounded queue, and once that is full they fail at once with
+ * {@link BulkheadFullException} instead of queueing behind other work. While a task runs, the
+ * connections its thread opens count against the bulkhead's quota (see {@link BulkheadDataSource}),
+ * and the caller's request attributes stay bound to it.
+ *
+ * <p>A disabled bulkhead runs every task on the caller's thread.
+ */
+public class Bulkhead {
+
+    private static final ThreadLocal<Bulkhead> CURRENT = new ThreadLocal<>();
+    private static final ThreadLocal<int[]> HELD_CONNECTIONS = ThreadLocal.withInitial(() -> new int[1]);
+
+    private final String name;
+    private final ThreadPoolExecutor executor;
+    private final Semaphore connections;
+    private final LongAdder rejected = new LongAdder();
+
+    private Bulkhead(String name, ThreadPoolExecutor executor, Semaphore connections) {
+        this.name = name;
+        this.executor = executor;
+        this.connections = connections;
+    }
+
+    public static Bulkhead bounded(String name, BulkheadProperties.Pool pool) {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(
+                pool.getThreads(), pool.getThreads(),
+                0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(pool.getQueueCapacity()),
+                new CustomizableThreadFactory("bulkhead-" + name + "-"),
+                new ThreadPoolExecutor.AbortPolicy());
+
+        return new Bulkhead(name, executor, new Semaphore(pool.getConnections()));
+    }
+
+    public static Bulkhead inline(String name) {
+        return new Bulkhead(name, null, null);
+    }
+
+    static Bulkhead current() {
+        return CURRENT.get();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public <T> CompletableFuture<T> supply(Supplier<T> task) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+
+        if (executor == null) {
+            complete(future, task);
+            return future;
+        }
+
+        RequestAttributes requestAttributes = RequestContextHolder.getRequestAttributes();
+
+        try {
+            executor.execute(() -> {
+                CURRENT.set(this);
+                RequestContextHolder.setRequestAttributes(requestAttributes);
+                try {
+                    complete(future, task);
+                } finally {
+                    RequestContextHolder.resetRequestAttributes();
+                    CURRENT.remove();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            future.completeExceptionally(new BulkheadFullException(name));
+        }
+
+        return future;
+    }
+
+    public CompletableFuture<Void> run(Runnable task) {
+        return supply(() -> {
+            task.run();
+            return null;
+        });
+    }
+
+    /**
+     * Takes one of the bulkhead's connections for the calling thread; further connections opened
+     * by the same thread before it releases this one, such as a nested transaction, reuse it so
+     * that a task can never wait on itself.
+     */
+    void acquireConnection(long timeoutMillis) throws SQLException {
+        int[] held = HELD_CONNECTIONS.get();
+
+        if (held[0] == 0) {
+            boolean acquired;
+            try {
+                acquired = connections.tryAcquire(timeoutMillis, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                acquired = false;
+            }
+
+            if (!acquired) {
+                throw new SQLTransientConnectionException("No " + name + " connection available after " + timeoutMillis + "ms");
+            }
+        }
+
+        held[0]++;
+    }
+
+    void releaseConnection() {
+        int[] held = HELD_CONNECTIONS.get();
+
+        if (held[0] > 0 && --held[0] == 0) {
+            connections.release();
+        }
+    }
+
+    void bindTo(MeterRegistry registry) {
+        if (executor == null) {
+            return;
+        }
+
+        Tags tags = Tags.of("bulkhead", name);
+        Gauge.builder("library.bulkhead.queue", executor, e -> e.getQueue().size())
+                .description("Tasks waiting for a bulkhead thread")
+                .tags(tags)
+                .register(registry);
+        Gauge.builder("library.bulkhead.active", executor, ThreadPoolExecutor::getActiveCount)
+                .description("Bulkhead threads running a task")
+                .tags(tags)
+                .register(registry);
+        Gauge.builder("library.bulkhead.connections.available", connections, Semaphore::availablePermits)
+                .description("Database connections the bulkhead may still open")
+                .tags(tags)
+                .register(registry);
+        FunctionCounter.builder("library.bulkhead.rejected", rejected, LongAdder::doubleValue)
+                .description("Tasks refused because the bulkhead was full")
+                .tags(tags)
+                .register(registry);
+    }
+
+    void shutdown() {
+        if (executor != null) {
+            executor.shutdown();
+        }
+    }
+
+    private static <T> void complete(CompletableFuture<T> future, Supplier<T> task) {
+        try {
+            future.complete(task.get());
+        } catch (RuntimeException | Error e) {
+            future.completeExceptionally(e);
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package com.nhamparsomia.libraryapi.config.bulkhead;
+
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+import javax.sql.DataSource;
+
+/**
+ * Bulkheads are always available to the controllers and jobs; with
+ * {@code application.bulkheads.enabled=false} they simply run on the calling thread.
+ */
+@Configuration
+@EnableConfigurationProperties(BulkheadProperties.class)
+public class BulkheadConfig {
+
+    @Bean
+    public Bulkheads bulkheads(BulkheadProperties properties) {
+        return new Bulkheads(properties);
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "application.bulkheads.enabled", havingValue = "true")
+    public static BeanPostProcessor bulkheadDataSourcePostProcessor(Environment environment) {
+        long connectionTimeoutMillis = environment.getProperty("application.bulkheads.connection-timeout-ms", Long.class, 5000L);
+
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (bean instanceof DataSource && beanName.equals("dataSource")) {
+                    return new BulkheadDataSource((DataSource) bean, connectionTimeoutMillis);
+                }
+                return bean;
+            }
+        };
+    }
+}
@@ -0,0 +1,73 @@
+package com.nhamparsomia.libraryapi.config.bulkhead;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Charges connections opened from a bulkhead thread to that bulkhead's connection quota until
+ * they are closed. Connections opened from any other thread pass straight through.
+ */
+public class BulkheadDataSource extends DelegatingDataSource {
+
+    private final long connectionTimeoutMillis;
+
+    public BulkheadDataSource(DataSource targetDataSource, long connectionTimeoutMillis) {
+        super(targetDataSource);
+        this.connectionTimeoutMillis = connectionTimeoutMillis;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return limit(super::getConnection);
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return limit(() -> super.getConnection(username, password));
+    }
+
+    private Connection limit(ConnectionSupplier supplier) throws SQLException {
+        Bulkhead bulkhead = Bulkhead.current();
+        if (bulkhead == null) {
+            return supplier.get();
+        }
+
+        bulkhead.acquireConnection(connectionTimeoutMillis);
+        try {
+            return releasingOnClose(supplier.get(), bulkhead);
+        } catch (SQLException | RuntimeException e) {
+            bulkhead.releaseConnection();
+            throw e;
+        }
+    }
+
+    private static Connection releasingOnClose(Connection connection, Bulkhead bulkhead) {
+        AtomicBoolean closed = new AtomicBoolean();
+
+        return (Connection) Proxy.newProxyInstance(
+                BulkheadDataSource.class.getClassLoader(),
+                new Class<?>[]{Connection.class},
+                (proxy, method, args) -> {
+                    try {
+                        return method.invoke(connection, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getTargetException();
+                    } finally {
+                        if (method.getName().equals("close") && closed.compareAndSet(false, true)) {
+                            bulkhead.releaseConnection();
+                        }
+                    }
+                });
+    }
+
+    @FunctionalInterface
+    private interface ConnectionSupplier {
+        Connection get() throws SQLException;
+    }
+}
@@ -0,0 +1,19 @@
+package com.nhamparsomia.libraryapi.config.bulkhead;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+public class BulkheadFullException extends ResponseStatusException {
+
+    public BulkheadFullException(String bulkhead) {
+        super(HttpStatus.SERVICE_UNAVAILABLE, "Too many concurrent " + bulkhead + " requests, try again later");
+    }
+
+    @Override
+    public HttpHeaders getResponseHeaders() {
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(HttpHeaders.RETRY_AFTER, "1");
+        return headers;
+    }
+}
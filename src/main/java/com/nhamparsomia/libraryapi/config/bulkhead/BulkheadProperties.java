@@ -0,0 +1,41 @@
+package com.nhamparsomia.libraryapi.config.bulkhead;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Data
+@ConfigurationProperties(prefix = "application.bulkheads")
+public class BulkheadProperties {
+
+    private boolean enabled;
+
+    /**
+     * How long a bulkhead task waits for one of its bulkhead's connections.
+     */
+    private long connectionTimeoutMs = 5000;
+
+    private Pool search = new Pool(8, 100, 3);
+
+    private Pool mutation = new Pool(8, 200, 5);
+
+    private Pool background = new Pool(2, 20, 1);
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Pool {
+        private int threads;
+
+        /**
+         * Tasks waiting for a thread; once full, new tasks are refused straight away.
+         */
+        private int queueCapacity;
+
+        /**
+         * Database connections the bulkhead's threads may hold at once.
+         */
+        private int connections;
+    }
+}
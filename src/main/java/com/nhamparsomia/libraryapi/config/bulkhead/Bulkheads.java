@@ -0,0 +1,55 @@
+package com.nhamparsomia.libraryapi.config.bulkhead;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.DisposableBean;
+
+/**
+ * The three bulkheads of the application: {@code search} for book and loan queries,
+ * {@code mutation} for checkouts and returns and {@code background} for scheduled jobs, so that a
+ * storm of one kind cannot take the threads and connections the others need.
+ */
+public class Bulkheads implements MeterBinder, DisposableBean {
+
+    private final Bulkhead search;
+    private final Bulkhead mutation;
+    private final Bulkhead background;
+
+    public Bulkheads(BulkheadProperties properties) {
+        if (properties.isEnabled()) {
+            search = Bulkhead.bounded("search", properties.getSearch());
+            mutation = Bulkhead.bounded("mutation", properties.getMutation());
+            background = Bulkhead.bounded("background", properties.getBackground());
+        } else {
+            search = Bulkhead.inline("search");
+            mutation = Bulkhead.inline("mutation");
+            background = Bulkhead.inline("background");
+        }
+    }
+
+    public Bulkhead search() {
+        return search;
+    }
+
+    public Bulkhead mutation() {
+        return mutation;
+    }
+
+    public Bulkhead background() {
+        return background;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        search.bindTo(registry);
+        mutation.bindTo(registry);
+        background.bindTo(registry);
+    }
+
+    @Override
+    public void destroy() {
+        search.shutdown();
+        mutation.shutdown();
+        background.shutdown();
+    }
+}
@@ -0,0 +1,28 @@
+package com.nhamparsomia.libraryapi.config.datasource;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Data
+@ConfigurationProperties(prefix = "application.datasource.pool.adaptive")
+public class AdaptivePoolProperties {
+
+    private boolean enabled;
+
+    private int minSize = 5;
+
+    private int maxSize = 30;
+
+    private int step = 2;
+
+    /**
+     * Mean connection acquire time above which callers are considered to be queueing.
+     */
+    private long acquireThresholdMs = 5;
+
+    /**
+     * Mean connection usage time above which the database itself is considered saturated,
+     * so adding connections would only add contention.
+     */
+    private long usageThresholdMs = 50;
+}
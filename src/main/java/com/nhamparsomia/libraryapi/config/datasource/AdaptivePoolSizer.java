@@ -0,0 +1,137 @@
+package com.nhamparsomia.libraryapi.config.datasource;
+
+import com.zaxxer.hikari.HikariConfigMXBean;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Resizes the primary Hikari pool between {@code min-size} and {@code max-size} from what the
+ * pool observed since the previous run: callers waiting for a connection while queries stay
+ * fast means the pool is the bottleneck and it grows; slow queries mean the database is, and it
+ * shrinks so fewer statements compete; an idle pool slowly gives connections back.
+ */
+@Slf4j
+@Component
+@Lazy(false)
+@ConditionalOnProperty(name = "application.datasource.pool.adaptive.enabled", havingValue = "true")
+public class AdaptivePoolSizer {
+
+    private static final String ACQUIRE_METRIC = "hikaricp.connections.acquire";
+    private static final String USAGE_METRIC = "hikaricp.connections.usage";
+
+    private final AdaptivePoolProperties properties;
+    private final DataSource dataSource;
+    private final MeterRegistry registry;
+
+    private Totals previousAcquire = Totals.ZERO;
+    private Totals previousUsage = Totals.ZERO;
+
+    public AdaptivePoolSizer(AdaptivePoolProperties properties, DataSource dataSource, MeterRegistry registry) {
+        this.properties = properties;
+        this.dataSource = dataSource;
+        this.registry = registry;
+    }
+
+    @Scheduled(fixedDelayString = "${application.datasource.pool.adaptive.interval-ms:5000}")
+    public void resize() throws SQLException {
+        if (!dataSource.isWrapperFor(HikariDataSource.class)) {
+            return;
+        }
+
+        HikariDataSource hikari = dataSource.unwrap(HikariDataSource.class);
+        HikariPoolMXBean pool = hikari.getHikariPoolMXBean();
+        if (pool == null) {
+            return;
+        }
+
+        Totals acquire = totals(ACQUIRE_METRIC, hikari.getPoolName());
+        Totals usage = totals(USAGE_METRIC, hikari.getPoolName());
+
+        PoolSample sample = new PoolSample(
+                pool.getThreadsAwaitingConnection(),
+                pool.getIdleConnections(),
+                acquire.meanMillisSince(previousAcquire),
+                usage.meanMillisSince(previousUsage)
+        );
+        previousAcquire = acquire;
+        previousUsage = usage;
+
+        HikariConfigMXBean config = hikari.getHikariConfigMXBean();
+        int current = config.getMaximumPoolSize();
+        int next = nextSize(current, sample);
+
+        if (next != current) {
+            log.info("Resizing connection pool {} from {} to {} ({})", hikari.getPoolName(), current, next, sample);
+            config.setMaximumPoolSize(next);
+            config.setMinimumIdle(Math.min(config.getMinimumIdle(), next));
+        }
+    }
+
+    int nextSize(int current, PoolSample sample) {
+        boolean queueing = sample.pending > 0 || sample.meanAcquireMillis > properties.getAcquireThresholdMs();
+        boolean databaseSaturated = sample.meanUsageMillis > properties.getUsageThresholdMs();
+
+        int next = current;
+        if (databaseSaturated) {
+            next = current - properties.getStep();
+        } else if (queueing) {
+            next = current + properties.getStep();
+        } else if (sample.idle > current / 2) {
+            next = current - 1;
+        }
+
+        return Math.max(properties.getMinSize(), Math.min(properties.getMaxSize(), next));
+    }
+
+    private Totals totals(String metric, String poolName) {
+        Timer timer = registry.find(metric).tag("pool", poolName).timer();
+        return timer == null ? Totals.ZERO : new Totals(timer.count(), timer.totalTime(TimeUnit.MILLISECONDS));
+    }
+
+    static class PoolSample {
+        private final int pending;
+        private final int idle;
+        private final double meanAcquireMillis;
+        private final double meanUsageMillis;
+
+        PoolSample(int pending, int idle, double meanAcquireMillis, double meanUsageMillis) {
+            this.pending = pending;
+            this.idle = idle;
+            this.meanAcquireMillis = meanAcquireMillis;
+            this.meanUsageMillis = meanUsageMillis;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("pending=%d, idle=%d, acquire=%.1fms, usage=%.1fms", pending, idle, meanAcquireMillis, meanUsageMillis);
+        }
+    }
+
+    private static class Totals {
+        private static final Totals ZERO = new Totals(0, 0);
+
+        private final long count;
+        private final double totalMillis;
+
+        Totals(long count, double totalMillis) {
+            this.count = count;
+            this.totalMillis = totalMillis;
+        }
+
+        double meanMillisSince(Totals previous) {
+            long calls = count - previous.count;
+            return calls <= 0 ? 0 : (totalMillis - previous.totalMillis) / calls;
+        }
+    }
+}
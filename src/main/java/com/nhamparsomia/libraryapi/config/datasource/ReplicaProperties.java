@@ -0,0 +1,32 @@
+package com.nhamparsomia.libraryapi.config.datasource;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+@ConfigurationProperties(prefix = "application.datasource.replicas")
+public class ReplicaProperties {
+
+    private boolean enabled;
+
+    private List<Node> nodes = new ArrayList<>();
+
+    /**
+     * How long a client's reads stay on the primary after its own read-write transaction; 0 disables the window.
+     */
+    private long readYourWritesMs;
+
+    private long healthCheckMs = 5000;
+
+    private int healthCheckTimeoutSeconds = 1;
+
+    @Data
+    public static class Node {
+        private String url;
+        private String username;
+        private String password;
+    }
+}
@@ -0,0 +1,231 @@
+package com.nhamparsomia.libraryapi.config.datasource;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * Sends connections requested inside read-only transactions to a healthy replica, picked round
+ * robin, and everything else to the primary. Replicas that fail the periodic validity check are
+ * skipped until they pass again; with no healthy replica, reads fall back to the primary.
+ *
+ * <p>When a read-your-writes window is configured, a client's reads go to the primary for that
+ * long after its own last read-write transaction, so it does not observe replication lag while
+ * other clients keep reading from the replicas. The time of the write is kept as a request
+ * attribute and sent back in the {@value #LAST_WRITE_COOKIE} cookie, so the next requests of the
+ * client, on any node, honour it as well. Work outside an HTTP request is not tracked.
+ *
+ * <p>Must be wrapped in a {@link org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy}:
+ * the transaction manager asks for a connection before the read-only flag is bound to the thread.
+ */
+@Slf4j
+public class ReplicaRoutingDataSource extends AbstractRoutingDataSource implements DisposableBean {
+
+    public static final String PRIMARY = "primary";
+    public static final String LAST_WRITE_COOKIE = "library-last-write";
+
+    private static final String LAST_WRITE_ATTRIBUTE = ReplicaRoutingDataSource.class.getName() + ".lastWrite";
+    private static final String COOKIE_SENT_ATTRIBUTE = ReplicaRoutingDataSource.class.getName() + ".cookieSent";
+
+    private final DataSource primary;
+    private final List<Replica> replicas;
+    private final long readYourWritesMillis;
+    private final long healthCheckMillis;
+    private final int healthCheckTimeoutSeconds;
+
+    private final AtomicInteger nextReplica = new AtomicInteger();
+    private ScheduledExecutorService healthChecker;
+
+    public ReplicaRoutingDataSource(DataSource primary,
+                                    Map<String, DataSource> replicas,
+                                    long readYourWritesMillis,
+                                    long healthCheckMillis,
+                                    int healthCheckTimeoutSeconds) {
+        this.primary = primary;
+        this.readYourWritesMillis = readYourWritesMillis;
+        this.healthCheckMillis = healthCheckMillis;
+        this.healthCheckTimeoutSeconds = healthCheckTimeoutSeconds;
+
+        Map<Object, Object> targets = new HashMap<>();
+        targets.put(PRIMARY, primary);
+        targets.putAll(replicas);
+
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(primary);
+
+        this.replicas = replicas.entrySet().stream()
+                .map(replica -> new Replica(replica.getKey(), replica.getValue()))
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        super.afterPropertiesSet();
+
+        if (healthCheckMillis > 0 && !replicas.isEmpty()) {
+            healthChecker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "replica-health-check");
+                thread.setDaemon(true);
+                return thread;
+            });
+            healthChecker.scheduleWithFixedDelay(this::checkReplicas, healthCheckMillis, healthCheckMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @Override
+    public void destroy() throws Exception {
+        if (healthChecker != null) {
+            healthChecker.shutdownNow();
+        }
+
+        close(primary);
+        for (Replica replica : replicas) {
+            close(replica.dataSource);
+        }
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            if (TransactionSynchronizationManager.isActualTransactionActive()) {
+                recordWrite();
+            }
+            return PRIMARY;
+        }
+
+        if (wroteRecently()) {
+            return PRIMARY;
+        }
+
+        int size = replicas.size();
+        int start = nextReplica.getAndIncrement();
+
+        for (int attempt = 0; attempt < size; attempt++) {
+            Replica replica = replicas.get(Math.floorMod(start + attempt, size));
+            if (replica.healthy) {
+                return replica.name;
+            }
+        }
+
+        return PRIMARY;
+    }
+
+    /**
+     * Keeps the current client's reads on the primary for the read-your-writes window. Called for
+     * every read-write transaction; a caller whose write was committed by another thread, such as a
+     * batched checkout, calls it itself.
+     */
+    public void recordWrite() {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (readYourWritesMillis <= 0 || !(attributes instanceof ServletRequestAttributes)) {
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+        boolean firstWrite = attributes.getAttribute(COOKIE_SENT_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST) == null;
+        attributes.setAttribute(LAST_WRITE_ATTRIBUTE, now, RequestAttributes.SCOPE_REQUEST);
+        attributes.setAttribute(COOKIE_SENT_ATTRIBUTE, true, RequestAttributes.SCOPE_REQUEST);
+
+        HttpServletResponse response = ((ServletRequestAttributes) attributes).getResponse();
+        if (firstWrite && response != null && !response.isCommitted()) {
+            Cookie cookie = new Cookie(LAST_WRITE_COOKIE, Long.toString(now));
+            cookie.setPath("/");
+            cookie.setHttpOnly(true);
+            cookie.setMaxAge((int) Math.max(1, TimeUnit.MILLISECONDS.toSeconds(readYourWritesMillis + 999)));
+            response.addCookie(cookie);
+        }
+    }
+
+    private boolean wroteRecently() {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (readYourWritesMillis <= 0 || !(attributes instanceof ServletRequestAttributes)) {
+            return false;
+        }
+
+        Object lastWrite = attributes.getAttribute(LAST_WRITE_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+        if (lastWrite == null) {
+            lastWrite = lastWriteCookie(((ServletRequestAttributes) attributes).getRequest());
+            attributes.setAttribute(LAST_WRITE_ATTRIBUTE, lastWrite, RequestAttributes.SCOPE_REQUEST);
+        }
+
+        return Math.abs(System.currentTimeMillis() - (Long) lastWrite) < readYourWritesMillis;
+    }
+
+    private static long lastWriteCookie(HttpServletRequest request) {
+        Cookie[] cookies = request.getCookies();
+        if (cookies != null) {
+            for (Cookie cookie : cookies) {
+                if (LAST_WRITE_COOKIE.equals(cookie.getName())) {
+                    try {
+                        return Long.parseLong(cookie.getValue());
+                    } catch (NumberFormatException e) {
+                        return 0;
+                    }
+                }
+            }
+        }
+
+        return 0;
+    }
+
+    public void checkReplicas() {
+        for (Replica replica : replicas) {
+            boolean healthy;
+
+            try (Connection connection = replica.dataSource.getConnection()) {
+                healthy = connection.isValid(healthCheckTimeoutSeconds);
+            } catch (SQLException e) {
+                healthy = false;
+            }
+
+            if (healthy != replica.healthy) {
+                log.warn("Replica {} is now {}", replica.name, healthy ? "healthy" : "unhealthy");
+            }
+
+            replica.healthy = healthy;
+        }
+    }
+
+    public Map<String, Boolean> replicaStatus() {
+        Map<String, Boolean> status = new LinkedHashMap<>();
+        replicas.forEach(replica -> status.put(replica.name, replica.healthy));
+        return status;
+    }
+
+    private static void close(DataSource dataSource) throws Exception {
+        if (dataSource instanceof AutoCloseable) {
+            ((AutoCloseable) dataSource).close();
+        }
+    }
+
+    private static class Replica {
+        private final String name;
+        private final DataSource dataSource;
+        private volatile boolean healthy = true;
+
+        Replica(String name, DataSource dataSource) {
+            this.name = name;
+            this.dataSource = dataSource;
+        }
+    }
+}
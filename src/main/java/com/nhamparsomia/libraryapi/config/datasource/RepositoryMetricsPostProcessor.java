@@ -0,0 +1,70 @@
+package com.nhamparsomia.libraryapi.config.datasource;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.springframework.aop.framework.Advised;
+import org.springframework.aop.framework.AopProxyUtils;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.data.repository.Repository;
+
+import java.util.Arrays;
+
+/**
+ * Times every Spring Data repository call as {@code library.repository.invocations}, tagged with
+ * the repository interface and method. Outside a service transaction each call borrows its own
+ * connection, so the timer is the connection usage time of that method.
+ */
+public class RepositoryMetricsPostProcessor implements BeanPostProcessor {
+
+    public static final String METRIC_NAME = "library.repository.invocations";
+
+    private final ObjectProvider<MeterRegistry> registry;
+
+    public RepositoryMetricsPostProcessor(ObjectProvider<MeterRegistry> registry) {
+        this.registry = registry;
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (!(bean instanceof Repository) || !(bean instanceof Advised)) {
+            return bean;
+        }
+
+        String repository = Arrays.stream(AopProxyUtils.proxiedUserInterfaces(bean))
+                .filter(Repository.class::isAssignableFrom)
+                .map(Class::getSimpleName)
+                .findFirst()
+                .orElse(beanName);
+
+        ((Advised) bean).addAdvice(0, timing(repository));
+        return bean;
+    }
+
+    private MethodInterceptor timing(String repository) {
+        return invocation -> {
+            MeterRegistry meterRegistry = registry.getIfAvailable();
+            if (meterRegistry == null) {
+                return invocation.proceed();
+            }
+
+            Timer.Sample sample = Timer.start(meterRegistry);
+            String exception = "none";
+
+            try {
+                return invocation.proceed();
+            } catch (Throwable e) {
+                exception = e.getClass().getSimpleName();
+                throw e;
+            } finally {
+                sample.stop(Timer.builder(METRIC_NAME)
+                        .description("Repository method duration, i.e. connection usage per call")
+                        .tag("repository", repository)
+                        .tag("method", invocation.getMethod().getName())
+                        .tag("exception", exception)
+                        .register(meterRegistry));
+            }
+        };
+    }
+}
@@ -0,0 +1,73 @@
+package com.nhamparsomia.libraryapi.config.ratelimit;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.util.StringUtils;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Charges each API request its endpoint's cost from the client's token bucket, and answers
+ * {@code 429} with {@code Retry-After} before the request reaches a controller or the database
+ * when the bucket cannot pay it.
+ */
+public class RateLimitFilter extends OncePerRequestFilter {
+
+    static final String API_KEY_PREFIX = "key:";
+
+    private static final byte[] TOO_MANY_REQUESTS_BODY =
+            "{\"errors\":[\"Too many requests\"]}".getBytes(StandardCharsets.UTF_8);
+
+    private final RateLimiter rateLimiter;
+    private final String apiKeyHeader;
+    private final Set<String> apiKeys;
+
+    public RateLimitFilter(RateLimiter rateLimiter, String apiKeyHeader, Set<String> apiKeys) {
+        this.rateLimiter = rateLimiter;
+        this.apiKeyHeader = apiKeyHeader;
+        this.apiKeys = new HashSet<>(apiKeys);
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        int cost = rateLimiter.cost(request.getMethod(), path);
+
+        long waitNanos = rateLimiter.acquire(client(request), cost);
+        if (waitNanos > 0) {
+            reject(response, waitNanos);
+            return;
+        }
+
+        filterChain.doFilter(request, response);
+    }
+
+    /**
+     * The API key when it is one of the configured keys, otherwise the remote address.
+     */
+    private String client(HttpServletRequest request) {
+        String apiKey = request.getHeader(apiKeyHeader);
+        return StringUtils.hasText(apiKey) && apiKeys.contains(apiKey) ? API_KEY_PREFIX + apiKey : request.getRemoteAddr();
+    }
+
+    private static void reject(HttpServletResponse response, long waitNanos) throws IOException {
+        long retryAfterSeconds = Math.max(1, (waitNanos + TimeUnit.SECONDS.toNanos(1) - 1) / TimeUnit.SECONDS.toNanos(1));
+
+        response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds));
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.setContentLength(TOO_MANY_REQUESTS_BODY.length);
+        response.getOutputStream().write(TOO_MANY_REQUESTS_BODY);
+    }
+}
@@ -0,0 +1,75 @@
+package com.nhamparsomia.libraryapi.config.ratelimit;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+@Data
+@ConfigurationProperties(prefix = "application.rate-limit")
+public class RateLimitProperties {
+
+    private boolean enabled;
+
+    /**
+     * Tokens a client can spend in a burst.
+     */
+    private int capacity = 100;
+
+    /**
+     * Tokens given back to every client per second.
+     */
+    private int refillPerSecond = 20;
+
+    /**
+     * Clients with their own bucket at once; clients beyond that share a single bucket.
+     */
+    private int maxClients = 10_000;
+
+    /**
+     * Header identifying a client; requests without it are limited by remote address.
+     */
+    private String apiKeyHeader = "X-API-Key";
+
+    /**
+     * Keys accepted in {@code api-key-header}. Any other value is ignored and the request is
+     * limited by remote address, so a client cannot get a fresh bucket by inventing keys.
+     */
+    private Set<String> apiKeys = new HashSet<>();
+
+    private int defaultCost = 1;
+
+    /**
+     * Cost of the first matching endpoint; unmatched requests cost {@code default-cost}. Costs are
+     * charged before the body is read, so the bulk lookups cost what their largest batch does.
+     */
+    private List<EndpointCost> costs = new ArrayList<>(Arrays.asList(
+            new EndpointCost("GET", "/api/books", 5),
+            new EndpointCost("GET", "/api/loans", 5),
+            new EndpointCost("GET", "/api/books/*/loans", 3),
+            new EndpointCost("GET", "/api/books/lookup", 50),
+            new EndpointCost("POST", "/api/books/lookup", 50),
+            new EndpointCost("POST", "/api/books/availability", 20),
+            new EndpointCost("POST", "/api/loans/batch", 10),
+            new EndpointCost("PATCH", "/api/loans/batch", 10),
+            new EndpointCost("GET", "/api/analytics/**", 2)
+    ));
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class EndpointCost {
+        /**
+         * HTTP method, or any method when empty.
+         */
+        private String method;
+        private String pattern;
+        private int cost;
+    }
+}
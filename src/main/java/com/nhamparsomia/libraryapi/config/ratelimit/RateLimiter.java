@@ -0,0 +1,182 @@
+package com.nhamparsomia.libraryapi.config.ratelimit;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.util.AntPathMatcher;
+import org.springframework.util.StringUtils;
+
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import java.util.stream.Collectors;
+
+/**
+ * Per-client token buckets. The map holds at most {@code max-clients} buckets: when it is full,
+ * buckets that have refilled completely are dropped, since forgetting them loses nothing, and if
+ * every tracked client is still active the new client is limited by a bucket shared by all such
+ * clients until room frees up.
+ */
+public class RateLimiter implements MeterBinder {
+
+    static final String OVERFLOW_CLIENT = "(overflow)";
+
+    private static final long SWEEP_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+    private static final int TOP_CLIENTS = 10;
+
+    private final RateLimitProperties properties;
+    private final LongSupplier clock;
+    private final long nanosPerToken;
+    private final long burstNanos;
+    private final AntPathMatcher pathMatcher = new AntPathMatcher();
+
+    private final ConcurrentMap<String, TokenBucket> buckets = new ConcurrentHashMap<>();
+    private final TokenBucket overflow;
+    private final AtomicLong lastSweep;
+    private final LongAdder allowed = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+
+    public RateLimiter(RateLimitProperties properties) {
+        this(properties, System::nanoTime);
+    }
+
+    RateLimiter(RateLimitProperties properties, LongSupplier clock) {
+        if (properties.getCapacity() < 1 || properties.getRefillPerSecond() < 1) {
+            throw new IllegalArgumentException("Rate limit capacity and refill must be positive");
+        }
+
+        this.properties = properties;
+        this.clock = clock;
+        this.nanosPerToken = TimeUnit.SECONDS.toNanos(1) / properties.getRefillPerSecond();
+        this.burstNanos = properties.getCapacity() * nanosPerToken;
+        this.overflow = new TokenBucket(clock.getAsLong());
+        this.lastSweep = new AtomicLong(clock.getAsLong());
+    }
+
+    /**
+     * @return 0 when the request may proceed, otherwise the nanoseconds until it would be allowed
+     */
+    public long acquire(String client, int cost) {
+        long now = clock.getAsLong();
+        int tokens = Math.min(Math.max(cost, 1), properties.getCapacity());
+
+        long wait = bucket(client, now).tryConsume(tokens, now, nanosPerToken, burstNanos);
+        if (wait > 0) {
+            rejected.increment();
+        } else {
+            allowed.increment();
+        }
+        return wait;
+    }
+
+    public int cost(String method, String path) {
+        for (RateLimitProperties.EndpointCost endpoint : properties.getCosts()) {
+            if ((!StringUtils.hasText(endpoint.getMethod()) || endpoint.getMethod().equalsIgnoreCase(method))
+                    && pathMatcher.match(endpoint.getPattern(), path)) {
+                return endpoint.getCost();
+            }
+        }
+        return properties.getDefaultCost();
+    }
+
+    public Map<String, Object> snapshot() {
+        long now = clock.getAsLong();
+
+        Map<String, Object> snapshot = new LinkedHashMap<>();
+        snapshot.put("capacity", properties.getCapacity());
+        snapshot.put("refillPerSecond", properties.getRefillPerSecond());
+        snapshot.put("maxClients", properties.getMaxClients());
+        snapshot.put("trackedClients", buckets.size());
+        snapshot.put("allowed", allowed.sum());
+        snapshot.put("rejected", rejected.sum());
+        snapshot.put("overflowRejected", overflow.getRejected());
+
+        List<Map<String, Object>> topRejected = buckets.entrySet().stream()
+                .filter(entry -> entry.getValue().getRejected() > 0)
+                .sorted(Comparator.comparingLong((Map.Entry<String, TokenBucket> entry) -> entry.getValue().getRejected()).reversed())
+                .limit(TOP_CLIENTS)
+                .map(entry -> describe(entry.getKey(), entry.getValue(), now))
+                .collect(Collectors.toList());
+        snapshot.put("topRejectedClients", topRejected);
+
+        return snapshot;
+    }
+
+    public Optional<Map<String, Object>> client(String client) {
+        return Optional.ofNullable(buckets.get(client))
+                .map(bucket -> describe(client, bucket, clock.getAsLong()));
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("library.ratelimit.requests", allowed, LongAdder::doubleValue)
+                .description("Requests let through by the rate limiter")
+                .tag("outcome", "allowed")
+                .register(registry);
+        FunctionCounter.builder("library.ratelimit.requests", rejected, LongAdder::doubleValue)
+                .description("Requests refused by the rate limiter")
+                .tag("outcome", "rejected")
+                .register(registry);
+        Gauge.builder("library.ratelimit.clients", buckets, Map::size)
+                .description("Clients with their own token bucket")
+                .register(registry);
+    }
+
+    private TokenBucket bucket(String client, long now) {
+        TokenBucket bucket = buckets.get(client);
+        if (bucket != null) {
+            return bucket;
+        }
+
+        if (buckets.size() >= properties.getMaxClients() && !sweep(now)) {
+            return overflow;
+        }
+
+        TokenBucket created = new TokenBucket(now);
+        TokenBucket existing = buckets.putIfAbsent(client, created);
+        return existing != null ? existing : created;
+    }
+
+    /**
+     * Drops full buckets, at most once per second so that a map full of active clients is not
+     * scanned on every request.
+     *
+     * @return whether there is room for a new bucket
+     */
+    private boolean sweep(long now) {
+        long previous = lastSweep.get();
+        if (now - previous >= SWEEP_INTERVAL_NANOS && lastSweep.compareAndSet(previous, now)) {
+            buckets.values().removeIf(bucket -> bucket.isFull(now));
+        }
+        return buckets.size() < properties.getMaxClients();
+    }
+
+    private Map<String, Object> describe(String client, TokenBucket bucket, long now) {
+        Map<String, Object> description = new LinkedHashMap<>();
+        description.put("client", mask(client));
+        description.put("availableTokens", Math.floor(bucket.available(now, nanosPerToken, burstNanos)));
+        description.put("rejected", bucket.getRejected());
+        return description;
+    }
+
+    /**
+     * API keys are credentials, so only their first characters are shown.
+     */
+    static String mask(String client) {
+        if (!client.startsWith(RateLimitFilter.API_KEY_PREFIX)) {
+            return client;
+        }
+
+        int visible = Math.min(client.length(), RateLimitFilter.API_KEY_PREFIX.length() + 4);
+        return client.substring(0, visible) + "****";
+    }
+}
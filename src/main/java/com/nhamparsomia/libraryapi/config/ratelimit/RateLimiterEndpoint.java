@@ -0,0 +1,31 @@
+package com.nhamparsomia.libraryapi.config.ratelimit;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+
+import java.util.Map;
+
+/**
+ * {@code /actuator/ratelimiter}: limiter settings, tracked clients and rejection counts, and
+ * {@code /actuator/ratelimiter/{client}} for the bucket of one client.
+ */
+@Endpoint(id = "ratelimiter")
+public class RateLimiterEndpoint {
+
+    private final RateLimiter rateLimiter;
+
+    public RateLimiterEndpoint(RateLimiter rateLimiter) {
+        this.rateLimiter = rateLimiter;
+    }
+
+    @ReadOperation
+    public Map<String, Object> rateLimiter() {
+        return rateLimiter.snapshot();
+    }
+
+    @ReadOperation
+    public Map<String, Object> client(@Selector String client) {
+        return rateLimiter.client(client).orElse(null);
+    }
+}
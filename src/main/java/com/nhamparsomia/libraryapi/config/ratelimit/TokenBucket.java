@@ -0,0 +1,51 @@
+package com.nhamparsomia.libraryapi.config.ratelimit;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Token bucket kept as a single timestamp, the instant at which the bucket will be full again
+ * (the "virtual scheduling" form of the generic cell rate algorithm). Taking {@code n} tokens
+ * moves that instant {@code n} token intervals forward, and is refused when it would move further
+ * than {@code capacity} intervals ahead of now. Updates are one compare-and-set, without locks.
+ */
+class TokenBucket {
+
+    private final AtomicLong fullAt;
+    private final AtomicLong rejected = new AtomicLong();
+
+    TokenBucket(long now) {
+        this.fullAt = new AtomicLong(now);
+    }
+
+    /**
+     * @return 0 when the tokens were taken, otherwise the nanoseconds until they would be
+     */
+    long tryConsume(int tokens, long now, long nanosPerToken, long burstNanos) {
+        while (true) {
+            long current = fullAt.get();
+            long next = Math.max(current, now) + tokens * nanosPerToken;
+            long wait = next - now - burstNanos;
+
+            if (wait > 0) {
+                rejected.incrementAndGet();
+                return wait;
+            }
+            if (fullAt.compareAndSet(current, next)) {
+                return 0;
+            }
+        }
+    }
+
+    double available(long now, long nanosPerToken, long burstNanos) {
+        long debt = Math.max(0, fullAt.get() - now);
+        return (double) (burstNanos - debt) / nanosPerToken;
+    }
+
+    boolean isFull(long now) {
+        return fullAt.get() <= now;
+    }
+
+    long getRejected() {
+        return rejected.get();
+    }
+}
@@ -13,7 +13,10 @@ import java.util.List;
 @NoArgsConstructor
 @AllArgsConstructor
 @Entity
-@Table
+@Table(indexes = {
+        @Index(name = "idx_book_isbn", columnList = "isbn"),
+        @Index(name = "idx_book_popularity", columnList = "total_loans desc, id desc")
+})
 public class Book {
     @Id
     @Column
@@ -29,6 +32,31 @@ public class Book {
     @Column
     private String isbn;
 
+    /**
+     * Loan counters, only written by the counter updates of {@code BookRepository} so that
+     * saving a book never overwrites them with a stale value.
+     */
+    @Column(name = "total_loans", insertable = false, updatable = false, columnDefinition = "bigint default 0 not null")
+    private Long totalLoans;
+
+    @Column(name = "active_loans", insertable = false, updatable = false, columnDefinition = "bigint default 0 not null")
+    private Long activeLoans;
+
     @OneToMany(mappedBy = "book", fetch = FetchType.LAZY)
     private List<Loan> loans;
+
+    /**
+     * A detached copy of the columns, without the loans, read through the getters so that it also
+     * works on a lazy proxy.
+     */
+    public Book copy() {
+        return Book.builder()
+                .id(getId())
+                .title(getTitle())
+                .author(getAuthor())
+                .isbn(getIsbn())
+                .totalLoans(getTotalLoans())
+                .activeLoans(getActiveLoans())
+                .build();
+    }
 }
@@ -0,0 +1,39 @@
+package com.nhamparsomia.libraryapi.model.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.*;
+import java.time.Instant;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+@Table(name = "change_log", indexes = {
+        @Index(name = "idx_change_log_changed_at", columnList = "changed_at")
+})
+public class ChangeLogEntry {
+
+    // allocated one at a time so that ids follow insertion order across instances
+    @Id
+    @Column
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "change_log_sequence")
+    @SequenceGenerator(name = "change_log_sequence", sequenceName = "change_log_sequence", allocationSize = 1)
+    private Long id;
+
+    @Column(name = "entity_name", length = 50, nullable = false)
+    private String entity;
+
+    @Column(name = "entity_key", nullable = false)
+    private Long entityKey;
+
+    @Column(length = 36, nullable = false)
+    private String origin;
+
+    @Column(name = "changed_at", nullable = false)
+    private Instant changedAt;
+}
@@ -7,25 +7,37 @@ import lombok.NoArgsConstructor;
 
 import javax.persistence.*;
 import java.time.LocalDate;
+import java.util.Locale;
 
 @Data
 @Builder
 @NoArgsConstructor
 @AllArgsConstructor
 @Entity
+@Table(indexes = {
+        @Index(name = "idx_loan_customer", columnList = "customer"),
+        @Index(name = "idx_loan_customer_normalized", columnList = "customer_normalized")
+})
 public class Loan {
 
     @Id
     @Column
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "loan_sequence")
+    @SequenceGenerator(name = "loan_sequence", sequenceName = "loan_sequence", allocationSize = 50)
     private Long id;
 
     @Column(length = 100)
     private String customer;
 
+    @Column(name = "customer_normalized", length = 100)
+    private String customerNormalized;
+
     @Column(name = "customer_email")
     private String customerEmail;
 
+    @Column(name = "customer_email_hash")
+    private Integer customerEmailHash;
+
     @JoinColumn(name = "id_book")
     @ManyToOne
     private Book book;
@@ -35,4 +47,43 @@ public class Loan {
 
     @Column
     private Boolean returned;
+
+    @Column(name = "last_notified")
+    private LocalDate lastNotified;
+
+    /**
+     * A detached copy of the loan and of its book.
+     */
+    public Loan copy() {
+        return Loan.builder()
+                .id(getId())
+                .customer(getCustomer())
+                .customerNormalized(getCustomerNormalized())
+                .customerEmail(getCustomerEmail())
+                .customerEmailHash(getCustomerEmailHash())
+                .book(getBook() == null ? null : getBook().copy())
+                .loanDate(getLoanDate())
+                .returned(getReturned())
+                .lastNotified(getLastNotified())
+                .build();
+    }
+
+    @PrePersist
+    @PreUpdate
+    void deriveColumns() {
+        customerNormalized = normalizeCustomer(customer);
+        customerEmailHash = emailHash(customerEmail);
+    }
+
+    public static String normalizeCustomer(String customer) {
+        return customer == null ? null : customer.trim().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Non-negative hash of the email, stored so that the customers can be split into shards by
+     * a {@code mod} in the query.
+     */
+    public static Integer emailHash(String customerEmail) {
+        return customerEmail == null ? null : customerEmail.hashCode() & Integer.MAX_VALUE;
+    }
 }
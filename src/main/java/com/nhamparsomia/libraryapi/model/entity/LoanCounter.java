@@ -0,0 +1,28 @@
+package com.nhamparsomia.libraryapi.model.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.ColumnDefault;
+
+import javax.persistence.*;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+@Table(name = "loan_counter")
+public class LoanCounter {
+
+    public static final String OPEN_LOANS = "open-loans";
+
+    @Id
+    @Column(length = 50)
+    private String name;
+
+    @ColumnDefault("0")
+    @Column(name = "counter_value", nullable = false)
+    private long value;
+}
@@ -0,0 +1,39 @@
+package com.nhamparsomia.libraryapi.model.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.ColumnDefault;
+
+import javax.persistence.*;
+import java.time.LocalDate;
+
+/**
+ * Daily rollup of loan activity. {@code checkouts} and {@code openLoans} are bucketed by loan
+ * date, {@code returns} by the day the return was registered.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+@Table(name = "loan_daily_stats")
+public class LoanDailyStats {
+
+    @Id
+    @Column(name = "loan_day")
+    private LocalDate day;
+
+    @ColumnDefault("0")
+    @Column(nullable = false)
+    private long checkouts;
+
+    @ColumnDefault("0")
+    @Column(nullable = false)
+    private long returns;
+
+    @ColumnDefault("0")
+    @Column(name = "open_loans", nullable = false)
+    private long openLoans;
+}
@@ -1,8 +1,14 @@
 package com.nhamparsomia.libraryapi.model.repository;
 
 import com.nhamparsomia.libraryapi.model.entity.Book;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 public interface BookRepository  extends JpaRepository<Book, Long> {
@@ -10,4 +16,34 @@ public interface BookRepository  extends JpaRepository<Book, Long> {
     boolean existsByIsbn(String isbn);
 
     Optional<Book> findByIsbn(String isbn);
+
+    List<Book> findByIsbnIn(Collection<String> isbns);
+
+    @Modifying
+    @Query(value = "update Book b set b.author = :author, b.title = :title where b.id = :id")
+    int updateAuthorAndTitle(@Param("id") Long id, @Param("author") String author, @Param("title") String title);
+
+    @Modifying
+    @Query(value = "update Book b set b.totalLoans = b.totalLoans + :loans, b.activeLoans = b.activeLoans + :active " +
+            "where b.id in :ids")
+    int addLoanCounters(@Param("ids") Collection<Long> ids, @Param("loans") long loans, @Param("active") long active);
+
+    /**
+     * Books lent at least once, most borrowed first, read in the order of {@code idx_book_popularity}.
+     */
+    @Query(value = "select b from Book b where b.totalLoans > 0 order by b.totalLoans desc, b.id desc")
+    List<Book> findMostBorrowed(Pageable pageable);
+
+    @Query(value = "select b.id, b.totalLoans, b.activeLoans from Book b where b.id > :afterId order by b.id")
+    List<Object[]> findLoanCounters(@Param("afterId") Long afterId, Pageable pageable);
+
+    /**
+     * Sets the counters of a book only if they still hold the values they were read with, so a
+     * loan counted concurrently is not overwritten.
+     */
+    @Modifying
+    @Query(value = "update Book b set b.totalLoans = :total, b.activeLoans = :active " +
+            "where b.id = :id and b.totalLoans = :expectedTotal and b.activeLoans = :expectedActive")
+    int setLoanCounters(@Param("id") Long id, @Param("total") long total, @Param("active") long active,
+                        @Param("expectedTotal") long expectedTotal, @Param("expectedActive") long expectedActive);
 }
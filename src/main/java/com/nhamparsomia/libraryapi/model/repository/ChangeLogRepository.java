@@ -0,0 +1,25 @@
+package com.nhamparsomia.libraryapi.model.repository;
+
+import com.nhamparsomia.libraryapi.model.entity.ChangeLogEntry;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.List;
+
+public interface ChangeLogRepository extends JpaRepository<ChangeLogEntry, Long> {
+
+    List<ChangeLogEntry> findByIdGreaterThanOrderById(Long id, Pageable pageable);
+
+    @Query(value = "select coalesce(max(c.id), 0) from ChangeLogEntry c")
+    long findMaxId();
+
+    @Transactional
+    @Modifying
+    @Query(value = "delete from ChangeLogEntry c where c.changedAt < :before")
+    int deleteOlderThan(@Param("before") Instant before);
+}
@@ -0,0 +1,41 @@
+package com.nhamparsomia.libraryapi.model.repository;
+
+import com.nhamparsomia.libraryapi.model.entity.JobLease;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+
+/**
+ * Every lease change is a single conditional update in its own transaction, so that of several
+ * nodes racing for a lease exactly one sees an updated row.
+ */
+public interface JobLeaseRepository extends JpaRepository<JobLease, String> {
+
+    @Transactional
+    @Modifying
+    @Query(value = "update JobLease l set l.owner = :owner, l.expiresAt = :expiresAt where l.name = :name " +
+            "and (l.completedRun is null or l.completedRun <> :run) " +
+            "and (l.owner is null or l.owner = :owner or l.expiresAt < :now)")
+    int acquire(@Param("name") String name, @Param("owner") String owner, @Param("run") String run,
+                @Param("now") Instant now, @Param("expiresAt") Instant expiresAt);
+
+    @Transactional
+    @Modifying
+    @Query(value = "update JobLease l set l.expiresAt = :expiresAt where l.name = :name and l.owner = :owner")
+    int renew(@Param("name") String name, @Param("owner") String owner, @Param("expiresAt") Instant expiresAt);
+
+    @Transactional
+    @Modifying
+    @Query(value = "update JobLease l set l.completedRun = :run, l.expiresAt = :now where l.name = :name and l.owner = :owner")
+    int complete(@Param("name") String name, @Param("owner") String owner, @Param("run") String run,
+                 @Param("now") Instant now);
+
+    @Transactional
+    @Modifying
+    @Query(value = "update JobLease l set l.expiresAt = :now where l.name = :name and l.owner = :owner")
+    int release(@Param("name") String name, @Param("owner") String owner, @Param("now") Instant now);
+}
@@ -0,0 +1,18 @@
+package com.nhamparsomia.libraryapi.model.repository;
+
+import com.nhamparsomia.libraryapi.model.entity.LoanCounter;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+public interface LoanCounterRepository extends JpaRepository<LoanCounter, String> {
+
+    /**
+     * Sets a counter only if it still holds the value it was read with, so a concurrent addition
+     * is not overwritten.
+     */
+    @Modifying
+    @Query(value = "update LoanCounter c set c.value = :value where c.name = :name and c.value = :expected")
+    int setValue(@Param("name") String name, @Param("value") long value, @Param("expected") long expected);
+}
@@ -0,0 +1,28 @@
+package com.nhamparsomia.libraryapi.model.repository;
+
+import com.nhamparsomia.libraryapi.model.entity.LoanDailyStats;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDate;
+import java.util.List;
+
+public interface LoanDailyStatsRepository extends JpaRepository<LoanDailyStats, LocalDate> {
+
+    List<LoanDailyStats> findByDayBetweenOrderByDay(LocalDate from, LocalDate to);
+
+    @Query(value = "select coalesce(sum(s.openLoans), 0) from LoanDailyStats s where s.day > :loanDateLimit")
+    long sumOpenLoansAfter(@Param("loanDateLimit") LocalDate loanDateLimit);
+
+    /**
+     * Sets the loan counts of a day only if they still hold the values they were read with, so a
+     * loan counted concurrently is not overwritten.
+     */
+    @Modifying
+    @Query(value = "update LoanDailyStats s set s.checkouts = :checkouts, s.openLoans = :openLoans " +
+            "where s.day = :day and s.checkouts = :expectedCheckouts and s.openLoans = :expectedOpenLoans")
+    int setLoanCounts(@Param("day") LocalDate day, @Param("checkouts") long checkouts, @Param("openLoans") long openLoans,
+                      @Param("expectedCheckouts") long expectedCheckouts, @Param("expectedOpenLoans") long expectedOpenLoans);
+}
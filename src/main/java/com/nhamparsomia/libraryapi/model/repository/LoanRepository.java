@@ -6,10 +6,15 @@ import com.nhamparsomia.libraryapi.model.entity.Loan;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
+import javax.persistence.LockModeType;
 import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
 
 public interface LoanRepository extends JpaRepository<Loan, Long> {
@@ -18,16 +23,117 @@ public interface LoanRepository extends JpaRepository<Loan, Long> {
             "from Loan l where l.book = :book and (l.returned is null or l.returned is false)")
     boolean verifyIfBookHasAlreadyBeenTaken(@Param("book") Book book);
 
-    @Query(value="select l from Loan as l join l.book as b where b.isbn = :isbn or l.customer = :customer")
-    Page<Loan> findBookByIsbnOrCustomer(
-            @Param("isbn") String isbn,
-            @Param("customer") String customer,
-            Pageable pageRequest
-    );
+    @Query(value = "select l.book.id from Loan l where l.book in :books " +
+            "and (l.returned is null or l.returned is false)")
+    List<Long> findTakenBookIds(@Param("books") Collection<Book> books);
+
+    @Query(value = "select l.book.id from Loan l where l.book.id in :bookIds " +
+            "and (l.returned is null or l.returned is false)")
+    List<Long> findTakenBookIdsByIds(@Param("bookIds") Collection<Long> bookIds);
 
+    @Transactional(readOnly = true)
     Page<Loan> findByBook(Book book, Pageable pageable);
 
+    @Query(value = "select l from Loan l join l.book b where b.isbn = :isbn")
+    Page<Loan> findByBookIsbn(@Param("isbn") String isbn, Pageable pageable);
+
+    Page<Loan> findByCustomer(String customer, Pageable pageable);
+
+    Page<Loan> findByCustomerNormalizedStartingWith(String customerPrefix, Pageable pageable);
+
+    @Query(value = "select l from Loan l join l.book b where b.isbn = :isbn and l.customer = :customer")
+    Page<Loan> findByBookIsbnAndCustomer(@Param("isbn") String isbn, @Param("customer") String customer, Pageable pageable);
+
+    @Query(value = "select l from Loan l join l.book b where b.isbn = :isbn " +
+            "and l.customerNormalized like :pattern escape '\\'")
+    Page<Loan> findByBookIsbnAndCustomerPattern(@Param("isbn") String isbn, @Param("pattern") String pattern, Pageable pageable);
+
+    @Query(value = "select l from Loan l join l.book b where b.isbn = :isbn or l.customer = :customer")
+    Page<Loan> findByBookIsbnOrCustomer(@Param("isbn") String isbn, @Param("customer") String customer, Pageable pageable);
+
+    @Query(value = "select l from Loan l join l.book b where b.isbn = :isbn " +
+            "or l.customerNormalized like :pattern escape '\\'")
+    Page<Loan> findByBookIsbnOrCustomerPattern(@Param("isbn") String isbn, @Param("pattern") String pattern, Pageable pageable);
+
+    @Query(value = "select l.id from Loan l join l.book b where b.isbn = :isbn")
+    List<Long> findIdsByIsbn(@Param("isbn") String isbn, Pageable limit);
+
+    @Query(value = "select l.id from Loan l where l.customer = :customer")
+    List<Long> findIdsByCustomer(@Param("customer") String customer, Pageable limit);
+
+    @Query(value = "select l.id from Loan l where l.customerNormalized like :pattern escape '\\'")
+    List<Long> findIdsByCustomerPattern(@Param("pattern") String pattern, Pageable limit);
+
+    List<Loan> findByIdIn(Collection<Long> ids, Pageable pageable);
+
     @Query(value = "select l from Loan l where l.loanDate <= :loanDateLimit " +
             "and (l.returned is null or l.returned is false)")
     List<Loan> findLateLoansByDate(@Param("loanDateLimit") LocalDate loanDateLimit);
+
+    /**
+     * The late loans of the customers due for an overdue notice, one row each as email, customer,
+     * loan id, book id, loan date and book title, ordered by email and then by loan date. A
+     * customer is due when at least one of their late loans was never notified or was last
+     * notified on or before {@code notifiedBefore}. Customers are partitioned into {@code shards}
+     * by the stored hash of their email, and only the partition {@code shard} is read.
+     */
+    @Query(value = "select l.customerEmail, l.customer, l.id, b.id, l.loanDate, b.title " +
+            "from Loan l join l.book b where l.loanDate <= :loanDateLimit " +
+            "and (l.returned is null or l.returned is false) " +
+            "and mod(l.customerEmailHash, :shards) = :shard " +
+            "and l.customerEmail in (select d.customerEmail from Loan d where d.loanDate <= :loanDateLimit " +
+            "and (d.returned is null or d.returned is false) " +
+            "and mod(d.customerEmailHash, :shards) = :shard " +
+            "and (d.lastNotified is null or d.lastNotified <= :notifiedBefore)) " +
+            "order by l.customerEmail, l.loanDate, l.id")
+    List<Object[]> findOverdueLoans(@Param("loanDateLimit") LocalDate loanDateLimit,
+                                    @Param("notifiedBefore") LocalDate notifiedBefore,
+                                    @Param("shard") int shard,
+                                    @Param("shards") int shards);
+
+    @Modifying
+    @Query(value = "update Loan l set l.lastNotified = :notified where l.id in :ids")
+    int updateLastNotified(@Param("ids") Collection<Long> ids, @Param("notified") LocalDate notified);
+
+    @Query(value = "select l.id from Loan l where l.id in :ids")
+    List<Long> findExistingIds(@Param("ids") Collection<Long> ids);
+
+    /**
+     * Only touches the loans not already in the requested state, a loan without a value counting
+     * as not returned, so the count is the number of loans this statement changed.
+     */
+    @Modifying
+    @Query(value = "update Loan l set l.returned = :returned where l.id in :ids " +
+            "and coalesce(l.returned, false) <> :returned")
+    int updateReturned(@Param("ids") Collection<Long> ids, @Param("returned") Boolean returned);
+
+    @Modifying
+    @Query(value = "update Loan l set l.returned = :returned where l.id = :id " +
+            "and coalesce(l.returned, false) <> :returned")
+    int updateReturnedById(@Param("id") Long id, @Param("returned") Boolean returned);
+
+    @Query(value = "select l.id, l.book.id, l.customer, l.loanDate from Loan l where l.id = :id")
+    List<Object[]> findLoanReferences(@Param("id") Long id);
+
+    /**
+     * Locks the loans returned until the end of the transaction, so a concurrent return of the
+     * same loans waits and then no longer finds them open.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query(value = "select l.id, l.book.id, l.customer, l.loanDate from Loan l where l.id in :ids " +
+            "and (l.returned is null or l.returned is false)")
+    List<Object[]> findOpenLoanReferences(@Param("ids") Collection<Long> ids);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query(value = "select l.id, l.book.id, l.customer, l.loanDate from Loan l where l.id in :ids " +
+            "and l.returned is true")
+    List<Object[]> findReturnedLoanReferences(@Param("ids") Collection<Long> ids);
+
+    @Query(value = "select l.loanDate, count(l.id), sum(case when l.returned is true then 0 else 1 end) " +
+            "from Loan l group by l.loanDate")
+    List<Object[]> countAllByLoanDate();
+
+    @Query(value = "select l.book.id, count(l.id), sum(case when l.returned is true then 0 else 1 end) " +
+            "from Loan l where l.book.id in :bookIds group by l.book.id")
+    List<Object[]> countByBookIds(@Param("bookIds") Collection<Long> bookIds);
 }
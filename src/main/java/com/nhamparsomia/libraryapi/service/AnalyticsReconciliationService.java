@@ -0,0 +1,48 @@
+package com.nhamparsomia.libraryapi.service;
+
+import com.nhamparsomia.libraryapi.config.bulkhead.Bulkheads;
+import com.nhamparsomia.libraryapi.service.scheduling.ClusteredJobs;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.context.annotation.Profile;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+
+/**
+ * Runs the daily reconciliation of the loan rollups; with several instances only one of them
+ * runs it per day.
+ */
+@Slf4j
+@Service
+@Lazy(false)
+@RequiredArgsConstructor
+@Profile("!in-memory")
+public class AnalyticsReconciliationService {
+
+    private static final String RECONCILIATION_JOB = "loan-analytics";
+
+    private final LoanAnalyticsService analyticsService;
+    private final Bulkheads bulkheads;
+    private final ClusteredJobs clusteredJobs;
+
+    @Scheduled(cron = "${application.analytics.reconciliation.cron:0 30 2 * * *}")
+    public void reconcile() {
+        bulkheads.background().run(() ->
+                clusteredJobs.run(RECONCILIATION_JOB, LocalDate.now().toString(), 1, shard -> {
+                    int corrections = analyticsService.reconcile();
+
+                    if (corrections > 0) {
+                        log.warn("Loan analytics reconciliation corrected {} rollup rows", corrections);
+                    } else {
+                        log.info("Loan analytics reconciliation found no drift");
+                    }
+                })
+        ).exceptionally(e -> {
+            log.error("Loan analytics reconciliation failed", e);
+            return null;
+        });
+    }
+}
@@ -5,6 +5,8 @@ import com.nhamparsomia.libraryapi.model.entity.Book;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 public interface BookService {
@@ -12,11 +14,17 @@ public interface BookService {
 
     Optional<Book> getById(Long id);
 
+    List<Book> getBooksById(Collection<Long> ids);
+
     void delete(Book book);
 
     Book update(Book book);
 
+    int updateAuthorAndTitle(Long id, String author, String title);
+
     Page<Book> find(Book filter, Pageable pageRequest);
 
     Optional<Book> getBookByIsbn(String isbn);
+
+    List<Book> getBooksByIsbn(Collection<String> isbns);
 }
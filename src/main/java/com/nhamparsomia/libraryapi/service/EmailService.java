@@ -1,7 +1,7 @@
 package com.nhamparsomia.libraryapi.service;
 
-import java.util.List;
+import com.nhamparsomia.libraryapi.service.notification.OverdueDigest;
 
 public interface EmailService {
-    void sendMailToLateLoans(String message, List<String> mailList);
+    void sendOverdueDigest(String message, OverdueDigest digest);
 }
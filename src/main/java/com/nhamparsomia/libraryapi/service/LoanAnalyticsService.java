@@ -0,0 +1,28 @@
+package com.nhamparsomia.libraryapi.service;
+
+import com.nhamparsomia.libraryapi.model.entity.Book;
+import com.nhamparsomia.libraryapi.model.entity.Loan;
+import com.nhamparsomia.libraryapi.model.entity.LoanDailyStats;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+public interface LoanAnalyticsService {
+    void loansOpened(Collection<Loan> loans);
+
+    void loansReturned(Map<LocalDate, Long> countByLoanDate);
+
+    void loansReopened(Map<LocalDate, Long> countByLoanDate);
+
+    List<LoanDailyStats> getDailyStats(LocalDate from, LocalDate to);
+
+    long getOpenLoans();
+
+    long getOverdueLoans();
+
+    List<Book> getMostBorrowedBooks(int limit);
+
+    int reconcile();
+}
@@ -0,0 +1,121 @@
+package com.nhamparsomia.libraryapi.service;
+
+import com.nhamparsomia.libraryapi.config.bulkhead.Bulkheads;
+import com.nhamparsomia.libraryapi.model.repository.BookRepository;
+import com.nhamparsomia.libraryapi.model.repository.LoanRepository;
+import com.nhamparsomia.libraryapi.service.scheduling.ClusteredJobs;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Recomputes the loan counters of {@code Book} from the loans, correcting drift left by writes
+ * made outside {@link LoanService}. Books are walked by id in batches of {@code batch-size},
+ * each batch in its own short transaction, and with several instances only one of them runs the
+ * repair per day.
+ */
+@Slf4j
+@Service
+@Lazy(false)
+@Profile("!in-memory")
+public class LoanCounterRepairService {
+
+    private static final String LOAN_COUNTERS_JOB = "loan-counters";
+
+    private final BookRepository bookRepository;
+    private final LoanRepository loanRepository;
+    private final Bulkheads bulkheads;
+    private final ClusteredJobs clusteredJobs;
+    private final TransactionTemplate transaction;
+    private final int batchSize;
+
+    public LoanCounterRepairService(BookRepository bookRepository,
+                                    LoanRepository loanRepository,
+                                    Bulkheads bulkheads,
+                                    ClusteredJobs clusteredJobs,
+                                    PlatformTransactionManager transactionManager,
+                                    @Value("${application.books.loan-counters.batch-size:500}") int batchSize) {
+        this.bookRepository = bookRepository;
+        this.loanRepository = loanRepository;
+        this.bulkheads = bulkheads;
+        this.clusteredJobs = clusteredJobs;
+        this.transaction = new TransactionTemplate(transactionManager);
+        this.batchSize = batchSize;
+    }
+
+    @Scheduled(cron = "${application.books.loan-counters.repair-cron:0 0 3 * * *}")
+    public void scheduledRepair() {
+        bulkheads.background().run(() ->
+                clusteredJobs.run(LOAN_COUNTERS_JOB, LocalDate.now().toString(), 1, shard -> {
+                    int corrections = repair();
+
+                    if (corrections > 0) {
+                        log.warn("Loan counter repair corrected {} books", corrections);
+                    } else {
+                        log.info("Loan counter repair found no drift");
+                    }
+                })
+        ).exceptionally(e -> {
+            log.error("Loan counter repair failed", e);
+            return null;
+        });
+    }
+
+    /**
+     * Returns how many books had their counters corrected. A book whose counters changed while
+     * its batch was being checked is left for the next run.
+     */
+    public int repair() {
+        int corrections = 0;
+        long afterId = 0;
+
+        while (true) {
+            long from = afterId;
+            List<Object[]> counters = bookRepository.findLoanCounters(from, PageRequest.of(0, batchSize));
+            if (counters.isEmpty()) {
+                return corrections;
+            }
+
+            Integer corrected = transaction.execute(status -> repairBatch(counters));
+            corrections += corrected == null ? 0 : corrected;
+            afterId = (Long) counters.get(counters.size() - 1)[0];
+        }
+    }
+
+    private int repairBatch(List<Object[]> counters) {
+        List<Long> ids = counters.stream()
+                .map(row -> (Long) row[0])
+                .collect(Collectors.toList());
+
+        Map<Long, long[]> actual = new HashMap<>();
+        for (Object[] row : loanRepository.countByBookIds(ids)) {
+            actual.put((Long) row[0], new long[]{((Number) row[1]).longValue(), ((Number) row[2]).longValue()});
+        }
+
+        int corrections = 0;
+
+        for (Object[] row : counters) {
+            long[] loans = actual.getOrDefault((Long) row[0], new long[2]);
+            long totalLoans = ((Number) row[1]).longValue();
+            long activeLoans = ((Number) row[2]).longValue();
+
+            if (totalLoans != loans[0] || activeLoans != loans[1]) {
+                corrections += bookRepository.setLoanCounters((Long) row[0], loans[0], loans[1], totalLoans, activeLoans);
+            }
+        }
+
+        return corrections;
+    }
+}
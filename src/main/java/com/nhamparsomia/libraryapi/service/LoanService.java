@@ -1,14 +1,19 @@
 package com.nhamparsomia.libraryapi.service;
 
+import com.nhamparsomia.libraryapi.api.dto.LoanBatchResultDTO;
 import com.nhamparsomia.libraryapi.api.dto.LoanFilterDTO;
+import com.nhamparsomia.libraryapi.api.dto.ReturnedLoanBatchDTO;
 import com.nhamparsomia.libraryapi.model.entity.Book;
 import com.nhamparsomia.libraryapi.model.entity.Loan;
+import com.nhamparsomia.libraryapi.service.notification.OverdueDigest;
 
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 
 public interface LoanService {
     Loan save(Loan loan);
@@ -17,9 +22,21 @@ public interface LoanService {
 
     Loan update(Loan loan);
 
+    int updateReturned(Long id, Boolean returned);
+
     Page<Loan> find(LoanFilterDTO filter, Pageable pageable);
 
     Page<Loan> getLoansByBook(Book book, Pageable pageable);
 
+    Set<Long> getTakenBookIds(Collection<Long> bookIds);
+
     List<Loan> getAllLateLoans();
+
+    List<OverdueDigest> getOverdueDigests(int resendDays, int shard, int shards);
+
+    void overdueNotified(OverdueDigest digest);
+
+    List<LoanBatchResultDTO> saveAll(List<Loan> loans);
+
+    List<LoanBatchResultDTO> updateReturned(List<ReturnedLoanBatchDTO> returnedLoans);
 }
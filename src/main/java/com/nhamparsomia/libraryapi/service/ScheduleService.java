@@ -1,33 +1,72 @@
 package com.nhamparsomia.libraryapi.service;
 
-import com.nhamparsomia.libraryapi.model.entity.Loan;
+import com.nhamparsomia.libraryapi.config.bulkhead.Bulkheads;
+import com.nhamparsomia.libraryapi.service.notification.OverdueDigest;
+import com.nhamparsomia.libraryapi.service.scheduling.ClusteredJobs;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.mail.MailException;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
+import java.time.LocalDate;
 import java.util.List;
-import java.util.stream.Collectors;
 
+@Slf4j
 @Service
+@Lazy(false)
 @RequiredArgsConstructor
 public class ScheduleService {
 
     private static final String CRON_LATE_LOANS = "0 0 0 1/1 * ?";
+    private static final String LATE_LOANS_JOB = "late-loans";
 
     @Value("${application.mail.lateloans.message}")
     private String message;
 
+    @Value("${application.mail.lateloans.resend-days:7}")
+    private int resendDays;
+
+    @Value("${application.mail.lateloans.shards:1}")
+    private int shards;
+
     private final LoanService loanService;
     private final EmailService emailService;
+    private final Bulkheads bulkheads;
+    private final ClusteredJobs clusteredJobs;
 
+    /**
+     * Sends each customer with late loans one digest of their titles. Loans are only marked as
+     * notified once their digest is sent, so a failed send is retried on the next run. With
+     * several instances, {@link ClusteredJobs} makes sure each shard of customers is handled by
+     * one of them per day.
+     */
     @Scheduled(cron = CRON_LATE_LOANS)
     public void sendMailToLateLoans() {
-        List<Loan> allLateLoans = loanService.getAllLateLoans();
-        List<String> mailList = allLateLoans.stream()
-                .map(Loan::getCustomerEmail)
-                .collect(Collectors.toList());
+        bulkheads.background().run(() ->
+                clusteredJobs.run(LATE_LOANS_JOB, LocalDate.now().toString(), shards, this::sendOverdueDigests)
+        ).exceptionally(e -> {
+            log.error("Could not send the late loans mail", e);
+            return null;
+        });
+    }
+
+    private void sendOverdueDigests(int shard) {
+        List<OverdueDigest> digests = loanService.getOverdueDigests(resendDays, shard, shards);
+        int sent = 0;
+
+        for (OverdueDigest digest : digests) {
+            try {
+                emailService.sendOverdueDigest(message, digest);
+                loanService.overdueNotified(digest);
+                sent++;
+            } catch (MailException e) {
+                log.warn("Could not send the overdue digest to {}", digest.getEmail(), e);
+            }
+        }
 
-        emailService.sendMailToLateLoans(message, mailList);
+        log.info("Sent {} of {} overdue digests of shard {}", sent, digests.size(), shard);
     }
 }
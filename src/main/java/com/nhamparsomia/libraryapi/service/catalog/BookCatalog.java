@@ -0,0 +1,239 @@
+package com.nhamparsomia.libraryapi.service.catalog;
+
+import com.nhamparsomia.libraryapi.model.entity.Book;
+import com.nhamparsomia.libraryapi.model.repository.BookRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.context.annotation.Profile;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
+import java.util.stream.Collectors;
+
+/**
+ * In-memory read model of the book catalog, enabled with
+ * {@code application.catalog.snapshot.enabled=true}. Readers take the current
+ * {@link CatalogSnapshot} from an atomic reference and never lock or touch JPA; writers publish
+ * a new snapshot holding their delta once their transaction commits, so the snapshot never shows
+ * uncommitted or rolled back books. A full rebuild runs on startup and then periodically, to
+ * pick up changes made outside this instance.
+ */
+@Slf4j
+@Component
+@Lazy(false)
+@Profile("!in-memory")
+public class BookCatalog implements MeterBinder {
+
+    static final int MAX_CATCH_UP_ROUNDS = 3;
+
+    private final BookRepository repository;
+    private final boolean enabled;
+
+    private final AtomicReference<CatalogSnapshot> snapshot = new AtomicReference<>();
+    private final Object writeLock = new Object();
+    private Set<Long> writtenDuringRebuild;
+    private volatile long lastRebuildNanos;
+
+    public BookCatalog(BookRepository repository,
+                       @Value("${application.catalog.snapshot.enabled:false}") boolean enabled) {
+        this.repository = repository;
+        this.enabled = enabled;
+    }
+
+    /**
+     * The snapshot to read from, or empty when the catalog is disabled or not loaded yet, in which
+     * case callers fall back to the database.
+     */
+    public Optional<CatalogSnapshot> current() {
+        return Optional.ofNullable(snapshot.get());
+    }
+
+    public void publish(Book book) {
+        if (!enabled || book.getId() == null) {
+            return;
+        }
+
+        afterCommit(book.getId(), current -> current.withBook(book));
+    }
+
+    public void remove(Long id) {
+        if (!enabled) {
+            return;
+        }
+
+        afterCommit(id, current -> current.withoutBook(id));
+    }
+
+    /**
+     * Applies {@code change} to the book as held by the snapshot when the transaction commits,
+     * if the snapshot holds it then.
+     */
+    public void update(Long id, Consumer<Book> change) {
+        if (!enabled) {
+            return;
+        }
+
+        afterCommit(id, current -> current.findById(id)
+                .map(book -> {
+                    change.accept(book);
+                    return current.withBook(book);
+                })
+                .orElse(current));
+    }
+
+    /**
+     * Applies the delta right away outside a transaction, and otherwise only once the current
+     * transaction commits.
+     */
+    private void afterCommit(Long id, UnaryOperator<CatalogSnapshot> delta) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            apply(id, delta);
+            return;
+        }
+
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+            @Override
+            public void afterCommit() {
+                apply(id, delta);
+            }
+        });
+    }
+
+    private void apply(Long id, UnaryOperator<CatalogSnapshot> delta) {
+        synchronized (writeLock) {
+            if (writtenDuringRebuild != null) {
+                writtenDuringRebuild.add(id);
+            }
+            CatalogSnapshot current = snapshot.get();
+            if (current != null) {
+                snapshot.set(delta.apply(current));
+            }
+        }
+    }
+
+    /**
+     * Reloads the given books from the database, publishing the ones found and removing the rest.
+     */
+    public void refresh(Collection<Long> ids) {
+        if (!enabled) {
+            return;
+        }
+
+        Map<Long, Book> books = findAllById(ids);
+
+        for (Long id : ids) {
+            Book book = books.get(id);
+            if (book != null) {
+                publish(book);
+            } else {
+                remove(id);
+            }
+        }
+    }
+
+    private CatalogSnapshot reload(CatalogSnapshot catalog, Collection<Long> ids) {
+        Map<Long, Book> books = findAllById(ids);
+
+        for (Long id : ids) {
+            Book book = books.get(id);
+            catalog = book != null ? catalog.withBook(book) : catalog.withoutBook(id);
+        }
+
+        return catalog;
+    }
+
+    private Map<Long, Book> findAllById(Collection<Long> ids) {
+        return repository.findAllById(ids)
+                .stream()
+                .collect(Collectors.toMap(Book::getId, Function.identity()));
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(
+            initialDelayString = "${application.catalog.snapshot.refresh-ms:300000}",
+            fixedDelayString = "${application.catalog.snapshot.refresh-ms:300000}"
+    )
+    public void rebuild() {
+        if (!enabled) {
+            return;
+        }
+
+        long start = System.nanoTime();
+        CatalogSnapshot rebuilt;
+        Set<Long> stale;
+
+        // the load runs without the write lock, so the books written meanwhile are reloaded onto
+        // the loaded catalog before it is published, for a bounded number of rounds
+        synchronized (writeLock) {
+            writtenDuringRebuild = new HashSet<>();
+        }
+        try {
+            rebuilt = CatalogSnapshot.of(repository.findAll());
+
+            for (int round = 0; ; round++) {
+                Set<Long> written;
+                synchronized (writeLock) {
+                    written = writtenDuringRebuild;
+                    writtenDuringRebuild = new HashSet<>();
+                    if (written.isEmpty() || round == MAX_CATCH_UP_ROUNDS) {
+                        snapshot.set(rebuilt);
+                        stale = written;
+                        break;
+                    }
+                }
+
+                rebuilt = reload(rebuilt, written);
+            }
+        } finally {
+            synchronized (writeLock) {
+                writtenDuringRebuild = null;
+            }
+        }
+
+        // still being written: reload them onto the published catalog like any other change
+        if (!stale.isEmpty()) {
+            refresh(stale);
+        }
+
+        lastRebuildNanos = System.nanoTime() - start;
+        log.info("Catalog snapshot rebuilt with {} books in {} ms, ~{} KB",
+                rebuilt.size(),
+                TimeUnit.NANOSECONDS.toMillis(lastRebuildNanos),
+                rebuilt.estimatedBytes() / 1024);
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("library.catalog.snapshot.books", this, catalog -> catalog.current().map(CatalogSnapshot::size).orElse(0))
+                .description("Books held by the catalog snapshot")
+                .register(registry);
+
+        Gauge.builder("library.catalog.snapshot.memory", this, catalog -> catalog.current().map(CatalogSnapshot::estimatedBytes).orElse(0L))
+                .description("Estimated heap used by the catalog snapshot")
+                .baseUnit("bytes")
+                .register(registry);
+
+        TimeGauge.builder("library.catalog.snapshot.rebuild", this, TimeUnit.NANOSECONDS, catalog -> catalog.lastRebuildNanos)
+                .description("Duration of the last full catalog rebuild")
+                .register(registry);
+    }
+}
@@ -0,0 +1,33 @@
+package com.nhamparsomia.libraryapi.service.catalog;
+
+import com.nhamparsomia.libraryapi.service.changefeed.ChangeFeed;
+import com.nhamparsomia.libraryapi.service.changefeed.ChangeListener;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import java.util.Set;
+
+/**
+ * Applies books changed on other instances: only those books are reloaded into the catalog, while
+ * the search cache, which cannot tell which fields changed, drops every search.
+ */
+@Component
+@RequiredArgsConstructor
+@Profile("!in-memory")
+public class BookChangeListener implements ChangeListener {
+
+    private final BookCatalog catalog;
+    private final BookSearchCache searchCache;
+
+    @Override
+    public String entity() {
+        return ChangeFeed.BOOK;
+    }
+
+    @Override
+    public void onChange(Set<Long> keys) {
+        searchCache.invalidateAll();
+        catalog.refresh(keys);
+    }
+}
@@ -0,0 +1,333 @@
+package com.nhamparsomia.libraryapi.service.catalog;
+
+import com.nhamparsomia.libraryapi.model.entity.Book;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.EqualsAndHashCode;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.util.StringUtils;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+/**
+ * Results of book searches that went to the database, enabled with
+ * {@code application.catalog.search-cache.enabled=true}. An entry holds the ids and total of one
+ * page for a normalized filter and page request, together with the generations it was computed
+ * at. Writes only bump a generation: adding or removing a book bumps the membership generation,
+ * which every entry depends on, while an edit bumps the generation of the edited fields, which
+ * only searches filtering or sorting on them depend on. Stale entries are dropped when next read.
+ *
+ * <p>Entries also expire after {@code ttl-ms}, which bounds staleness for writes made by other
+ * instances. Memory is bounded by {@code max-weight}, counted in cached ids; the least recently
+ * used entries are evicted first.
+ */
+@Component
+public class BookSearchCache implements MeterBinder {
+
+    public enum Field {TITLE, AUTHOR, ISBN}
+
+    private static final int MEMBERSHIP = Field.values().length;
+    private static final int ENTRY_WEIGHT = 8;
+
+    private final boolean enabled;
+    private final long maxWeight;
+    private final long ttlNanos;
+
+    private final AtomicLongArray generations = new AtomicLongArray(Field.values().length + 1);
+    private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(256, 0.75f, true);
+    private long weight;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public BookSearchCache(@Value("${application.catalog.search-cache.enabled:false}") boolean enabled,
+                           @Value("${application.catalog.search-cache.max-weight:100000}") long maxWeight,
+                           @Value("${application.catalog.search-cache.ttl-ms:60000}") long ttlMillis) {
+        this.enabled = enabled;
+        this.maxWeight = maxWeight;
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+    }
+
+    public Lookup lookup(Book filter, Pageable pageable) {
+        if (!enabled) {
+            return new Lookup(null, null, null);
+        }
+
+        Key key = Key.of(filter, pageable);
+        long[] current = generations();
+
+        Entry entry;
+        synchronized (entries) {
+            entry = entries.get(key);
+            if (entry != null && !entry.isValid(current, System.nanoTime(), ttlNanos)) {
+                remove(key);
+                entry = null;
+            }
+        }
+
+        if (entry != null) {
+            hits.increment();
+        } else {
+            misses.increment();
+        }
+
+        return new Lookup(key, current, entry);
+    }
+
+    /**
+     * A book was added or removed, or may have changed in any field.
+     */
+    public void invalidateAll() {
+        bump(MEMBERSHIP);
+    }
+
+    public void invalidate(Field... fields) {
+        for (Field field : fields) {
+            bump(field.ordinal());
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("library.book.search.cache", hits, LongAdder::doubleValue)
+                .description("Book searches answered from the search cache")
+                .tag("result", "hit")
+                .register(registry);
+        FunctionCounter.builder("library.book.search.cache", misses, LongAdder::doubleValue)
+                .description("Book searches that went to the database")
+                .tag("result", "miss")
+                .register(registry);
+        FunctionCounter.builder("library.book.search.cache.evictions", evictions, LongAdder::doubleValue)
+                .description("Search cache entries evicted to stay within the maximum weight")
+                .register(registry);
+        Gauge.builder("library.book.search.cache.hit.ratio", this, BookSearchCache::hitRatio)
+                .description("Share of book searches answered from the search cache")
+                .register(registry);
+        Gauge.builder("library.book.search.cache.weight", this, BookSearchCache::getWeight)
+                .description("Book ids held by the search cache")
+                .register(registry);
+    }
+
+    public double hitRatio() {
+        long hitCount = hits.sum();
+        long total = hitCount + misses.sum();
+        return total == 0 ? 0 : (double) hitCount / total;
+    }
+
+    public long getWeight() {
+        synchronized (entries) {
+            return weight;
+        }
+    }
+
+    /**
+     * Bumps now and, inside a transaction, again after it completes, so that a search which read
+     * the old rows while the transaction was open cannot stay cached under the new generation.
+     */
+    private void bump(int generation) {
+        generations.incrementAndGet(generation);
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCompletion(int status) {
+                    generations.incrementAndGet(generation);
+                }
+            });
+        }
+    }
+
+    private long[] generations() {
+        long[] current = new long[generations.length()];
+        for (int index = 0; index < current.length; index++) {
+            current[index] = generations.get(index);
+        }
+        return current;
+    }
+
+    private void store(Key key, long[] generationsAtLookup, Page<Book> page) {
+        List<Long> ids = page.getContent().stream()
+                .map(Book::getId)
+                .collect(Collectors.toList());
+        Entry entry = new Entry(ids, page.getTotalElements(), key.dependencies, generationsAtLookup, System.nanoTime());
+
+        if (entry.weight() > maxWeight) {
+            return;
+        }
+
+        synchronized (entries) {
+            remove(key);
+            entries.put(key, entry);
+            weight += entry.weight();
+
+            Iterator<Map.Entry<Key, Entry>> eldest = entries.entrySet().iterator();
+            while (weight > maxWeight && eldest.hasNext()) {
+                weight -= eldest.next().getValue().weight();
+                eldest.remove();
+                evictions.increment();
+            }
+        }
+    }
+
+    private void remove(Key key) {
+        Entry removed = entries.remove(key);
+        if (removed != null) {
+            weight -= removed.weight();
+        }
+    }
+
+    /**
+     * The outcome of one cache read. On a miss, {@link #store} caches the page the caller got from
+     * the database under the generations seen before the query, so a write that raced with it
+     * leaves the entry stale rather than wrong.
+     */
+    public final class Lookup {
+        private final Key key;
+        private final long[] generationsAtLookup;
+        private final Entry entry;
+
+        private Lookup(Key key, long[] generationsAtLookup, Entry entry) {
+            this.key = key;
+            this.generationsAtLookup = generationsAtLookup;
+            this.entry = entry;
+        }
+
+        public boolean isHit() {
+            return entry != null;
+        }
+
+        public List<Long> getIds() {
+            return entry.ids;
+        }
+
+        public long getTotal() {
+            return entry.total;
+        }
+
+        public void store(Page<Book> page) {
+            if (key != null) {
+                BookSearchCache.this.store(key, generationsAtLookup, page);
+            }
+        }
+    }
+
+    @EqualsAndHashCode
+    private static class Key {
+        private final Long id;
+        private final String title;
+        private final String author;
+        private final String isbn;
+        private final long offset;
+        private final int size;
+        private final Sort sort;
+
+        @EqualsAndHashCode.Exclude
+        private final Set<Field> dependencies;
+
+        private Key(Long id, String title, String author, String isbn, Pageable pageable) {
+            this.id = id;
+            this.title = title;
+            this.author = author;
+            this.isbn = isbn;
+            this.offset = pageable.isPaged() ? pageable.getOffset() : -1;
+            this.size = pageable.isPaged() ? pageable.getPageSize() : -1;
+            this.sort = pageable.getSort();
+            this.dependencies = dependencies();
+        }
+
+        static Key of(Book filter, Pageable pageable) {
+            return new Key(filter.getId(), normalize(filter.getTitle()), normalize(filter.getAuthor()),
+                    normalize(filter.getIsbn()), pageable);
+        }
+
+        /**
+         * The search matches case-insensitive substrings and ignores empty fields, so these
+         * filters are equivalent.
+         */
+        private static String normalize(String value) {
+            return StringUtils.hasText(value) ? value.trim().toLowerCase(Locale.ROOT) : null;
+        }
+
+        private Set<Field> dependencies() {
+            Set<Field> fields = EnumSet.noneOf(Field.class);
+            if (title != null) {
+                fields.add(Field.TITLE);
+            }
+            if (author != null) {
+                fields.add(Field.AUTHOR);
+            }
+            if (isbn != null) {
+                fields.add(Field.ISBN);
+            }
+
+            for (Sort.Order order : sort) {
+                switch (order.getProperty()) {
+                    case "id":
+                        break;
+                    case "title":
+                        fields.add(Field.TITLE);
+                        break;
+                    case "author":
+                        fields.add(Field.AUTHOR);
+                        break;
+                    case "isbn":
+                        fields.add(Field.ISBN);
+                        break;
+                    default:
+                        fields.addAll(EnumSet.allOf(Field.class));
+                }
+            }
+
+            return fields;
+        }
+    }
+
+    private static class Entry {
+        private final List<Long> ids;
+        private final long total;
+        private final Set<Field> dependencies;
+        private final long[] generations;
+        private final long createdNanos;
+
+        Entry(List<Long> ids, long total, Set<Field> dependencies, long[] generations, long createdNanos) {
+            this.ids = Collections.unmodifiableList(ids);
+            this.total = total;
+            this.dependencies = dependencies;
+            this.generations = generations;
+            this.createdNanos = createdNanos;
+        }
+
+        long weight() {
+            return ENTRY_WEIGHT + ids.size();
+        }
+
+        boolean isValid(long[] current, long now, long ttlNanos) {
+            if (now - createdNanos > ttlNanos || generations[MEMBERSHIP] != current[MEMBERSHIP]) {
+                return false;
+            }
+
+            return dependencies.stream()
+                    .allMatch(field -> generations[field.ordinal()] == current[field.ordinal()]);
+        }
+    }
+}
@@ -0,0 +1,279 @@
+package com.nhamparsomia.libraryapi.service.catalog;
+
+import com.nhamparsomia.libraryapi.model.entity.Book;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mapping.PropertyReferenceException;
+import org.springframework.data.util.ClassTypeInformation;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.IntStream;
+
+/**
+ * Immutable, column-oriented copy of the book catalog. Rows are kept sorted by id in parallel
+ * arrays, so id lookups are a binary search, and ISBNs are indexed in a hash map. Changes
+ * never modify a snapshot: {@link #withBook(Book)} and {@link #withoutBook(long)} return a new
+ * one, which lets readers use whatever snapshot they hold without locking.
+ */
+public final class CatalogSnapshot {
+
+    private static final Set<String> SORT_PROPERTIES = Set.of("id", "title", "author", "isbn");
+
+    private static final CatalogSnapshot EMPTY = new CatalogSnapshot(new long[0], new String[0], new String[0], new String[0]);
+
+    private final long[] ids;
+    private final String[] titles;
+    private final String[] authors;
+    private final String[] isbns;
+    private final Map<String, Integer> isbnIndex;
+
+    private CatalogSnapshot(long[] ids, String[] titles, String[] authors, String[] isbns) {
+        this.ids = ids;
+        this.titles = titles;
+        this.authors = authors;
+        this.isbns = isbns;
+        this.isbnIndex = new HashMap<>(Math.max(16, ids.length * 4 / 3 + 1));
+
+        for (int row = 0; row < isbns.length; row++) {
+            if (isbns[row] != null) {
+                isbnIndex.putIfAbsent(isbns[row], row);
+            }
+        }
+    }
+
+    public static CatalogSnapshot empty() {
+        return EMPTY;
+    }
+
+    public static CatalogSnapshot of(List<Book> books) {
+        List<Book> sorted = new ArrayList<>(books);
+        sorted.sort(Comparator.comparing(Book::getId));
+
+        int size = sorted.size();
+        long[] ids = new long[size];
+        String[] titles = new String[size];
+        String[] authors = new String[size];
+        String[] isbns = new String[size];
+
+        for (int row = 0; row < size; row++) {
+            Book book = sorted.get(row);
+            ids[row] = book.getId();
+            titles[row] = book.getTitle();
+            authors[row] = book.getAuthor();
+            isbns[row] = book.getIsbn();
+        }
+
+        return new CatalogSnapshot(ids, titles, authors, isbns);
+    }
+
+    public int size() {
+        return ids.length;
+    }
+
+    public Optional<Book> findById(long id) {
+        int row = Arrays.binarySearch(ids, id);
+        return row < 0 ? Optional.empty() : Optional.of(book(row));
+    }
+
+    public Optional<Book> findByIsbn(String isbn) {
+        Integer row = isbnIndex.get(isbn);
+        return row == null ? Optional.empty() : Optional.of(book(row));
+    }
+
+    /**
+     * Whether every property of {@code sort} is held by the snapshot. Searches sorted by anything
+     * else, such as the loan counters, have to go to the database.
+     */
+    public static boolean canSort(Sort sort) {
+        return sort.stream().allMatch(order -> SORT_PROPERTIES.contains(order.getProperty()));
+    }
+
+    /**
+     * Same semantics as the JPA search: non-null filter fields must be contained in the book
+     * field, ignoring case; the id must match exactly. A sort property the snapshot does not hold
+     * fails as it would against the entity.
+     */
+    public Page<Book> find(Book filter, Pageable pageable) {
+        String title = lowerCase(filter.getTitle());
+        String author = lowerCase(filter.getAuthor());
+        String isbn = lowerCase(filter.getIsbn());
+        Long id = filter.getId();
+
+        int[] rows = IntStream.range(0, ids.length)
+                .filter(row -> id == null || ids[row] == id)
+                .filter(row -> contains(titles[row], title))
+                .filter(row -> contains(authors[row], author))
+                .filter(row -> contains(isbns[row], isbn))
+                .toArray();
+
+        List<Integer> ordered = sort(rows, pageable.getSort());
+
+        if (pageable.isUnpaged()) {
+            return new PageImpl<>(books(ordered), pageable, ordered.size());
+        }
+
+        int from = (int) Math.min(pageable.getOffset(), ordered.size());
+        int to = Math.min(from + pageable.getPageSize(), ordered.size());
+
+        return new PageImpl<>(books(ordered.subList(from, to)), pageable, ordered.size());
+    }
+
+    public CatalogSnapshot withBook(Book book) {
+        long id = book.getId();
+        int row = Arrays.binarySearch(ids, id);
+
+        if (row >= 0) {
+            String[] newTitles = titles.clone();
+            String[] newAuthors = authors.clone();
+            String[] newIsbns = isbns.clone();
+            newTitles[row] = book.getTitle();
+            newAuthors[row] = book.getAuthor();
+            newIsbns[row] = book.getIsbn();
+
+            return new CatalogSnapshot(ids, newTitles, newAuthors, newIsbns);
+        }
+
+        int insertAt = -row - 1;
+        return new CatalogSnapshot(
+                insert(ids, insertAt, id),
+                insert(titles, insertAt, book.getTitle()),
+                insert(authors, insertAt, book.getAuthor()),
+                insert(isbns, insertAt, book.getIsbn())
+        );
+    }
+
+    public CatalogSnapshot withoutBook(long id) {
+        int row = Arrays.binarySearch(ids, id);
+        if (row < 0) {
+            return this;
+        }
+
+        return new CatalogSnapshot(remove(ids, row), remove(titles, row), remove(authors, row), remove(isbns, row));
+    }
+
+    /**
+     * Rough heap footprint: the column arrays, the strings they reference (compact Latin-1
+     * strings assumed) and the ISBN index entries.
+     */
+    public long estimatedBytes() {
+        long bytes = 16L + 8L * ids.length;
+        bytes += 3 * (16L + 4L * ids.length);
+        bytes += stringBytes(titles) + stringBytes(authors) + stringBytes(isbns);
+        bytes += 16L + 4L * isbnIndex.size() * 4 / 3 + 32L * isbnIndex.size();
+        return bytes;
+    }
+
+    private Book book(int row) {
+        return Book.builder()
+                .id(ids[row])
+                .title(titles[row])
+                .author(authors[row])
+                .isbn(isbns[row])
+                .build();
+    }
+
+    private List<Book> books(List<Integer> rows) {
+        List<Book> books = new ArrayList<>(rows.size());
+        rows.forEach(row -> books.add(book(row)));
+        return books;
+    }
+
+    private List<Integer> sort(int[] rows, Sort sort) {
+        List<Integer> ordered = new ArrayList<>(rows.length);
+        for (int row : rows) {
+            ordered.add(row);
+        }
+
+        Comparator<Integer> comparator = null;
+        for (Sort.Order order : sort) {
+            Comparator<Integer> next = comparator(order.getProperty());
+            if (next == null) {
+                throw new PropertyReferenceException(order.getProperty(), ClassTypeInformation.from(Book.class), Collections.emptyList());
+            }
+
+            next = order.isDescending() ? next.reversed() : next;
+            comparator = comparator == null ? next : comparator.thenComparing(next);
+        }
+
+        if (comparator != null) {
+            ordered.sort(comparator);
+        }
+
+        return Collections.unmodifiableList(ordered);
+    }
+
+    private Comparator<Integer> comparator(String property) {
+        Comparator<String> text = Comparator.nullsFirst(Comparator.naturalOrder());
+
+        switch (property) {
+            case "id":
+                return Comparator.comparingLong(row -> ids[row]);
+            case "title":
+                return Comparator.comparing(row -> titles[row], text);
+            case "author":
+                return Comparator.comparing(row -> authors[row], text);
+            case "isbn":
+                return Comparator.comparing(row -> isbns[row], text);
+            default:
+                return null;
+        }
+    }
+
+    private static boolean contains(String value, String lowerCaseFilter) {
+        return lowerCaseFilter == null || (value != null && value.toLowerCase().contains(lowerCaseFilter));
+    }
+
+    private static String lowerCase(String value) {
+        return value == null ? null : value.toLowerCase();
+    }
+
+    private static long stringBytes(String[] values) {
+        long bytes = 0;
+        for (String value : values) {
+            if (value != null) {
+                bytes += 24L + 16L + value.length();
+            }
+        }
+        return bytes;
+    }
+
+    private static long[] insert(long[] values, int index, long value) {
+        long[] copy = new long[values.length + 1];
+        System.arraycopy(values, 0, copy, 0, index);
+        copy[index] = value;
+        System.arraycopy(values, index, copy, index + 1, values.length - index);
+        return copy;
+    }
+
+    private static String[] insert(String[] values, int index, String value) {
+        String[] copy = new String[values.length + 1];
+        System.arraycopy(values, 0, copy, 0, index);
+        copy[index] = value;
+        System.arraycopy(values, index, copy, index + 1, values.length - index);
+        return copy;
+    }
+
+    private static long[] remove(long[] values, int index) {
+        long[] copy = new long[values.length - 1];
+        System.arraycopy(values, 0, copy, 0, index);
+        System.arraycopy(values, index + 1, copy, index, values.length - index - 1);
+        return copy;
+    }
+
+    private static String[] remove(String[] values, int index) {
+        String[] copy = new String[values.length - 1];
+        System.arraycopy(values, 0, copy, 0, index);
+        System.arraycopy(values, index + 1, copy, index, values.length - index - 1);
+        return copy;
+    }
+}
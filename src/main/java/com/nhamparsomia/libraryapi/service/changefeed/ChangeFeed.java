@@ -0,0 +1,233 @@
+package com.nhamparsomia.libraryapi.service.changefeed;
+
+import com.nhamparsomia.libraryapi.model.entity.ChangeLogEntry;
+import com.nhamparsomia.libraryapi.model.repository.ChangeLogRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.EqualsAndHashCode;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Propagates writes to the in-process caches of the other instances, enabled with
+ * {@code application.changefeed.enabled=true}. Writes append the changed keys to
+ * {@code change_log} right before their transaction commits, as part of it, one row per key
+ * however often it changed, so a rolled back write leaves no row behind. Each
+ * instance polls the rows above its high-water mark every {@code poll-ms}, skips its own, and
+ * hands every {@link ChangeListener} the distinct keys of its entity once per batch.
+ *
+ * <p>Ids are taken from a sequence at insert time, so a transaction still open when a later one
+ * commits leaves a gap below the rows already read. The high-water mark waits at such a gap for
+ * up to {@code gap-timeout-ms}, and only then skips it as rolled back. Rows older than
+ * {@code retention-ms} are purged.
+ */
+@Slf4j
+@Component
+@Lazy(false)
+@Profile("!in-memory")
+public class ChangeFeed implements MeterBinder {
+
+    public static final String BOOK = "book";
+
+    private final ChangeLogRepository repository;
+    private final Map<String, List<ChangeListener>> listeners;
+    private final boolean enabled;
+    private final int batchSize;
+    private final long gapTimeoutNanos;
+    private final Duration retention;
+
+    private final String origin = UUID.randomUUID().toString();
+    private final Object pendingChanges = new Object();
+
+    private boolean started;
+    private volatile long highWaterMark;
+    private final NavigableSet<Long> readAboveMark = new TreeSet<>();
+    private long gapSinceNanos;
+
+    private volatile Timer propagation;
+
+    public ChangeFeed(ChangeLogRepository repository,
+                      List<ChangeListener> listeners,
+                      @Value("${application.changefeed.enabled:false}") boolean enabled,
+                      @Value("${application.changefeed.batch-size:500}") int batchSize,
+                      @Value("${application.changefeed.gap-timeout-ms:10000}") long gapTimeoutMillis,
+                      @Value("${application.changefeed.retention-ms:3600000}") long retentionMillis) {
+        this.repository = repository;
+        this.listeners = listeners.stream().collect(Collectors.groupingBy(ChangeListener::entity));
+        this.enabled = enabled;
+        this.batchSize = batchSize;
+        this.gapTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(gapTimeoutMillis);
+        this.retention = Duration.ofMillis(retentionMillis);
+    }
+
+    /**
+     * Records that a row changed. Inside a transaction the keys are collected and appended in one
+     * batch right before it commits, so they become visible together with the change itself.
+     */
+    @SuppressWarnings("unchecked")
+    public void record(String entity, Long key) {
+        if (!enabled || key == null) {
+            return;
+        }
+
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            append(Collections.singleton(new Change(entity, key)));
+            return;
+        }
+
+        Set<Change> pending = (Set<Change>) TransactionSynchronizationManager.getResource(pendingChanges);
+        if (pending == null) {
+            Set<Change> changes = new LinkedHashSet<>();
+            TransactionSynchronizationManager.bindResource(pendingChanges, changes);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void beforeCommit(boolean readOnly) {
+                    append(changes);
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(pendingChanges);
+                }
+            });
+            pending = changes;
+        }
+
+        pending.add(new Change(entity, key));
+    }
+
+    @Scheduled(fixedDelayString = "${application.changefeed.poll-ms:1000}")
+    public synchronized void poll() {
+        if (!enabled) {
+            return;
+        }
+
+        // the caches of a starting instance are loaded from the database, not from the feed
+        if (!started) {
+            highWaterMark = repository.findMaxId();
+            started = true;
+            return;
+        }
+
+        List<ChangeLogEntry> entries = repository.findByIdGreaterThanOrderById(highWaterMark, PageRequest.of(0, batchSize));
+        Map<String, Set<Long>> changed = new HashMap<>();
+        Instant now = Instant.now();
+
+        for (ChangeLogEntry entry : entries) {
+            if (!readAboveMark.add(entry.getId()) || origin.equals(entry.getOrigin())) {
+                continue;
+            }
+
+            changed.computeIfAbsent(entry.getEntity(), entity -> new LinkedHashSet<>()).add(entry.getEntityKey());
+            Timer timer = propagation;
+            if (timer != null) {
+                timer.record(Duration.between(entry.getChangedAt(), now));
+            }
+        }
+
+        advanceHighWaterMark();
+
+        changed.forEach((entity, keys) -> listeners.getOrDefault(entity, Collections.emptyList()).forEach(listener -> {
+            try {
+                listener.onChange(keys);
+            } catch (RuntimeException e) {
+                log.error("Could not apply {} changes of {} from the change feed", keys.size(), entity, e);
+            }
+        }));
+    }
+
+    @Scheduled(fixedDelayString = "${application.changefeed.purge-ms:60000}")
+    public void purge() {
+        if (enabled) {
+            repository.deleteOlderThan(Instant.now().minus(retention));
+        }
+    }
+
+    public long getHighWaterMark() {
+        return highWaterMark;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        propagation = Timer.builder("library.changefeed.propagation")
+                .description("Time from a change on another instance until it was applied to the local caches")
+                .register(registry);
+        Gauge.builder("library.changefeed.high-water-mark", this, ChangeFeed::getHighWaterMark)
+                .description("Last change log id applied by this instance")
+                .register(registry);
+    }
+
+    private void advanceHighWaterMark() {
+        long mark = highWaterMark;
+
+        while (!readAboveMark.isEmpty()) {
+            if (readAboveMark.first() == mark + 1) {
+                readAboveMark.pollFirst();
+                mark++;
+                gapSinceNanos = 0;
+                continue;
+            }
+
+            long now = System.nanoTime();
+            if (gapSinceNanos == 0) {
+                gapSinceNanos = now;
+            }
+            if (now - gapSinceNanos < gapTimeoutNanos) {
+                break;
+            }
+
+            log.debug("Skipping change log ids {} to {}, never committed", mark + 1, readAboveMark.first() - 1);
+            mark = readAboveMark.first() - 1;
+            gapSinceNanos = 0;
+        }
+
+        highWaterMark = mark;
+    }
+
+    private void append(Collection<Change> changes) {
+        Instant now = Instant.now();
+        repository.saveAll(changes.stream()
+                .map(change -> ChangeLogEntry.builder()
+                        .entity(change.entity)
+                        .entityKey(change.key)
+                        .origin(origin)
+                        .changedAt(now)
+                        .build())
+                .collect(Collectors.toList()));
+    }
+
+    @EqualsAndHashCode
+    private static class Change {
+        private final String entity;
+        private final Long key;
+
+        Change(String entity, Long key) {
+            this.entity = entity;
+            this.key = key;
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package com.nhamparsomia.libraryapi.service.changefeed;
+
+import java.util.Set;
+
+/**
+ * Evicts or reloads the keys of one entity after they changed on another instance.
+ */
+public interface ChangeListener {
+
+    String entity();
+
+    void onChange(Set<Long> keys);
+}
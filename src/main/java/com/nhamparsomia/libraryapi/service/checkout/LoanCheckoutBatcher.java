@@ -0,0 +1,267 @@
+package com.nhamparsomia.libraryapi.service.checkout;
+
+import com.nhamparsomia.libraryapi.api.dto.LoanBatchResultDTO;
+import com.nhamparsomia.libraryapi.config.datasource.ReplicaRoutingDataSource;
+import com.nhamparsomia.libraryapi.exception.BusinessException;
+import com.nhamparsomia.libraryapi.model.entity.Loan;
+import com.nhamparsomia.libraryapi.service.LoanService;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.Collectors;
+
+/**
+ * Group commit for single checkouts, enabled with
+ * {@code application.loans.checkout-batching.enabled=true}. Concurrent callers are collected for
+ * up to {@code max-wait-ms} or {@code max-batch} loans and applied by one worker through
+ * {@link LoanService#saveAll}: one availability query, one batched insert and one commit for the
+ * whole group. Each caller still gets its own loan or {@link BusinessException}, as from
+ * {@link LoanService#save}.
+ *
+ * <p>If the group transaction fails as a whole, its loans are retried one by one so that a single
+ * bad loan does not fail the others. A caller waits at most {@code timeout-ms} for its group and
+ * then gets {@code 503}; a loan already being committed by then may still be saved.
+ */
+@Slf4j
+@Component
+@Lazy(false)
+public class LoanCheckoutBatcher implements InitializingBean, DisposableBean, MeterBinder {
+
+    private static final long POLL_MILLIS = 100;
+    private static final long SHUTDOWN_MILLIS = 10_000;
+
+    private final LoanService loanService;
+    private final ObjectProvider<ReplicaRoutingDataSource> replicaRouting;
+    private final boolean enabled;
+    private final int maxBatch;
+    private final long maxWaitNanos;
+    private final long timeoutMillis;
+
+    private final BlockingQueue<PendingCheckout> queue = new LinkedBlockingQueue<>();
+    private final List<PendingCheckout> batch = new ArrayList<>();
+
+    private volatile boolean running;
+    private volatile DistributionSummary batchSizes;
+    private Thread worker;
+
+    public LoanCheckoutBatcher(LoanService loanService,
+                               ObjectProvider<ReplicaRoutingDataSource> replicaRouting,
+                               @Value("${application.loans.checkout-batching.enabled:false}") boolean enabled,
+                               @Value("${application.loans.checkout-batching.max-batch:50}") int maxBatch,
+                               @Value("${application.loans.checkout-batching.max-wait-ms:5}") long maxWaitMillis,
+                               @Value("${application.loans.checkout-batching.timeout-ms:10000}") long timeoutMillis) {
+        this.loanService = loanService;
+        this.replicaRouting = replicaRouting;
+        this.enabled = enabled;
+        this.maxBatch = maxBatch;
+        this.maxWaitNanos = TimeUnit.MILLISECONDS.toNanos(maxWaitMillis);
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        if (!enabled) {
+            return;
+        }
+
+        running = true;
+        worker = new Thread(this::commitLoop, "loan-checkout-batcher");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    @Override
+    public void destroy() throws InterruptedException {
+        if (worker == null) {
+            return;
+        }
+
+        running = false;
+        worker.join(SHUTDOWN_MILLIS);
+
+        // left behind only if the worker did not finish in time
+        List<PendingCheckout> abandoned = new ArrayList<>();
+        queue.drainTo(abandoned);
+        abandoned.forEach(pending -> pending.future.completeExceptionally(stopped()));
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Same contract as {@link LoanService#save}: returns the saved loan or throws the
+     * {@link BusinessException} that refused it.
+     */
+    public Loan checkout(Loan loan) {
+        try {
+            Loan saved = submit(loan).get(timeoutMillis, TimeUnit.MILLISECONDS);
+            // committed by the worker, outside the caller's request
+            replicaRouting.ifAvailable(ReplicaRoutingDataSource::recordWrite);
+            return saved;
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException(cause);
+        } catch (TimeoutException e) {
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Checkout timed out, try again later");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Checkout interrupted, try again later");
+        }
+    }
+
+    public CompletableFuture<Loan> submit(Loan loan) {
+        if (!running) {
+            return saveAlone(loan);
+        }
+
+        PendingCheckout pending = new PendingCheckout(loan);
+        queue.add(pending);
+
+        // stopped meanwhile: the worker may already have drained the queue and exited, so
+        // whoever takes the checkout back out of the queue saves it
+        if (!running && queue.remove(pending)) {
+            return saveAlone(loan);
+        }
+        return pending.future;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        batchSizes = DistributionSummary.builder("library.loans.checkout.batch.size")
+                .description("Checkouts committed together by the checkout batcher")
+                .register(registry);
+    }
+
+    private void commitLoop() {
+        while (running || !queue.isEmpty()) {
+            PendingCheckout first = poll(TimeUnit.MILLISECONDS.toNanos(POLL_MILLIS));
+            if (first == null) {
+                continue;
+            }
+
+            batch.add(first);
+            collect(System.nanoTime() + maxWaitNanos);
+
+            try {
+                commit();
+            } catch (Throwable e) {
+                log.error("Could not complete a checkout batch of {} loans", batch.size(), e);
+                batch.forEach(pending -> pending.future.completeExceptionally(e));
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void collect(long deadline) {
+        while (batch.size() < maxBatch) {
+            queue.drainTo(batch, maxBatch - batch.size());
+
+            long remaining = deadline - System.nanoTime();
+            if (batch.size() >= maxBatch || remaining <= 0) {
+                return;
+            }
+
+            PendingCheckout next = poll(remaining);
+            if (next == null) {
+                return;
+            }
+            batch.add(next);
+        }
+    }
+
+    private PendingCheckout poll(long timeoutNanos) {
+        try {
+            return queue.poll(timeoutNanos, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            return null;
+        }
+    }
+
+    private void commit() {
+        if (batchSizes != null) {
+            batchSizes.record(batch.size());
+        }
+
+        List<Loan> loans = batch.stream()
+                .map(pending -> pending.loan)
+                .collect(Collectors.toList());
+
+        List<LoanBatchResultDTO> results;
+        try {
+            results = loanService.saveAll(loans);
+        } catch (RuntimeException e) {
+            log.warn("Checkout batch of {} loans failed, retrying them one by one", batch.size(), e);
+            batch.forEach(pending -> {
+                pending.loan.setId(null);
+                saveAlone(pending.loan).whenComplete(pending::complete);
+            });
+            return;
+        }
+
+        for (int index = 0; index < batch.size(); index++) {
+            PendingCheckout pending = batch.get(index);
+            LoanBatchResultDTO result = results.get(index);
+
+            if (result.getStatus() == HttpStatus.CREATED.value()) {
+                pending.future.complete(pending.loan);
+            } else {
+                pending.future.completeExceptionally(new BusinessException(result.getError()));
+            }
+        }
+    }
+
+    private CompletableFuture<Loan> saveAlone(Loan loan) {
+        try {
+            return CompletableFuture.completedFuture(loanService.save(loan));
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    private static IllegalStateException stopped() {
+        return new IllegalStateException("Checkout batcher stopped before the checkout was committed");
+    }
+
+    private static class PendingCheckout {
+        private final Loan loan;
+        private final CompletableFuture<Loan> future = new CompletableFuture<>();
+
+        PendingCheckout(Loan loan) {
+            this.loan = loan;
+        }
+
+        void complete(Loan saved, Throwable error) {
+            if (error != null) {
+                future.completeExceptionally(error);
+            } else {
+                future.complete(saved);
+            }
+        }
+    }
+}
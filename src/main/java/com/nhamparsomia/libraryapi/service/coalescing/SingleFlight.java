@@ -0,0 +1,142 @@
+package com.nhamparsomia.libraryapi.service.coalescing;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.EqualsAndHashCode;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+
+/**
+ * Collapses concurrent identical reads, enabled with {@code application.coalescing.enabled=true}.
+ * The first caller for a key runs the lookup; callers arriving while it is in flight wait for and
+ * share its result, or its exception. A caller that waits longer than {@code timeout-ms} stops
+ * waiting and runs the lookup itself, so one slow query cannot hold every caller hostage.
+ *
+ * <p>Callers inside a read-write transaction always run their own lookup, since a shared result
+ * would not see their uncommitted writes. Mutable results, such as entities managed by the first
+ * caller's persistence context, are never handed to another caller: the first caller keeps its
+ * own result and every other caller gets a separate copy of it.
+ */
+@Component
+public class SingleFlight implements MeterBinder {
+
+    static final String METRIC_NAME = "library.singleflight.calls";
+
+    private final boolean enabled;
+    private final long timeoutMillis;
+    private final ConcurrentMap<Call, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+
+    private volatile MeterRegistry registry;
+
+    public SingleFlight(@Value("${application.coalescing.enabled:false}") boolean enabled,
+                        @Value("${application.coalescing.timeout-ms:2000}") long timeoutMillis) {
+        this.enabled = enabled;
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    /**
+     * Shares the result as is, so only for immutable results.
+     */
+    public <T> T execute(String group, Object key, Supplier<T> lookup) {
+        return execute(group, key, lookup, UnaryOperator.identity());
+    }
+
+    /**
+     * Shares the result through {@code copy}, which must return an instance independent of its
+     * argument; it is applied once for the shared value and once for every other caller.
+     */
+    public <T> T execute(String group, Object key, Supplier<T> lookup, UnaryOperator<T> copy) {
+        if (!enabled || isReadWriteTransaction()) {
+            return lookup.get();
+        }
+
+        Call call = new Call(group, key);
+        CompletableFuture<Object> flight = new CompletableFuture<>();
+        CompletableFuture<Object> existing = inFlight.putIfAbsent(call, flight);
+
+        if (existing != null) {
+            return await(group, existing, lookup, copy);
+        }
+
+        count(group, "executed");
+        try {
+            T result = lookup.get();
+            flight.complete(copy.apply(result));
+            return result;
+        } catch (RuntimeException | Error e) {
+            flight.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(call, flight);
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        this.registry = registry;
+        Gauge.builder("library.singleflight.in-flight", inFlight, Map::size)
+                .description("Lookups currently shared by concurrent callers")
+                .register(registry);
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T await(String group, CompletableFuture<Object> flight, Supplier<T> lookup, UnaryOperator<T> copy) {
+        try {
+            T result = (T) flight.get(timeoutMillis, TimeUnit.MILLISECONDS);
+            count(group, "shared");
+            return copy.apply(result);
+        } catch (ExecutionException e) {
+            count(group, "shared");
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException(cause);
+        } catch (TimeoutException e) {
+            count(group, "timeout");
+            return lookup.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            count(group, "timeout");
+            return lookup.get();
+        }
+    }
+
+    private void count(String group, String outcome) {
+        MeterRegistry meterRegistry = registry;
+        if (meterRegistry != null) {
+            meterRegistry.counter(METRIC_NAME, "group", group, "outcome", outcome).increment();
+        }
+    }
+
+    private static boolean isReadWriteTransaction() {
+        return TransactionSynchronizationManager.isActualTransactionActive()
+                && !TransactionSynchronizationManager.isCurrentTransactionReadOnly();
+    }
+
+    @EqualsAndHashCode
+    private static class Call {
+        private final String group;
+        private final Object key;
+
+        Call(String group, Object key) {
+            this.group = group;
+            this.key = key;
+        }
+    }
+}
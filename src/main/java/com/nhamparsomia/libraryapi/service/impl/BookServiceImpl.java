@@ -4,70 +4,270 @@ import com.nhamparsomia.libraryapi.exception.BusinessException;
 import com.nhamparsomia.libraryapi.model.entity.Book;
 import com.nhamparsomia.libraryapi.model.repository.BookRepository;
 import com.nhamparsomia.libraryapi.service.BookService;
+import com.nhamparsomia.libraryapi.service.catalog.BookCatalog;
+import com.nhamparsomia.libraryapi.service.catalog.BookSearchCache;
+import com.nhamparsomia.libraryapi.service.catalog.CatalogSnapshot;
+import com.nhamparsomia.libraryapi.service.changefeed.ChangeFeed;
+import com.nhamparsomia.libraryapi.service.coalescing.SingleFlight;
+import org.springframework.context.annotation.Profile;
 import org.springframework.data.domain.Example;
 import org.springframework.data.domain.ExampleMatcher;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Service
+@Profile("!in-memory")
 public class BookServiceImpl implements BookService {
 
+    /**
+     * Keys per IN list, below the parameter limits of the usual JDBC drivers.
+     */
+    public static final int IN_CHUNK_SIZE = 1000;
+
+    /**
+     * Sort property ordering books by their total loans, most borrowed first.
+     */
+    public static final String SORT_POPULARITY = "popularity";
+
     private BookRepository repository;
+    private BookCatalog catalog;
+    private BookSearchCache searchCache;
+    private SingleFlight singleFlight;
+    private ChangeFeed changeFeed;
 
-    public BookServiceImpl(BookRepository repository) {
+    public BookServiceImpl(BookRepository repository, BookCatalog catalog, BookSearchCache searchCache,
+                           SingleFlight singleFlight, ChangeFeed changeFeed) {
         this.repository = repository;
+        this.catalog = catalog;
+        this.searchCache = searchCache;
+        this.singleFlight = singleFlight;
+        this.changeFeed = changeFeed;
     }
 
     @Override
+    @Transactional
     public Book save(Book book) {
         if (repository.existsByIsbn(book.getIsbn())) {
             throw new BusinessException("Isbn já cadastrado.");
         }
 
-        return repository.save(book);
+        Book savedBook = repository.save(book);
+        catalog.publish(savedBook);
+        searchCache.invalidateAll();
+        changeFeed.record(ChangeFeed.BOOK, savedBook.getId());
+
+        return savedBook;
     }
 
     @Override
     public Optional<Book> getById(Long id) {
-        return this.repository.findById(id);
+        Optional<CatalogSnapshot> snapshot = catalog.current();
+        if (snapshot.isPresent()) {
+            return snapshot.get().findById(id);
+        }
+
+        return singleFlight.execute("books.byId", id, () -> repository.findById(id),
+                book -> book.map(Book::copy));
     }
 
     @Override
+    public List<Book> getBooksById(Collection<Long> ids) {
+        if (ids.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        Optional<CatalogSnapshot> snapshot = catalog.current();
+        if (snapshot.isPresent()) {
+            return ids.stream()
+                    .distinct()
+                    .map(snapshot.get()::findById)
+                    .filter(Optional::isPresent)
+                    .map(Optional::get)
+                    .collect(Collectors.toList());
+        }
+
+        return inChunks(ids, repository::findAllById);
+    }
+
+    @Override
+    @Transactional
     public void delete(Book book) {
         if(book.getId() == null) {
             throw new IllegalArgumentException("Book id cant be null");
         }
 
         this.repository.delete(book);
+        catalog.remove(book.getId());
+        searchCache.invalidateAll();
+        changeFeed.record(ChangeFeed.BOOK, book.getId());
     }
 
     @Override
+    @Transactional
     public Book update(Book book) {
         if(book.getId() == null) {
             throw new IllegalArgumentException("Book id cant be null");
         }
 
-        return this.repository.save(book);
+        Book updatedBook = this.repository.save(book);
+        catalog.publish(updatedBook);
+        searchCache.invalidateAll();
+        changeFeed.record(ChangeFeed.BOOK, updatedBook.getId());
+
+        return updatedBook;
     }
 
+    @Override
+    @Transactional
+    public int updateAuthorAndTitle(Long id, String author, String title) {
+        if (repository.updateAuthorAndTitle(id, author, title) == 0) {
+            return 0;
+        }
+
+        searchCache.invalidate(BookSearchCache.Field.TITLE, BookSearchCache.Field.AUTHOR);
+        changeFeed.record(ChangeFeed.BOOK, id);
+        catalog.update(id, book -> {
+            book.setAuthor(author);
+            book.setTitle(title);
+        });
+
+        return 1;
+    }
+
+    /**
+     * Popularity changes with every loan, so it is neither held by the catalog snapshot nor
+     * cached; those searches read the counters through {@code idx_book_popularity}.
+     */
     @Override
     public Page<Book> find(Book filter, Pageable pageRequest) {
-        Example<Book> example = Example.of(
+        if (pageRequest.getSort().stream().anyMatch(order -> SORT_POPULARITY.equals(order.getProperty()))) {
+            return repository.findAll(example(filter), byPopularity(pageRequest));
+        }
+
+        Optional<CatalogSnapshot> snapshot = catalog.current();
+        if (snapshot.isPresent() && CatalogSnapshot.canSort(pageRequest.getSort())) {
+            return snapshot.get().find(filter, pageRequest);
+        }
+
+        BookSearchCache.Lookup cached = searchCache.lookup(filter, pageRequest);
+        if (cached.isHit()) {
+            Optional<Page<Book>> page = loadCachedPage(cached, pageRequest);
+            if (page.isPresent()) {
+                return page.get();
+            }
+        }
+
+        Page<Book> page = repository.findAll(example(filter), pageRequest);
+        cached.store(page);
+
+        return page;
+    }
+
+    @Override
+    public Optional<Book> getBookByIsbn(String isbn) {
+        Optional<CatalogSnapshot> snapshot = catalog.current();
+        if (snapshot.isPresent()) {
+            return snapshot.get().findByIsbn(isbn);
+        }
+
+        return repository.findByIsbn(isbn);
+    }
+
+    @Override
+    public List<Book> getBooksByIsbn(Collection<String> isbns) {
+        if (isbns.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        Optional<CatalogSnapshot> snapshot = catalog.current();
+        if (snapshot.isPresent()) {
+            return isbns.stream()
+                    .distinct()
+                    .map(snapshot.get()::findByIsbn)
+                    .filter(Optional::isPresent)
+                    .map(Optional::get)
+                    .collect(Collectors.toList());
+        }
+
+        return inChunks(isbns, repository::findByIsbnIn);
+    }
+
+    private static Example<Book> example(Book filter) {
+        return Example.of(
                 filter,
                 ExampleMatcher.matching()
                         .withIgnoreCase()
                         .withIgnoreNullValues()
                         .withStringMatcher(ExampleMatcher.StringMatcher.CONTAINING)
         );
+    }
 
-        return repository.findAll(example, pageRequest);
+    /**
+     * Replaces the popularity order by the total loans, descending, and breaks ties by id in the
+     * same direction, the order in which {@code idx_book_popularity} is declared.
+     */
+    private static Pageable byPopularity(Pageable pageRequest) {
+        List<Sort.Order> orders = pageRequest.getSort().stream()
+                .map(order -> SORT_POPULARITY.equals(order.getProperty()) ? Sort.Order.desc("totalLoans") : order)
+                .distinct()
+                .collect(Collectors.toList());
+        if (orders.stream().noneMatch(order -> "id".equals(order.getProperty()))) {
+            orders.add(Sort.Order.desc("id"));
+        }
+
+        Sort sort = Sort.by(orders);
+        return pageRequest.isPaged()
+                ? PageRequest.of(pageRequest.getPageNumber(), pageRequest.getPageSize(), sort)
+                : Pageable.unpaged();
     }
 
-    @Override
-    public Optional<Book> getBookByIsbn(String isbn) {
-        return repository.findByIsbn(isbn);
+    /**
+     * Loads the cached ids by primary key, in the cached order. Empty if one of them is gone, in
+     * which case the search runs again.
+     */
+    private Optional<Page<Book>> loadCachedPage(BookSearchCache.Lookup cached, Pageable pageRequest) {
+        List<Long> ids = cached.getIds();
+        if (ids.isEmpty()) {
+            return Optional.of(new PageImpl<>(Collections.emptyList(), pageRequest, cached.getTotal()));
+        }
+
+        Map<Long, Book> booksById = repository.findAllById(ids)
+                .stream()
+                .collect(Collectors.toMap(Book::getId, Function.identity()));
+        if (booksById.size() != ids.size()) {
+            return Optional.empty();
+        }
+
+        List<Book> books = ids.stream()
+                .map(booksById::get)
+                .collect(Collectors.toList());
+
+        return Optional.of(new PageImpl<>(books, pageRequest, cached.getTotal()));
+    }
+
+    private static <T> List<Book> inChunks(Collection<T> keys, Function<List<T>, List<Book>> query) {
+        List<T> distinctKeys = new ArrayList<>(new LinkedHashSet<>(keys));
+        List<Book> books = new ArrayList<>();
+
+        for (int from = 0; from < distinctKeys.size(); from += IN_CHUNK_SIZE) {
+            books.addAll(query.apply(distinctKeys.subList(from, Math.min(from + IN_CHUNK_SIZE, distinctKeys.size()))));
+        }
+
+        return books;
     }
 }
@@ -1,33 +1,42 @@
 package com.nhamparsomia.libraryapi.service.impl;
 
 import com.nhamparsomia.libraryapi.service.EmailService;
+import com.nhamparsomia.libraryapi.service.notification.OverdueDigest;
 import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.mail.SimpleMailMessage;
 import org.springframework.mail.javamail.JavaMailSender;
 import org.springframework.stereotype.Service;
 
-import java.util.List;
+import java.time.format.DateTimeFormatter;
 
 @Service
 @RequiredArgsConstructor
 public class EmailServiceImpl implements EmailService {
 
+    private static final DateTimeFormatter LOAN_DATE_FORMAT = DateTimeFormatter.ofPattern("dd/MM/yyyy");
+
     @Value("${application.mail.default.sender}")
     private String sender;
 
     private final JavaMailSender mailSender;
 
     @Override
-    public void sendMailToLateLoans(String message, List<String> mailList) {
+    public void sendOverdueDigest(String message, OverdueDigest digest) {
+        StringBuilder text = new StringBuilder()
+                .append("Olá, ").append(digest.getCustomer()).append("!\n\n")
+                .append(message).append("\n\n");
 
-        String[] customersEmailsArray = mailList.toArray(new String[mailList.size()]);
+        for (OverdueDigest.OverdueLoan loan : digest.getLoans()) {
+            text.append("- ").append(loan.getTitle())
+                    .append(" (emprestado em ").append(loan.getLoanDate().format(LOAN_DATE_FORMAT)).append(")\n");
+        }
 
         SimpleMailMessage mailMessage = new SimpleMailMessage();
         mailMessage.setFrom(sender);
-        mailMessage.setSubject("Aviso Biblioteca FJ: Você possui mpréstimos em atraso!");
-        mailMessage.setText(message);
-        mailMessage.setTo(customersEmailsArray);
+        mailMessage.setSubject("Aviso Biblioteca FJ: Você possui empréstimos em atraso!");
+        mailMessage.setText(text.toString());
+        mailMessage.setTo(digest.getEmail());
 
         mailSender.send(mailMessage);
     }
@@ -0,0 +1,243 @@
+package com.nhamparsomia.libraryapi.service.impl;
+
+import com.nhamparsomia.libraryapi.model.entity.Book;
+import com.nhamparsomia.libraryapi.model.entity.Loan;
+import com.nhamparsomia.libraryapi.model.entity.LoanCounter;
+import com.nhamparsomia.libraryapi.model.entity.LoanDailyStats;
+import com.nhamparsomia.libraryapi.model.repository.BookRepository;
+import com.nhamparsomia.libraryapi.model.repository.LoanCounterRepository;
+import com.nhamparsomia.libraryapi.model.repository.LoanDailyStatsRepository;
+import com.nhamparsomia.libraryapi.model.repository.LoanRepository;
+import com.nhamparsomia.libraryapi.service.LoanAnalyticsService;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.JdbcUtils;
+import org.springframework.jdbc.support.MetaDataAccessException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.stream.Collectors;
+
+import static com.nhamparsomia.libraryapi.service.impl.LoanServiceImpl.LOAN_DAYS;
+
+/**
+ * Keeps the loan rollups up to date with atomic writes in the caller's transaction, adding to the
+ * row or creating it on first use, so reads are single-row or small rollup lookups instead of
+ * aggregates over the loan table. On PostgreSQL each write is a single
+ * {@code INSERT ... ON CONFLICT DO UPDATE}. H2 has no atomic upsert that adds to a row: its
+ * {@code MERGE ... USING} fails when two transactions insert the same row at once, so the row is
+ * created with {@code MERGE ... KEY}, which H2 repeats on a concurrent insert, and then added to
+ * with an {@code UPDATE}. No statement is expected to fail, so nothing is caught and retried.
+ */
+@Service
+@Profile("!in-memory")
+public class LoanAnalyticsServiceImpl implements LoanAnalyticsService {
+
+    private static final String UPSERT_DAY = "insert into loan_daily_stats (loan_day, checkouts, returns, open_loans) " +
+            "values (?, ?, ?, ?) on conflict (loan_day) do update set " +
+            "checkouts = loan_daily_stats.checkouts + excluded.checkouts, " +
+            "returns = loan_daily_stats.returns + excluded.returns, " +
+            "open_loans = loan_daily_stats.open_loans + excluded.open_loans";
+
+    private static final String UPSERT_COUNTER = "insert into loan_counter (name, counter_value) values (?, ?) " +
+            "on conflict (name) do update set counter_value = loan_counter.counter_value + excluded.counter_value";
+
+    private static final String CREATE_DAY = "merge into loan_daily_stats (loan_day) key (loan_day) values (?)";
+
+    private static final String ADD_TO_DAY = "update loan_daily_stats set checkouts = checkouts + ?, " +
+            "returns = returns + ?, open_loans = open_loans + ? where loan_day = ?";
+
+    private static final String CREATE_COUNTER = "merge into loan_counter (name) key (name) values (?)";
+
+    private static final String ADD_TO_COUNTER = "update loan_counter set counter_value = counter_value + ? where name = ?";
+
+    private final LoanDailyStatsRepository dailyStatsRepository;
+    private final BookRepository bookRepository;
+    private final LoanCounterRepository counterRepository;
+    private final LoanRepository loanRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final boolean onConflict;
+
+    public LoanAnalyticsServiceImpl(LoanDailyStatsRepository dailyStatsRepository,
+                                    BookRepository bookRepository,
+                                    LoanCounterRepository counterRepository,
+                                    LoanRepository loanRepository,
+                                    JdbcTemplate jdbcTemplate) throws MetaDataAccessException {
+        this.dailyStatsRepository = dailyStatsRepository;
+        this.bookRepository = bookRepository;
+        this.counterRepository = counterRepository;
+        this.loanRepository = loanRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.onConflict = "PostgreSQL".equals(JdbcUtils.commonDatabaseName(JdbcUtils.extractDatabaseMetaData(
+                Objects.requireNonNull(jdbcTemplate.getDataSource()), "getDatabaseProductName")));
+    }
+
+    @Override
+    @Transactional
+    public void loansOpened(Collection<Loan> loans) {
+        if (loans.isEmpty()) {
+            return;
+        }
+
+        loans.stream()
+                .map(Loan::getLoanDate)
+                .filter(Objects::nonNull)
+                .collect(Collectors.groupingBy(day -> day, Collectors.counting()))
+                .forEach((day, count) -> addToDay(day, count, 0, count));
+
+        addOpenLoans(loans.size());
+    }
+
+    @Override
+    @Transactional
+    public void loansReturned(Map<LocalDate, Long> countByLoanDate) {
+        long total = total(countByLoanDate);
+        if (total == 0) {
+            return;
+        }
+
+        countByLoanDate.forEach((day, count) -> {
+            if (day != null) {
+                addToDay(day, 0, 0, -count);
+            }
+        });
+
+        addToDay(LocalDate.now(), 0, total, 0);
+
+        addOpenLoans(-total);
+    }
+
+    @Override
+    @Transactional
+    public void loansReopened(Map<LocalDate, Long> countByLoanDate) {
+        long total = total(countByLoanDate);
+        if (total == 0) {
+            return;
+        }
+
+        countByLoanDate.forEach((day, count) -> {
+            if (day != null) {
+                addToDay(day, 0, 0, count);
+            }
+        });
+
+        addOpenLoans(total);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<LoanDailyStats> getDailyStats(LocalDate from, LocalDate to) {
+        return dailyStatsRepository.findByDayBetweenOrderByDay(from, to);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public long getOpenLoans() {
+        return counterRepository.findById(LoanCounter.OPEN_LOANS)
+                .map(LoanCounter::getValue)
+                .orElse(0L);
+    }
+
+    /**
+     * Open loans minus those still within the loan period, so only the last {@code LOAN_DAYS} daily
+     * rows are read however long the history is. Open loans without a loan date count as overdue.
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public long getOverdueLoans() {
+        return getOpenLoans() - dailyStatsRepository.sumOpenLoansAfter(LocalDate.now().minusDays(LOAN_DAYS));
+    }
+
+    /**
+     * Reads the loan counters kept on {@code Book} by {@code LoanService} and repaired by
+     * {@code LoanCounterRepairService}, so there is a single per-book total.
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public List<Book> getMostBorrowedBooks(int limit) {
+        return bookRepository.findMostBorrowed(PageRequest.of(0, limit));
+    }
+
+    /**
+     * Recomputes the rollups from the loan table and fixes the rows that drifted. Returns are
+     * recorded by return date, which the loan table does not keep, so they are left untouched.
+     * The rollups are read before the loans and each row is only set if it still holds the values
+     * it was read with, so a row written to while this runs keeps the concurrent write and is left
+     * for the next run.
+     */
+    @Override
+    @Transactional
+    public int reconcile() {
+        List<LoanDailyStats> days = dailyStatsRepository.findAll();
+        long openLoans = getOpenLoans();
+
+        Map<LocalDate, long[]> actualDays = new HashMap<>();
+        long actualOpenLoans = 0;
+
+        for (Object[] row : loanRepository.countAllByLoanDate()) {
+            long checkouts = ((Number) row[1]).longValue();
+            long open = ((Number) row[2]).longValue();
+            actualOpenLoans += open;
+
+            if (row[0] != null) {
+                actualDays.put((LocalDate) row[0], new long[]{checkouts, open});
+            }
+        }
+
+        int corrections = 0;
+
+        for (LoanDailyStats stats : days) {
+            long[] actual = actualDays.remove(stats.getDay());
+            long checkouts = actual == null ? 0 : actual[0];
+            long open = actual == null ? 0 : actual[1];
+
+            if (stats.getCheckouts() != checkouts || stats.getOpenLoans() != open) {
+                corrections += dailyStatsRepository.setLoanCounts(stats.getDay(), checkouts, open,
+                        stats.getCheckouts(), stats.getOpenLoans());
+            }
+        }
+
+        for (Map.Entry<LocalDate, long[]> missing : actualDays.entrySet()) {
+            // creates the row, or adds nothing to one created since it was read
+            addToDay(missing.getKey(), 0, 0, 0);
+            corrections += dailyStatsRepository.setLoanCounts(missing.getKey(), missing.getValue()[0],
+                    missing.getValue()[1], 0, 0);
+        }
+
+        if (openLoans != actualOpenLoans) {
+            addOpenLoans(0);
+            corrections += counterRepository.setValue(LoanCounter.OPEN_LOANS, actualOpenLoans, openLoans);
+        }
+
+        return corrections;
+    }
+
+    private void addOpenLoans(long delta) {
+        if (onConflict) {
+            jdbcTemplate.update(UPSERT_COUNTER, LoanCounter.OPEN_LOANS, delta);
+        } else {
+            jdbcTemplate.update(CREATE_COUNTER, LoanCounter.OPEN_LOANS);
+            jdbcTemplate.update(ADD_TO_COUNTER, delta, LoanCounter.OPEN_LOANS);
+        }
+    }
+
+    private void addToDay(LocalDate day, long checkouts, long returns, long openLoans) {
+        if (onConflict) {
+            jdbcTemplate.update(UPSERT_DAY, day, checkouts, returns, openLoans);
+        } else {
+            jdbcTemplate.update(CREATE_DAY, day);
+            jdbcTemplate.update(ADD_TO_DAY, checkouts, returns, openLoans, day);
+        }
+    }
+
+    private static long total(Map<LocalDate, Long> countByLoanDate) {
+        return countByLoanDate.values().stream().mapToLong(Long::longValue).sum();
+    }
+}
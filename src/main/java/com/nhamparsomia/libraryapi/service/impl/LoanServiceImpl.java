@@ -1,64 +1,404 @@
 package com.nhamparsomia.libraryapi.service.impl;
 
+import com.nhamparsomia.libraryapi.api.dto.LoanBatchResultDTO;
 import com.nhamparsomia.libraryapi.api.dto.LoanFilterDTO;
+import com.nhamparsomia.libraryapi.api.dto.ReturnedLoanBatchDTO;
 import com.nhamparsomia.libraryapi.exception.BusinessException;
 import com.nhamparsomia.libraryapi.model.entity.Book;
 import com.nhamparsomia.libraryapi.model.entity.Loan;
+import com.nhamparsomia.libraryapi.model.repository.BookRepository;
 import com.nhamparsomia.libraryapi.model.repository.LoanRepository;
+import com.nhamparsomia.libraryapi.service.LoanAnalyticsService;
 import com.nhamparsomia.libraryapi.service.LoanService;
+import com.nhamparsomia.libraryapi.service.coalescing.SingleFlight;
+import com.nhamparsomia.libraryapi.service.journal.LoanEventType;
+import com.nhamparsomia.libraryapi.service.journal.LoanJournal;
+import com.nhamparsomia.libraryapi.service.notification.OverdueDigest;
+import org.springframework.context.annotation.Profile;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 @Service
+@Profile("!in-memory")
 public class LoanServiceImpl implements LoanService {
 
     public static final Integer LOAN_DAYS = 4;
+    public static final String BOOK_ALREADY_TAKEN = "Book has already been taken by another customer";
+    public static final String LOAN_NOT_FOUND = "Loan not found";
+
+    /**
+     * Most ids each side of an isbn-or-customer search may match before the union is left to a single
+     * {@code or} query, which scans more rows but is paginated by the database.
+     */
+    public static final int MAX_UNION_IDS = 1000;
+
     private LoanRepository repository;
+    private BookRepository bookRepository;
+    private LoanAnalyticsService analytics;
+    private LoanJournal journal;
+    private SingleFlight singleFlight;
 
-    public LoanServiceImpl(LoanRepository repository) {
+    public LoanServiceImpl(LoanRepository repository, BookRepository bookRepository, LoanAnalyticsService analytics,
+                           LoanJournal journal, SingleFlight singleFlight) {
         this.repository = repository;
+        this.bookRepository = bookRepository;
+        this.analytics = analytics;
+        this.journal = journal;
+        this.singleFlight = singleFlight;
     }
 
     @Override
+    @Transactional
     public Loan save(Loan loan) {
         Book book = loan.getBook();
 
         if(repository.verifyIfBookHasAlreadyBeenTaken(book)) {
-            throw new BusinessException("Book has already been taken by another customer");
+            throw new BusinessException(BOOK_ALREADY_TAKEN);
         }
 
-        return repository.save(loan);
+        Loan savedLoan = repository.save(loan);
+        bookRepository.addLoanCounters(Collections.singleton(book.getId()), 1, 1);
+        analytics.loansOpened(Collections.singletonList(savedLoan));
+        recordCheckout(savedLoan);
+
+        return savedLoan;
     }
 
     @Override
+    @Transactional(readOnly = true)
     public Optional<Loan> getById(Long id) {
         return repository.findById(id);
     }
 
     @Override
+    @Transactional
     public Loan update(Loan loan) {
+        applyReturned(Collections.singleton(loan.getId()), Boolean.TRUE.equals(loan.getReturned()));
+
         return repository.save(loan);
     }
 
     @Override
+    @Transactional
+    public int updateReturned(Long id, Boolean returned) {
+        boolean value = Boolean.TRUE.equals(returned);
+
+        if (repository.updateReturnedById(id, value) > 0) {
+            recordReturned(repository.findLoanReferences(id), value);
+            return 1;
+        }
+
+        return repository.existsById(id) ? 1 : 0;
+    }
+
+    @Override
+    @Transactional(readOnly = true)
     public Page<Loan> find(LoanFilterDTO filter, Pageable pageable) {
-        return repository.findBookByIsbnOrCustomer(filter.getIsbn(), filter.getCustomer(), pageable);
+        String isbn = emptyToNull(filter.getIsbn());
+        String customer = emptyToNull(filter.getCustomer());
+        String customerPrefix = customer == null ? emptyToNull(Loan.normalizeCustomer(filter.getCustomerPrefix())) : null;
+        boolean hasCustomer = customer != null || customerPrefix != null;
+
+        if (isbn == null && !hasCustomer) {
+            return repository.findAll(pageable);
+        }
+
+        if (isbn == null) {
+            return customer != null
+                    ? repository.findByCustomer(customer, pageable)
+                    : repository.findByCustomerNormalizedStartingWith(customerPrefix, pageable);
+        }
+
+        if (!hasCustomer) {
+            return repository.findByBookIsbn(isbn, pageable);
+        }
+
+        if (Boolean.TRUE.equals(filter.getMatchAll())) {
+            return customer != null
+                    ? repository.findByBookIsbnAndCustomer(isbn, customer, pageable)
+                    : repository.findByBookIsbnAndCustomerPattern(isbn, escapeLike(customerPrefix) + "%", pageable);
+        }
+
+        Pageable limit = PageRequest.of(0, MAX_UNION_IDS + 1);
+        List<Long> byIsbn = repository.findIdsByIsbn(isbn, limit);
+        List<Long> byCustomer = customer != null
+                ? repository.findIdsByCustomer(customer, limit)
+                : repository.findIdsByCustomerPattern(escapeLike(customerPrefix) + "%", limit);
+
+        if (byIsbn.size() > MAX_UNION_IDS || byCustomer.size() > MAX_UNION_IDS) {
+            return customer != null
+                    ? repository.findByBookIsbnOrCustomer(isbn, customer, pageable)
+                    : repository.findByBookIsbnOrCustomerPattern(isbn, escapeLike(customerPrefix) + "%", pageable);
+        }
+
+        Set<Long> ids = new HashSet<>(byIsbn);
+        ids.addAll(byCustomer);
+
+        if (ids.isEmpty()) {
+            return Page.empty(pageable);
+        }
+
+        return new PageImpl<>(repository.findByIdIn(ids, pageable), pageable, ids.size());
     }
 
     @Override
     public Page<Loan> getLoansByBook(Book book, Pageable pageable) {
-        return repository.findByBook(book, pageable);
+        return singleFlight.execute("loans.byBook", Arrays.asList(book.getId(), pageable),
+                () -> repository.findByBook(book, pageable),
+                loans -> loans.map(Loan::copy));
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Set<Long> getTakenBookIds(Collection<Long> bookIds) {
+        if (bookIds.isEmpty()) {
+            return Collections.emptySet();
+        }
+
+        return new HashSet<>(repository.findTakenBookIdsByIds(bookIds));
     }
 
     @Override
+    @Transactional(readOnly = true)
     public List<Loan> getAllLateLoans() {
         LocalDate loanDateLimit = LocalDate.now().minusDays(LOAN_DAYS);
 
         return repository.findLateLoansByDate(loanDateLimit);
     }
+
+    /**
+     * Groups per customer email the late loans of the customers due for a notice; customers whose
+     * late loans were all notified less than {@code resendDays} ago are left out by the query
+     * until the cadence comes round. Customers are partitioned by the stored hash of their email
+     * and the query reads only partition {@code shard} out of {@code shards}.
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public List<OverdueDigest> getOverdueDigests(int resendDays, int shard, int shards) {
+        LocalDate today = LocalDate.now();
+
+        Map<String, List<Object[]>> rowsByEmail = repository
+                .findOverdueLoans(today.minusDays(LOAN_DAYS), today.minusDays(resendDays), shard, shards)
+                .stream()
+                .collect(Collectors.groupingBy(row -> (String) row[0], LinkedHashMap::new, Collectors.toList()));
+
+        return rowsByEmail.entrySet().stream()
+                .map(entry -> toOverdueDigest(entry.getKey(), entry.getValue()))
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    @Transactional
+    public void overdueNotified(OverdueDigest digest) {
+        List<Long> ids = digest.getLoans().stream()
+                .map(OverdueDigest.OverdueLoan::getLoanId)
+                .collect(Collectors.toList());
+
+        repository.updateLastNotified(ids, LocalDate.now());
+        digest.getLoans().forEach(loan -> journal.record(
+                LoanEventType.OVERDUE_NOTIFIED, loan.getLoanId(), loan.getBookId(), digest.getCustomer()));
+    }
+
+    /**
+     * Checks availability for all books with one query and inserts the accepted loans in a single
+     * JDBC batch. A book requested twice in the same batch is only lent to the first item.
+     */
+    @Override
+    @Transactional
+    public List<LoanBatchResultDTO> saveAll(List<Loan> loans) {
+        if (loans.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        List<Book> books = loans.stream()
+                .map(Loan::getBook)
+                .collect(Collectors.toList());
+
+        Set<Long> takenBookIds = new HashSet<>(repository.findTakenBookIds(books));
+        List<Loan> accepted = new ArrayList<>();
+        boolean[] available = new boolean[loans.size()];
+
+        for (int index = 0; index < loans.size(); index++) {
+            Loan loan = loans.get(index);
+
+            if (takenBookIds.add(loan.getBook().getId())) {
+                available[index] = true;
+                accepted.add(loan);
+            }
+        }
+
+        repository.saveAll(accepted);
+        if (!accepted.isEmpty()) {
+            bookRepository.addLoanCounters(accepted.stream().map(loan -> loan.getBook().getId()).collect(Collectors.toSet()), 1, 1);
+        }
+        analytics.loansOpened(accepted);
+        accepted.forEach(this::recordCheckout);
+
+        List<LoanBatchResultDTO> results = new ArrayList<>(loans.size());
+
+        for (int index = 0; index < loans.size(); index++) {
+            results.add(available[index]
+                    ? result(index, loans.get(index).getId(), HttpStatus.CREATED, null)
+                    : result(index, null, HttpStatus.BAD_REQUEST, BOOK_ALREADY_TAKEN));
+        }
+
+        return results;
+    }
+
+    /**
+     * Resolves the requested ids with one query and flips {@code returned} with at most one
+     * {@code UPDATE ... WHERE id IN (...)} per distinct value.
+     */
+    @Override
+    @Transactional
+    public List<LoanBatchResultDTO> updateReturned(List<ReturnedLoanBatchDTO> returnedLoans) {
+        if (returnedLoans.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        Set<Long> requestedIds = returnedLoans.stream()
+                .map(ReturnedLoanBatchDTO::getId)
+                .collect(Collectors.toSet());
+
+        Set<Long> existingIds = new HashSet<>(repository.findExistingIds(requestedIds));
+
+        Map<Boolean, Set<Long>> idsByReturned = returnedLoans.stream()
+                .filter(returnedLoan -> existingIds.contains(returnedLoan.getId()))
+                .collect(Collectors.groupingBy(
+                        returnedLoan -> Boolean.TRUE.equals(returnedLoan.getReturned()),
+                        Collectors.mapping(ReturnedLoanBatchDTO::getId, Collectors.toSet())
+                ));
+
+        idsByReturned.forEach((returned, ids) -> applyReturned(ids, returned));
+
+        List<LoanBatchResultDTO> results = new ArrayList<>(returnedLoans.size());
+
+        for (int index = 0; index < returnedLoans.size(); index++) {
+            Long id = returnedLoans.get(index).getId();
+
+            results.add(existingIds.contains(id)
+                    ? result(index, id, HttpStatus.OK, null)
+                    : result(index, id, HttpStatus.NOT_FOUND, LOAN_NOT_FOUND));
+        }
+
+        return results;
+    }
+
+    /**
+     * Flips {@code returned} for the loans not already in that state. The loans that will change
+     * are locked first, so the ones recorded are exactly the ones the update changes even when
+     * the same loans are returned concurrently.
+     */
+    private void applyReturned(Collection<Long> ids, boolean returned) {
+        List<Object[]> changing = returned
+                ? repository.findOpenLoanReferences(ids)
+                : repository.findReturnedLoanReferences(ids);
+
+        if (changing.isEmpty()) {
+            return;
+        }
+
+        repository.updateReturned(ids, returned);
+        recordReturned(changing, returned);
+    }
+
+    /**
+     * Records loans whose {@code returned} changed in the active loan counters of their books,
+     * the analytics rollups and, for returns, in the journal.
+     */
+    private void recordReturned(List<Object[]> changed, boolean returned) {
+        if (changed.isEmpty()) {
+            return;
+        }
+
+        Map<LocalDate, Long> countByLoanDate = new HashMap<>();
+        changed.forEach(row -> countByLoanDate.merge((LocalDate) row[3], 1L, Long::sum));
+
+        addActiveLoans(changed, returned ? -1 : 1);
+
+        if (returned) {
+            analytics.loansReturned(countByLoanDate);
+            changed.forEach(row -> journal.record(LoanEventType.RETURN, (Long) row[0], (Long) row[1], (String) row[2]));
+        } else {
+            analytics.loansReopened(countByLoanDate);
+        }
+    }
+
+    /**
+     * One counter update per distinct number of changed loans per book, which is a single update
+     * unless a book had several loans in the batch.
+     */
+    private void addActiveLoans(List<Object[]> changing, long sign) {
+        Map<Long, Long> countByBook = new HashMap<>();
+        changing.forEach(row -> countByBook.merge((Long) row[1], 1L, Long::sum));
+
+        countByBook.entrySet().stream()
+                .collect(Collectors.groupingBy(Map.Entry::getValue, Collectors.mapping(Map.Entry::getKey, Collectors.toSet())))
+                .forEach((count, bookIds) -> bookRepository.addLoanCounters(bookIds, 0, sign * count));
+    }
+
+    private void recordCheckout(Loan loan) {
+        journal.record(LoanEventType.CHECKOUT, loan.getId(), loan.getBook().getId(), loan.getCustomer());
+    }
+
+    private static LoanBatchResultDTO result(int index, Long id, HttpStatus status, String error) {
+        return LoanBatchResultDTO.builder()
+                .index(index)
+                .id(id)
+                .status(status.value())
+                .error(error)
+                .build();
+    }
+
+    private static String emptyToNull(String value) {
+        return value == null || value.trim().isEmpty() ? null : value;
+    }
+
+    private static String escapeLike(String value) {
+        return value.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+
+    private static OverdueDigest toOverdueDigest(String email, List<Object[]> rows) {
+        List<OverdueDigest.OverdueLoan> loans = rows.stream()
+                .map(row -> OverdueDigest.OverdueLoan.builder()
+                        .loanId((Long) row[2])
+                        .bookId((Long) row[3])
+                        .loanDate((LocalDate) row[4])
+                        .title((String) row[5])
+                        .build())
+                .collect(Collectors.toList());
+
+        String customer = rows.stream()
+                .map(row -> (String) row[1])
+                .filter(Objects::nonNull)
+                .max(Comparator.naturalOrder())
+                .orElse(null);
+
+        return OverdueDigest.builder()
+                .email(email)
+                .customer(customer)
+                .loans(loans)
+                .build();
+    }
 }
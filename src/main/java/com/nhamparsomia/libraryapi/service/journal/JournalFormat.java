@@ -0,0 +1,127 @@
+package com.nhamparsomia.libraryapi.service.journal;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.zip.CRC32;
+
+/**
+ * Record layout shared by the writer and the reader. Segments are zero filled when created, so a
+ * zero length marks the end of the written part; a record whose checksum does not match is a torn
+ * write from a crash and ends the journal as well.
+ *
+ * <pre>
+ * int   length of the body plus checksum
+ * byte  type
+ * long  sequence
+ * long  timestamp (epoch millis)
+ * long  loan id (0 when absent)
+ * long  book id (0 when absent)
+ * short customer length in bytes, followed by the UTF-8 customer
+ * int   CRC32 of the body
+ * </pre>
+ */
+final class JournalFormat {
+
+    static final String SEGMENT_SUFFIX = ".journal";
+    static final int LENGTH_BYTES = 4;
+    static final int CHECKSUM_BYTES = 4;
+    static final int FIXED_BODY_BYTES = 1 + 8 + 8 + 8 + 8 + 2;
+    static final int MAX_CUSTOMER_BYTES = 1024;
+
+    private JournalFormat() {
+    }
+
+    static int recordBytes(byte[] customer) {
+        return LENGTH_BYTES + FIXED_BODY_BYTES + customer.length + CHECKSUM_BYTES;
+    }
+
+    static byte[] customerBytes(String customer) {
+        byte[] bytes = customer == null ? new byte[0] : customer.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > MAX_CUSTOMER_BYTES) {
+            throw new IllegalArgumentException("Customer is too long for the loan journal");
+        }
+
+        return bytes;
+    }
+
+    static void write(ByteBuffer buffer, long sequence, LoanEventType type, long timestamp,
+                      Long loanId, Long bookId, byte[] customer, CRC32 crc) {
+        int start = buffer.position();
+        int bodyBytes = FIXED_BODY_BYTES + customer.length;
+
+        buffer.putInt(bodyBytes + CHECKSUM_BYTES);
+        buffer.put(type.code());
+        buffer.putLong(sequence);
+        buffer.putLong(timestamp);
+        buffer.putLong(loanId == null ? 0 : loanId);
+        buffer.putLong(bookId == null ? 0 : bookId);
+        buffer.putShort((short) customer.length);
+        buffer.put(customer);
+
+        crc.reset();
+        crc.update(buffer.duplicate().position(start + LENGTH_BYTES).limit(start + LENGTH_BYTES + bodyBytes));
+        buffer.putInt((int) crc.getValue());
+    }
+
+    /**
+     * Reads the record at the buffer position and moves past it, or returns {@code null} and leaves
+     * the position unchanged when the segment ends there.
+     */
+    static LoanEvent read(ByteBuffer buffer, CRC32 crc) {
+        int start = buffer.position();
+        if (buffer.remaining() < LENGTH_BYTES + FIXED_BODY_BYTES + CHECKSUM_BYTES) {
+            return null;
+        }
+
+        int length = buffer.getInt(start);
+        if (length < FIXED_BODY_BYTES + CHECKSUM_BYTES || length > buffer.remaining() - LENGTH_BYTES) {
+            return null;
+        }
+
+        int bodyStart = start + LENGTH_BYTES;
+        int bodyBytes = length - CHECKSUM_BYTES;
+
+        crc.reset();
+        crc.update(buffer.duplicate().position(bodyStart).limit(bodyStart + bodyBytes));
+        if ((int) crc.getValue() != buffer.getInt(bodyStart + bodyBytes)) {
+            return null;
+        }
+
+        int customerBytes = Short.toUnsignedInt(buffer.getShort(bodyStart + FIXED_BODY_BYTES - 2));
+        if (customerBytes != bodyBytes - FIXED_BODY_BYTES) {
+            return null;
+        }
+
+        byte[] customer = new byte[customerBytes];
+        buffer.position(bodyStart + FIXED_BODY_BYTES);
+        buffer.get(customer);
+        buffer.position(bodyStart + bodyBytes + CHECKSUM_BYTES);
+
+        long loanId = buffer.getLong(bodyStart + 1 + 8 + 8);
+        long bookId = buffer.getLong(bodyStart + 1 + 8 + 8 + 8);
+
+        return LoanEvent.builder()
+                .type(LoanEventType.of(buffer.get(bodyStart)))
+                .sequence(buffer.getLong(bodyStart + 1))
+                .timestamp(buffer.getLong(bodyStart + 1 + 8))
+                .loanId(loanId == 0 ? null : loanId)
+                .bookId(bookId == 0 ? null : bookId)
+                .customer(customerBytes == 0 ? null : new String(customer, StandardCharsets.UTF_8))
+                .build();
+    }
+
+    static String segmentName(long firstSequence) {
+        return String.format("%020d%s", firstSequence, SEGMENT_SUFFIX);
+    }
+
+    static long firstSequence(Path segment) {
+        String name = segment.getFileName().toString();
+        return Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    static boolean isSegment(Path path) {
+        String name = path.getFileName().toString();
+        return name.endsWith(SEGMENT_SUFFIX) && name.length() == 20 + SEGMENT_SUFFIX.length();
+    }
+}
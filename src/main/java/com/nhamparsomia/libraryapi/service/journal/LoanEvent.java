@@ -0,0 +1,19 @@
+package com.nhamparsomia.libraryapi.service.journal;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class LoanEvent {
+    private long sequence;
+    private LoanEventType type;
+    private long timestamp;
+    private Long loanId;
+    private Long bookId;
+    private String customer;
+}
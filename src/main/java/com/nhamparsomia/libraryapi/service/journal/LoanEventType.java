@@ -0,0 +1,27 @@
+package com.nhamparsomia.libraryapi.service.journal;
+
+public enum LoanEventType {
+    CHECKOUT(1),
+    RETURN(2),
+    OVERDUE_NOTIFIED(3);
+
+    private final byte code;
+
+    LoanEventType(int code) {
+        this.code = (byte) code;
+    }
+
+    byte code() {
+        return code;
+    }
+
+    static LoanEventType of(byte code) {
+        for (LoanEventType type : values()) {
+            if (type.code == code) {
+                return type;
+            }
+        }
+
+        throw new IllegalArgumentException("Unknown loan event type " + code);
+    }
+}
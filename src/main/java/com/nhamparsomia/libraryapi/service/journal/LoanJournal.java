@@ -0,0 +1,384 @@
+package com.nhamparsomia.libraryapi.service.journal;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only audit journal of loan checkouts, returns and overdue notices, enabled with
+ * {@code application.journal.enabled=true}. Callers only encode and enqueue; a single writer
+ * thread owns the memory-mapped segment, writes whatever is queued and forces it to disk once per
+ * batch, so under load one fsync covers many events. Segments roll over when full and are named
+ * after their first sequence number.
+ *
+ * <p>Events recorded inside a transaction are enqueued together after it commits. An event is
+ * durable once the batch holding it has been forced; {@link #flush()} waits for that, and so does
+ * the commit, once for all its events, for up to {@code sync-timeout-ms}, which is how long a
+ * commit may be held up by the group fsync. With {@code sync-timeout-ms=0}, or once that wait runs out, a crash may lose
+ * events already acknowledged: at most those still queued or in the batch being written. When the
+ * queue stays full for {@code enqueue-timeout-ms} the event is dropped and counted instead of
+ * blocking the caller.
+ */
+@Slf4j
+@Component
+@Lazy(false)
+public class LoanJournal implements InitializingBean, DisposableBean, MeterBinder {
+
+    static final int MIN_SEGMENT_BYTES = 4096;
+
+    private static final int MAX_BATCH = 4096;
+    private static final long POLL_MILLIS = 100;
+    private static final long SHUTDOWN_MILLIS = 10_000;
+
+    private final boolean enabled;
+    private final Path directory;
+    private final int segmentBytes;
+    private final BlockingQueue<Object> queue;
+    private final long enqueueTimeoutMillis;
+    private final long syncTimeoutMillis;
+    private final LongAdder dropped = new LongAdder();
+    private final Object pendingEntries = new Object();
+
+    private final CRC32 crc = new CRC32();
+    private final List<Object> batch = new ArrayList<>(MAX_BATCH);
+    private final List<CompletableFuture<Long>> barriers = new ArrayList<>();
+    private MappedByteBuffer segment;
+    private long nextSequence;
+
+    private volatile long forcedSequence;
+    private volatile boolean running;
+    private Thread writer;
+
+    public LoanJournal(@Value("${application.journal.enabled:false}") boolean enabled,
+                       @Value("${application.journal.directory:journal}") String directory,
+                       @Value("${application.journal.segment-bytes:67108864}") int segmentBytes,
+                       @Value("${application.journal.queue-capacity:65536}") int queueCapacity,
+                       @Value("${application.journal.enqueue-timeout-ms:100}") long enqueueTimeoutMillis,
+                       @Value("${application.journal.sync-timeout-ms:1000}") long syncTimeoutMillis) {
+        if (segmentBytes < MIN_SEGMENT_BYTES) {
+            throw new IllegalArgumentException("Journal segments must have at least " + MIN_SEGMENT_BYTES + " bytes");
+        }
+
+        this.enabled = enabled;
+        this.directory = Paths.get(directory);
+        this.segmentBytes = segmentBytes;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.enqueueTimeoutMillis = enqueueTimeoutMillis;
+        this.syncTimeoutMillis = syncTimeoutMillis;
+    }
+
+    @Override
+    public void afterPropertiesSet() throws IOException {
+        if (!enabled) {
+            return;
+        }
+
+        Files.createDirectories(directory);
+        recover();
+
+        running = true;
+        writer = new Thread(this::writeLoop, "loan-journal-writer");
+        writer.setDaemon(true);
+        writer.start();
+
+        log.info("Loan journal open at {}, next sequence {}", directory.toAbsolutePath(), nextSequence);
+    }
+
+    @Override
+    public void destroy() throws InterruptedException {
+        if (writer == null) {
+            return;
+        }
+
+        running = false;
+        writer.join(SHUTDOWN_MILLIS);
+
+        // left behind only if the writer did not finish in time, or enqueued after it stopped
+        List<Object> abandoned = new ArrayList<>();
+        queue.drainTo(abandoned);
+        abandoned.forEach(this::reject);
+    }
+
+    /**
+     * Journals one event. Inside a transaction the events are collected and enqueued together once
+     * it commits, and the commit waits for a single flush covering all of them.
+     */
+    @SuppressWarnings("unchecked")
+    public void record(LoanEventType type, Long loanId, Long bookId, String customer) {
+        if (!enabled) {
+            return;
+        }
+
+        Entry entry = new Entry(type, System.currentTimeMillis(), loanId, bookId, JournalFormat.customerBytes(customer));
+
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            append(Collections.singletonList(entry));
+            return;
+        }
+
+        List<Entry> pending = (List<Entry>) TransactionSynchronizationManager.getResource(pendingEntries);
+        if (pending == null) {
+            List<Entry> entries = new ArrayList<>();
+            TransactionSynchronizationManager.bindResource(pendingEntries, entries);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCommit() {
+                    append(entries);
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(pendingEntries);
+                }
+            });
+            pending = entries;
+        }
+
+        pending.add(entry);
+    }
+
+    /**
+     * Completes with the last durable sequence once everything enqueued before this call has been
+     * forced to disk.
+     */
+    public CompletableFuture<Long> flush() {
+        CompletableFuture<Long> barrier = new CompletableFuture<>();
+
+        if (!enabled) {
+            barrier.complete(forcedSequence);
+        } else {
+            enqueue(barrier);
+        }
+
+        return barrier;
+    }
+
+    public long replay(long fromSequence, Consumer<LoanEvent> consumer) {
+        return new LoanJournalReader(directory).replay(fromSequence, consumer);
+    }
+
+    public long getForcedSequence() {
+        return forcedSequence;
+    }
+
+    public long getDropped() {
+        return dropped.sum();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("library.journal.queue", queue, BlockingQueue::size)
+                .description("Loan events waiting for the journal writer")
+                .register(registry);
+        Gauge.builder("library.journal.sequence", this, LoanJournal::getForcedSequence)
+                .description("Last loan event sequence forced to disk")
+                .register(registry);
+        FunctionCounter.builder("library.journal.dropped", dropped, LongAdder::doubleValue)
+                .description("Loan events dropped because the journal was full or closed")
+                .register(registry);
+    }
+
+    private void append(List<Entry> entries) {
+        int queued = 0;
+        for (Entry entry : entries) {
+            if (enqueue(entry)) {
+                queued++;
+            }
+        }
+
+        if (queued == 0 || syncTimeoutMillis <= 0) {
+            return;
+        }
+
+        try {
+            flush().get(syncTimeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            log.warn("{} loan events not forced to the journal after {}ms", queued, syncTimeoutMillis);
+        } catch (ExecutionException e) {
+            log.warn("{} loan events may not have been forced to the journal", queued, e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private boolean enqueue(Object item) {
+        if (!running) {
+            reject(item);
+            return false;
+        }
+
+        boolean queued;
+        try {
+            queued = queue.offer(item, enqueueTimeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            queued = false;
+        }
+
+        // stopped meanwhile: the writer may already have exited, so whoever takes the item back
+        // out of the queue rejects it
+        if (!queued || (!running && queue.remove(item))) {
+            reject(item);
+            return false;
+        }
+
+        return true;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void reject(Object item) {
+        if (item instanceof Entry) {
+            dropped.increment();
+            log.warn("Loan journal is {}, dropping {}", running ? "full" : "closed", item);
+        } else {
+            ((CompletableFuture<Long>) item).completeExceptionally(
+                    new IllegalStateException("Loan journal is " + (running ? "full" : "closed")));
+        }
+    }
+
+    private void writeLoop() {
+        while (running || !queue.isEmpty()) {
+            Object first;
+            try {
+                first = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                continue;
+            }
+
+            if (first != null) {
+                batch.add(first);
+                queue.drainTo(batch, MAX_BATCH - 1);
+                writeBatch();
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void writeBatch() {
+        try {
+            for (Object item : batch) {
+                if (item instanceof Entry) {
+                    write((Entry) item);
+                } else {
+                    barriers.add((CompletableFuture<Long>) item);
+                }
+            }
+
+            segment.force();
+            forcedSequence = nextSequence - 1;
+            barriers.forEach(barrier -> barrier.complete(forcedSequence));
+        } catch (IOException | RuntimeException e) {
+            log.error("Could not write {} items to the loan journal", batch.size(), e);
+            barriers.forEach(barrier -> barrier.completeExceptionally(e));
+        } finally {
+            batch.clear();
+            barriers.clear();
+        }
+    }
+
+    private void write(Entry entry) throws IOException {
+        if (segment.remaining() < JournalFormat.recordBytes(entry.customer)) {
+            segment.force();
+            segment = map(nextSequence);
+        }
+
+        JournalFormat.write(segment, nextSequence++, entry.type, entry.timestamp, entry.loanId, entry.bookId, entry.customer, crc);
+    }
+
+    /**
+     * Continues the last segment after its last complete record. A torn record left by a crash is
+     * zeroed so that it cannot be mistaken for data once new records are written before it.
+     */
+    private void recover() throws IOException {
+        List<Path> segments = LoanJournalReader.segments(directory);
+        if (segments.isEmpty()) {
+            nextSequence = 1;
+            segment = map(nextSequence);
+            return;
+        }
+
+        long firstSequence = JournalFormat.firstSequence(segments.get(segments.size() - 1));
+        segment = map(firstSequence);
+        nextSequence = firstSequence;
+
+        LoanEvent event;
+        while ((event = JournalFormat.read(segment, crc)) != null) {
+            nextSequence = event.getSequence() + 1;
+        }
+
+        int end = segment.position();
+        if (segment.remaining() >= JournalFormat.LENGTH_BYTES && segment.getInt(end) != 0) {
+            log.warn("Discarding a torn record at position {} of loan journal segment {}", end, JournalFormat.segmentName(firstSequence));
+
+            ByteBuffer zeros = ByteBuffer.allocate(8192);
+            while (segment.hasRemaining()) {
+                zeros.clear().limit(Math.min(zeros.capacity(), segment.remaining()));
+                segment.put(zeros);
+            }
+            segment.position(end);
+            segment.force();
+        }
+
+        forcedSequence = nextSequence - 1;
+    }
+
+    private MappedByteBuffer map(long firstSequence) throws IOException {
+        Path path = directory.resolve(JournalFormat.segmentName(firstSequence));
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long size = Math.max(channel.size(), segmentBytes);
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        }
+    }
+
+    private static class Entry {
+        private final LoanEventType type;
+        private final long timestamp;
+        private final Long loanId;
+        private final Long bookId;
+        private final byte[] customer;
+
+        Entry(LoanEventType type, long timestamp, Long loanId, Long bookId, byte[] customer) {
+            this.type = type;
+            this.timestamp = timestamp;
+            this.loanId = loanId;
+            this.bookId = bookId;
+            this.customer = customer;
+        }
+
+        @Override
+        public String toString() {
+            return type + " event for loan " + loanId;
+        }
+    }
+}
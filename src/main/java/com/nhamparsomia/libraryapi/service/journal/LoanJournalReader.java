@@ -0,0 +1,77 @@
+package com.nhamparsomia.libraryapi.service.journal;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Replays the journal segments of a directory in sequence order. Safe to use while the journal is
+ * being written: it stops at the last complete record it sees.
+ */
+public class LoanJournalReader {
+
+    private final Path directory;
+
+    public LoanJournalReader(Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Passes every record with a sequence of at least {@code fromSequence} to the consumer and
+     * returns how many were replayed.
+     */
+    public long replay(long fromSequence, Consumer<LoanEvent> consumer) {
+        List<Path> segments = segments(directory);
+        CRC32 crc = new CRC32();
+        long replayed = 0;
+
+        for (int index = 0; index < segments.size(); index++) {
+            boolean hasLaterSegment = index + 1 < segments.size();
+            if (hasLaterSegment && JournalFormat.firstSequence(segments.get(index + 1)) <= fromSequence) {
+                continue;
+            }
+
+            MappedByteBuffer buffer = map(segments.get(index));
+            LoanEvent event;
+            while ((event = JournalFormat.read(buffer, crc)) != null) {
+                if (event.getSequence() >= fromSequence) {
+                    consumer.accept(event);
+                    replayed++;
+                }
+            }
+        }
+
+        return replayed;
+    }
+
+    static List<Path> segments(Path directory) {
+        if (!Files.isDirectory(directory)) {
+            return List.of();
+        }
+
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(JournalFormat::isSegment)
+                    .sorted()
+                    .collect(Collectors.toList());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static MappedByteBuffer map(Path segment) {
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ)) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package com.nhamparsomia.libraryapi.service.memory;
+
+import com.nhamparsomia.libraryapi.exception.BusinessException;
+import com.nhamparsomia.libraryapi.model.entity.Book;
+import com.nhamparsomia.libraryapi.service.BookService;
+import com.nhamparsomia.libraryapi.service.impl.BookServiceImpl;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Service;
+
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+/**
+ * {@link BookService} of the {@code in-memory} profile, backed by {@link InMemoryLibrary}.
+ */
+@Service
+@Profile("in-memory")
+public class InMemoryBookService implements BookService {
+
+    private final InMemoryLibrary library;
+
+    InMemoryBookService(InMemoryLibrary library) {
+        this.library = library;
+    }
+
+    @Override
+    public Book save(Book book) {
+        if (library.insertBook(book) == null) {
+            throw new BusinessException("Isbn já cadastrado.");
+        }
+
+        return book;
+    }
+
+    @Override
+    public Optional<Book> getById(Long id) {
+        return Optional.ofNullable(library.findBook(id));
+    }
+
+    @Override
+    public List<Book> getBooksById(Collection<Long> ids) {
+        return ids.stream()
+                .distinct()
+                .map(library::findBook)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public void delete(Book book) {
+        if (book.getId() == null) {
+            throw new IllegalArgumentException("Book id cant be null");
+        }
+
+        library.deleteBook(book.getId());
+    }
+
+    @Override
+    public Book update(Book book) {
+        if (book.getId() == null) {
+            throw new IllegalArgumentException("Book id cant be null");
+        }
+
+        return library.replaceBook(book);
+    }
+
+    @Override
+    public int updateAuthorAndTitle(Long id, String author, String title) {
+        return library.updateAuthorAndTitle(id, author, title) ? 1 : 0;
+    }
+
+    /**
+     * Matches like the JPA search: the id exactly, the other fields as case-insensitive
+     * substrings, ignoring the fields left empty.
+     */
+    @Override
+    public Page<Book> find(Book filter, Pageable pageRequest) {
+        String title = lowerCase(filter.getTitle());
+        String author = lowerCase(filter.getAuthor());
+        String isbn = lowerCase(filter.getIsbn());
+        Long id = filter.getId();
+
+        Predicate<Book> matches = book -> contains(book.getTitle(), title)
+                && contains(book.getAuthor(), author)
+                && contains(book.getIsbn(), isbn);
+
+        List<Book> books = id == null
+                ? library.scanBooks(matches)
+                : getById(id).filter(matches).map(List::of).orElse(List.of());
+
+        return InMemoryLibrary.page(books, byPopularity(pageRequest), Book.class, InMemoryBookService::comparator);
+    }
+
+    @Override
+    public Optional<Book> getBookByIsbn(String isbn) {
+        return Optional.ofNullable(library.findBookByIsbn(isbn));
+    }
+
+    @Override
+    public List<Book> getBooksByIsbn(Collection<String> isbns) {
+        return isbns.stream()
+                .distinct()
+                .map(library::findBookByIsbn)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Popularity always lists the most borrowed books first, whatever direction was asked, as in
+     * the JPA search.
+     */
+    private static Pageable byPopularity(Pageable pageRequest) {
+        Sort sort = Sort.by(pageRequest.getSort().stream()
+                .map(order -> BookServiceImpl.SORT_POPULARITY.equals(order.getProperty()) ? order.with(Sort.Direction.ASC) : order)
+                .collect(Collectors.toList()));
+
+        return pageRequest.isPaged() ? PageRequest.of(pageRequest.getPageNumber(), pageRequest.getPageSize(), sort) : pageRequest;
+    }
+
+    private static Comparator<Book> comparator(String property) {
+        switch (property) {
+            case "id":
+                return Comparator.comparing(Book::getId);
+            case "title":
+                return text(Book::getTitle);
+            case "author":
+                return text(Book::getAuthor);
+            case "isbn":
+                return text(Book::getIsbn);
+            case "totalLoans":
+                return Comparator.comparing(Book::getTotalLoans);
+            case "activeLoans":
+                return Comparator.comparing(Book::getActiveLoans);
+            case BookServiceImpl.SORT_POPULARITY:
+                return (first, second) -> {
+                    int byLoans = Long.compare(second.getTotalLoans(), first.getTotalLoans());
+                    return byLoans != 0 ? byLoans : Long.compare(second.getId(), first.getId());
+                };
+            default:
+                return null;
+        }
+    }
+
+    private static Comparator<Book> text(Function<Book, String> field) {
+        return Comparator.comparing(field, Comparator.nullsFirst(Comparator.naturalOrder()));
+    }
+
+    private static boolean contains(String value, String lowerCaseFilter) {
+        return lowerCaseFilter == null || (value != null && value.toLowerCase().contains(lowerCaseFilter));
+    }
+
+    private static String lowerCase(String value) {
+        return value == null ? null : value.toLowerCase();
+    }
+}
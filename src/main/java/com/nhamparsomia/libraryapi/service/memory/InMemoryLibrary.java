@@ -0,0 +1,478 @@
+package com.nhamparsomia.libraryapi.service.memory;
+
+import com.nhamparsomia.libraryapi.model.entity.Book;
+import com.nhamparsomia.libraryapi.model.entity.Loan;
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mapping.PropertyReferenceException;
+import org.springframework.data.util.ClassTypeInformation;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.stream.LongStream;
+
+/**
+ * Books and loans of the {@code in-memory} profile, held in the heap of this instance instead of
+ * the database. Rows live in {@link PagedArray} tables keyed by id, with secondary indexes on
+ * ISBN, the open loan of each book, the normalized customer and the loan date, and loan
+ * counters per book in {@link PagedLongArray}s.
+ *
+ * <p>Rows are immutable once stored and replaced as a whole, so reads never lock. Changes to a
+ * book and its loans are serialized by one of {@value #STRIPES} locks picked by book id, which
+ * makes checking out a book and marking it as taken a single step. The customer and date indexes
+ * are copy-on-write id arrays under their own striped locks; an entry may outlive a change of
+ * the indexed value, so readers check every candidate against its current row.
+ *
+ * <p>Callers only ever get copies, with the loans pointing at the current row of their book.
+ */
+@Component
+@Profile("in-memory")
+class InMemoryLibrary {
+
+    private static final int STRIPES = 64;
+    private static final long[] NO_IDS = new long[0];
+
+    private final AtomicLong bookSequence = new AtomicLong();
+    private final AtomicLong loanSequence = new AtomicLong();
+
+    private final PagedArray<Book> books = new PagedArray<>();
+    private final PagedArray<Loan> loans = new PagedArray<>();
+
+    private final ConcurrentMap<String, Long> bookIdByIsbn = new ConcurrentHashMap<>();
+    private final PagedLongArray openLoanByBook = new PagedLongArray();
+    private final PagedLongArray totalLoansByBook = new PagedLongArray();
+    private final PagedLongArray activeLoansByBook = new PagedLongArray();
+    private final PagedArray<long[]> loanIdsByBook = new PagedArray<>();
+    private final ConcurrentSkipListMap<String, long[]> loanIdsByCustomer = new ConcurrentSkipListMap<>();
+    private final ConcurrentSkipListMap<LocalDate, long[]> loanIdsByDate = new ConcurrentSkipListMap<>();
+
+    private final Object[] bookLocks = locks();
+    private final Object[] indexLocks = locks();
+
+    /**
+     * Stores a new book and sets its id, or returns {@code null} if its ISBN is already taken.
+     */
+    Book insertBook(Book book) {
+        long id = bookSequence.incrementAndGet();
+
+        if (book.getIsbn() != null && bookIdByIsbn.putIfAbsent(book.getIsbn(), id) != null) {
+            return null;
+        }
+
+        book.setId(id);
+        books.set(id, row(book));
+        return book;
+    }
+
+    Book replaceBook(Book book) {
+        long id = book.getId();
+
+        synchronized (bookLock(id)) {
+            Book previous = books.get(id);
+            if (previous != null && previous.getIsbn() != null && !previous.getIsbn().equals(book.getIsbn())) {
+                bookIdByIsbn.remove(previous.getIsbn(), id);
+            }
+            if (book.getIsbn() != null) {
+                bookIdByIsbn.putIfAbsent(book.getIsbn(), id);
+            }
+
+            books.set(id, row(book));
+            return view(books.get(id));
+        }
+    }
+
+    boolean updateAuthorAndTitle(long id, String author, String title) {
+        synchronized (bookLock(id)) {
+            Book previous = books.get(id);
+            if (previous == null) {
+                return false;
+            }
+
+            Book book = row(previous);
+            book.setAuthor(author);
+            book.setTitle(title);
+            books.set(id, book);
+            return true;
+        }
+    }
+
+    /**
+     * Removes a book, failing like the foreign key of the database would if it has loans.
+     */
+    void deleteBook(long id) {
+        synchronized (bookLock(id)) {
+            if (ids(loanIdsByBook.get(id)).length > 0) {
+                throw new DataIntegrityViolationException("Book " + id + " is referenced by loans");
+            }
+
+            Book previous = books.get(id);
+            if (previous != null) {
+                books.set(id, null);
+                if (previous.getIsbn() != null) {
+                    bookIdByIsbn.remove(previous.getIsbn(), id);
+                }
+            }
+        }
+    }
+
+    Book findBook(long id) {
+        return view(books.get(id));
+    }
+
+    Book findBookByIsbn(String isbn) {
+        Long id = bookIdByIsbn.get(isbn);
+        return id == null ? null : findBook(id);
+    }
+
+    boolean bookExists(long id) {
+        return books.get(id) != null;
+    }
+
+    /**
+     * Copies of the books matching {@code filter}, which is applied to the stored rows.
+     */
+    List<Book> scanBooks(Predicate<Book> filter) {
+        List<Book> matches = new ArrayList<>();
+        long last = bookSequence.get();
+
+        for (long id = 1; id <= last; id++) {
+            Book book = books.get(id);
+            if (book != null && filter.test(book)) {
+                matches.add(view(book));
+            }
+        }
+
+        return matches;
+    }
+
+    /**
+     * Stores {@code loan} as open and marks its book as taken, or returns {@code null} if the
+     * book already has an open loan. Sets the id of {@code loan} like persisting it would.
+     */
+    Loan checkout(Loan loan) {
+        long bookId = loan.getBook().getId();
+
+        synchronized (bookLock(bookId)) {
+            if (!bookExists(bookId)) {
+                throw new DataIntegrityViolationException("Book " + bookId + " does not exist");
+            }
+            if (openLoanByBook.get(bookId) != 0) {
+                return null;
+            }
+
+            long id = loanSequence.incrementAndGet();
+            loan.setId(id);
+            loan.setCustomerNormalized(Loan.normalizeCustomer(loan.getCustomer()));
+
+            Loan row = row(loan, bookId);
+            loans.set(id, row);
+            openLoanByBook.set(bookId, id);
+            totalLoansByBook.addAndGet(bookId, 1);
+            activeLoansByBook.addAndGet(bookId, 1);
+            loanIdsByBook.set(bookId, append(loanIdsByBook.get(bookId), id));
+            index(row);
+
+            return view(row);
+        }
+    }
+
+    Loan findLoan(long id) {
+        return view(loans.get(id));
+    }
+
+    /**
+     * Flips {@code returned} and returns the changed loan, or {@code null} if the loan does not
+     * exist or is already in that state.
+     */
+    Loan setReturned(long id, boolean returned) {
+        Loan current = loans.get(id);
+        if (current == null) {
+            return null;
+        }
+
+        long bookId = current.getBook().getId();
+        synchronized (bookLock(bookId)) {
+            current = loans.get(id);
+            if (isReturned(current) == returned) {
+                return null;
+            }
+
+            Loan row = row(current, bookId);
+            row.setReturned(returned);
+            loans.set(id, row);
+            trackReturned(row, returned);
+
+            return view(row);
+        }
+    }
+
+    /**
+     * Replaces the stored fields of a loan, keeping its book. Returns {@code null} if it does not
+     * exist.
+     */
+    Loan replaceLoan(Loan loan) {
+        Loan current = loans.get(loan.getId());
+        if (current == null) {
+            return null;
+        }
+
+        long bookId = current.getBook().getId();
+        synchronized (bookLock(bookId)) {
+            current = loans.get(loan.getId());
+            boolean returned = isReturned(loan);
+
+            Loan row = row(loan, bookId);
+            row.setCustomerNormalized(Loan.normalizeCustomer(loan.getCustomer()));
+            loans.set(loan.getId(), row);
+            if (isReturned(current) != returned) {
+                trackReturned(row, returned);
+            }
+            if (!Objects.equals(current.getCustomerNormalized(), row.getCustomerNormalized())
+                    || !Objects.equals(current.getLoanDate(), row.getLoanDate())) {
+                index(row);
+            }
+
+            return view(row);
+        }
+    }
+
+    void markNotified(Collection<Long> ids, LocalDate date) {
+        for (Long id : ids) {
+            Loan current = loans.get(id);
+            if (current == null) {
+                continue;
+            }
+
+            long bookId = current.getBook().getId();
+            synchronized (bookLock(bookId)) {
+                Loan row = row(loans.get(id), bookId);
+                row.setLastNotified(date);
+                loans.set(id, row);
+            }
+        }
+    }
+
+    boolean isTaken(long bookId) {
+        return openLoanByBook.get(bookId) != 0;
+    }
+
+    boolean loanExists(long id) {
+        return loans.get(id) != null;
+    }
+
+    List<Loan> allLoans() {
+        return views(LongStream.rangeClosed(1, loanSequence.get()).toArray(), loan -> true);
+    }
+
+    List<Loan> loansOfBook(long bookId) {
+        return views(ids(loanIdsByBook.get(bookId)), loan -> true);
+    }
+
+    List<Loan> loansOfCustomer(String customer) {
+        return views(Arrays.stream(ids(loanIdsByCustomer.get(Loan.normalizeCustomer(customer)))).distinct().toArray(),
+                loan -> customer.equals(loan.getCustomer()));
+    }
+
+    List<Loan> loansOfCustomerPrefix(String normalizedPrefix) {
+        return views(merge(loanIdsByCustomer.subMap(normalizedPrefix, true, normalizedPrefix + Character.MAX_VALUE, true)),
+                loan -> loan.getCustomerNormalized() != null && loan.getCustomerNormalized().startsWith(normalizedPrefix));
+    }
+
+    /**
+     * Open loans made on or before {@code loanDateLimit}.
+     */
+    List<Loan> openLoansDueBy(LocalDate loanDateLimit) {
+        return views(merge(loanIdsByDate.headMap(loanDateLimit, true)),
+                loan -> !isReturned(loan) && loan.getLoanDate() != null && !loan.getLoanDate().isAfter(loanDateLimit));
+    }
+
+    static boolean isReturned(Loan loan) {
+        return Boolean.TRUE.equals(loan.getReturned());
+    }
+
+    /**
+     * Sorts and pages like a repository query, resolving sort properties with {@code comparators};
+     * a property it does not know fails as it would against the entity.
+     */
+    static <T> Page<T> page(List<T> rows, Pageable pageable, Class<T> type, Function<String, Comparator<T>> comparators) {
+        Comparator<T> comparator = null;
+        for (Sort.Order order : pageable.getSort()) {
+            Comparator<T> next = comparators.apply(order.getProperty());
+            if (next == null) {
+                throw new PropertyReferenceException(order.getProperty(), ClassTypeInformation.from(type), Collections.emptyList());
+            }
+
+            next = order.isDescending() ? next.reversed() : next;
+            comparator = comparator == null ? next : comparator.thenComparing(next);
+        }
+
+        List<T> sorted = new ArrayList<>(rows);
+        if (comparator != null) {
+            sorted.sort(comparator);
+        }
+
+        if (pageable.isUnpaged()) {
+            return new PageImpl<>(sorted, pageable, sorted.size());
+        }
+
+        int from = (int) Math.min(pageable.getOffset(), sorted.size());
+        int to = Math.min(from + pageable.getPageSize(), sorted.size());
+
+        return new PageImpl<>(new ArrayList<>(sorted.subList(from, to)), pageable, sorted.size());
+    }
+
+    private void trackReturned(Loan row, boolean returned) {
+        long bookId = row.getBook().getId();
+
+        if (returned) {
+            activeLoansByBook.addAndGet(bookId, -1);
+            if (openLoanByBook.get(bookId) == row.getId()) {
+                openLoanByBook.set(bookId, otherOpenLoan(bookId));
+            }
+        } else {
+            activeLoansByBook.addAndGet(bookId, 1);
+            if (openLoanByBook.get(bookId) == 0) {
+                openLoanByBook.set(bookId, row.getId());
+            }
+        }
+    }
+
+    /**
+     * A loan reopened while its book was lent again leaves the book with two open loans; the
+     * book stays taken until both are returned.
+     */
+    private long otherOpenLoan(long bookId) {
+        for (long id : ids(loanIdsByBook.get(bookId))) {
+            if (!isReturned(loans.get(id))) {
+                return id;
+            }
+        }
+        return 0;
+    }
+
+    private void index(Loan row) {
+        if (row.getCustomerNormalized() != null) {
+            appendTo(loanIdsByCustomer, row.getCustomerNormalized(), row.getId());
+        }
+        if (row.getLoanDate() != null) {
+            appendTo(loanIdsByDate, row.getLoanDate(), row.getId());
+        }
+    }
+
+    private <K> void appendTo(ConcurrentMap<K, long[]> index, K key, long id) {
+        synchronized (indexLocks[Math.floorMod(key.hashCode(), STRIPES)]) {
+            index.put(key, append(index.get(key), id));
+        }
+    }
+
+    private Object bookLock(long bookId) {
+        return bookLocks[(int) Math.floorMod(bookId, (long) STRIPES)];
+    }
+
+    private List<Loan> views(long[] ids, Predicate<Loan> stillMatches) {
+        List<Loan> views = new ArrayList<>(ids.length);
+
+        for (long id : ids) {
+            Loan loan = loans.get(id);
+            if (loan != null && stillMatches.test(loan)) {
+                views.add(view(loan));
+            }
+        }
+
+        return views;
+    }
+
+    private Book view(Book row) {
+        if (row == null) {
+            return null;
+        }
+
+        Book book = row(row);
+        book.setTotalLoans(totalLoansByBook.get(row.getId()));
+        book.setActiveLoans(activeLoansByBook.get(row.getId()));
+        return book;
+    }
+
+    private Loan view(Loan row) {
+        if (row == null) {
+            return null;
+        }
+
+        Loan loan = row(row, row.getBook().getId());
+        loan.setBook(findBook(row.getBook().getId()));
+        return loan;
+    }
+
+    private static Book row(Book book) {
+        return Book.builder()
+                .id(book.getId())
+                .title(book.getTitle())
+                .author(book.getAuthor())
+                .isbn(book.getIsbn())
+                .build();
+    }
+
+    private static Loan row(Loan loan, long bookId) {
+        return Loan.builder()
+                .id(loan.getId())
+                .customer(loan.getCustomer())
+                .customerNormalized(loan.getCustomerNormalized())
+                .customerEmail(loan.getCustomerEmail())
+                .book(Book.builder().id(bookId).build())
+                .loanDate(loan.getLoanDate())
+                .returned(loan.getReturned())
+                .lastNotified(loan.getLastNotified())
+                .build();
+    }
+
+    /**
+     * The distinct ids of several index entries, in id order.
+     */
+    private static long[] merge(NavigableMap<?, long[]> entries) {
+        return entries.values().stream()
+                .flatMapToLong(Arrays::stream)
+                .sorted()
+                .distinct()
+                .toArray();
+    }
+
+    private static long[] ids(long[] ids) {
+        return ids == null ? NO_IDS : ids;
+    }
+
+    private static long[] append(long[] ids, long id) {
+        if (ids == null) {
+            return new long[]{id};
+        }
+
+        long[] appended = Arrays.copyOf(ids, ids.length + 1);
+        appended[ids.length] = id;
+        return appended;
+    }
+
+    private static Object[] locks() {
+        Object[] locks = new Object[STRIPES];
+        for (int stripe = 0; stripe < STRIPES; stripe++) {
+            locks[stripe] = new Object();
+        }
+        return locks;
+    }
+}
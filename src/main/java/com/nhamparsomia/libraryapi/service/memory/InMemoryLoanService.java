@@ -0,0 +1,318 @@
+package com.nhamparsomia.libraryapi.service.memory;
+
+import com.nhamparsomia.libraryapi.api.dto.LoanBatchResultDTO;
+import com.nhamparsomia.libraryapi.api.dto.LoanFilterDTO;
+import com.nhamparsomia.libraryapi.api.dto.ReturnedLoanBatchDTO;
+import com.nhamparsomia.libraryapi.exception.BusinessException;
+import com.nhamparsomia.libraryapi.model.entity.Book;
+import com.nhamparsomia.libraryapi.model.entity.Loan;
+import com.nhamparsomia.libraryapi.service.LoanService;
+import com.nhamparsomia.libraryapi.service.journal.LoanEventType;
+import com.nhamparsomia.libraryapi.service.journal.LoanJournal;
+import com.nhamparsomia.libraryapi.service.notification.OverdueDigest;
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static com.nhamparsomia.libraryapi.service.impl.LoanServiceImpl.BOOK_ALREADY_TAKEN;
+import static com.nhamparsomia.libraryapi.service.impl.LoanServiceImpl.LOAN_DAYS;
+import static com.nhamparsomia.libraryapi.service.impl.LoanServiceImpl.LOAN_NOT_FOUND;
+
+/**
+ * {@link LoanService} of the {@code in-memory} profile, backed by {@link InMemoryLibrary}. Loan
+ * events are journaled as on the JPA path; the analytics rollups are not kept.
+ */
+@Service
+@Profile("in-memory")
+public class InMemoryLoanService implements LoanService {
+
+    private final InMemoryLibrary library;
+    private final LoanJournal journal;
+
+    InMemoryLoanService(InMemoryLibrary library, LoanJournal journal) {
+        this.library = library;
+        this.journal = journal;
+    }
+
+    @Override
+    public Loan save(Loan loan) {
+        Loan savedLoan = library.checkout(loan);
+        if (savedLoan == null) {
+            throw new BusinessException(BOOK_ALREADY_TAKEN);
+        }
+
+        recordCheckout(savedLoan);
+        return savedLoan;
+    }
+
+    @Override
+    public Optional<Loan> getById(Long id) {
+        return Optional.ofNullable(library.findLoan(id));
+    }
+
+    @Override
+    public Loan update(Loan loan) {
+        Loan current = library.findLoan(loan.getId());
+        if (current == null) {
+            throw new BusinessException(LOAN_NOT_FOUND);
+        }
+
+        Loan updatedLoan = library.replaceLoan(loan);
+
+        if (InMemoryLibrary.isReturned(updatedLoan) && !InMemoryLibrary.isReturned(current)) {
+            recordReturn(updatedLoan);
+        }
+        return updatedLoan;
+    }
+
+    @Override
+    public int updateReturned(Long id, Boolean returned) {
+        applyReturned(id, Boolean.TRUE.equals(returned));
+
+        return library.loanExists(id) ? 1 : 0;
+    }
+
+    /**
+     * Same semantics as the JPA search: the isbn and the customer, or else the customer prefix,
+     * are combined with OR unless {@code matchAll} is set.
+     */
+    @Override
+    public Page<Loan> find(LoanFilterDTO filter, Pageable pageable) {
+        String isbn = emptyToNull(filter.getIsbn());
+        String customer = emptyToNull(filter.getCustomer());
+        String customerPrefix = customer == null ? emptyToNull(Loan.normalizeCustomer(filter.getCustomerPrefix())) : null;
+        boolean hasCustomer = customer != null || customerPrefix != null;
+
+        if (isbn == null && !hasCustomer) {
+            return page(library.allLoans(), pageable);
+        }
+
+        List<Loan> byIsbn = isbn == null ? List.of() : loansByIsbn(isbn);
+        List<Loan> byCustomer = !hasCustomer ? List.of() : customer != null
+                ? library.loansOfCustomer(customer)
+                : library.loansOfCustomerPrefix(customerPrefix);
+
+        if (isbn == null) {
+            return page(byCustomer, pageable);
+        }
+        if (!hasCustomer) {
+            return page(byIsbn, pageable);
+        }
+
+        Map<Long, Loan> byId = new LinkedHashMap<>();
+        if (Boolean.TRUE.equals(filter.getMatchAll())) {
+            Set<Long> customerIds = byCustomer.stream().map(Loan::getId).collect(Collectors.toSet());
+            byIsbn.stream().filter(loan -> customerIds.contains(loan.getId())).forEach(loan -> byId.put(loan.getId(), loan));
+        } else {
+            byIsbn.forEach(loan -> byId.put(loan.getId(), loan));
+            byCustomer.forEach(loan -> byId.putIfAbsent(loan.getId(), loan));
+        }
+
+        return page(new ArrayList<>(byId.values()), pageable);
+    }
+
+    @Override
+    public Page<Loan> getLoansByBook(Book book, Pageable pageable) {
+        return page(library.loansOfBook(book.getId()), pageable);
+    }
+
+    @Override
+    public Set<Long> getTakenBookIds(Collection<Long> bookIds) {
+        return bookIds.stream()
+                .filter(library::isTaken)
+                .collect(Collectors.toSet());
+    }
+
+    @Override
+    public List<Loan> getAllLateLoans() {
+        return library.openLoansDueBy(LocalDate.now().minusDays(LOAN_DAYS));
+    }
+
+    /**
+     * Groups the late loans per customer email like the JPA service does, partitioning the
+     * customers by the same {@link Loan#emailHash} of their email.
+     */
+    @Override
+    public List<OverdueDigest> getOverdueDigests(int resendDays, int shard, int shards) {
+        LocalDate today = LocalDate.now();
+        LocalDate notifiedBefore = today.minusDays(resendDays);
+
+        Map<String, List<Loan>> loansByEmail = library.openLoansDueBy(today.minusDays(LOAN_DAYS))
+                .stream()
+                .filter(loan -> loan.getCustomerEmail() != null)
+                .filter(loan -> Loan.emailHash(loan.getCustomerEmail()) % shards == shard)
+                .collect(Collectors.groupingBy(Loan::getCustomerEmail, TreeMap::new, Collectors.toList()));
+
+        return loansByEmail.entrySet().stream()
+                .filter(entry -> entry.getValue().stream().anyMatch(loan ->
+                        loan.getLastNotified() == null || !loan.getLastNotified().isAfter(notifiedBefore)))
+                .map(entry -> toOverdueDigest(entry.getKey(), entry.getValue()))
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public void overdueNotified(OverdueDigest digest) {
+        List<Long> ids = digest.getLoans().stream()
+                .map(OverdueDigest.OverdueLoan::getLoanId)
+                .collect(Collectors.toList());
+
+        library.markNotified(ids, LocalDate.now());
+        digest.getLoans().forEach(loan -> journal.record(
+                LoanEventType.OVERDUE_NOTIFIED, loan.getLoanId(), loan.getBookId(), digest.getCustomer()));
+    }
+
+    /**
+     * Lends each book to the first item asking for it. Fails as a whole, before lending
+     * anything, if one of the books does not exist.
+     */
+    @Override
+    public List<LoanBatchResultDTO> saveAll(List<Loan> loans) {
+        loans.stream()
+                .map(loan -> loan.getBook().getId())
+                .filter(bookId -> !library.bookExists(bookId))
+                .findFirst()
+                .ifPresent(bookId -> {
+                    throw new DataIntegrityViolationException("Book " + bookId + " does not exist");
+                });
+
+        List<LoanBatchResultDTO> results = new ArrayList<>(loans.size());
+
+        for (int index = 0; index < loans.size(); index++) {
+            Loan savedLoan = library.checkout(loans.get(index));
+
+            if (savedLoan != null) {
+                recordCheckout(savedLoan);
+                results.add(result(index, savedLoan.getId(), HttpStatus.CREATED, null));
+            } else {
+                results.add(result(index, null, HttpStatus.BAD_REQUEST, BOOK_ALREADY_TAKEN));
+            }
+        }
+
+        return results;
+    }
+
+    @Override
+    public List<LoanBatchResultDTO> updateReturned(List<ReturnedLoanBatchDTO> returnedLoans) {
+        List<LoanBatchResultDTO> results = new ArrayList<>(returnedLoans.size());
+
+        for (int index = 0; index < returnedLoans.size(); index++) {
+            ReturnedLoanBatchDTO returnedLoan = returnedLoans.get(index);
+            Long id = returnedLoan.getId();
+
+            if (library.loanExists(id)) {
+                applyReturned(id, Boolean.TRUE.equals(returnedLoan.getReturned()));
+                results.add(result(index, id, HttpStatus.OK, null));
+            } else {
+                results.add(result(index, id, HttpStatus.NOT_FOUND, LOAN_NOT_FOUND));
+            }
+        }
+
+        return results;
+    }
+
+    private void applyReturned(Long id, boolean returned) {
+        Loan changed = library.setReturned(id, returned);
+
+        if (changed != null && returned) {
+            recordReturn(changed);
+        }
+    }
+
+    private List<Loan> loansByIsbn(String isbn) {
+        Book book = library.findBookByIsbn(isbn);
+        return book == null ? List.of() : library.loansOfBook(book.getId());
+    }
+
+    private void recordCheckout(Loan loan) {
+        journal.record(LoanEventType.CHECKOUT, loan.getId(), loan.getBook().getId(), loan.getCustomer());
+    }
+
+    private void recordReturn(Loan loan) {
+        journal.record(LoanEventType.RETURN, loan.getId(), loan.getBook().getId(), loan.getCustomer());
+    }
+
+    private static Page<Loan> page(List<Loan> loans, Pageable pageable) {
+        List<Loan> byId = new ArrayList<>(loans);
+        byId.sort(Comparator.comparing(Loan::getId));
+        return InMemoryLibrary.page(byId, pageable, Loan.class, InMemoryLoanService::comparator);
+    }
+
+    private static Comparator<Loan> comparator(String property) {
+        switch (property) {
+            case "id":
+                return Comparator.comparing(Loan::getId);
+            case "customer":
+                return nullsFirst(Loan::getCustomer);
+            case "customerNormalized":
+                return nullsFirst(Loan::getCustomerNormalized);
+            case "customerEmail":
+                return nullsFirst(Loan::getCustomerEmail);
+            case "loanDate":
+                return nullsFirst(Loan::getLoanDate);
+            case "returned":
+                return nullsFirst(Loan::getReturned);
+            case "lastNotified":
+                return nullsFirst(Loan::getLastNotified);
+            default:
+                return null;
+        }
+    }
+
+    private static <T extends Comparable<? super T>> Comparator<Loan> nullsFirst(Function<Loan, T> field) {
+        return Comparator.comparing(field, Comparator.nullsFirst(Comparator.naturalOrder()));
+    }
+
+    private static OverdueDigest toOverdueDigest(String email, List<Loan> loans) {
+        List<OverdueDigest.OverdueLoan> overdueLoans = loans.stream()
+                .sorted(Comparator.comparing(Loan::getLoanDate).thenComparing(Loan::getId))
+                .map(loan -> OverdueDigest.OverdueLoan.builder()
+                        .loanId(loan.getId())
+                        .bookId(loan.getBook().getId())
+                        .loanDate(loan.getLoanDate())
+                        .title(loan.getBook().getTitle())
+                        .build())
+                .collect(Collectors.toList());
+
+        String customer = loans.stream()
+                .map(Loan::getCustomer)
+                .filter(Objects::nonNull)
+                .max(Comparator.naturalOrder())
+                .orElse(null);
+
+        return OverdueDigest.builder()
+                .email(email)
+                .customer(customer)
+                .loans(overdueLoans)
+                .build();
+    }
+
+    private static LoanBatchResultDTO result(int index, Long id, HttpStatus status, String error) {
+        return LoanBatchResultDTO.builder()
+                .index(index)
+                .id(id)
+                .status(status.value())
+                .error(error)
+                .build();
+    }
+
+    private static String emptyToNull(String value) {
+        return value == null || value.trim().isEmpty() ? null : value;
+    }
+}
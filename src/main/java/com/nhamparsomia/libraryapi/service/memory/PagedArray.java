@@ -0,0 +1,66 @@
+package com.nhamparsomia.libraryapi.service.memory;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Values keyed by a positive {@code long} id, stored in fixed-size pages that are allocated as
+ * the ids grow. Ids come from a sequence, so the pages are dense and a lookup is two array reads
+ * with no hashing or boxing. Reads never lock; only allocating a page does.
+ */
+class PagedArray<T> {
+
+    static final int PAGE_SHIFT = 10;
+    static final int PAGE_SIZE = 1 << PAGE_SHIFT;
+    static final int PAGE_MASK = PAGE_SIZE - 1;
+
+    private volatile AtomicReferenceArray<AtomicReferenceArray<T>> pages = new AtomicReferenceArray<>(16);
+
+    T get(long id) {
+        AtomicReferenceArray<T> page = existingPage(id);
+        return page == null ? null : page.get(slot(id));
+    }
+
+    void set(long id, T value) {
+        page(id).set(slot(id), value);
+    }
+
+    boolean compareAndSet(long id, T expected, T value) {
+        return page(id).compareAndSet(slot(id), expected, value);
+    }
+
+    private AtomicReferenceArray<T> existingPage(long id) {
+        int index = (int) (id >>> PAGE_SHIFT);
+        AtomicReferenceArray<AtomicReferenceArray<T>> current = pages;
+        return id < 0 || index >= current.length() ? null : current.get(index);
+    }
+
+    private AtomicReferenceArray<T> page(long id) {
+        AtomicReferenceArray<T> page = existingPage(id);
+        return page != null ? page : allocate((int) (id >>> PAGE_SHIFT));
+    }
+
+    private synchronized AtomicReferenceArray<T> allocate(int index) {
+        AtomicReferenceArray<AtomicReferenceArray<T>> current = pages;
+
+        if (index >= current.length()) {
+            AtomicReferenceArray<AtomicReferenceArray<T>> grown =
+                    new AtomicReferenceArray<>(Math.max(current.length() * 2, index + 1));
+            for (int page = 0; page < current.length(); page++) {
+                grown.set(page, current.get(page));
+            }
+            pages = grown;
+            current = grown;
+        }
+
+        AtomicReferenceArray<T> page = current.get(index);
+        if (page == null) {
+            page = new AtomicReferenceArray<>(PAGE_SIZE);
+            current.set(index, page);
+        }
+        return page;
+    }
+
+    private static int slot(long id) {
+        return (int) (id & PAGE_MASK);
+    }
+}
@@ -0,0 +1,65 @@
+package com.nhamparsomia.libraryapi.service.memory;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import static com.nhamparsomia.libraryapi.service.memory.PagedArray.PAGE_MASK;
+import static com.nhamparsomia.libraryapi.service.memory.PagedArray.PAGE_SHIFT;
+import static com.nhamparsomia.libraryapi.service.memory.PagedArray.PAGE_SIZE;
+
+/**
+ * Primitive {@code long} values keyed by a positive id, paged like {@link PagedArray}. Ids never
+ * written read as zero.
+ */
+class PagedLongArray {
+
+    private volatile AtomicReferenceArray<AtomicLongArray> pages = new AtomicReferenceArray<>(16);
+
+    long get(long id) {
+        AtomicLongArray page = existingPage(id);
+        return page == null ? 0 : page.get(slot(id));
+    }
+
+    void set(long id, long value) {
+        page(id).set(slot(id), value);
+    }
+
+    long addAndGet(long id, long delta) {
+        return page(id).addAndGet(slot(id), delta);
+    }
+
+    private AtomicLongArray existingPage(long id) {
+        int index = (int) (id >>> PAGE_SHIFT);
+        AtomicReferenceArray<AtomicLongArray> current = pages;
+        return id < 0 || index >= current.length() ? null : current.get(index);
+    }
+
+    private AtomicLongArray page(long id) {
+        AtomicLongArray page = existingPage(id);
+        return page != null ? page : allocate((int) (id >>> PAGE_SHIFT));
+    }
+
+    private synchronized AtomicLongArray allocate(int index) {
+        AtomicReferenceArray<AtomicLongArray> current = pages;
+
+        if (index >= current.length()) {
+            AtomicReferenceArray<AtomicLongArray> grown = new AtomicReferenceArray<>(Math.max(current.length() * 2, index + 1));
+            for (int page = 0; page < current.length(); page++) {
+                grown.set(page, current.get(page));
+            }
+            pages = grown;
+            current = grown;
+        }
+
+        AtomicLongArray page = current.get(index);
+        if (page == null) {
+            page = new AtomicLongArray(PAGE_SIZE);
+            current.set(index, page);
+        }
+        return page;
+    }
+
+    private static int slot(long id) {
+        return (int) (id & PAGE_MASK);
+    }
+}
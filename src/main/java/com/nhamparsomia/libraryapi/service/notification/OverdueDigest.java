@@ -0,0 +1,33 @@
+package com.nhamparsomia.libraryapi.service.notification;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * The overdue loans of one customer, sent to them as a single notice.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class OverdueDigest {
+    private String email;
+    private String customer;
+    private List<OverdueLoan> loans;
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class OverdueLoan {
+        private Long loanId;
+        private Long bookId;
+        private LocalDate loanDate;
+        private String title;
+    }
+}
@@ -0,0 +1,192 @@
+package com.nhamparsomia.libraryapi.service.scheduling;
+
+import com.nhamparsomia.libraryapi.model.entity.JobLease;
+import com.nhamparsomia.libraryapi.model.repository.JobLeaseRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntConsumer;
+
+/**
+ * Runs scheduled jobs once per cluster, enabled with {@code application.jobs.cluster.enabled=true}.
+ * A job is split into shards, and each shard of a run is guarded by a lease row in
+ * {@code job_lease}: a node runs a shard only while it holds the lease, renews it every
+ * {@code renew-ms} while working and marks the shard completed for the run when done. Nodes
+ * triggered at the same time therefore work on different shards in parallel, and none of them
+ * runs a shard another node already completed for that run.
+ *
+ * <p>A node that stops renewing, because it crashed or hung, loses its lease after
+ * {@code lease-ms}. The other nodes keep polling unfinished shards every {@code poll-ms} for up
+ * to {@code max-wait-ms} and take them over. Lease expiry is compared against the clock of the
+ * node acquiring it, so node clocks must agree to well within {@code lease-ms}.
+ *
+ * <p>When disabled, or without a database to hold the leases as with the {@code in-memory}
+ * profile, every shard runs on the calling node.
+ */
+@Slf4j
+@Component
+public class ClusteredJobs implements DisposableBean {
+
+    private final JobLeaseRepository repository;
+    private final boolean enabled;
+    private final String nodeId;
+    private final Duration lease;
+    private final long renewMillis;
+    private final long pollMillis;
+    private final long maxWaitMillis;
+
+    private final ScheduledExecutorService renewer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "job-lease-renewer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public ClusteredJobs(ObjectProvider<JobLeaseRepository> repository,
+                         @Value("${application.jobs.cluster.enabled:false}") boolean enabled,
+                         @Value("${application.jobs.cluster.node-id:}") String nodeId,
+                         @Value("${application.jobs.cluster.lease-ms:30000}") long leaseMillis,
+                         @Value("${application.jobs.cluster.renew-ms:10000}") long renewMillis,
+                         @Value("${application.jobs.cluster.poll-ms:5000}") long pollMillis,
+                         @Value("${application.jobs.cluster.max-wait-ms:600000}") long maxWaitMillis) {
+        this.repository = repository.getIfAvailable();
+        this.enabled = enabled && this.repository != null;
+        this.nodeId = StringUtils.hasText(nodeId) ? nodeId : UUID.randomUUID().toString();
+        this.lease = Duration.ofMillis(leaseMillis);
+        this.renewMillis = renewMillis;
+        this.pollMillis = pollMillis;
+        this.maxWaitMillis = maxWaitMillis;
+    }
+
+    /**
+     * Runs the shards {@code 0..shards-1} of one run of a job, identified by {@code run}, and
+     * returns the shards this node ran. Returns once every shard is completed by some node, or
+     * after {@code max-wait-ms} if shards held by other nodes are still unfinished. A shard whose
+     * task fails is released for the other nodes and not retried by this one.
+     */
+    public List<Integer> run(String job, String run, int shards, IntConsumer task) {
+        List<Integer> ran = new ArrayList<>();
+
+        if (!enabled) {
+            for (int shard = 0; shard < shards; shard++) {
+                task.accept(shard);
+                ran.add(shard);
+            }
+            return ran;
+        }
+
+        // nodes start at different shards so that they rarely race for the same lease
+        List<Integer> remaining = new LinkedList<>();
+        int first = Math.floorMod(nodeId.hashCode(), shards);
+        for (int index = 0; index < shards; index++) {
+            remaining.add((first + index) % shards);
+        }
+
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(maxWaitMillis);
+
+        while (true) {
+            Iterator<Integer> shardsLeft = remaining.iterator();
+            while (shardsLeft.hasNext()) {
+                int shard = shardsLeft.next();
+                String name = job + "#" + shard;
+
+                if (acquire(name, run)) {
+                    shardsLeft.remove();
+                    if (runHoldingLease(name, run, () -> task.accept(shard))) {
+                        ran.add(shard);
+                    }
+                } else if (isCompleted(name, run)) {
+                    shardsLeft.remove();
+                }
+            }
+
+            if (remaining.isEmpty()) {
+                return ran;
+            }
+
+            if (System.nanoTime() > deadline) {
+                log.warn("Shards {} of job {} run {} are still held by other nodes, giving up", remaining, job, run);
+                return ran;
+            }
+
+            try {
+                Thread.sleep(pollMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return ran;
+            }
+        }
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    @Override
+    public void destroy() {
+        renewer.shutdownNow();
+    }
+
+    private boolean acquire(String name, String run) {
+        if (!repository.existsById(name)) {
+            try {
+                repository.saveAndFlush(JobLease.builder().name(name).build());
+            } catch (DataIntegrityViolationException e) {
+                // created by another node in the meantime
+            }
+        }
+
+        Instant now = Instant.now();
+        return repository.acquire(name, nodeId, run, now, now.plus(lease)) == 1;
+    }
+
+    private boolean isCompleted(String name, String run) {
+        return repository.findById(name)
+                .map(jobLease -> run.equals(jobLease.getCompletedRun()))
+                .orElse(false);
+    }
+
+    private boolean runHoldingLease(String name, String run, Runnable task) {
+        ScheduledFuture<?> renewal = renewer.scheduleAtFixedRate(() -> renew(name), renewMillis, renewMillis, TimeUnit.MILLISECONDS);
+
+        try {
+            task.run();
+        } catch (RuntimeException e) {
+            renewal.cancel(false);
+            log.error("Job {} failed on node {}, releasing its lease", name, nodeId, e);
+            repository.release(name, nodeId, Instant.now());
+            return false;
+        }
+
+        renewal.cancel(false);
+        if (repository.complete(name, nodeId, run, Instant.now()) == 0) {
+            log.warn("Job {} finished on node {} after its lease was taken over", name, nodeId);
+        }
+        return true;
+    }
+
+    private void renew(String name) {
+        try {
+            if (repository.renew(name, nodeId, Instant.now().plus(lease)) == 0) {
+                log.warn("Node {} lost the lease of job {}", nodeId, name);
+            }
+        } catch (RuntimeException e) {
+            log.warn("Could not renew the lease of job {} on node {}", name, nodeId, e);
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package com.nhamparsomia.libraryapi.api.resource;
+
+import com.nhamparsomia.libraryapi.model.entity.Book;
+import com.nhamparsomia.libraryapi.model.entity.LoanDailyStats;
+import com.nhamparsomia.libraryapi.service.LoanAnalyticsService;
+import org.hamcrest.Matchers;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.BDDMockito;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+
+import java.time.LocalDate;
+import java.util.Collections;
+
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@ExtendWith(SpringExtension.class)
+@ActiveProfiles("test")
+@AutoConfigureMockMvc
+@WebMvcTest(controllers = AnalyticsController.class)
+public class AnalyticsControllerTest {
+    static final String ANALYTICS_API = "/api/analytics";
+
+    @Autowired
+    MockMvc mvc;
+
+    @MockBean
+    private LoanAnalyticsService service;
+
+    @Test
+    @DisplayName("Deve retornar as estatísticas diárias de empréstimos do período informado")
+    public void getDailyStatsTest() throws Exception {
+        LocalDate day = LocalDate.of(2020, 5, 10);
+        LoanDailyStats stats = LoanDailyStats.builder()
+                .day(day)
+                .checkouts(3)
+                .returns(1)
+                .openLoans(2)
+                .build();
+
+        BDDMockito.given(service.getDailyStats(day, day))
+                .willReturn(Collections.singletonList(stats));
+
+        mvc.perform(MockMvcRequestBuilders
+                .get(ANALYTICS_API.concat("/loans/daily?from=2020-05-10&to=2020-05-10"))
+                .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", Matchers.hasSize(1)))
+                .andExpect(jsonPath("[0].checkouts").value(3))
+                .andExpect(jsonPath("[0].returns").value(1))
+                .andExpect(jsonPath("[0].openLoans").value(2));
+    }
+
+    @Test
+    @DisplayName("Deve retornar os últimos 30 dias quando o período não for informado")
+    public void getDailyStatsDefaultPeriodTest() throws Exception {
+        LocalDate today = LocalDate.now();
+
+        BDDMockito.given(service.getDailyStats(today.minusDays(29), today))
+                .willReturn(Collections.emptyList());
+
+        mvc.perform(MockMvcRequestBuilders
+                .get(ANALYTICS_API.concat("/loans/daily"))
+                .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", Matchers.hasSize(0)));
+
+        Mockito.verify(service, Mockito.times(1)).getDailyStats(today.minusDays(29), today);
+    }
+
+    @Test
+    @DisplayName("Deve retornar erro quando o início do período for posterior ao fim")
+    public void getDailyStatsInvalidPeriodTest() throws Exception {
+        mvc.perform(MockMvcRequestBuilders
+                .get(ANALYTICS_API.concat("/loans/daily?from=2020-05-11&to=2020-05-10"))
+                .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isBadRequest());
+
+        Mockito.verify(service, Mockito.never()).getDailyStats(Mockito.any(), Mockito.any());
+    }
+
+    @Test
+    @DisplayName("Deve retornar o total de empréstimos em aberto e em atraso")
+    public void getSummaryTest() throws Exception {
+        BDDMockito.given(service.getOpenLoans()).willReturn(7L);
+        BDDMockito.given(service.getOverdueLoans()).willReturn(2L);
+
+        mvc.perform(MockMvcRequestBuilders
+                .get(ANALYTICS_API.concat("/loans/summary"))
+                .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("openLoans").value(7))
+                .andExpect(jsonPath("overdueLoans").value(2));
+    }
+
+    @Test
+    @DisplayName("Deve retornar os livros mais emprestados")
+    public void getMostBorrowedBooksTest() throws Exception {
+        Book book = Book.builder().id(1L).isbn("123").title("Aventuras").totalLoans(5L).build();
+
+        BDDMockito.given(service.getMostBorrowedBooks(3))
+                .willReturn(Collections.singletonList(book));
+
+        mvc.perform(MockMvcRequestBuilders
+                .get(ANALYTICS_API.concat("/books/top?limit=3"))
+                .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("[0].bookId").value(1))
+                .andExpect(jsonPath("[0].isbn").value("123"))
+                .andExpect(jsonPath("[0].title").value("Aventuras"))
+                .andExpect(jsonPath("[0].totalLoans").value(5));
+    }
+
+    @Test
+    @DisplayName("Deve retornar erro quando o limite de livros for inválido")
+    public void getMostBorrowedBooksInvalidLimitTest() throws Exception {
+        mvc.perform(MockMvcRequestBuilders
+                .get(ANALYTICS_API.concat("/books/top?limit=0"))
+                .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isBadRequest());
+    }
+}
@@ -1,8 +1,13 @@
 package com.nhamparsomia.libraryapi.api.resource;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
 
+import com.nhamparsomia.libraryapi.api.dto.BookReferencesDTO;
 import com.nhamparsomia.libraryapi.api.dto.BookDTO;
+import com.nhamparsomia.libraryapi.api.dto.PageDTO;
+import com.nhamparsomia.libraryapi.config.bulkhead.BulkheadConfig;
 import com.nhamparsomia.libraryapi.exception.BusinessException;
 import com.nhamparsomia.libraryapi.model.entity.Book;
 import com.nhamparsomia.libraryapi.service.BookService;
@@ -22,6 +27,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
@@ -29,23 +35,36 @@ import org.springframework.http.MediaType;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.RequestBuilder;
+import org.springframework.test.web.servlet.ResultActions;
 import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+import org.springframework.test.web.servlet.result.MockMvcResultMatchers;
 
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Optional;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
 
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.anyLong;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @ExtendWith(SpringExtension.class)
 @ActiveProfiles("test")
 @WebMvcTest(controllers = BookController.class)
+@Import(BulkheadConfig.class)
 @AutoConfigureMockMvc
 public class BookControllerTest {
 
     static String BOOK_API = "/api/books";
+    static MediaType APPLICATION_SMILE = new MediaType("application", "x-jackson-smile");
 
     @Autowired
     MockMvc mvc;
@@ -205,30 +224,13 @@ public class BookControllerTest {
     public void updateBookTest() throws  Exception {
         Long id =11L;
 
-        Book bookBeforeUpdate = Book.builder()
-                            .id(id)
-                            .title("book title")
-                            .author("book author")
-                            .isbn("321")
-                            .build();
-
-        BDDMockito.given(service.getById(id))
-                .willReturn(Optional.of(bookBeforeUpdate));
-
         BookDTO bookPutRequest = createNewBook();
 
         String json = new ObjectMapper()
                 .writeValueAsString(bookPutRequest);
 
-        Book bookAfterUpdate = Book.builder()
-                .id(id)
-                .author(bookPutRequest.getAuthor())
-                .title(bookPutRequest.getTitle())
-                .isbn(bookPutRequest.getIsbn())
-                .build();
-
-        BDDMockito.given(service.update(bookBeforeUpdate))
-                .willReturn(bookAfterUpdate);
+        BDDMockito.given(service.updateAuthorAndTitle(id, bookPutRequest.getAuthor(), bookPutRequest.getTitle()))
+                .willReturn(1);
 
         MockHttpServletRequestBuilder request = MockMvcRequestBuilders
                 .put(BOOK_API.concat("/" + id))
@@ -239,9 +241,11 @@ public class BookControllerTest {
         mvc.perform(request)
                 .andExpect(status().isOk())
                 .andExpect( jsonPath("id").value(id) )
-                .andExpect( jsonPath("title").value(bookAfterUpdate.getTitle()) )
-                .andExpect( jsonPath("author").value(bookAfterUpdate.getAuthor()) )
-                .andExpect( jsonPath("isbn").value(bookAfterUpdate.getIsbn()) );
+                .andExpect( jsonPath("title").value(bookPutRequest.getTitle()) )
+                .andExpect( jsonPath("author").value(bookPutRequest.getAuthor()) )
+                .andExpect( jsonPath("isbn").value(bookPutRequest.getIsbn()) );
+
+        Mockito.verify(service, Mockito.never()).getById(id);
     }
 
     @Test
@@ -254,8 +258,8 @@ public class BookControllerTest {
         String json = new ObjectMapper()
                 .writeValueAsString(book);
 
-        BDDMockito.given(service.getById(id))
-                .willReturn(Optional.empty());
+        BDDMockito.given(service.updateAuthorAndTitle(id, book.getAuthor(), book.getTitle()))
+                .willReturn(0);
 
         MockHttpServletRequestBuilder request = MockMvcRequestBuilders
                 .put(BOOK_API.concat("/" + id))
@@ -306,13 +310,188 @@ public class BookControllerTest {
                 .get(BOOK_API.concat(queryString))
                 .accept(MediaType.APPLICATION_JSON);
 
-        mvc
-                .perform(request)
+        performAsync(request)
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("content", Matchers.hasSize(1)))
                 .andExpect(jsonPath("totalElements").value(1))
-                .andExpect(jsonPath("pageable.pageSize").value(100))
-                .andExpect(jsonPath("pageable.pageNumber").value(0));
+                .andExpect(jsonPath("size").value(100))
+                .andExpect(jsonPath("page").value(0));
+    }
+
+    @Test
+    @DisplayName("Deve criar um livro recebendo e respondendo em CBOR")
+    public void createBookWithCborTest() throws Exception {
+        ObjectMapper cborMapper = new ObjectMapper(new CBORFactory());
+        BookDTO dto = createNewBook();
+
+        Book savedBook = Book.builder()
+                .id(101L)
+                .author(dto.getAuthor())
+                .title(dto.getTitle())
+                .isbn(dto.getIsbn())
+                .build();
+
+        BDDMockito
+                .given(service.save(Mockito.any(Book.class)))
+                .willReturn(savedBook);
+
+        MockHttpServletRequestBuilder request = MockMvcRequestBuilders
+                .post(BOOK_API)
+                .contentType(MediaType.APPLICATION_CBOR)
+                .accept(MediaType.APPLICATION_CBOR)
+                .content(cborMapper.writeValueAsBytes(dto));
+
+        byte[] response = mvc.perform(request)
+                .andExpect(status().isCreated())
+                .andExpect(content().contentType(MediaType.APPLICATION_CBOR))
+                .andReturn()
+                .getResponse()
+                .getContentAsByteArray();
+
+        BookDTO createdBook = cborMapper.readValue(response, BookDTO.class);
+
+        assertThat(createdBook.getId()).isEqualTo(101L);
+        assertThat(createdBook.getTitle()).isEqualTo(dto.getTitle());
+        assertThat(createdBook.getAuthor()).isEqualTo(dto.getAuthor());
+        assertThat(createdBook.getIsbn()).isEqualTo(dto.getIsbn());
+    }
+
+    @Test
+    @DisplayName("Deve filtrar livros respondendo em Smile")
+    public void findBookWithSmileTest() throws Exception {
+        ObjectMapper smileMapper = new ObjectMapper(new SmileFactory());
+
+        Book book = Book.builder()
+                .id(11L)
+                .title("Mundo Java")
+                .author("Joao")
+                .isbn("001")
+                .build();
+
+        BDDMockito
+                .given(service.find(Mockito.any(Book.class), Mockito.any(Pageable.class)))
+                .willReturn(new PageImpl<Book>(Arrays.asList(book), PageRequest.of(0, 10), 1));
+
+        MockHttpServletRequestBuilder request = MockMvcRequestBuilders
+                .get(BOOK_API.concat("?title=Mundo&page=0&size=10"))
+                .accept(APPLICATION_SMILE);
+
+        byte[] response = performAsync(request)
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(APPLICATION_SMILE))
+                .andReturn()
+                .getResponse()
+                .getContentAsByteArray();
+
+        PageDTO<BookDTO> page = smileMapper.readValue(
+                response,
+                smileMapper.getTypeFactory().constructParametricType(PageDTO.class, BookDTO.class)
+        );
+
+        assertThat(page.getTotalElements()).isEqualTo(1);
+        assertThat(page.getContent()).hasSize(1);
+        assertThat(page.getContent().get(0).getIsbn()).isEqualTo("001");
+    }
+
+
+    @Test
+    @DisplayName("Deve obter vários livros por id na ordem pedida indicando os inexistentes")
+    public void getBooksByIdsTest() throws Exception {
+        Book first = Book.builder().id(1L).isbn("001").title("Primeiro").build();
+        Book second = Book.builder().id(2L).isbn("002").title("Segundo").build();
+
+        BDDMockito.given(service.getBooksById(Arrays.asList(2L, 99L, 1L))).willReturn(Arrays.asList(first, second));
+
+        performAsync(MockMvcRequestBuilders.get(BOOK_API.concat("/lookup?ids=2,99,1"))
+                .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(3)))
+                .andExpect(jsonPath("$[0].book.title").value("Segundo"))
+                .andExpect(jsonPath("$[1].id").value(99))
+                .andExpect(jsonPath("$[1].found").value(false))
+                .andExpect(jsonPath("$[2].book.title").value("Primeiro"));
+
+        Mockito.verify(service, Mockito.never()).find(Mockito.any(Book.class), Mockito.any(Pageable.class));
+    }
+
+    @Test
+    @DisplayName("Deve obter vários livros por isbn no corpo da requisição")
+    public void lookupBooksByIsbnTest() throws Exception {
+        Book book = Book.builder().id(1L).isbn("001").title("Primeiro").build();
+
+        BDDMockito.given(service.getBooksByIsbn(Arrays.asList("404", "001"))).willReturn(Arrays.asList(book));
+
+        String json = new ObjectMapper().writeValueAsString(BookReferencesDTO.builder()
+                .isbns(Arrays.asList("404", "001"))
+                .build());
+
+        performAsync(MockMvcRequestBuilders.post(BOOK_API.concat("/lookup"))
+                .contentType(MediaType.APPLICATION_JSON)
+                .accept(MediaType.APPLICATION_JSON)
+                .content(json))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(2)))
+                .andExpect(jsonPath("$[0].isbn").value("404"))
+                .andExpect(jsonPath("$[0].found").value(false))
+                .andExpect(jsonPath("$[1].id").value(1))
+                .andExpect(jsonPath("$[1].found").value(true));
+    }
+
+    @Test
+    @DisplayName("Deve informar a disponibilidade de vários livros por id e isbn")
+    public void availabilityTest() throws Exception {
+        Book available = Book.builder().id(1L).isbn("001").build();
+        Book taken = Book.builder().id(2L).isbn("002").build();
+
+        BDDMockito.given(service.getBooksById(Arrays.asList(1L, 99L))).willReturn(Arrays.asList(available));
+        BDDMockito.given(service.getBooksByIsbn(Arrays.asList("002", "999"))).willReturn(Arrays.asList(taken));
+        BDDMockito.given(loanService.getTakenBookIds(new HashSet<>(Arrays.asList(1L, 2L)))).willReturn(Collections.singleton(2L));
+
+        String json = new ObjectMapper().writeValueAsString(BookReferencesDTO.builder()
+                .ids(Arrays.asList(1L, 99L))
+                .isbns(Arrays.asList("002", "999"))
+                .build());
+
+        performAsync(MockMvcRequestBuilders.post(BOOK_API.concat("/availability"))
+                .contentType(MediaType.APPLICATION_JSON)
+                .accept(MediaType.APPLICATION_JSON)
+                .content(json))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(4)))
+                .andExpect(jsonPath("$[0].available").value(true))
+                .andExpect(jsonPath("$[1].id").value(99))
+                .andExpect(jsonPath("$[1].found").value(false))
+                .andExpect(jsonPath("$[2].id").value(2))
+                .andExpect(jsonPath("$[2].available").value(false))
+                .andExpect(jsonPath("$[3].isbn").value("999"))
+                .andExpect(jsonPath("$[3].found").value(false));
+
+        Mockito.verify(loanService, Mockito.times(1)).getTakenBookIds(Mockito.anyCollection());
+    }
+
+    @Test
+    @DisplayName("Deve recusar consultas de disponibilidade com livros demais")
+    public void availabilityTooManyBooksTest() throws Exception {
+        List<Long> ids = LongStream.rangeClosed(1, BookController.MAX_AVAILABILITY_ITEMS + 1)
+                .boxed()
+                .collect(Collectors.toList());
+        String json = new ObjectMapper().writeValueAsString(BookReferencesDTO.builder().ids(ids).build());
+
+        mvc.perform(MockMvcRequestBuilders.post(BOOK_API.concat("/availability"))
+                .contentType(MediaType.APPLICATION_JSON)
+                .accept(MediaType.APPLICATION_JSON)
+                .content(json))
+                .andExpect(status().isBadRequest());
+
+        Mockito.verify(loanService, Mockito.never()).getTakenBookIds(Mockito.anyCollection());
+    }
+
+    private ResultActions performAsync(RequestBuilder requestBuilder) throws Exception {
+        MvcResult result = mvc.perform(requestBuilder)
+                .andExpect(MockMvcResultMatchers.request().asyncStarted())
+                .andReturn();
+
+        return mvc.perform(MockMvcRequestBuilders.asyncDispatch(result));
     }
 
     private BookDTO createNewBook() {
@@ -2,14 +2,18 @@ package com.nhamparsomia.libraryapi.api.resource;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.nhamparsomia.libraryapi.api.dto.BookDTO;
+import com.nhamparsomia.libraryapi.api.dto.LoanBatchResultDTO;
 import com.nhamparsomia.libraryapi.api.dto.LoanDTO;
 import com.nhamparsomia.libraryapi.api.dto.LoanFilterDTO;
+import com.nhamparsomia.libraryapi.api.dto.ReturnedLoanBatchDTO;
 import com.nhamparsomia.libraryapi.api.dto.ReturnedLoanDTO;
+import com.nhamparsomia.libraryapi.config.bulkhead.BulkheadConfig;
 import com.nhamparsomia.libraryapi.exception.BusinessException;
 import com.nhamparsomia.libraryapi.model.entity.Book;
 import com.nhamparsomia.libraryapi.model.entity.Loan;
 import com.nhamparsomia.libraryapi.service.BookService;
 import com.nhamparsomia.libraryapi.service.LoanService;
+import com.nhamparsomia.libraryapi.service.checkout.LoanCheckoutBatcher;
 import org.hamcrest.Matchers;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
@@ -21,6 +25,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
@@ -28,11 +33,17 @@ import org.springframework.http.MediaType;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.RequestBuilder;
+import org.springframework.test.web.servlet.ResultActions;
 import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+import org.springframework.test.web.servlet.result.MockMvcResultMatchers;
 
 import java.time.LocalDate;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.Optional;
 
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
@@ -41,6 +52,7 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
 @ActiveProfiles("test")
 @AutoConfigureMockMvc
 @WebMvcTest(controllers = LoanController.class)
+@Import(BulkheadConfig.class)
 public class LoanControllerTest {
     static final String LOAN_API = "/api/loans";
 
@@ -53,6 +65,9 @@ public class LoanControllerTest {
     @MockBean
     private LoanService loanService;
 
+    @MockBean
+    private LoanCheckoutBatcher checkoutBatcher;
+
     @Test
     @DisplayName("Deve realizar um emprestimo de livro")
     public void createLoanTest() throws Exception {
@@ -85,11 +100,43 @@ public class LoanControllerTest {
                 .contentType(MediaType.APPLICATION_JSON)
                 .content(json);
 
-        mvc.perform(request)
+        performAsync(request)
                 .andExpect(status().isCreated())
                 .andExpect(content().string("11"));
     }
 
+    @Test
+    @DisplayName("Deve realizar o emprestimo pelo agrupamento de checkouts quando habilitado")
+    public void createLoanWithCheckoutBatchingTest() throws Exception {
+        LoanDTO dto = LoanDTO.builder()
+                .isbn("123")
+                .customer("Pessoa")
+                .build();
+
+        String json = new ObjectMapper().writeValueAsString(dto);
+
+        Book book = Book.builder().id(11L).isbn("123").build();
+        Loan loan = Loan.builder().id(12L).customer("Pessoa").book(book).loanDate(LocalDate.now()).build();
+
+        BDDMockito.given(bookService.getBookByIsbn("123"))
+                .willReturn(Optional.of(book));
+        BDDMockito.given(checkoutBatcher.isEnabled())
+                .willReturn(true);
+        BDDMockito.given(checkoutBatcher.checkout(Mockito.any(Loan.class)))
+                .willReturn(loan);
+
+        MockHttpServletRequestBuilder request = MockMvcRequestBuilders.post(LOAN_API)
+                .accept(MediaType.APPLICATION_JSON)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(json);
+
+        performAsync(request)
+                .andExpect(status().isCreated())
+                .andExpect(content().string("12"));
+
+        Mockito.verify(loanService, Mockito.never()).save(Mockito.any(Loan.class));
+    }
+
     @Test
     @DisplayName("Deve retornar erro ao tentar realizar emprestimo de um livro inexistente")
     public void loanWithInvalidIsbnTest() throws Exception {
@@ -109,7 +156,7 @@ public class LoanControllerTest {
                 .contentType(MediaType.APPLICATION_JSON)
                 .content(json);
 
-        mvc.perform(request)
+        performAsync(request)
                 .andExpect(status().isBadRequest())
                 .andExpect(jsonPath("errors", Matchers.hasSize(1)))
                 .andExpect(jsonPath("errors[0]").value("Book not found for given isbn"));
@@ -138,12 +185,88 @@ public class LoanControllerTest {
                 .contentType(MediaType.APPLICATION_JSON)
                 .content(json);
 
-        mvc.perform(request)
+        performAsync(request)
                 .andExpect(status().isBadRequest())
                 .andExpect(jsonPath("errors", Matchers.hasSize(1)))
                 .andExpect(jsonPath("errors[0]").value("Book has already been taken by another customer"));
     }
 
+    @Test
+    @DisplayName("Deve realizar empréstimos em lote com um resultado por item")
+    public void createLoanBatchTest() throws Exception {
+        LoanDTO availableBook = LoanDTO.builder()
+                .isbn("123")
+                .customer("Pessoa")
+                .customerEmail("pessoa@email.com")
+                .build();
+
+        LoanDTO unknownBook = LoanDTO.builder()
+                .isbn("999")
+                .customer("Pessoa")
+                .customerEmail("pessoa@email.com")
+                .build();
+
+        String json = new ObjectMapper().writeValueAsString(Arrays.asList(availableBook, unknownBook));
+
+        Book book = Book.builder().id(11L).isbn("123").build();
+
+        BDDMockito.given(bookService.getBooksByIsbn(Mockito.anyCollection()))
+                .willReturn(Arrays.asList(book));
+
+        BDDMockito.given(loanService.saveAll(Mockito.anyList()))
+                .willReturn(Arrays.asList(LoanBatchResultDTO.builder().index(0).id(1L).status(201).build()));
+
+        MockHttpServletRequestBuilder request = MockMvcRequestBuilders.post(LOAN_API.concat("/batch"))
+                .accept(MediaType.APPLICATION_JSON)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(json);
+
+        performAsync(request)
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", Matchers.hasSize(2)))
+                .andExpect(jsonPath("[0].id").value(1))
+                .andExpect(jsonPath("[0].status").value(201))
+                .andExpect(jsonPath("[1].index").value(1))
+                .andExpect(jsonPath("[1].status").value(400))
+                .andExpect(jsonPath("[1].error").value("Book not found for given isbn"));
+    }
+
+    @Test
+    @DisplayName("Deve recusar empréstimos em lote com itens demais")
+    public void createLoanBatchTooManyItemsTest() throws Exception {
+        LoanDTO loan = LoanDTO.builder()
+                .isbn("123")
+                .customer("Pessoa")
+                .customerEmail("pessoa@email.com")
+                .build();
+        List<LoanDTO> loans = Collections.nCopies(LoanController.MAX_BATCH_ITEMS + 1, loan);
+        String json = new ObjectMapper().writeValueAsString(loans);
+
+        mvc.perform(MockMvcRequestBuilders.post(LOAN_API.concat("/batch"))
+                .accept(MediaType.APPLICATION_JSON)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(json))
+                .andExpect(status().isBadRequest());
+
+        Mockito.verify(loanService, Mockito.never()).saveAll(Mockito.anyList());
+    }
+
+    @Test
+    @DisplayName("Deve recusar devoluções em lote com itens demais")
+    public void returnBooksBatchTooManyItemsTest() throws Exception {
+        ReturnedLoanBatchDTO returned = ReturnedLoanBatchDTO.builder().id(1L).returned(true).build();
+        List<ReturnedLoanBatchDTO> returns = Collections.nCopies(LoanController.MAX_BATCH_ITEMS + 1, returned);
+        String json = new ObjectMapper().writeValueAsString(returns);
+
+        mvc.perform(MockMvcRequestBuilders.patch(LOAN_API.concat("/batch"))
+                .accept(MediaType.APPLICATION_JSON)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(json))
+                .andExpect(status().isBadRequest());
+
+        Mockito.verify(loanService, Mockito.never()).updateReturned(Mockito.anyList());
+    }
+
     @Test
     @DisplayName("Deve devolver um livro emprestado")
     public void giveBackBookTest() throws Exception {
@@ -153,21 +276,31 @@ public class LoanControllerTest {
 
         String json = new ObjectMapper().writeValueAsString(dto);
 
-        Book book = Book.builder().id(1L).isbn("322").build();
-        Loan loan = Loan.builder().id(1L).book(book).build();
-
-        BDDMockito.given(loanService.getById(Mockito.anyLong()))
-                .willReturn(Optional.of(loan));
+        BDDMockito.given(loanService.updateReturned(1L, true))
+                .willReturn(1);
 
         MockHttpServletRequestBuilder request = MockMvcRequestBuilders.patch(LOAN_API.concat("/1"))
                 .accept(MediaType.APPLICATION_JSON)
                 .contentType(MediaType.APPLICATION_JSON)
                 .content(json);
 
-        mvc.perform(request)
+        performAsync(request)
                 .andExpect(status().isOk());
 
-        Mockito.verify(loanService, Mockito.times(1)).update(loan);
+        Mockito.verify(loanService, Mockito.times(1)).updateReturned(1L, true);
+        Mockito.verify(loanService, Mockito.never()).getById(Mockito.anyLong());
+    }
+
+    @Test
+    @DisplayName("Deve recusar a devolução sem informar se o livro foi devolvido")
+    public void giveBackBookWithoutReturnedTest() throws Exception {
+        mvc.perform(MockMvcRequestBuilders.patch(LOAN_API.concat("/1"))
+                .accept(MediaType.APPLICATION_JSON)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{}"))
+                .andExpect(status().isBadRequest());
+
+        Mockito.verify(loanService, Mockito.never()).updateReturned(Mockito.anyLong(), Mockito.any());
     }
 
     @Test
@@ -179,15 +312,15 @@ public class LoanControllerTest {
 
         String json = new ObjectMapper().writeValueAsString(dto);
 
-        BDDMockito.given(loanService.getById(Mockito.anyLong()))
-                .willReturn(Optional.empty());
+        BDDMockito.given(loanService.updateReturned(1L, true))
+                .willReturn(0);
 
         MockHttpServletRequestBuilder request = MockMvcRequestBuilders.patch(LOAN_API.concat("/1"))
                 .accept(MediaType.APPLICATION_JSON)
                 .contentType(MediaType.APPLICATION_JSON)
                 .content(json);
 
-        mvc.perform(request)
+        performAsync(request)
                 .andExpect(status().isNotFound());
 
         Mockito.verify(loanService, Mockito.never()).update(Mockito.any(Loan.class));
@@ -229,13 +362,21 @@ public class LoanControllerTest {
                 .get(LOAN_API.concat(queryString))
                 .accept(MediaType.APPLICATION_JSON);
 
-        mvc
-                .perform(request)
+        performAsync(request)
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("content", Matchers.hasSize(1)))
                 .andExpect(jsonPath("totalElements").value(1))
-                .andExpect(jsonPath("pageable.pageSize").value(10))
-                .andExpect(jsonPath("pageable.pageNumber").value(0));
+                .andExpect(jsonPath("size").value(10))
+                .andExpect(jsonPath("page").value(0));
+    }
+
+
+    private ResultActions performAsync(RequestBuilder requestBuilder) throws Exception {
+        MvcResult result = mvc.perform(requestBuilder)
+                .andExpect(MockMvcResultMatchers.request().asyncStarted())
+                .andReturn();
+
+        return mvc.perform(MockMvcRequestBuilders.asyncDispatch(result));
     }
 
     private Loan createLoan() {
@@ -0,0 +1,50 @@
+package com.nhamparsomia.libraryapi.api.serializer;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nhamparsomia.libraryapi.api.dto.BookDTO;
+import com.nhamparsomia.libraryapi.api.dto.PageDTO;
+import com.nhamparsomia.libraryapi.model.entity.Book;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class PageDTOSerializerTest {
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    @Test
+    @DisplayName("Deve serializar a página no formato compacto")
+    public void serializePageTest() throws Exception {
+        Book book = Book.builder().id(1L).title("Java World").author("John Doe").isbn("123").build();
+        PageRequest pageRequest = PageRequest.of(0, 10);
+
+        PageDTO<BookDTO> page = PageDTO.of(
+                new PageImpl<>(Arrays.asList(book), pageRequest, 11),
+                pageRequest,
+                entity -> new BookDTO(entity.getId(), entity.getTitle(), entity.getAuthor(), entity.getIsbn())
+        );
+
+        String json = mapper.writeValueAsString(page);
+
+        assertThat(json).isEqualTo("{\"content\":[{\"id\":1,\"title\":\"Java World\",\"author\":\"John Doe\",\"isbn\":\"123\"}]," +
+                "\"page\":0,\"size\":10,\"totalElements\":11,\"totalPages\":2}");
+    }
+
+    @Test
+    @DisplayName("Deve ler de volta uma página serializada")
+    public void deserializePageTest() throws Exception {
+        String json = "{\"content\":[{\"id\":1,\"title\":\"Java World\",\"author\":\"John Doe\",\"isbn\":\"123\"}]," +
+                "\"page\":0,\"size\":10,\"totalElements\":1,\"totalPages\":1}";
+
+        PageDTO<BookDTO> page = mapper.readValue(json, mapper.getTypeFactory().constructParametricType(PageDTO.class, BookDTO.class));
+
+        assertThat(page.getContent()).hasSize(1);
+        assertThat(page.getContent().get(0).getIsbn()).isEqualTo("123");
+        assertThat(page.getTotalElements()).isEqualTo(1);
+    }
+}
@@ -0,0 +1,93 @@
+package com.nhamparsomia.libraryapi.benchmark;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.nhamparsomia.libraryapi.api.dto.BookDTO;
+import com.nhamparsomia.libraryapi.api.dto.LoanDTO;
+import com.nhamparsomia.libraryapi.api.dto.PageDTO;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Encode and decode cost of a 100-row {@code LoanDTO} page, as served by {@code /api/loans},
+ * in JSON, CBOR and Smile. Bytes on the wire are printed once per format during setup.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class BinaryFormatsBenchmark {
+
+    @Param({"json", "cbor", "smile"})
+    private String format;
+
+    private ObjectMapper mapper;
+    private JavaType pageType;
+    private PageDTO<LoanDTO> page;
+    private byte[] encoded;
+
+    @Setup
+    public void setUp() throws IOException {
+        mapper = new ObjectMapper(factory(format));
+        pageType = mapper.getTypeFactory().constructParametricType(PageDTO.class, LoanDTO.class);
+
+        List<LoanDTO> loans = IntStream.range(0, 100)
+                .mapToObj(i -> LoanDTO.builder()
+                        .id((long) i)
+                        .isbn("isbn-" + i)
+                        .customer("Customer " + i)
+                        .customerEmail("customer" + i + "@library-api.com")
+                        .book(BookDTO.builder()
+                                .id((long) i)
+                                .title("Seeded Book " + i)
+                                .author("Author " + (i % 50))
+                                .isbn("isbn-" + i)
+                                .build())
+                        .build())
+                .collect(Collectors.toList());
+
+        PageRequest pageRequest = PageRequest.of(0, loans.size());
+        page = PageDTO.of(new PageImpl<>(loans, pageRequest, 10_000), pageRequest, Function.identity());
+        encoded = mapper.writeValueAsBytes(page);
+
+        System.out.printf("%n%s: %d bytes per 100-loan page%n", format, encoded.length);
+    }
+
+    @Benchmark
+    public byte[] encode() throws IOException {
+        return mapper.writeValueAsBytes(page);
+    }
+
+    @Benchmark
+    public PageDTO<LoanDTO> decode() throws IOException {
+        return mapper.readValue(encoded, pageType);
+    }
+
+    private static JsonFactory factory(String format) {
+        switch (format) {
+            case "cbor":
+                return new CBORFactory();
+            case "smile":
+                return new SmileFactory();
+            default:
+                return new JsonFactory();
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package com.nhamparsomia.libraryapi.benchmark;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Collection;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Runs the JMH benchmarks of this package. Select them with {@code -Djmh.include=<regex>}, e.g.
+ * {@code ./mvnw test -Pbenchmark -Dtest=JmhBenchmarksTest -Djmh.include=PageSerialization}.
+ */
+@Tag("benchmark")
+public class JmhBenchmarksTest {
+
+    @Test
+    @DisplayName("Deve executar os benchmarks JMH")
+    public void runBenchmarks() throws Exception {
+        Files.createDirectories(Paths.get("target", "benchmark"));
+
+        Options options = new OptionsBuilder()
+                .include(System.getProperty("jmh.include", JmhBenchmarksTest.class.getPackage().getName() + ".*Benchmark"))
+                .forks(Integer.getInteger("jmh.forks", 1))
+                .warmupIterations(Integer.getInteger("jmh.warmup-iterations", 3))
+                .measurementIterations(Integer.getInteger("jmh.iterations", 5))
+                .addProfiler(GCProfiler.class)
+                .result("target/benchmark/jmh-results.json")
+                .resultFormat(ResultFormatType.JSON)
+                .build();
+
+        Collection<RunResult> results = new Runner(options).run();
+
+        assertThat(results).isNotEmpty();
+    }
+}
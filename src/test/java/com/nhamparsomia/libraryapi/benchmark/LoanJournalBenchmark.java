@@ -0,0 +1,71 @@
+package com.nhamparsomia.libraryapi.benchmark;
+
+import com.nhamparsomia.libraryapi.service.journal.LoanEventType;
+import com.nhamparsomia.libraryapi.service.journal.LoanJournal;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.springframework.util.FileSystemUtils;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Loan journal throughput in events per second. The {@code record} benchmarks are bounded by the
+ * single writer through the queue's back pressure; {@code recordDurably} waits for the fsync of
+ * each event, and with more threads shows several events sharing one forced batch.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class LoanJournalBenchmark {
+
+    private final AtomicLong loanIds = new AtomicLong();
+
+    private Path directory;
+    private LoanJournal journal;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        directory = Files.createTempDirectory("loan-journal-benchmark");
+        journal = new LoanJournal(true, directory.toString(), 256 * 1024 * 1024, 65536, 100, 0);
+        journal.afterPropertiesSet();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        journal.flush().get();
+        journal.destroy();
+
+        System.out.printf("%n%d events journaled%n", journal.getForcedSequence());
+        FileSystemUtils.deleteRecursively(directory);
+    }
+
+    @Benchmark
+    public void record() {
+        long loanId = loanIds.incrementAndGet();
+        journal.record(LoanEventType.CHECKOUT, loanId, loanId % 10_000, "Customer");
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void recordFromFourThreads() {
+        record();
+    }
+
+    @Benchmark
+    @Threads(16)
+    public void recordDurably() throws Exception {
+        record();
+        journal.flush().get();
+    }
+}
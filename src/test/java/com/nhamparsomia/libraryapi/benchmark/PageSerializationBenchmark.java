@@ -0,0 +1,89 @@
+package com.nhamparsomia.libraryapi.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nhamparsomia.libraryapi.api.dto.BookDTO;
+import com.nhamparsomia.libraryapi.api.dto.PageDTO;
+import com.nhamparsomia.libraryapi.model.entity.Book;
+import org.modelmapper.ModelMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Listing response cost: the former {@code PageImpl} body (DTO list copied up front, reflective
+ * {@code pageable}/{@code sort} output) against the streamed {@link PageDTO} envelope. Run with
+ * the GC profiler (see {@link JmhBenchmarksTest}) to compare allocated bytes per response.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PageSerializationBenchmark {
+
+    @Param({"10", "100"})
+    private int pageSize;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final ModelMapper modelMapper = new ModelMapper();
+    private final OutputStream sink = OutputStream.nullOutputStream();
+
+    private PageRequest pageRequest;
+    private Page<Book> result;
+
+    @Setup
+    public void setUp() throws IOException {
+        pageRequest = PageRequest.of(0, pageSize);
+
+        List<Book> books = IntStream.range(0, pageSize)
+                .mapToObj(i -> Book.builder()
+                        .id((long) i)
+                        .title("Seeded Book " + i)
+                        .author("Author " + i)
+                        .isbn("isbn-" + i)
+                        .build())
+                .collect(Collectors.toList());
+        result = new PageImpl<>(books, pageRequest, 10_000);
+
+        System.out.printf("%npage size %d: PageImpl %d bytes, PageDTO %d bytes%n",
+                pageSize,
+                objectMapper.writeValueAsBytes(pageImpl()).length,
+                objectMapper.writeValueAsBytes(pageDto()).length);
+    }
+
+    @Benchmark
+    public void pageImplResponse() throws IOException {
+        objectMapper.writeValue(sink, pageImpl());
+    }
+
+    @Benchmark
+    public void pageDtoResponse() throws IOException {
+        objectMapper.writeValue(sink, pageDto());
+    }
+
+    private Page<BookDTO> pageImpl() {
+        List<BookDTO> content = result.getContent()
+                .stream()
+                .map(book -> modelMapper.map(book, BookDTO.class))
+                .collect(Collectors.toList());
+
+        return new PageImpl<>(content, pageRequest, result.getTotalElements());
+    }
+
+    private PageDTO<BookDTO> pageDto() {
+        return PageDTO.of(result, pageRequest, book -> modelMapper.map(book, BookDTO.class));
+    }
+}
@@ -0,0 +1,218 @@
+package com.nhamparsomia.libraryapi.benchmark;
+
+import com.nhamparsomia.libraryapi.LibraryApiApplication;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Measures time-to-first-request and resident memory of a freshly started JVM for the default
+ * configuration, the production profile and, when built with {@code -Pfast-startup}, the
+ * production profile with the class-data-sharing archive. Every run is appended to
+ * {@code target/benchmark/startup.csv} so results can be compared across changes.
+ */
+@Tag("benchmark")
+public class StartupBenchmarkTest {
+
+    private static final Path OUTPUT = Paths.get("target", "benchmark");
+    private static final Path THIN_JAR_LIB = Paths.get("target", "lib");
+    private static final Path CDS_ARCHIVE = Paths.get("target", "library-api.jsa");
+    private static final Duration STARTUP_TIMEOUT = Duration.ofSeconds(90);
+
+    private final HttpClient http = HttpClient.newHttpClient();
+
+    @Test
+    @DisplayName("Deve medir o tempo até a primeira requisição e a memória residente na inicialização")
+    public void startupBenchmark() throws Exception {
+        int runs = Integer.getInteger("startup.runs", 3);
+        String classpath = classpath();
+
+        List<Variant> variants = new ArrayList<>(Arrays.asList(
+                new Variant("default", Collections.emptyList(), Collections.emptyList()),
+                new Variant("production", Collections.emptyList(), List.of("--spring.profiles.active=production"))
+        ));
+
+        if (Files.exists(CDS_ARCHIVE)) {
+            variants.add(new Variant(
+                    "production-cds",
+                    List.of("-XX:SharedArchiveFile=" + CDS_ARCHIVE.toAbsolutePath(), "-Xshare:auto"),
+                    List.of("--spring.profiles.active=production")
+            ));
+        }
+
+        Files.createDirectories(OUTPUT);
+
+        for (Variant variant : variants) {
+            List<Long> times = new ArrayList<>();
+            List<Long> rss = new ArrayList<>();
+
+            for (int run = 0; run < runs; run++) {
+                Sample sample = measure(variant, classpath);
+                times.add(sample.timeToFirstRequestMillis);
+                rss.add(sample.rssKb);
+                record(variant, sample);
+            }
+
+            Collections.sort(times);
+            Collections.sort(rss);
+            System.out.printf("%-16s time-to-first-request median %5d ms, startup RSS median %6d MB%n",
+                    variant.name, times.get(times.size() / 2), rss.get(rss.size() / 2) / 1024);
+
+            assertThat(times).allMatch(time -> time > 0);
+        }
+    }
+
+    private Sample measure(Variant variant, String classpath) throws Exception {
+        int port = freePort();
+
+        List<String> command = new ArrayList<>();
+        command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        command.addAll(variant.jvmArgs);
+        command.add("-Dspring.devtools.restart.enabled=false");
+        command.add("-cp");
+        command.add(classpath);
+        command.add(LibraryApiApplication.class.getName());
+        command.add("--server.port=" + port);
+        command.add("--spring.boot.admin.client.enabled=false");
+        command.addAll(variant.appArgs);
+
+        Path log = OUTPUT.resolve("startup-" + variant.name + ".log");
+        long start = System.nanoTime();
+        Process process = new ProcessBuilder(command)
+                .redirectErrorStream(true)
+                .redirectOutput(log.toFile())
+                .start();
+
+        try {
+            waitForFirstRequest(port, process);
+            long timeToFirstRequest = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+            return new Sample(timeToFirstRequest, residentSetKb(process.pid()));
+        } finally {
+            process.destroy();
+            if (!process.waitFor(30, TimeUnit.SECONDS)) {
+                process.destroyForcibly();
+            }
+        }
+    }
+
+    private void waitForFirstRequest(int port, Process process) throws InterruptedException {
+        HttpRequest request = HttpRequest
+                .newBuilder(URI.create("http://127.0.0.1:" + port + "/api/books?page=0&size=1"))
+                .timeout(Duration.ofSeconds(5))
+                .build();
+        long deadline = System.nanoTime() + STARTUP_TIMEOUT.toNanos();
+
+        while (System.nanoTime() < deadline) {
+            if (!process.isAlive()) {
+                throw new IllegalStateException("Application exited during startup, see target/benchmark logs");
+            }
+
+            try {
+                if (http.send(request, HttpResponse.BodyHandlers.discarding()).statusCode() == 200) {
+                    return;
+                }
+            } catch (IOException notListeningYet) {
+                // server socket not bound yet
+            }
+
+            Thread.sleep(5);
+        }
+
+        throw new IllegalStateException("Application did not answer within " + STARTUP_TIMEOUT);
+    }
+
+    private void record(Variant variant, Sample sample) throws IOException {
+        Path csv = OUTPUT.resolve("startup.csv");
+        if (!Files.exists(csv)) {
+            Files.writeString(csv, "timestamp,variant,time_to_first_request_ms,rss_kb\n");
+        }
+
+        String line = String.format("%s,%s,%d,%d%n", Instant.now(), variant.name, sample.timeToFirstRequestMillis, sample.rssKb);
+        Files.writeString(csv, line, StandardOpenOption.APPEND);
+    }
+
+    /**
+     * Prefers the thin jar produced by {@code -Pfast-startup}, whose classpath matches the CDS
+     * archive, and falls back to the test classpath.
+     */
+    private static String classpath() throws IOException {
+        if (Files.isDirectory(THIN_JAR_LIB)) {
+            try (Stream<Path> files = Files.list(THIN_JAR_LIB.getParent())) {
+                Optional<Path> thinJar = files
+                        .filter(path -> path.getFileName().toString().matches("library-api-.*(?<!-exec)\\.jar"))
+                        .findFirst();
+
+                if (thinJar.isPresent()) {
+                    return thinJar.get().toAbsolutePath().toString();
+                }
+            }
+        }
+
+        return System.getProperty("java.class.path");
+    }
+
+    private static long residentSetKb(long pid) throws IOException {
+        Path status = Paths.get("/proc", String.valueOf(pid), "status");
+        if (!Files.exists(status)) {
+            return -1;
+        }
+
+        return Files.readAllLines(status).stream()
+                .filter(line -> line.startsWith("VmRSS:"))
+                .map(line -> line.replaceAll("[^0-9]", ""))
+                .mapToLong(Long::parseLong)
+                .findFirst()
+                .orElse(-1);
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    private static class Variant {
+        private final String name;
+        private final List<String> jvmArgs;
+        private final List<String> appArgs;
+
+        Variant(String name, List<String> jvmArgs, List<String> appArgs) {
+            this.name = name;
+            this.jvmArgs = jvmArgs;
+            this.appArgs = appArgs;
+        }
+    }
+
+    private static class Sample {
+        private final long timeToFirstRequestMillis;
+        private final long rssKb;
+
+        Sample(long timeToFirstRequestMillis, long rssKb) {
+            this.timeToFirstRequestMillis = timeToFirstRequestMillis;
+            this.rssKb = rssKb;
+        }
+    }
+}
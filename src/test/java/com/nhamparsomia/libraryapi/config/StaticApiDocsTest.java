@@ -0,0 +1,112 @@
+package com.nhamparsomia.libraryapi.config;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.swagger.annotations.ApiOperation;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.context.annotation.ClassPathScanningCandidateComponentProvider;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.type.filter.AnnotationTypeFilter;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.InputStream;
+import java.lang.reflect.Method;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class StaticApiDocsTest {
+
+    private static final String RESOURCE_PACKAGE = "com.nhamparsomia.libraryapi.api.resource";
+    private static final String API_DOCS = "static" + StaticApiDocsController.API_DOCS_LOCATION;
+
+    @Test
+    @DisplayName("Deve gerar a documentação estática com os mesmos endpoints e descrições dos controllers")
+    public void staticApiDocsMatchControllersTest() throws Exception {
+        Map<String, Set<String>> controllerEndpoints = controllerEndpoints();
+        Map<String, String> documentedEndpoints = documentedEndpoints();
+
+        assertThat(documentedEndpoints.keySet()).isEqualTo(controllerEndpoints.keySet());
+
+        documentedEndpoints.forEach((endpoint, summary) ->
+                assertThat(controllerEndpoints.get(endpoint)).as(endpoint).contains(summary));
+    }
+
+    @Test
+    @DisplayName("Deve gerar a versão pré-comprimida da documentação")
+    public void precompressedApiDocsTest() {
+        assertThat(new ClassPathResource(API_DOCS + ".gz").exists()).isTrue();
+    }
+
+    private Map<String, String> documentedEndpoints() throws Exception {
+        Map<String, String> endpoints = new HashMap<>();
+
+        try (InputStream json = new ClassPathResource(API_DOCS).getInputStream()) {
+            JsonNode paths = new ObjectMapper().readTree(json).get("paths");
+
+            Iterator<Map.Entry<String, JsonNode>> pathIterator = paths.fields();
+            while (pathIterator.hasNext()) {
+                Map.Entry<String, JsonNode> path = pathIterator.next();
+
+                path.getValue().fields().forEachRemaining(operation -> endpoints.put(
+                        operation.getKey().toUpperCase() + " " + path.getKey(),
+                        operation.getValue().path("summary").asText()
+                ));
+            }
+        }
+
+        return endpoints;
+    }
+
+    private Map<String, Set<String>> controllerEndpoints() throws Exception {
+        ClassPathScanningCandidateComponentProvider scanner = new ClassPathScanningCandidateComponentProvider(false);
+        scanner.addIncludeFilter(new AnnotationTypeFilter(RestController.class));
+
+        Map<String, Set<String>> endpoints = new HashMap<>();
+
+        for (BeanDefinition definition : scanner.findCandidateComponents(RESOURCE_PACKAGE)) {
+            Class<?> controller = Class.forName(definition.getBeanClassName());
+            RequestMapping controllerMapping = AnnotatedElementUtils.findMergedAnnotation(controller, RequestMapping.class);
+            String basePath = controllerMapping == null || controllerMapping.path().length == 0
+                    ? ""
+                    : controllerMapping.path()[0];
+
+            for (Method method : controller.getDeclaredMethods()) {
+                RequestMapping mapping = AnnotatedElementUtils.findMergedAnnotation(method, RequestMapping.class);
+                ApiOperation operation = method.getAnnotation(ApiOperation.class);
+                if (mapping == null) {
+                    continue;
+                }
+
+                String[] paths = mapping.path().length == 0 ? new String[]{""} : mapping.path();
+                for (String path : paths) {
+                    for (RequestMethod requestMethod : mapping.method()) {
+                        endpoints
+                                .computeIfAbsent(requestMethod.name() + " " + join(basePath, path), key -> new HashSet<>())
+                                .add(operation == null ? "" : operation.value());
+                    }
+                }
+            }
+        }
+
+        return endpoints;
+    }
+
+    private static String join(String basePath, String path) {
+        if (path.isEmpty()) {
+            return basePath;
+        }
+
+        return basePath.replaceAll("/$", "") + "/" + path.replaceAll("^/", "");
+    }
+}
@@ -0,0 +1,127 @@
+package com.nhamparsomia.libraryapi.config.bulkhead;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLTransientConnectionException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+
+public class BulkheadTest {
+
+    private Bulkhead bulkhead;
+
+    @AfterEach
+    public void tearDown() {
+        bulkhead.shutdown();
+    }
+
+    @Test
+    @DisplayName("Deve recusar imediatamente as tarefas quando o bulkhead estiver cheio")
+    public void rejectWhenFullTest() throws Exception {
+        bulkhead = Bulkhead.bounded("search", new BulkheadProperties.Pool(1, 1, 1));
+        CountDownLatch release = new CountDownLatch(1);
+
+        CompletableFuture<String> running = bulkhead.supply(() -> await(release));
+        CompletableFuture<String> queued = bulkhead.supply(() -> "queued");
+        CompletableFuture<String> rejected = bulkhead.supply(() -> "rejected");
+
+        Throwable exception = catchThrowable(() -> rejected.get(1, TimeUnit.SECONDS));
+        assertThat(exception).isInstanceOf(ExecutionException.class);
+        assertThat(exception.getCause()).isInstanceOf(BulkheadFullException.class);
+
+        release.countDown();
+        assertThat(running.get(5, TimeUnit.SECONDS)).isEqualTo("done");
+        assertThat(queued.get(5, TimeUnit.SECONDS)).isEqualTo("queued");
+    }
+
+    @Test
+    @DisplayName("Deve limitar as conexões abertas pelas tarefas do bulkhead")
+    public void connectionQuotaTest() throws Exception {
+        bulkhead = Bulkhead.bounded("search", new BulkheadProperties.Pool(2, 10, 1));
+        DataSource target = Mockito.mock(DataSource.class);
+        Mockito.when(target.getConnection()).then(invocation -> Mockito.mock(Connection.class));
+        BulkheadDataSource dataSource = new BulkheadDataSource(target, 50);
+        CountDownLatch opened = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        CompletableFuture<Void> holding = bulkhead.run(() -> {
+            try (Connection connection = dataSource.getConnection(); Connection nested = dataSource.getConnection()) {
+                opened.countDown();
+                await(release);
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        assertThat(opened.await(5, TimeUnit.SECONDS)).isTrue();
+
+        CompletableFuture<Void> waiting = bulkhead.run(() -> {
+            try (Connection connection = dataSource.getConnection()) {
+                connection.isValid(1);
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        Throwable exception = catchThrowable(() -> waiting.get(5, TimeUnit.SECONDS));
+        assertThat(exception.getCause()).hasCauseInstanceOf(SQLTransientConnectionException.class);
+
+        release.countDown();
+        holding.get(5, TimeUnit.SECONDS);
+        bulkhead.run(() -> {
+            try (Connection connection = dataSource.getConnection()) {
+                connection.isValid(1);
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        }).get(5, TimeUnit.SECONDS);
+
+        assertThat(dataSource.getConnection()).isNotNull();
+    }
+
+    @Test
+    @DisplayName("Deve manter os atributos da requisição na thread do bulkhead")
+    public void requestAttributesTest() throws Exception {
+        bulkhead = Bulkhead.bounded("search", new BulkheadProperties.Pool(1, 1, 1));
+        ServletRequestAttributes attributes = new ServletRequestAttributes(new MockHttpServletRequest());
+
+        RequestContextHolder.setRequestAttributes(attributes);
+        try {
+            assertThat(bulkhead.supply(RequestContextHolder::getRequestAttributes).get(5, TimeUnit.SECONDS)).isSameAs(attributes);
+        } finally {
+            RequestContextHolder.resetRequestAttributes();
+        }
+
+        assertThat(bulkhead.supply(RequestContextHolder::getRequestAttributes).get(5, TimeUnit.SECONDS)).isNull();
+    }
+
+    @Test
+    @DisplayName("Deve executar as tarefas na própria thread quando os bulkheads estiverem desabilitados")
+    public void inlineTest() {
+        bulkhead = Bulkhead.inline("search");
+
+        CompletableFuture<String> result = bulkhead.supply(() -> Thread.currentThread().getName());
+
+        assertThat(result).isCompletedWithValue(Thread.currentThread().getName());
+    }
+
+    private static String await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+            return "done";
+        } catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
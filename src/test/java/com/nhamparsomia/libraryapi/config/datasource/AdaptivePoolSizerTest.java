@@ -0,0 +1,49 @@
+package com.nhamparsomia.libraryapi.config.datasource;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class AdaptivePoolSizerTest {
+
+    private final AdaptivePoolSizer sizer = new AdaptivePoolSizer(properties(), null, new SimpleMeterRegistry());
+
+    @Test
+    @DisplayName("Deve aumentar o pool quando há espera por conexões e as consultas estão rápidas")
+    public void growWhenQueueingTest() {
+        assertThat(sizer.nextSize(10, new AdaptivePoolSizer.PoolSample(3, 0, 20, 2))).isEqualTo(12);
+        assertThat(sizer.nextSize(10, new AdaptivePoolSizer.PoolSample(0, 0, 20, 2))).isEqualTo(12);
+    }
+
+    @Test
+    @DisplayName("Deve reduzir o pool quando o banco está saturado")
+    public void shrinkWhenDatabaseSaturatedTest() {
+        assertThat(sizer.nextSize(10, new AdaptivePoolSizer.PoolSample(3, 0, 20, 80))).isEqualTo(8);
+    }
+
+    @Test
+    @DisplayName("Deve devolver conexões ociosas aos poucos")
+    public void shrinkWhenIdleTest() {
+        assertThat(sizer.nextSize(10, new AdaptivePoolSizer.PoolSample(0, 8, 0, 1))).isEqualTo(9);
+        assertThat(sizer.nextSize(10, new AdaptivePoolSizer.PoolSample(0, 2, 0, 1))).isEqualTo(10);
+    }
+
+    @Test
+    @DisplayName("Deve manter o tamanho do pool dentro dos limites configurados")
+    public void boundsTest() {
+        assertThat(sizer.nextSize(20, new AdaptivePoolSizer.PoolSample(5, 0, 50, 1))).isEqualTo(20);
+        assertThat(sizer.nextSize(4, new AdaptivePoolSizer.PoolSample(0, 0, 0, 100))).isEqualTo(4);
+    }
+
+    private static AdaptivePoolProperties properties() {
+        AdaptivePoolProperties properties = new AdaptivePoolProperties();
+        properties.setMinSize(4);
+        properties.setMaxSize(20);
+        properties.setStep(2);
+        properties.setAcquireThresholdMs(5);
+        properties.setUsageThresholdMs(50);
+        return properties;
+    }
+}
@@ -0,0 +1,207 @@
+package com.nhamparsomia.libraryapi.config.datasource;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import javax.servlet.http.Cookie;
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ReplicaRoutingDataSourceTest {
+
+    private EmbeddedDatabase primary;
+    private EmbeddedDatabase firstReplicaDatabase;
+    private EmbeddedDatabase secondReplicaDatabase;
+    private SwitchableDataSource firstReplica;
+    private SwitchableDataSource secondReplica;
+
+    @BeforeEach
+    public void setUp() {
+        primary = database("primary");
+        firstReplicaDatabase = database("replica-1");
+        secondReplicaDatabase = database("replica-2");
+        firstReplica = new SwitchableDataSource(firstReplicaDatabase);
+        secondReplica = new SwitchableDataSource(secondReplicaDatabase);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        RequestContextHolder.resetRequestAttributes();
+        primary.shutdown();
+        firstReplicaDatabase.shutdown();
+        secondReplicaDatabase.shutdown();
+    }
+
+    @Test
+    @DisplayName("Deve enviar transações somente leitura para as réplicas e as demais para o primário")
+    public void routeByTransactionTypeTest() {
+        Routing routing = routing(0, firstReplica);
+
+        assertThat(routing.read()).isEqualTo("replica-1");
+        assertThat(routing.write()).isEqualTo("primary");
+    }
+
+    @Test
+    @DisplayName("Deve distribuir as leituras entre as réplicas")
+    public void roundRobinTest() {
+        Routing routing = routing(0, firstReplica, secondReplica);
+
+        assertThat(routing.read()).isEqualTo("replica-1");
+        assertThat(routing.read()).isEqualTo("replica-2");
+        assertThat(routing.read()).isEqualTo("replica-1");
+    }
+
+    @Test
+    @DisplayName("Deve ignorar réplicas indisponíveis e usar o primário quando não houver nenhuma")
+    public void unhealthyReplicaTest() {
+        Routing routing = routing(0, firstReplica, secondReplica);
+
+        firstReplica.down = true;
+        routing.dataSource.checkReplicas();
+
+        assertThat(routing.dataSource.replicaStatus()).containsEntry("replica-1", false).containsEntry("replica-2", true);
+        assertThat(routing.read()).isEqualTo("replica-2");
+        assertThat(routing.read()).isEqualTo("replica-2");
+
+        secondReplica.down = true;
+        routing.dataSource.checkReplicas();
+
+        assertThat(routing.read()).isEqualTo("primary");
+    }
+
+    @Test
+    @DisplayName("Deve ler do primário logo após uma escrita do mesmo cliente quando a janela de leitura das próprias escritas estiver ativa")
+    public void readYourWritesTest() {
+        Routing routing = routing(60_000, firstReplica);
+
+        MockHttpServletResponse writeResponse = bindRequest();
+        assertThat(routing.read()).isEqualTo("replica-1");
+
+        routing.write();
+
+        assertThat(routing.read()).isEqualTo("primary");
+        Cookie lastWrite = writeResponse.getCookie(ReplicaRoutingDataSource.LAST_WRITE_COOKIE);
+        assertThat(lastWrite).isNotNull();
+
+        bindRequest(lastWrite);
+        assertThat(routing.read()).isEqualTo("primary");
+    }
+
+    @Test
+    @DisplayName("Deve manter nas réplicas as leituras dos clientes que não escreveram")
+    public void readYourWritesOtherClientsTest() {
+        Routing routing = routing(60_000, firstReplica);
+
+        bindRequest();
+        routing.write();
+
+        bindRequest();
+        assertThat(routing.read()).isEqualTo("replica-1");
+
+        bindRequest(new Cookie(ReplicaRoutingDataSource.LAST_WRITE_COOKIE, "0"));
+        assertThat(routing.read()).isEqualTo("replica-1");
+
+        RequestContextHolder.resetRequestAttributes();
+        assertThat(routing.read()).isEqualTo("replica-1");
+    }
+
+    private static MockHttpServletResponse bindRequest(Cookie... cookies) {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        request.setCookies(cookies);
+
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request, response));
+        return response;
+    }
+
+    private Routing routing(long readYourWritesMillis, DataSource... replicas) {
+        Map<String, DataSource> targets = new LinkedHashMap<>();
+        for (int index = 0; index < replicas.length; index++) {
+            targets.put("replica-" + (index + 1), replicas[index]);
+        }
+
+        ReplicaRoutingDataSource dataSource = new ReplicaRoutingDataSource(primary, targets, readYourWritesMillis, 0, 1);
+        dataSource.afterPropertiesSet();
+
+        return new Routing(dataSource);
+    }
+
+    private static EmbeddedDatabase database(String name) {
+        EmbeddedDatabase database = new EmbeddedDatabaseBuilder()
+                .setType(EmbeddedDatabaseType.H2)
+                .generateUniqueName(true)
+                .build();
+
+        JdbcTemplate jdbc = new JdbcTemplate(database);
+        jdbc.execute("create table node (name varchar(20))");
+        jdbc.update("insert into node (name) values (?)", name);
+
+        return database;
+    }
+
+    private static class SwitchableDataSource extends DelegatingDataSource {
+        private volatile boolean down;
+
+        SwitchableDataSource(DataSource target) {
+            super(target);
+        }
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            if (down) {
+                throw new SQLException("Replica is down");
+            }
+
+            return super.getConnection();
+        }
+    }
+
+    private static class Routing {
+        private final ReplicaRoutingDataSource dataSource;
+        private final JdbcTemplate jdbc;
+        private final TransactionTemplate readOnly;
+        private final TransactionTemplate readWrite;
+
+        Routing(ReplicaRoutingDataSource dataSource) {
+            DataSource lazy = new LazyConnectionDataSourceProxy(dataSource);
+            DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(lazy);
+
+            this.dataSource = dataSource;
+            this.jdbc = new JdbcTemplate(lazy);
+            this.readWrite = new TransactionTemplate(transactionManager);
+            this.readOnly = new TransactionTemplate(transactionManager);
+            this.readOnly.setReadOnly(true);
+        }
+
+        String read() {
+            return readOnly.execute(status -> node());
+        }
+
+        String write() {
+            return readWrite.execute(status -> node());
+        }
+
+        private String node() {
+            return jdbc.queryForObject("select name from node", String.class);
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.nhamparsomia.libraryapi.config.ratelimit;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.util.Arrays;
+import java.util.HashSet;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class RateLimitFilterTest {
+
+    private final RateLimitFilter filter = new RateLimitFilter(new RateLimiter(properties(), () -> 0L), "X-API-Key",
+            new HashSet<>(Arrays.asList("client-a", "client-b")));
+
+    @Test
+    @DisplayName("Deve responder 429 com Retry-After quando o cliente exceder o limite")
+    public void tooManyRequestsTest() throws Exception {
+        assertThat(perform(request("GET", "/api/books", "10.0.0.1")).getStatus()).isEqualTo(200);
+
+        MockHttpServletResponse response = perform(request("GET", "/api/books", "10.0.0.1"));
+
+        assertThat(response.getStatus()).isEqualTo(429);
+        assertThat(response.getHeader("Retry-After")).isEqualTo("5");
+        assertThat(response.getContentAsString()).isEqualTo("{\"errors\":[\"Too many requests\"]}");
+    }
+
+    @Test
+    @DisplayName("Deve cobrar menos pela busca por id do que pela pesquisa")
+    public void endpointCostTest() throws Exception {
+        for (int request = 0; request < 5; request++) {
+            assertThat(perform(request("GET", "/api/books/1", "10.0.0.1")).getStatus()).isEqualTo(200);
+        }
+
+        assertThat(perform(request("GET", "/api/books/1", "10.0.0.1")).getStatus()).isEqualTo(429);
+    }
+
+    @Test
+    @DisplayName("Deve limitar pela chave de API antes do endereço de origem")
+    public void apiKeyTest() throws Exception {
+        MockHttpServletRequest withKey = request("GET", "/api/books", "10.0.0.1");
+        withKey.addHeader("X-API-Key", "client-a");
+        MockHttpServletRequest otherKey = request("GET", "/api/books", "10.0.0.1");
+        otherKey.addHeader("X-API-Key", "client-b");
+
+        assertThat(perform(withKey).getStatus()).isEqualTo(200);
+        assertThat(perform(otherKey).getStatus()).isEqualTo(200);
+        assertThat(perform(request("GET", "/api/books", "10.0.0.1")).getStatus()).isEqualTo(200);
+    }
+
+    @Test
+    @DisplayName("Deve limitar pelo endereço de origem quando a chave de API não for conhecida")
+    public void unknownApiKeyTest() throws Exception {
+        MockHttpServletRequest firstKey = request("GET", "/api/books", "10.0.0.1");
+        firstKey.addHeader("X-API-Key", "invented-1");
+        MockHttpServletRequest secondKey = request("GET", "/api/books", "10.0.0.1");
+        secondKey.addHeader("X-API-Key", "invented-2");
+
+        assertThat(perform(firstKey).getStatus()).isEqualTo(200);
+        assertThat(perform(secondKey).getStatus()).isEqualTo(429);
+    }
+
+    private MockHttpServletResponse perform(MockHttpServletRequest request) throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, new MockFilterChain());
+        return response;
+    }
+
+    private static MockHttpServletRequest request(String method, String uri, String remoteAddress) {
+        MockHttpServletRequest request = new MockHttpServletRequest(method, uri);
+        request.setRemoteAddr(remoteAddress);
+        return request;
+    }
+
+    private static RateLimitProperties properties() {
+        RateLimitProperties properties = new RateLimitProperties();
+        properties.setCapacity(5);
+        properties.setRefillPerSecond(1);
+        return properties;
+    }
+}
@@ -0,0 +1,116 @@
+package com.nhamparsomia.libraryapi.config.ratelimit;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class RateLimiterTest {
+
+    private long now = TimeUnit.HOURS.toNanos(1);
+
+    @Test
+    @DisplayName("Deve permitir uma rajada até a capacidade e recusar o excedente")
+    public void burstTest() {
+        RateLimiter limiter = new RateLimiter(properties(10, 5, 100), () -> now);
+
+        for (int request = 0; request < 10; request++) {
+            assertThat(limiter.acquire("10.0.0.1", 1)).isZero();
+        }
+
+        assertThat(limiter.acquire("10.0.0.1", 1)).isEqualTo(TimeUnit.MILLISECONDS.toNanos(200));
+        assertThat(limiter.acquire("10.0.0.2", 1)).isZero();
+    }
+
+    @Test
+    @DisplayName("Deve devolver fichas ao balde com o passar do tempo")
+    public void refillTest() {
+        RateLimiter limiter = new RateLimiter(properties(10, 5, 100), () -> now);
+        assertThat(limiter.acquire("10.0.0.1", 10)).isZero();
+        assertThat(limiter.acquire("10.0.0.1", 5)).isEqualTo(TimeUnit.SECONDS.toNanos(1));
+
+        now += TimeUnit.SECONDS.toNanos(1);
+
+        assertThat(limiter.acquire("10.0.0.1", 5)).isZero();
+        assertThat(limiter.acquire("10.0.0.1", 1)).isPositive();
+    }
+
+    @Test
+    @DisplayName("Deve cobrar o custo configurado para cada endpoint")
+    public void costTest() {
+        RateLimiter limiter = new RateLimiter(new RateLimitProperties(), () -> now);
+
+        assertThat(limiter.cost("GET", "/api/books")).isEqualTo(5);
+        assertThat(limiter.cost("GET", "/api/books/1")).isEqualTo(1);
+        assertThat(limiter.cost("GET", "/api/books/1/loans")).isEqualTo(3);
+        assertThat(limiter.cost("POST", "/api/books")).isEqualTo(1);
+        assertThat(limiter.cost("PATCH", "/api/loans/batch")).isEqualTo(10);
+        assertThat(limiter.cost("GET", "/api/analytics/loans/daily")).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("Deve cobrar das consultas em lote um custo proporcional ao maior lote aceito")
+    public void bulkLookupCostTest() {
+        RateLimitProperties properties = new RateLimitProperties();
+        RateLimiter limiter = new RateLimiter(properties, () -> now);
+
+        assertThat(limiter.cost("GET", "/api/books/lookup")).isEqualTo(50);
+        assertThat(limiter.cost("POST", "/api/books/lookup")).isEqualTo(50);
+        assertThat(limiter.cost("POST", "/api/books/availability")).isEqualTo(20);
+
+        // a client with a full bucket gets only two of the largest lookups in a burst
+        assertThat(limiter.acquire("10.0.0.1", limiter.cost("POST", "/api/books/lookup"))).isZero();
+        assertThat(limiter.acquire("10.0.0.1", limiter.cost("POST", "/api/books/lookup"))).isZero();
+        assertThat(limiter.acquire("10.0.0.1", limiter.cost("POST", "/api/books/lookup"))).isPositive();
+    }
+
+    @Test
+    @DisplayName("Deve limitar a quantidade de clientes acompanhados")
+    public void boundedClientsTest() {
+        RateLimiter limiter = new RateLimiter(properties(2, 1, 2), () -> now);
+        limiter.acquire("10.0.0.1", 2);
+        limiter.acquire("10.0.0.2", 2);
+
+        now += TimeUnit.MILLISECONDS.toNanos(500);
+        assertThat(limiter.acquire("10.0.0.3", 2)).isZero();
+        assertThat(limiter.acquire("10.0.0.4", 1)).isPositive();
+        assertThat(limiter.snapshot().get("trackedClients")).isEqualTo(2);
+        assertThat(limiter.snapshot().get("overflowRejected")).isEqualTo(1L);
+
+        now += TimeUnit.SECONDS.toNanos(2);
+        assertThat(limiter.acquire("10.0.0.5", 1)).isZero();
+        assertThat(limiter.client("10.0.0.5")).isPresent();
+        assertThat(limiter.client("10.0.0.1")).isEmpty();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    @DisplayName("Deve expor os clientes mais recusados sem revelar chaves de API")
+    public void snapshotTest() {
+        RateLimiter limiter = new RateLimiter(properties(1, 1, 100), () -> now);
+        limiter.acquire("key:abcdef123456", 1);
+        limiter.acquire("key:abcdef123456", 1);
+        limiter.acquire("10.0.0.1", 1);
+
+        Map<String, Object> snapshot = limiter.snapshot();
+
+        assertThat(snapshot.get("allowed")).isEqualTo(2L);
+        assertThat(snapshot.get("rejected")).isEqualTo(1L);
+        assertThat((List<?>) snapshot.get("topRejectedClients")).hasSize(1);
+        assertThat(((List<Map<String, Object>>) snapshot.get("topRejectedClients")).get(0))
+                .containsEntry("client", "key:abcd****")
+                .containsEntry("rejected", 1L);
+    }
+
+    private static RateLimitProperties properties(int capacity, int refillPerSecond, int maxClients) {
+        RateLimitProperties properties = new RateLimitProperties();
+        properties.setCapacity(capacity);
+        properties.setRefillPerSecond(refillPerSecond);
+        properties.setMaxClients(maxClients);
+        return properties;
+    }
+}
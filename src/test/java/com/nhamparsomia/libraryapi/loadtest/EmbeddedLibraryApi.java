@@ -0,0 +1,84 @@
+package com.nhamparsomia.libraryapi.loadtest;
+
+import com.nhamparsomia.libraryapi.LibraryApiApplication;
+import com.nhamparsomia.libraryapi.model.entity.Book;
+import com.nhamparsomia.libraryapi.model.repository.BookRepository;
+import com.nhamparsomia.libraryapi.service.BookService;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.servlet.context.ServletWebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * Boots {@link LibraryApiApplication} on a random localhost port backed by an in-memory H2
+ * database, or by the in-memory engine with {@code spring.profiles.active=in-memory}, with remote
+ * integrations (Spring Boot Admin, mail) kept off the network.
+ */
+public class EmbeddedLibraryApi implements AutoCloseable {
+
+    private final ConfigurableApplicationContext context;
+
+    private EmbeddedLibraryApi(ConfigurableApplicationContext context) {
+        this.context = context;
+    }
+
+    public static EmbeddedLibraryApi start(String... extraProperties) {
+        List<String> properties = new ArrayList<>(List.of(
+                "server.port=0",
+                "server.address=127.0.0.1",
+                "spring.datasource.url=jdbc:h2:mem:loadtest-" + System.nanoTime() + ";DB_CLOSE_DELAY=-1",
+                "spring.boot.admin.client.enabled=false",
+                "spring.devtools.restart.enabled=false",
+                "logging.level.root=WARN"
+        ));
+
+        // passed as command line arguments so that they override application.properties
+        String[] overrides = Stream.of(extraProperties)
+                .map(property -> "--" + property)
+                .toArray(String[]::new);
+
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(LibraryApiApplication.class)
+                .properties(properties.toArray(new String[0]))
+                .run(overrides);
+
+        return new EmbeddedLibraryApi(context);
+    }
+
+    public String baseUrl() {
+        int port = ((ServletWebServerApplicationContext) context).getWebServer().getPort();
+        return "http://127.0.0.1:" + port;
+    }
+
+    public ConfigurableApplicationContext context() {
+        return context;
+    }
+
+    public List<Book> seedBooks(int count) {
+        List<Book> books = IntStream.range(0, count)
+                .mapToObj(i -> Book.builder()
+                        .isbn("seed-" + i)
+                        .title("Seeded Book " + i)
+                        .author("Author " + (i % 50))
+                        .build())
+                .collect(Collectors.toList());
+
+        // the in-memory profile has no repositories
+        BookRepository repository = context.getBeanProvider(BookRepository.class).getIfAvailable();
+        if (repository == null) {
+            BookService service = context.getBean(BookService.class);
+            return books.stream().map(service::save).collect(Collectors.toList());
+        }
+
+        return repository.saveAll(books);
+    }
+
+    @Override
+    public void close() {
+        context.close();
+    }
+}
@@ -0,0 +1,140 @@
+package com.nhamparsomia.libraryapi.loadtest;
+
+import com.nhamparsomia.libraryapi.model.entity.Book;
+import lombok.Value;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Issues the scenario operations against a running API. It keeps just enough shared state
+ * (available books, open loans) so checkouts and returns target valid rows. When an operation
+ * has nothing to work on, e.g. a return with no open loans, it falls back to a search.
+ */
+public class LibraryApiClient {
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(10);
+
+    private final String baseUrl;
+    private final HttpClient http;
+    private final List<Book> seededBooks;
+    private final ConcurrentLinkedQueue<String> availableIsbns = new ConcurrentLinkedQueue<>();
+    private final ConcurrentLinkedQueue<OpenLoan> openLoans = new ConcurrentLinkedQueue<>();
+    private final AtomicLong isbnSequence = new AtomicLong();
+
+    public LibraryApiClient(String baseUrl, List<Book> seededBooks, Executor executor) {
+        this.baseUrl = baseUrl;
+        this.seededBooks = seededBooks;
+        this.http = HttpClient.newBuilder()
+                .executor(executor)
+                .connectTimeout(TIMEOUT)
+                .build();
+
+        seededBooks.forEach(book -> availableIsbns.add(book.getIsbn()));
+    }
+
+    /**
+     * Executes one operation and returns whether the API answered with a 2xx status.
+     */
+    public boolean execute(Operation operation) throws IOException, InterruptedException {
+        switch (operation) {
+            case CREATE_BOOK:
+                return createBook();
+            case CHECKOUT:
+                return checkout();
+            case RETURN:
+                return giveBack();
+            case LOANS_BY_BOOK:
+                return loansByBook();
+            case SEARCH:
+            default:
+                return search();
+        }
+    }
+
+    private boolean createBook() throws IOException, InterruptedException {
+        String isbn = "load-" + isbnSequence.incrementAndGet();
+        String json = String.format("{\"title\":\"Load Book %s\",\"author\":\"Load Author\",\"isbn\":\"%s\"}", isbn, isbn);
+
+        HttpResponse<String> response = send(jsonRequest("/api/books").POST(HttpRequest.BodyPublishers.ofString(json)));
+        if (isSuccess(response)) {
+            availableIsbns.add(isbn);
+        }
+        return isSuccess(response);
+    }
+
+    private boolean search() throws IOException, InterruptedException {
+        int author = ThreadLocalRandom.current().nextInt(50);
+        return isSuccess(send(request("/api/books?author=Author%20" + author + "&page=0&size=20").GET()));
+    }
+
+    private boolean checkout() throws IOException, InterruptedException {
+        String isbn = availableIsbns.poll();
+        if (isbn == null) {
+            return search();
+        }
+
+        String json = String.format("{\"isbn\":\"%s\",\"customer\":\"Load Customer\",\"customerEmail\":\"load@library-api.com\"}", isbn);
+        HttpResponse<String> response = send(jsonRequest("/api/loans").POST(HttpRequest.BodyPublishers.ofString(json)));
+
+        if (isSuccess(response)) {
+            openLoans.add(new OpenLoan(Long.valueOf(response.body().trim()), isbn));
+        } else {
+            availableIsbns.add(isbn);
+        }
+        return isSuccess(response);
+    }
+
+    private boolean giveBack() throws IOException, InterruptedException {
+        OpenLoan loan = openLoans.poll();
+        if (loan == null) {
+            return search();
+        }
+
+        HttpResponse<String> response = send(jsonRequest("/api/loans/" + loan.getId())
+                .method("PATCH", HttpRequest.BodyPublishers.ofString("{\"returned\":true}")));
+
+        if (isSuccess(response)) {
+            availableIsbns.add(loan.getIsbn());
+        }
+        return isSuccess(response);
+    }
+
+    private boolean loansByBook() throws IOException, InterruptedException {
+        Book book = seededBooks.get(ThreadLocalRandom.current().nextInt(seededBooks.size()));
+        return isSuccess(send(request("/api/books/" + book.getId() + "/loans?page=0&size=10").GET()));
+    }
+
+    private HttpRequest.Builder request(String path) {
+        return HttpRequest.newBuilder(URI.create(baseUrl + path))
+                .timeout(TIMEOUT)
+                .header("Accept", "application/json");
+    }
+
+    private HttpRequest.Builder jsonRequest(String path) {
+        return request(path).header("Content-Type", "application/json");
+    }
+
+    private HttpResponse<String> send(HttpRequest.Builder request) throws IOException, InterruptedException {
+        return http.send(request.build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    private static boolean isSuccess(HttpResponse<?> response) {
+        return response.statusCode() >= 200 && response.statusCode() < 300;
+    }
+
+    @Value
+    private static class OpenLoan {
+        long id;
+        String isbn;
+    }
+}
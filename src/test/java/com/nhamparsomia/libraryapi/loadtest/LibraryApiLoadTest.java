@@ -0,0 +1,120 @@
+package com.nhamparsomia.libraryapi.loadtest;
+
+import com.nhamparsomia.libraryapi.model.entity.Book;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Load scenarios against a locally started API. Excluded from the default build; run with
+ * {@code ./mvnw test -Pbenchmark -Dtest=LibraryApiLoadTest} and tune with {@code loadtest.*}
+ * system properties (see {@link LoadScenario}).
+ */
+@Tag("benchmark")
+public class LibraryApiLoadTest {
+
+    @Test
+    @DisplayName("Carga com predominância de consultas")
+    public void readHeavyScenario() throws Exception {
+        run(LoadScenario.fromSystemProperties("read-heavy", Map.of(
+                Operation.SEARCH, 70,
+                Operation.LOANS_BY_BOOK, 20,
+                Operation.CHECKOUT, 5,
+                Operation.RETURN, 4,
+                Operation.CREATE_BOOK, 1
+        )));
+    }
+
+    @Test
+    @DisplayName("Carga com predominância de empréstimos e devoluções")
+    public void checkoutHeavyScenario() throws Exception {
+        run(LoadScenario.fromSystemProperties("checkout-heavy", Map.of(
+                Operation.SEARCH, 20,
+                Operation.LOANS_BY_BOOK, 10,
+                Operation.CHECKOUT, 35,
+                Operation.RETURN, 30,
+                Operation.CREATE_BOOK, 5
+        )));
+    }
+
+    @Test
+    @DisplayName("Deve reduzir a latência de cauda com o dimensionamento adaptativo do pool de conexões")
+    public void adaptivePoolScenario() throws Exception {
+        Map<Operation, Integer> mix = Map.of(
+                Operation.SEARCH, 40,
+                Operation.LOANS_BY_BOOK, 20,
+                Operation.CHECKOUT, 20,
+                Operation.RETURN, 15,
+                Operation.CREATE_BOOK, 5
+        );
+        String[] undersizedPool = {
+                "spring.datasource.hikari.maximum-pool-size=2",
+                "spring.datasource.hikari.minimum-idle=2"
+        };
+
+        LoadReport fixed = run(LoadScenario.fromSystemProperties("pool-fixed", mix), undersizedPool);
+        LoadReport adaptive = run(LoadScenario.fromSystemProperties("pool-adaptive", mix), concat(undersizedPool,
+                "application.datasource.pool.adaptive.enabled=true",
+                "application.datasource.pool.adaptive.min-size=2",
+                "application.datasource.pool.adaptive.max-size=20",
+                "application.datasource.pool.adaptive.interval-ms=1000"
+        ));
+
+        System.out.printf("p99 fixed pool: %.2f ms, adaptive pool: %.2f ms%n",
+                fixed.total().getValueAtPercentile(99) / 1_000_000.0,
+                adaptive.total().getValueAtPercentile(99) / 1_000_000.0);
+    }
+
+    @Test
+    @DisplayName("Deve agrupar empréstimos concorrentes em menos transações")
+    public void checkoutBatchingScenario() throws Exception {
+        Map<Operation, Integer> mix = Map.of(
+                Operation.SEARCH, 10,
+                Operation.LOANS_BY_BOOK, 5,
+                Operation.CHECKOUT, 50,
+                Operation.RETURN, 35
+        );
+
+        LoadReport direct = run(LoadScenario.fromSystemProperties("checkout-direct", mix));
+        LoadReport batched = run(LoadScenario.fromSystemProperties("checkout-batched", mix),
+                "application.loans.checkout-batching.enabled=true");
+
+        System.out.printf("direct checkouts: %d requests, p99 %.2f ms; batched checkouts: %d requests, p99 %.2f ms%n",
+                direct.total().getTotalCount(),
+                direct.total().getValueAtPercentile(99) / 1_000_000.0,
+                batched.total().getTotalCount(),
+                batched.total().getValueAtPercentile(99) / 1_000_000.0);
+    }
+
+    private static String[] concat(String[] first, String... second) {
+        String[] all = Arrays.copyOf(first, first.length + second.length);
+        System.arraycopy(second, 0, all, first.length, second.length);
+        return all;
+    }
+
+    static LoadReport run(LoadScenario scenario, String... extraProperties) throws Exception {
+        ExecutorService httpExecutor = Executors.newCachedThreadPool();
+
+        try (EmbeddedLibraryApi api = EmbeddedLibraryApi.start(extraProperties)) {
+            List<Book> books = api.seedBooks(scenario.getSeededBooks());
+            LibraryApiClient client = new LibraryApiClient(api.baseUrl(), books, httpExecutor);
+
+            LoadReport report = new LoadGenerator(scenario, client).run();
+            report.print(System.out);
+            report.writeTo(LoadReport.defaultDirectory(scenario));
+
+            assertThat(report.total().getTotalCount()).isPositive();
+            return report;
+        } finally {
+            httpExecutor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package com.nhamparsomia.libraryapi.loadtest;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Open-model load generator: requests are scheduled at a fixed target rate regardless of how
+ * fast the server answers, and latency is measured from the intended start time so queueing
+ * inside the generator is not hidden (no coordinated omission).
+ */
+public class LoadGenerator {
+
+    private static final long HIGHEST_TRACKABLE_NANOS = TimeUnit.SECONDS.toNanos(60);
+
+    private final LoadScenario scenario;
+    private final LibraryApiClient client;
+    private final Map<Operation, Recorder> recorders = new EnumMap<>(Operation.class);
+    private final Map<Operation, LongAdder> errors = new EnumMap<>(Operation.class);
+
+    public LoadGenerator(LoadScenario scenario, LibraryApiClient client) {
+        this.scenario = scenario;
+        this.client = client;
+
+        for (Operation operation : Operation.values()) {
+            recorders.put(operation, new Recorder(HIGHEST_TRACKABLE_NANOS, 3));
+            errors.put(operation, new LongAdder());
+        }
+    }
+
+    public LoadReport run() throws InterruptedException {
+        ExecutorService clients = Executors.newFixedThreadPool(scenario.getClients());
+
+        try {
+            awaitAll(drive(clients, scenario.getWarmup().toNanos()));
+            reset();
+
+            long start = System.nanoTime();
+            drive(clients, scenario.getDuration().toNanos());
+            clients.shutdown();
+            clients.awaitTermination(1, TimeUnit.MINUTES);
+            long elapsed = System.nanoTime() - start;
+
+            Map<Operation, Histogram> histograms = new EnumMap<>(Operation.class);
+            Map<Operation, Long> errorCounts = new EnumMap<>(Operation.class);
+            recorders.forEach((operation, recorder) -> histograms.put(operation, recorder.getIntervalHistogram()));
+            errors.forEach((operation, count) -> errorCounts.put(operation, count.sum()));
+
+            return new LoadReport(scenario, elapsed, histograms, errorCounts);
+        } finally {
+            clients.shutdownNow();
+        }
+    }
+
+    private List<Future<?>> drive(ExecutorService clients, long durationNanos) {
+        List<Future<?>> calls = new ArrayList<>();
+        long intervalNanos = TimeUnit.SECONDS.toNanos(1) / scenario.getTargetRate();
+        long end = System.nanoTime() + durationNanos;
+        long next = System.nanoTime();
+
+        while (next < end) {
+            long intendedStart = next;
+            Operation operation = scenario.pick(ThreadLocalRandom.current().nextInt());
+
+            calls.add(clients.submit(() -> call(operation, intendedStart)));
+
+            next += intervalNanos;
+            long wait = next - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+        }
+
+        return calls;
+    }
+
+    /**
+     * Waits for the warmup calls still queued or in flight, so none of them is recorded
+     * after {@link #reset()}.
+     */
+    private void awaitAll(List<Future<?>> calls) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MINUTES.toNanos(1);
+
+        for (Future<?> call : calls) {
+            try {
+                call.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+            } catch (ExecutionException e) {
+                // call() already counts failures; nothing else to wait for
+            } catch (TimeoutException e) {
+                throw new IllegalStateException("Warmup calls did not finish within a minute", e);
+            }
+        }
+    }
+
+    private void call(Operation operation, long intendedStart) {
+        boolean success;
+        try {
+            success = client.execute(operation);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        } catch (Exception e) {
+            success = false;
+        }
+
+        long latency = Math.min(System.nanoTime() - intendedStart, HIGHEST_TRACKABLE_NANOS);
+        recorders.get(operation).recordValue(latency);
+
+        if (!success) {
+            errors.get(operation).increment();
+        }
+    }
+
+    private void reset() {
+        recorders.values().forEach(Recorder::reset);
+        errors.values().forEach(LongAdder::reset);
+    }
+}
@@ -0,0 +1,96 @@
+package com.nhamparsomia.libraryapi.loadtest;
+
+import org.HdrHistogram.Histogram;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Result of a {@link LoadGenerator} run. Latencies are recorded in nanoseconds and reported in
+ * milliseconds; {@link #writeTo(Path)} stores one HdrHistogram percentile distribution
+ * ({@code .hgrm}) per operation, which can be plotted with the HdrHistogram plotter.
+ */
+public class LoadReport {
+
+    private static final double NANOS_PER_MILLI = 1_000_000.0;
+
+    private final LoadScenario scenario;
+    private final long elapsedNanos;
+    private final Map<Operation, Histogram> histograms;
+    private final Map<Operation, Long> errors;
+
+    public LoadReport(LoadScenario scenario, long elapsedNanos, Map<Operation, Histogram> histograms, Map<Operation, Long> errors) {
+        this.scenario = scenario;
+        this.elapsedNanos = elapsedNanos;
+        this.histograms = histograms;
+        this.errors = errors;
+    }
+
+    public Histogram total() {
+        Histogram total = new Histogram(3);
+        histograms.values().forEach(total::add);
+        return total;
+    }
+
+    public double throughput() {
+        return total().getTotalCount() / (elapsedNanos / (double) TimeUnit.SECONDS.toNanos(1));
+    }
+
+    public double errorRate() {
+        long requests = total().getTotalCount();
+        long failed = errors.values().stream().mapToLong(Long::longValue).sum();
+        return requests == 0 ? 0 : failed / (double) requests;
+    }
+
+    public void print(PrintStream out) {
+        out.printf("%n=== %s: target %d req/s, %d clients, %ds ===%n",
+                scenario.getName(),
+                scenario.getTargetRate(),
+                scenario.getClients(),
+                scenario.getDuration().getSeconds());
+        out.printf("%-14s %10s %10s %10s %10s %10s%n", "operation", "count", "p50 ms", "p99 ms", "p999 ms", "errors");
+
+        histograms.forEach((operation, histogram) -> {
+            if (histogram.getTotalCount() > 0) {
+                printLine(out, operation.name(), histogram, errors.get(operation));
+            }
+        });
+        printLine(out, "TOTAL", total(), errors.values().stream().mapToLong(Long::longValue).sum());
+
+        out.printf("throughput: %.1f req/s, error rate: %.3f%%%n", throughput(), errorRate() * 100);
+    }
+
+    public void writeTo(Path directory) throws IOException {
+        Files.createDirectories(directory);
+
+        for (Map.Entry<Operation, Histogram> entry : histograms.entrySet()) {
+            writeHistogram(directory, entry.getKey().name().toLowerCase(), entry.getValue());
+        }
+        writeHistogram(directory, "total", total());
+    }
+
+    public static Path defaultDirectory(LoadScenario scenario) {
+        return Paths.get("target", "loadtest", scenario.getName());
+    }
+
+    private void writeHistogram(Path directory, String name, Histogram histogram) throws IOException {
+        try (PrintStream out = new PrintStream(Files.newOutputStream(directory.resolve(name + ".hgrm")))) {
+            histogram.outputPercentileDistribution(out, NANOS_PER_MILLI);
+        }
+    }
+
+    private static void printLine(PrintStream out, String label, Histogram histogram, long errors) {
+        out.printf("%-14s %10d %10.2f %10.2f %10.2f %10d%n",
+                label,
+                histogram.getTotalCount(),
+                histogram.getValueAtPercentile(50) / NANOS_PER_MILLI,
+                histogram.getValueAtPercentile(99) / NANOS_PER_MILLI,
+                histogram.getValueAtPercentile(99.9) / NANOS_PER_MILLI,
+                errors);
+    }
+}
@@ -0,0 +1,83 @@
+package com.nhamparsomia.libraryapi.loadtest;
+
+import lombok.Builder;
+import lombok.Getter;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Describes one load run: how fast requests are issued, by how many virtual clients,
+ * for how long and with which operation mix. Every value can be overridden with a
+ * {@code loadtest.*} system property, e.g. {@code -Dloadtest.rate=500 -Dloadtest.mix.search=70}.
+ */
+@Getter
+public class LoadScenario {
+
+    private final String name;
+    private final int targetRate;
+    private final int clients;
+    private final Duration warmup;
+    private final Duration duration;
+    private final int seededBooks;
+    private final Map<Operation, Integer> mix;
+    private final int totalWeight;
+
+    @Builder
+    public LoadScenario(String name, int targetRate, int clients, Duration warmup, Duration duration,
+                        int seededBooks, Map<Operation, Integer> mix) {
+        if (targetRate <= 0 || clients <= 0) {
+            throw new IllegalArgumentException("Load scenario needs a positive rate and number of clients");
+        }
+        if (mix == null || mix.values().stream().anyMatch(weight -> weight == null || weight < 0)) {
+            throw new IllegalArgumentException("Operation mix weights must not be negative");
+        }
+
+        this.totalWeight = mix.values().stream().mapToInt(Integer::intValue).sum();
+        if (totalWeight <= 0) {
+            throw new IllegalArgumentException("Operation mix must have at least one positive weight");
+        }
+
+        this.name = name;
+        this.targetRate = targetRate;
+        this.clients = clients;
+        this.warmup = warmup;
+        this.duration = duration;
+        this.seededBooks = seededBooks;
+        this.mix = mix;
+    }
+
+    public static LoadScenario fromSystemProperties(String name, Map<Operation, Integer> defaultMix) {
+        Map<Operation, Integer> mix = new EnumMap<>(Operation.class);
+
+        for (Operation operation : Operation.values()) {
+            String key = "loadtest.mix." + operation.name().toLowerCase().replace('_', '-');
+            mix.put(operation, Integer.getInteger(key, defaultMix.getOrDefault(operation, 0)));
+        }
+
+        return LoadScenario.builder()
+                .name(System.getProperty("loadtest.name", name))
+                .targetRate(Integer.getInteger("loadtest.rate", 200))
+                .clients(Integer.getInteger("loadtest.clients", 64))
+                .warmup(Duration.ofSeconds(Integer.getInteger("loadtest.warmup-seconds", 5)))
+                .duration(Duration.ofSeconds(Integer.getInteger("loadtest.duration-seconds", 30)))
+                .seededBooks(Integer.getInteger("loadtest.seeded-books", 1000))
+                .mix(Collections.unmodifiableMap(mix))
+                .build();
+    }
+
+    public Operation pick(int random) {
+        int point = Math.floorMod(random, totalWeight);
+
+        for (Map.Entry<Operation, Integer> entry : mix.entrySet()) {
+            point -= entry.getValue();
+            if (point < 0) {
+                return entry.getKey();
+            }
+        }
+
+        throw new IllegalStateException("Operation mix must have at least one positive weight");
+    }
+}
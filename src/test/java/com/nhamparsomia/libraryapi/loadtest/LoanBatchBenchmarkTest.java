@@ -0,0 +1,112 @@
+package com.nhamparsomia.libraryapi.loadtest;
+
+import com.nhamparsomia.libraryapi.model.entity.Book;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Compares checking out and returning N books one request at a time against the batch endpoints.
+ * Run with {@code ./mvnw test -Pbenchmark -Dtest=LoanBatchBenchmarkTest -Dloadtest.batch-size=100}.
+ */
+@Tag("benchmark")
+public class LoanBatchBenchmarkTest {
+
+    private final HttpClient http = HttpClient.newHttpClient();
+
+    @Test
+    @DisplayName("Deve comparar empréstimos e devoluções individuais com as operações em lote")
+    public void batchVersusIndividualCalls() throws Exception {
+        int batchSize = Integer.getInteger("loadtest.batch-size", 50);
+        int rounds = Integer.getInteger("loadtest.rounds", 20);
+
+        try (EmbeddedLibraryApi api = EmbeddedLibraryApi.start()) {
+            List<Book> books = api.seedBooks(batchSize * rounds * 2);
+            String baseUrl = api.baseUrl();
+
+            long individualNanos = 0;
+            long batchNanos = 0;
+
+            for (int round = 0; round < rounds; round++) {
+                List<Book> individualBooks = books.subList(round * batchSize * 2, round * batchSize * 2 + batchSize);
+                List<Book> batchBooks = books.subList(round * batchSize * 2 + batchSize, (round + 1) * batchSize * 2);
+
+                individualNanos += individualRound(baseUrl, individualBooks);
+                batchNanos += batchRound(baseUrl, batchBooks);
+            }
+
+            int operations = batchSize * rounds * 2;
+            System.out.printf("%nindividual: %8.1f ops/s (%d checkouts + returns)%n", rate(operations, individualNanos), operations);
+            System.out.printf("batch:      %8.1f ops/s (%d checkouts + returns, %d per batch)%n", rate(operations, batchNanos), operations, batchSize);
+
+            assertThat(batchNanos).isPositive();
+        }
+    }
+
+    private long individualRound(String baseUrl, List<Book> books) throws Exception {
+        long start = System.nanoTime();
+
+        for (Book book : books) {
+            HttpResponse<String> created = send(baseUrl + "/api/loans", "POST", loanJson(book));
+            assertThat(created.statusCode()).isEqualTo(201);
+
+            HttpResponse<String> returned = send(baseUrl + "/api/loans/" + created.body().trim(), "PATCH", "{\"returned\":true}");
+            assertThat(returned.statusCode()).isEqualTo(200);
+        }
+
+        return System.nanoTime() - start;
+    }
+
+    private long batchRound(String baseUrl, List<Book> books) throws Exception {
+        long start = System.nanoTime();
+
+        String loans = books.stream().map(this::loanJson).collect(Collectors.joining(",", "[", "]"));
+        HttpResponse<String> created = send(baseUrl + "/api/loans/batch", "POST", loans);
+        assertThat(created.statusCode()).isEqualTo(200);
+
+        String returns = extractIds(created.body()).stream()
+                .map(id -> "{\"id\":" + id + ",\"returned\":true}")
+                .collect(Collectors.joining(",", "[", "]"));
+        HttpResponse<String> returned = send(baseUrl + "/api/loans/batch", "PATCH", returns);
+        assertThat(returned.statusCode()).isEqualTo(200);
+
+        return System.nanoTime() - start;
+    }
+
+    private String loanJson(Book book) {
+        return String.format("{\"isbn\":\"%s\",\"customer\":\"Bench\",\"customerEmail\":\"bench@library-api.com\"}", book.getIsbn());
+    }
+
+    private static List<String> extractIds(String json) {
+        return Pattern.compile("\"id\":(\\d+)")
+                .matcher(json)
+                .results()
+                .map(match -> match.group(1))
+                .collect(Collectors.toList());
+    }
+
+    private HttpResponse<String> send(String url, String method, String json) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(url))
+                .header("Content-Type", "application/json")
+                .header("Accept", "application/json")
+                .method(method, HttpRequest.BodyPublishers.ofString(json))
+                .build();
+
+        return http.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    private static double rate(int operations, long nanos) {
+        return operations / (nanos / (double) TimeUnit.SECONDS.toNanos(1));
+    }
+}
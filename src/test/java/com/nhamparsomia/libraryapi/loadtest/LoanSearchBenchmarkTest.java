@@ -0,0 +1,102 @@
+package com.nhamparsomia.libraryapi.loadtest;
+
+import com.nhamparsomia.libraryapi.api.dto.LoanFilterDTO;
+import com.nhamparsomia.libraryapi.model.entity.Book;
+import com.nhamparsomia.libraryapi.model.entity.Loan;
+import com.nhamparsomia.libraryapi.model.repository.LoanRepository;
+import com.nhamparsomia.libraryapi.service.LoanService;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntConsumer;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Compares the former single {@code isbn = ? or customer = ?} loan search against the dedicated
+ * query shapes chosen by {@link LoanService#find}.
+ * Run with {@code ./mvnw test -Pbenchmark -Dtest=LoanSearchBenchmarkTest -Dloadtest.loans=50000}.
+ */
+@Tag("benchmark")
+public class LoanSearchBenchmarkTest {
+
+    private static final String LEGACY_SEARCH = "select count(*) from loan l join book b on l.id_book = b.id " +
+            "where b.isbn = ? or l.customer = ?";
+    private static final String LEGACY_PREFIX_SEARCH = "select count(*) from loan l where lower(l.customer) like ?";
+
+    @Test
+    @DisplayName("Deve comparar a busca de empréstimos com OR com as consultas dedicadas")
+    public void legacyVersusDedicatedShapes() {
+        int loans = Integer.getInteger("loadtest.loans", 20_000);
+        int rounds = Integer.getInteger("loadtest.rounds", 500);
+
+        try (EmbeddedLibraryApi api = EmbeddedLibraryApi.start()) {
+            List<Book> books = api.seedBooks(loans);
+            seedLoans(api, books);
+
+            JdbcTemplate jdbc = api.context().getBean(JdbcTemplate.class);
+            LoanService service = api.context().getBean(LoanService.class);
+            PageRequest page = PageRequest.of(0, 10);
+
+            report("isbn only", rounds,
+                    round -> jdbc.queryForObject(LEGACY_SEARCH, Long.class, isbn(round, loans), null),
+                    round -> service.find(LoanFilterDTO.builder().isbn(isbn(round, loans)).build(), page));
+
+            report("isbn or customer", rounds,
+                    round -> jdbc.queryForObject(LEGACY_SEARCH, Long.class, isbn(round, loans), customer(round)),
+                    round -> service.find(LoanFilterDTO.builder().isbn(isbn(round, loans)).customer(customer(round)).build(), page));
+
+            report("customer prefix", rounds,
+                    round -> jdbc.queryForObject(LEGACY_PREFIX_SEARCH, Long.class, "customer 1" + round % 10 + "%"),
+                    round -> service.find(LoanFilterDTO.builder().customerPrefix("Customer 1" + round % 10).build(), page));
+
+            assertThat(service.find(LoanFilterDTO.builder().isbn(isbn(0, loans)).build(), page).getTotalElements()).isEqualTo(1);
+        }
+    }
+
+    private void seedLoans(EmbeddedLibraryApi api, List<Book> books) {
+        List<Loan> loans = IntStream.range(0, books.size())
+                .mapToObj(i -> Loan.builder()
+                        .book(books.get(i))
+                        .customer(customer(i))
+                        .customerEmail("bench@library-api.com")
+                        .loanDate(LocalDate.now())
+                        .build())
+                .collect(Collectors.toList());
+
+        api.context().getBean(LoanRepository.class).saveAll(loans);
+    }
+
+    private static void report(String shape, int rounds, IntConsumer legacy, IntConsumer dedicated) {
+        double legacyRate = rate(rounds, legacy);
+        double dedicatedRate = rate(rounds, dedicated);
+
+        System.out.printf("%n%-18s legacy: %8.1f ops/s  dedicated: %8.1f ops/s%n", shape, legacyRate, dedicatedRate);
+    }
+
+    private static double rate(int rounds, IntConsumer search) {
+        IntStream.range(0, Math.min(rounds, 50)).forEach(search);
+
+        long start = System.nanoTime();
+        IntStream.range(0, rounds).forEach(search);
+        long nanos = System.nanoTime() - start;
+
+        return rounds / (nanos / (double) TimeUnit.SECONDS.toNanos(1));
+    }
+
+    private static String isbn(int round, int books) {
+        return "seed-" + (round * 7919 % books);
+    }
+
+    private static String customer(int index) {
+        return "Customer " + index;
+    }
+}
@@ -0,0 +1,9 @@
+package com.nhamparsomia.libraryapi.loadtest;
+
+public enum Operation {
+    CREATE_BOOK,
+    SEARCH,
+    CHECKOUT,
+    RETURN,
+    LOANS_BY_BOOK
+}
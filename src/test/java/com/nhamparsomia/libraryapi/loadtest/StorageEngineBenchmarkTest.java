@@ -0,0 +1,111 @@
+package com.nhamparsomia.libraryapi.loadtest;
+
+import com.nhamparsomia.libraryapi.api.dto.LoanFilterDTO;
+import com.nhamparsomia.libraryapi.model.entity.Book;
+import com.nhamparsomia.libraryapi.model.entity.Loan;
+import com.nhamparsomia.libraryapi.service.BookService;
+import com.nhamparsomia.libraryapi.service.LoanService;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.PageRequest;
+
+import java.time.LocalDate;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntConsumer;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Compares the JPA engine with the one of the {@code in-memory} profile through the same
+ * {@link BookService} and {@link LoanService} calls.
+ * Run with {@code ./mvnw test -Pbenchmark -Dtest=StorageEngineBenchmarkTest -Dloadtest.loans=50000}.
+ */
+@Tag("benchmark")
+public class StorageEngineBenchmarkTest {
+
+    private static final int SEED_BATCH = 500;
+    private static final int FREE_BOOKS = 100;
+
+    @Test
+    @DisplayName("Deve comparar o armazenamento JPA com o armazenamento em memória")
+    public void jpaVersusInMemory() {
+        int loans = Integer.getInteger("loadtest.loans", 20_000);
+        int rounds = Integer.getInteger("loadtest.rounds", 2_000);
+
+        Map<String, Double> jpa = measure(loans, rounds);
+        Map<String, Double> inMemory = measure(loans, rounds, "spring.profiles.active=in-memory");
+
+        jpa.forEach((operation, rate) ->
+                System.out.printf("%n%-18s jpa: %10.1f ops/s  in-memory: %10.1f ops/s%n", operation, rate, inMemory.get(operation)));
+    }
+
+    private Map<String, Double> measure(int loans, int rounds, String... properties) {
+        Map<String, Double> rates = new LinkedHashMap<>();
+
+        try (EmbeddedLibraryApi api = EmbeddedLibraryApi.start(properties)) {
+            BookService bookService = api.context().getBean(BookService.class);
+            LoanService loanService = api.context().getBean(LoanService.class);
+            List<Book> books = api.seedBooks(loans + FREE_BOOKS);
+            seedLoans(loanService, books.subList(0, loans));
+            PageRequest page = PageRequest.of(0, 10);
+
+            rates.put("book by isbn", rate(rounds, round -> bookService.getBookByIsbn(isbn(round, loans))));
+            rates.put("book by id", rate(rounds, round -> bookService.getById(books.get(round * 7919 % loans).getId())));
+            rates.put("customer loans", rate(rounds, round ->
+                    loanService.find(LoanFilterDTO.builder().customer(customer(round * 7919 % loans)).build(), page)));
+            rates.put("checkout + return", rate(rounds, round -> {
+                Loan loan = loanService.save(loan(books.get(loans + round % FREE_BOOKS), customer(round)));
+                loanService.updateReturned(loan.getId(), true);
+            }));
+
+            assertThat(bookService.getBookByIsbn(isbn(0, loans))).isPresent();
+            assertThat(loanService.find(LoanFilterDTO.builder().customer(customer(1)).build(), page).getTotalElements())
+                    .isGreaterThanOrEqualTo(1);
+        }
+
+        return rates;
+    }
+
+    private void seedLoans(LoanService loanService, List<Book> books) {
+        for (int from = 0; from < books.size(); from += SEED_BATCH) {
+            List<Loan> loans = IntStream.range(from, Math.min(from + SEED_BATCH, books.size()))
+                    .mapToObj(i -> loan(books.get(i), customer(i)))
+                    .collect(Collectors.toList());
+
+            loanService.saveAll(loans);
+        }
+    }
+
+    private static double rate(int rounds, IntConsumer operation) {
+        IntStream.range(0, Math.min(rounds, 50)).forEach(operation);
+
+        long start = System.nanoTime();
+        IntStream.range(0, rounds).forEach(operation);
+        long nanos = System.nanoTime() - start;
+
+        return rounds / (nanos / (double) TimeUnit.SECONDS.toNanos(1));
+    }
+
+    private static Loan loan(Book book, String customer) {
+        return Loan.builder()
+                .book(book)
+                .customer(customer)
+                .customerEmail("bench@library-api.com")
+                .loanDate(LocalDate.now())
+                .build();
+    }
+
+    private static String isbn(int round, int books) {
+        return "seed-" + (round * 7919 % books);
+    }
+
+    private static String customer(int index) {
+        return "Customer " + index;
+    }
+}
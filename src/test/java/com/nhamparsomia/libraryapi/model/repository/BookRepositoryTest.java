@@ -8,9 +8,12 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
 import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 
+import java.util.Collections;
+import java.util.List;
 import java.util.Optional;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -85,6 +88,96 @@ public class BookRepositoryTest {
         assertThat(deletedBook).isNull();
     }
 
+    @Test
+    @DisplayName("Deve atualizar autor e título de um livro com um único update")
+    public void updateAuthorAndTitleTest() {
+        Book book = createNewBook();
+        entityManager.persist(book);
+
+        int updated = repository.updateAuthorAndTitle(book.getId(), "Jane Doe", "Kotlin World");
+        entityManager.clear();
+
+        Book updatedBook = entityManager.find(Book.class, book.getId());
+
+        assertThat(updated).isEqualTo(1);
+        assertThat(updatedBook.getAuthor()).isEqualTo("Jane Doe");
+        assertThat(updatedBook.getTitle()).isEqualTo("Kotlin World");
+        assertThat(updatedBook.getIsbn()).isEqualTo("123");
+    }
+
+    @Test
+    @DisplayName("Deve manter os contadores de empréstimos mesmo quando o livro for salvo")
+    public void loanCountersTest() {
+        Book book = createNewBook();
+        entityManager.persistAndFlush(book);
+
+        repository.addLoanCounters(Collections.singleton(book.getId()), 1, 1);
+        repository.addLoanCounters(Collections.singleton(book.getId()), 0, -1);
+        book.setTitle("Kotlin World");
+        repository.saveAndFlush(book);
+        entityManager.clear();
+
+        Book updatedBook = entityManager.find(Book.class, book.getId());
+
+        assertThat(updatedBook.getTitle()).isEqualTo("Kotlin World");
+        assertThat(updatedBook.getTotalLoans()).isEqualTo(1);
+        assertThat(updatedBook.getActiveLoans()).isZero();
+    }
+
+    @Test
+    @DisplayName("Deve corrigir os contadores de empréstimos apenas se não mudaram desde a leitura")
+    public void setLoanCountersTest() {
+        Book book = createNewBook();
+        entityManager.persistAndFlush(book);
+
+        int stale = repository.setLoanCounters(book.getId(), 5, 1, 2, 0);
+        int repaired = repository.setLoanCounters(book.getId(), 5, 1, 0, 0);
+        List<Object[]> counters = repository.findLoanCounters(0L, PageRequest.of(0, 10));
+
+        assertThat(stale).isZero();
+        assertThat(repaired).isEqualTo(1);
+        assertThat(counters).hasSize(1);
+        assertThat(counters.get(0)).containsExactly(book.getId(), 5L, 1L);
+    }
+
+    @Test
+    @DisplayName("Deve retornar apenas os livros já emprestados, dos mais emprestados para os menos")
+    public void findMostBorrowedTest() {
+        Book once = createNewBook();
+        Book twice = createNewBook();
+        twice.setIsbn("456");
+        Book never = createNewBook();
+        never.setIsbn("789");
+        entityManager.persist(once);
+        entityManager.persist(twice);
+        entityManager.persistAndFlush(never);
+
+        repository.addLoanCounters(Collections.singleton(once.getId()), 1, 0);
+        repository.addLoanCounters(Collections.singleton(twice.getId()), 2, 0);
+        entityManager.clear();
+
+        List<Book> mostBorrowed = repository.findMostBorrowed(PageRequest.of(0, 10));
+
+        assertThat(mostBorrowed).extracting(Book::getId).containsExactly(twice.getId(), once.getId());
+        assertThat(mostBorrowed.get(0).getTotalLoans()).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("Deve ordenar pelos mais emprestados percorrendo o índice de popularidade")
+    public void popularityQueryPlanTest() {
+        String byPopularity = explain("select b.id from book b order by b.total_loans desc, b.id desc limit 10");
+        String mostBorrowed = explain("select b.id from book b where b.total_loans > 0 order by b.total_loans desc, b.id desc limit 10");
+
+        assertThat(byPopularity).contains("IDX_BOOK_POPULARITY").contains("index sorted").doesNotContain("tableScan");
+        assertThat(mostBorrowed).contains("IDX_BOOK_POPULARITY").contains("index sorted").doesNotContain("tableScan");
+    }
+
+    private String explain(String sql) {
+        return (String) entityManager.getEntityManager()
+                .createNativeQuery("explain " + sql)
+                .getSingleResult();
+    }
+
     public static Book createNewBook() {
         return Book.builder()
                 .isbn("123")
@@ -12,10 +12,12 @@ import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
 import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 
 import java.time.LocalDate;
+import java.util.Arrays;
 import java.util.List;
 
 import static com.nhamparsomia.libraryapi.model.repository.BookRepositoryTest.createNewBook;
@@ -43,13 +45,12 @@ public class LoanRepositoryTest {
     }
 
     @Test
-    @DisplayName("Deve buscar empréstimo pelo isbn do livro ou pelo nome da pessoa que retirou o livro")
-    public void findBookByIsbnOrCustomerTest() {
+    @DisplayName("Deve buscar empréstimo pelo isbn do livro")
+    public void findByBookIsbnTest() {
         Loan loan = createAndPersistLoan(LocalDate.now());
 
-        Page<Loan> result = repository.findBookByIsbnOrCustomer(
+        Page<Loan> result = repository.findByBookIsbn(
                 loan.getBook().getIsbn(),
-                loan.getCustomer(),
                 PageRequest.of(0, 10)
         );
 
@@ -60,6 +61,57 @@ public class LoanRepositoryTest {
         assertThat(result.getPageable().getPageNumber()).isEqualTo(0);
     }
 
+    @Test
+    @DisplayName("Deve buscar empréstimo pelo início do nome da pessoa sem diferenciar maiúsculas")
+    public void findByCustomerPrefixTest() {
+        Loan loan = createAndPersistLoan(LocalDate.now());
+        entityManager.flush();
+
+        Page<Loan> result = repository.findByCustomerNormalizedStartingWith(Loan.normalizeCustomer("PES"), PageRequest.of(0, 10));
+        List<Long> ids = repository.findIdsByCustomerPattern("pes%", PageRequest.of(0, 10));
+        List<Long> escaped = repository.findIdsByCustomerPattern("p\\%", PageRequest.of(0, 10));
+
+        assertThat(loan.getCustomerNormalized()).isEqualTo("pessoa");
+        assertThat(result.getContent()).containsExactly(loan);
+        assertThat(ids).containsExactly(loan.getId());
+        assertThat(escaped).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Deve buscar empréstimos pelo isbn do livro ou pela pessoa em uma única consulta paginada")
+    public void findByBookIsbnOrCustomerTest() {
+        Loan byBook = createAndPersistLoan(LocalDate.now());
+        Loan byCustomer = createAndPersistLoan(LocalDate.now());
+        Loan other = createAndPersistLoan(LocalDate.now());
+        byCustomer.getBook().setIsbn("456");
+        byCustomer.setCustomer("Outra");
+        other.getBook().setIsbn("789");
+        entityManager.flush();
+
+        Page<Loan> result = repository.findByBookIsbnOrCustomer(
+                "123", "Outra", PageRequest.of(0, 1, Sort.by("id")));
+        Page<Loan> byPattern = repository.findByBookIsbnOrCustomerPattern("123", "out%", PageRequest.of(0, 10));
+
+        assertThat(result.getContent()).containsExactly(byBook);
+        assertThat(result.getTotalElements()).isEqualTo(2);
+        assertThat(byPattern.getContent()).containsExactlyInAnyOrder(byBook, byCustomer);
+    }
+
+    @Test
+    @DisplayName("Deve usar índices em todas as formas de busca de empréstimos")
+    public void searchQueryPlansTest() {
+        String byIsbn = explain("select l.id from loan l join book b on l.id_book = b.id where b.isbn = '123'");
+        String byCustomer = explain("select l.id from loan l where l.customer = 'Pessoa'");
+        String byCustomerPrefix = explain("select l.id from loan l where l.customer_normalized like 'pes%'");
+        String byIsbnAndCustomer = explain("select l.id from loan l join book b on l.id_book = b.id " +
+                "where b.isbn = '123' and l.customer = 'Pessoa'");
+
+        assertThat(byIsbn).contains("IDX_BOOK_ISBN").doesNotContain("tableScan");
+        assertThat(byCustomer).contains("IDX_LOAN_CUSTOMER:").doesNotContain("tableScan");
+        assertThat(byCustomerPrefix).contains("IDX_LOAN_CUSTOMER_NORMALIZED").doesNotContain("tableScan");
+        assertThat(byIsbnAndCustomer).doesNotContain("tableScan");
+    }
+
     @Test
     @DisplayName("Deve retornar empréstimos atrasados por ultrapassarem a data de devolução")
     public void findLateLoansByDateTest() {
@@ -81,13 +133,120 @@ public class LoanRepositoryTest {
         assertThat(result).isEmpty();
     }
 
+    @Test
+    @DisplayName("Deve retornar os ids dos livros emprestados entre os consultados")
+    public void findTakenBookIdsTest() {
+        Book takenBook = createAndPersistLoan(LocalDate.now()).getBook();
+
+        Book availableBook = createNewBook();
+        availableBook.setIsbn("456");
+        entityManager.persist(availableBook);
+
+        List<Long> result = repository.findTakenBookIds(Arrays.asList(takenBook, availableBook));
+        List<Long> resultByIds = repository.findTakenBookIdsByIds(Arrays.asList(takenBook.getId(), availableBook.getId()));
+
+        assertThat(result).containsExactly(takenBook.getId());
+        assertThat(resultByIds).containsExactly(takenBook.getId());
+    }
+
+    @Test
+    @DisplayName("Deve atualizar a devolução de vários empréstimos em um único comando")
+    public void updateReturnedTest() {
+        Loan loan = createAndPersistLoan(LocalDate.now());
+
+        int updated = repository.updateReturned(Arrays.asList(loan.getId()), true);
+        entityManager.clear();
+
+        assertThat(updated).isEqualTo(1);
+        assertThat(entityManager.find(Loan.class, loan.getId()).getReturned()).isTrue();
+    }
+
+    @Test
+    @DisplayName("Deve alterar a devolução apenas dos empréstimos que ainda não estão no estado pedido")
+    public void updateReturnedConditionallyTest() {
+        Loan loan = createAndPersistLoan(LocalDate.now());
+
+        int returned = repository.updateReturnedById(loan.getId(), true);
+        int returnedAgain = repository.updateReturnedById(loan.getId(), true);
+        int returnedInBatch = repository.updateReturned(Arrays.asList(loan.getId()), true);
+        int reopened = repository.updateReturnedById(loan.getId(), false);
+
+        assertThat(returned).isEqualTo(1);
+        assertThat(returnedAgain).isZero();
+        assertThat(returnedInBatch).isZero();
+        assertThat(reopened).isEqualTo(1);
+        assertThat(repository.findLoanReferences(loan.getId()).get(0))
+                .containsExactly(loan.getId(), loan.getBook().getId(), "Pessoa", loan.getLoanDate());
+    }
+
+    @Test
+    @DisplayName("Deve buscar as referências dos empréstimos em aberto e devolvidos e contá-los por data e por livro")
+    public void loanReferencesTest() {
+        LocalDate today = LocalDate.now();
+        Loan openLoan = createAndPersistLoan(today);
+        Loan returnedLoan = createAndPersistLoan(today);
+        returnedLoan.setReturned(true);
+        entityManager.persist(returnedLoan);
+        entityManager.flush();
+
+        List<Long> ids = Arrays.asList(openLoan.getId(), returnedLoan.getId());
+        List<Object[]> open = repository.findOpenLoanReferences(ids);
+        List<Object[]> returned = repository.findReturnedLoanReferences(ids);
+        List<Object[]> all = repository.countAllByLoanDate();
+        List<Object[]> byBook = repository.countByBookIds(Arrays.asList(returnedLoan.getBook().getId()));
+
+        assertThat(open).hasSize(1);
+        assertThat(open.get(0)).containsExactly(openLoan.getId(), openLoan.getBook().getId(), "Pessoa", today);
+        assertThat(returned.get(0)).containsExactly(returnedLoan.getId(), returnedLoan.getBook().getId(), "Pessoa", today);
+        assertThat(all.get(0)).containsExactly(today, 2L, 1L);
+        assertThat(byBook.get(0)).containsExactly(returnedLoan.getBook().getId(), 1L, 0L);
+    }
+
+    @Test
+    @DisplayName("Deve listar apenas os empréstimos atrasados dos clientes que precisam de aviso")
+    public void findOverdueLoansTest() {
+        LocalDate today = LocalDate.now();
+        Loan first = createAndPersistLoan(today.minusDays(10), "pessoa@email.com");
+        Loan second = createAndPersistLoan(today.minusDays(6), "pessoa@email.com");
+        createAndPersistLoan(today, "pessoa@email.com");
+        Loan notified = createAndPersistLoan(today.minusDays(10), "outra@email.com");
+        notified.setLastNotified(today.minusDays(1));
+        entityManager.persist(notified);
+        entityManager.flush();
+
+        List<Object[]> result = repository.findOverdueLoans(today.minusDays(LOAN_DAYS), today.minusDays(7), 0, 1);
+        int shard = Loan.emailHash("pessoa@email.com") % 2;
+
+        assertThat(result).hasSize(2);
+        assertThat(result.get(0)).containsExactly("pessoa@email.com", "Pessoa", first.getId(),
+                first.getBook().getId(), first.getLoanDate(), "Java World");
+        assertThat(result.get(1)[2]).isEqualTo(second.getId());
+        assertThat(repository.findOverdueLoans(today.minusDays(LOAN_DAYS), today.minusDays(7), shard, 2)).hasSize(2);
+        assertThat(repository.findOverdueLoans(today.minusDays(LOAN_DAYS), today.minusDays(7), 1 - shard, 2)).isEmpty();
+
+        repository.updateLastNotified(Arrays.asList(first.getId(), second.getId()), today);
+
+        assertThat(repository.findOverdueLoans(today.minusDays(LOAN_DAYS), today.minusDays(7), 0, 1)).isEmpty();
+    }
+
+    private String explain(String sql) {
+        return (String) entityManager.getEntityManager()
+                .createNativeQuery("explain " + sql)
+                .getSingleResult();
+    }
+
     private Loan createAndPersistLoan(LocalDate loanDate) {
+        return createAndPersistLoan(loanDate, null);
+    }
+
+    private Loan createAndPersistLoan(LocalDate loanDate, String customerEmail) {
         Book book = createNewBook();
         entityManager.persist(book);
 
         Loan loan = Loan.builder()
                 .book(book)
                 .customer("Pessoa")
+                .customerEmail(customerEmail)
                 .loanDate(loanDate)
                 .build();
         entityManager.persist(loan);
@@ -3,6 +3,10 @@ package com.nhamparsomia.libraryapi.service;
 import com.nhamparsomia.libraryapi.exception.BusinessException;
 import com.nhamparsomia.libraryapi.model.entity.Book;
 import com.nhamparsomia.libraryapi.model.repository.BookRepository;
+import com.nhamparsomia.libraryapi.service.catalog.BookCatalog;
+import com.nhamparsomia.libraryapi.service.catalog.BookSearchCache;
+import com.nhamparsomia.libraryapi.service.changefeed.ChangeFeed;
+import com.nhamparsomia.libraryapi.service.coalescing.SingleFlight;
 import com.nhamparsomia.libraryapi.service.impl.BookServiceImpl;
 
 import org.assertj.core.api.Assertions;
@@ -11,6 +15,7 @@ import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mockito;
 
 import org.springframework.boot.test.mock.mockito.MockBean;
@@ -18,12 +23,16 @@ import org.springframework.data.domain.Example;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 
 import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
@@ -36,9 +45,12 @@ public class BookServiceTest {
     @MockBean
     BookRepository repository;
 
+    @MockBean
+    ChangeFeed changeFeed;
+
     @BeforeEach
     public void setUp() {
-        this.service = new BookServiceImpl(repository);
+        this.service = new BookServiceImpl(repository, new BookCatalog(repository, false), new BookSearchCache(false, 1000, 60000), new SingleFlight(false, 1000), changeFeed);
     }
 
     @Test
@@ -61,6 +73,7 @@ public class BookServiceTest {
         assertThat(savedBook.getIsbn()).isEqualTo("123");
         assertThat(savedBook.getAuthor()).isEqualTo("John Doe");
         assertThat(savedBook.getTitle()).isEqualTo("Java World");
+        Mockito.verify(changeFeed, Mockito.times(1)).record(ChangeFeed.BOOK, 11L);
     }
 
     @Test
@@ -154,6 +167,29 @@ public class BookServiceTest {
         assertThat(updatedBookReturn.getTitle()).isEqualTo(updatedBook.getTitle());
     }
 
+    @Test
+    @DisplayName("Deve atualizar autor e título com um único update, sem buscar o livro")
+    public void updateAuthorAndTitleTest() {
+        Mockito.when(repository.updateAuthorAndTitle(11L, "Jane Doe", "Kotlin World"))
+                .thenReturn(1);
+
+        int updated = service.updateAuthorAndTitle(11L, "Jane Doe", "Kotlin World");
+
+        assertThat(updated).isEqualTo(1);
+        Mockito.verify(repository, Mockito.never()).findById(Mockito.anyLong());
+        Mockito.verify(repository, Mockito.never()).save(Mockito.any(Book.class));
+    }
+
+    @Test
+    @DisplayName("Deve retornar zero quando o update não encontrar nenhum livro")
+    public void updateAuthorAndTitleNotFoundTest() {
+        Mockito.when(repository.updateAuthorAndTitle(11L, "Jane Doe", "Kotlin World"))
+                .thenReturn(0);
+
+        assertThat(service.updateAuthorAndTitle(11L, "Jane Doe", "Kotlin World")).isZero();
+        Mockito.verify(repository, Mockito.never()).findById(Mockito.anyLong());
+    }
+
     @Test
     @DisplayName("Deve ocorrer erro ao tentar atualizar um livro inexistente")
     public void updateInvalidBookTest() {
@@ -194,6 +230,73 @@ public class BookServiceTest {
         assertThat(result.getPageable().getPageSize()).isEqualTo(10);
     }
 
+    @Test
+    @DisplayName("Deve responder pesquisas repetidas pelo cache até que um livro seja salvo")
+    public void findBookWithSearchCacheTest() {
+        BookServiceImpl cachedService = new BookServiceImpl(repository, new BookCatalog(repository, false),
+                new BookSearchCache(true, 1000, 60000), new SingleFlight(false, 1000), changeFeed);
+        Book book = createBook();
+        book.setId(1L);
+        PageRequest pageRequest = PageRequest.of(0, 10);
+
+        Mockito.when(repository.findAll(Mockito.any(Example.class), Mockito.any(PageRequest.class)))
+                .thenReturn(new PageImpl<Book>(Arrays.asList(book), pageRequest, 1));
+        Mockito.when(repository.findAllById(Arrays.asList(1L)))
+                .thenReturn(Arrays.asList(book));
+
+        cachedService.find(Book.builder().title("Aventuras").build(), pageRequest);
+        Page<Book> result = cachedService.find(Book.builder().title(" aventuras ").build(), pageRequest);
+
+        assertThat(result.getTotalElements()).isEqualTo(1);
+        assertThat(result.getContent()).containsExactly(book);
+        Mockito.verify(repository, Mockito.times(1)).findAll(Mockito.any(Example.class), Mockito.any(PageRequest.class));
+
+        Mockito.when(repository.existsByIsbn(Mockito.anyString())).thenReturn(false);
+        Mockito.when(repository.save(Mockito.any(Book.class))).thenReturn(Book.builder().id(2L).isbn("456").build());
+        cachedService.save(Book.builder().isbn("456").build());
+        cachedService.find(Book.builder().title("Aventuras").build(), pageRequest);
+
+        Mockito.verify(repository, Mockito.times(2)).findAll(Mockito.any(Example.class), Mockito.any(PageRequest.class));
+    }
+
+    @Test
+    @DisplayName("Deve ordenar por popularidade pelos contadores de empréstimos sem usar o cache")
+    public void findBookByPopularityTest() {
+        BookServiceImpl cachedService = new BookServiceImpl(repository, new BookCatalog(repository, false),
+                new BookSearchCache(true, 1000, 60000), new SingleFlight(false, 1000), changeFeed);
+        PageRequest pageRequest = PageRequest.of(1, 10, Sort.by(BookServiceImpl.SORT_POPULARITY));
+
+        Mockito.when(repository.findAll(Mockito.any(Example.class), Mockito.any(Pageable.class)))
+                .thenReturn(Page.empty());
+
+        cachedService.find(new Book(), pageRequest);
+        cachedService.find(new Book(), pageRequest);
+
+        ArgumentCaptor<Pageable> pageable = ArgumentCaptor.forClass(Pageable.class);
+        Mockito.verify(repository, Mockito.times(2)).findAll(Mockito.any(Example.class), pageable.capture());
+        assertThat(pageable.getValue().getPageNumber()).isEqualTo(1);
+        assertThat(pageable.getValue().getSort()).isEqualTo(Sort.by(Sort.Order.desc("totalLoans"), Sort.Order.desc("id")));
+    }
+
+    @Test
+    @DisplayName("Deve buscar livros por ids em lotes que respeitam o limite de parâmetros do driver")
+    public void getBooksByIdInChunksTest() {
+        List<Long> ids = LongStream.rangeClosed(1, BookServiceImpl.IN_CHUNK_SIZE * 2 + 1)
+                .boxed()
+                .collect(Collectors.toList());
+
+        Mockito.when(repository.findAllById(Mockito.anyIterable()))
+                .thenReturn(Arrays.asList(Book.builder().id(1L).build()));
+
+        List<Book> books = service.getBooksById(ids);
+
+        assertThat(books).hasSize(3);
+        ArgumentCaptor<List<Long>> chunks = ArgumentCaptor.forClass(List.class);
+        Mockito.verify(repository, Mockito.times(3)).findAllById(chunks.capture());
+        assertThat(chunks.getAllValues()).extracting(List::size)
+                .containsExactly(BookServiceImpl.IN_CHUNK_SIZE, BookServiceImpl.IN_CHUNK_SIZE, 1);
+    }
+
     @Test
     @DisplayName("Deve obter um livro pelo Isbn")
     public void getBookByIsbnTest() {
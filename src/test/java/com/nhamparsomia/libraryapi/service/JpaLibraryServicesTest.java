@@ -0,0 +1,28 @@
+package com.nhamparsomia.libraryapi.service;
+
+import com.nhamparsomia.libraryapi.loadtest.EmbeddedLibraryApi;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+
+/**
+ * The service contract against the default JPA engine.
+ */
+public class JpaLibraryServicesTest extends LibraryServicesContractTest {
+
+    private static EmbeddedLibraryApi api;
+
+    @BeforeAll
+    public static void start() {
+        api = EmbeddedLibraryApi.start();
+    }
+
+    @AfterAll
+    public static void stop() {
+        api.close();
+    }
+
+    @Override
+    protected EmbeddedLibraryApi api() {
+        return api;
+    }
+}
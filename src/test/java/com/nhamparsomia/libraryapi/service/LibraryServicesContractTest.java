@@ -0,0 +1,261 @@
+package com.nhamparsomia.libraryapi.service;
+
+import com.nhamparsomia.libraryapi.api.dto.LoanBatchResultDTO;
+import com.nhamparsomia.libraryapi.api.dto.LoanFilterDTO;
+import com.nhamparsomia.libraryapi.api.dto.ReturnedLoanBatchDTO;
+import com.nhamparsomia.libraryapi.exception.BusinessException;
+import com.nhamparsomia.libraryapi.loadtest.EmbeddedLibraryApi;
+import com.nhamparsomia.libraryapi.model.entity.Book;
+import com.nhamparsomia.libraryapi.model.entity.Loan;
+import com.nhamparsomia.libraryapi.service.notification.OverdueDigest;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+
+/**
+ * Behaviour every storage engine behind {@link BookService} and {@link LoanService} has to share.
+ * Subclasses boot the application with one engine; each test works on its own isbns and
+ * customers so the tests can share that application.
+ */
+public abstract class LibraryServicesContractTest {
+
+    private static final AtomicInteger sequence = new AtomicInteger();
+
+    protected abstract EmbeddedLibraryApi api();
+
+    private BookService bookService() {
+        return api().context().getBean(BookService.class);
+    }
+
+    private LoanService loanService() {
+        return api().context().getBean(LoanService.class);
+    }
+
+    @Test
+    @DisplayName("Deve salvar um livro e recusar outro com o mesmo isbn")
+    public void saveBookTest() {
+        Book book = newBook("Contrato");
+
+        assertThat(book.getId()).isNotNull();
+        assertThat(bookService().getById(book.getId()).map(Book::getTitle)).contains(book.getTitle());
+        assertThat(bookService().getBookByIsbn(book.getIsbn()).map(Book::getId)).contains(book.getId());
+
+        Throwable exception = catchThrowable(() -> bookService().save(
+                Book.builder().isbn(book.getIsbn()).author("Outro").title("Outro").build()));
+
+        assertThat(exception).isInstanceOf(BusinessException.class).hasMessage("Isbn já cadastrado.");
+    }
+
+    @Test
+    @DisplayName("Deve atualizar e remover um livro sem empréstimos")
+    public void updateAndDeleteBookTest() {
+        Book book = newBook("Atualizar");
+
+        assertThat(bookService().updateAuthorAndTitle(book.getId(), "Novo autor", "Novo título")).isEqualTo(1);
+        assertThat(bookService().getById(book.getId()).map(Book::getAuthor)).contains("Novo autor");
+        assertThat(bookService().getById(book.getId()).map(Book::getIsbn)).contains(book.getIsbn());
+
+        bookService().delete(book);
+
+        assertThat(bookService().getById(book.getId())).isEmpty();
+        assertThat(bookService().getBookByIsbn(book.getIsbn())).isEmpty();
+        assertThat(bookService().updateAuthorAndTitle(book.getId(), "Autor", "Título")).isZero();
+    }
+
+    @Test
+    @DisplayName("Deve recusar a remoção de um livro com empréstimos")
+    public void deleteBorrowedBookTest() {
+        Book book = newBook("Emprestado");
+        lend(book, "Pessoa");
+
+        Throwable exception = catchThrowable(() -> bookService().delete(book));
+
+        assertThat(exception).isInstanceOf(DataIntegrityViolationException.class);
+        assertThat(bookService().getById(book.getId())).isPresent();
+    }
+
+    @Test
+    @DisplayName("Deve filtrar e ordenar livros pelos campos preenchidos")
+    public void findBooksTest() {
+        String author = "Autor " + sequence.incrementAndGet();
+        Book second = bookService().save(Book.builder().isbn(isbn()).author(author).title("B livro").build());
+        Book first = bookService().save(Book.builder().isbn(isbn()).author(author).title("A livro").build());
+
+        Page<Book> result = bookService().find(Book.builder().author(author.toUpperCase()).build(),
+                PageRequest.of(0, 10, Sort.by("title")));
+
+        assertThat(result.getTotalElements()).isEqualTo(2);
+        assertThat(result.getContent()).extracting(Book::getId).containsExactly(first.getId(), second.getId());
+
+        Page<Book> byId = bookService().find(Book.builder().id(second.getId()).author(author).build(), PageRequest.of(0, 10));
+
+        assertThat(byId.getContent()).extracting(Book::getId).containsExactly(second.getId());
+    }
+
+    @Test
+    @DisplayName("Deve buscar vários livros por ids e por isbns ignorando os inexistentes")
+    public void getBooksTest() {
+        Book first = newBook("Vários");
+        Book second = newBook("Vários");
+
+        assertThat(bookService().getBooksById(List.of(first.getId(), second.getId(), -1L)))
+                .extracting(Book::getId).containsExactlyInAnyOrder(first.getId(), second.getId());
+        assertThat(bookService().getBooksByIsbn(List.of(first.getIsbn(), "inexistente")))
+                .extracting(Book::getId).containsExactly(first.getId());
+    }
+
+    @Test
+    @DisplayName("Deve contar os empréstimos do livro e ordenar pelos mais emprestados")
+    public void popularityTest() {
+        String author = "Popular " + sequence.incrementAndGet();
+        Book once = bookService().save(Book.builder().isbn(isbn()).author(author).title("Uma vez").build());
+        Book twice = bookService().save(Book.builder().isbn(isbn()).author(author).title("Duas vezes").build());
+
+        returnLoan(lend(twice, "Pessoa"));
+        lend(twice, "Pessoa");
+        lend(once, "Pessoa");
+
+        Book counted = bookService().getById(twice.getId()).orElseThrow();
+        assertThat(counted.getTotalLoans()).isEqualTo(2);
+        assertThat(counted.getActiveLoans()).isEqualTo(1);
+
+        Page<Book> result = bookService().find(Book.builder().author(author).build(),
+                PageRequest.of(0, 10, Sort.by("popularity")));
+
+        assertThat(result.getContent()).extracting(Book::getId).containsExactly(twice.getId(), once.getId());
+    }
+
+    @Test
+    @DisplayName("Deve emprestar um livro apenas uma vez até a devolução")
+    public void checkoutTest() {
+        Book book = newBook("Disputado");
+        Loan loan = lend(book, "Primeira");
+
+        assertThat(loan.getId()).isNotNull();
+        assertThat(loanService().getTakenBookIds(List.of(book.getId()))).containsExactly(book.getId());
+
+        Throwable exception = catchThrowable(() -> lend(book, "Segunda"));
+
+        assertThat(exception).isInstanceOf(BusinessException.class).hasMessage("Book has already been taken by another customer");
+
+        assertThat(loanService().updateReturned(loan.getId(), true)).isEqualTo(1);
+        assertThat(loanService().getTakenBookIds(List.of(book.getId()))).isEmpty();
+        assertThat(loanService().getById(loan.getId()).map(Loan::getReturned)).contains(true);
+        assertThat(lend(book, "Segunda").getId()).isNotEqualTo(loan.getId());
+    }
+
+    @Test
+    @DisplayName("Deve buscar empréstimos por isbn, cliente e prefixo do cliente")
+    public void findLoansTest() {
+        String customer = "Cliente " + sequence.incrementAndGet();
+        Book book = newBook("Buscado");
+        Book other = newBook("Outro");
+        Loan byBook = lend(book, "Alguém " + sequence.incrementAndGet());
+        Loan byCustomer = lend(other, customer);
+        PageRequest page = PageRequest.of(0, 10);
+
+        assertThat(loanService().find(LoanFilterDTO.builder().isbn(book.getIsbn()).build(), page).getContent())
+                .extracting(Loan::getId).containsExactly(byBook.getId());
+        assertThat(loanService().find(LoanFilterDTO.builder().customer(customer).build(), page).getContent())
+                .extracting(Loan::getId).containsExactly(byCustomer.getId());
+        assertThat(loanService().find(LoanFilterDTO.builder().customerPrefix(customer.toLowerCase()).build(), page).getContent())
+                .extracting(Loan::getId).containsExactly(byCustomer.getId());
+        assertThat(loanService().find(LoanFilterDTO.builder().isbn(book.getIsbn()).customer(customer).build(), page).getContent())
+                .extracting(Loan::getId).containsExactly(byBook.getId(), byCustomer.getId());
+        assertThat(loanService().find(LoanFilterDTO.builder().isbn(book.getIsbn()).customer(customer).matchAll(true).build(), page)
+                .getTotalElements()).isEqualTo(0);
+        assertThat(loanService().getLoansByBook(other, page).getContent())
+                .extracting(Loan::getId).containsExactly(byCustomer.getId());
+    }
+
+    @Test
+    @DisplayName("Deve emprestar e devolver em lote informando o resultado de cada item")
+    public void batchTest() {
+        Book book = newBook("Lote");
+        Book other = newBook("Lote");
+
+        List<LoanBatchResultDTO> saved = loanService().saveAll(List.of(
+                loan(book, "Primeira"), loan(book, "Segunda"), loan(other, "Terceira")));
+
+        assertThat(saved).extracting(LoanBatchResultDTO::getStatus).containsExactly(201, 400, 201);
+        assertThat(saved.get(1).getError()).isEqualTo("Book has already been taken by another customer");
+
+        List<LoanBatchResultDTO> returned = loanService().updateReturned(List.of(
+                ReturnedLoanBatchDTO.builder().id(saved.get(0).getId()).returned(true).build(),
+                ReturnedLoanBatchDTO.builder().id(-1L).returned(true).build()));
+
+        assertThat(returned).extracting(LoanBatchResultDTO::getStatus).containsExactly(200, 404);
+        assertThat(loanService().getTakenBookIds(List.of(book.getId(), other.getId()))).containsExactly(other.getId());
+    }
+
+    @Test
+    @DisplayName("Deve agrupar os empréstimos atrasados por email até a notificação")
+    public void overdueTest() {
+        String email = "atraso" + sequence.incrementAndGet() + "@email.com";
+        Book book = newBook("Atrasado");
+        Loan late = loanService().save(Loan.builder()
+                .book(book)
+                .customer("Atrasada")
+                .customerEmail(email)
+                .loanDate(LocalDate.now().minusDays(10))
+                .build());
+
+        assertThat(loanService().getAllLateLoans()).extracting(Loan::getId).contains(late.getId());
+
+        OverdueDigest digest = digestOf(email);
+        assertThat(digest.getLoans()).extracting(OverdueDigest.OverdueLoan::getLoanId).containsExactly(late.getId());
+        assertThat(digest.getLoans().get(0).getTitle()).isEqualTo(book.getTitle());
+
+        loanService().overdueNotified(digest);
+
+        assertThat(digestOf(email)).isNull();
+        assertThat(loanService().getById(late.getId()).map(Loan::getLastNotified)).contains(LocalDate.now());
+    }
+
+    private OverdueDigest digestOf(String email) {
+        Set<OverdueDigest> digests = List.of(0, 1).stream()
+                .flatMap(shard -> loanService().getOverdueDigests(7, shard, 2).stream())
+                .filter(digest -> email.equals(digest.getEmail()))
+                .collect(Collectors.toSet());
+
+        assertThat(digests.size()).isLessThanOrEqualTo(1);
+        return digests.stream().findFirst().orElse(null);
+    }
+
+    private Book newBook(String title) {
+        return bookService().save(Book.builder().isbn(isbn()).author("Contrato").title(title).build());
+    }
+
+    private Loan lend(Book book, String customer) {
+        return loanService().save(loan(book, customer));
+    }
+
+    private void returnLoan(Loan loan) {
+        loanService().updateReturned(loan.getId(), true);
+    }
+
+    private static Loan loan(Book book, String customer) {
+        return Loan.builder()
+                .book(book)
+                .customer(customer)
+                .customerEmail("contrato@email.com")
+                .loanDate(LocalDate.now())
+                .build();
+    }
+
+    private static String isbn() {
+        return "contract-" + sequence.incrementAndGet();
+    }
+}
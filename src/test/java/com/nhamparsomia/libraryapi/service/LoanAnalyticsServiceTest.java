@@ -0,0 +1,157 @@
+package com.nhamparsomia.libraryapi.service;
+
+import com.nhamparsomia.libraryapi.model.entity.Book;
+import com.nhamparsomia.libraryapi.model.entity.Loan;
+import com.nhamparsomia.libraryapi.model.entity.LoanDailyStats;
+import com.nhamparsomia.libraryapi.model.repository.BookRepository;
+import com.nhamparsomia.libraryapi.model.repository.LoanCounterRepository;
+import com.nhamparsomia.libraryapi.model.repository.LoanDailyStatsRepository;
+import com.nhamparsomia.libraryapi.model.repository.LoanRepository;
+import com.nhamparsomia.libraryapi.service.impl.LoanAnalyticsServiceImpl;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static com.nhamparsomia.libraryapi.service.impl.LoanServiceImpl.LOAN_DAYS;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+/**
+ * Runs without the test transaction, so that each call commits on its own and concurrent calls
+ * race for the rollup rows as requests do.
+ */
+@ExtendWith(SpringExtension.class)
+@ActiveProfiles("test")
+@DataJpaTest
+@Import(LoanAnalyticsServiceImpl.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+public class LoanAnalyticsServiceTest {
+
+    @Autowired
+    private LoanAnalyticsService service;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private LoanRepository loanRepository;
+
+    @Autowired
+    private LoanDailyStatsRepository dailyStatsRepository;
+
+    @Autowired
+    private LoanCounterRepository counterRepository;
+
+    @AfterEach
+    public void tearDown() {
+        loanRepository.deleteAll();
+        bookRepository.deleteAll();
+        dailyStatsRepository.deleteAll();
+        counterRepository.deleteAll();
+    }
+
+    @Test
+    @DisplayName("Deve atualizar as estatísticas ao registrar e devolver empréstimos")
+    public void loansOpenedAndReturnedTest() {
+        LocalDate today = LocalDate.now();
+        LocalDate overdueDay = today.minusDays(LOAN_DAYS + 1);
+        Book book = bookRepository.save(Book.builder().isbn("123").author("Fulano").title("As aventuras").build());
+        List<Loan> loans = loanRepository.saveAll(Arrays.asList(loan(book, today), loan(book, overdueDay)));
+
+        service.loansOpened(loans);
+
+        assertThat(service.getOpenLoans()).isEqualTo(2);
+        assertThat(service.getOverdueLoans()).isEqualTo(1);
+        assertThat(service.getDailyStats(overdueDay, today))
+                .extracting(LoanDailyStats::getDay, LoanDailyStats::getCheckouts, LoanDailyStats::getOpenLoans)
+                .containsExactly(
+                        tuple(overdueDay, 1L, 1L),
+                        tuple(today, 1L, 1L));
+
+        service.loansReturned(Collections.singletonMap(overdueDay, 1L));
+
+        assertThat(service.getOpenLoans()).isEqualTo(1);
+        assertThat(service.getOverdueLoans()).isZero();
+        assertThat(dailyStatsRepository.findById(today))
+                .hasValueSatisfying(stats -> assertThat(stats.getReturns()).isEqualTo(1));
+    }
+
+    @Test
+    @DisplayName("Deve corrigir as estatísticas divergentes da tabela de empréstimos")
+    public void reconcileTest() {
+        LocalDate today = LocalDate.now();
+        Book book = bookRepository.save(Book.builder().isbn("123").author("Fulano").title("As aventuras").build());
+        Loan returned = loan(book, today);
+        returned.setReturned(true);
+        loanRepository.saveAll(Arrays.asList(loan(book, today), returned));
+
+        int corrections = service.reconcile();
+
+        assertThat(corrections).isEqualTo(2);
+        assertThat(service.getOpenLoans()).isEqualTo(1);
+        assertThat(dailyStatsRepository.findById(today)).hasValueSatisfying(stats -> {
+            assertThat(stats.getCheckouts()).isEqualTo(2);
+            assertThat(stats.getOpenLoans()).isEqualTo(1);
+        });
+
+        assertThat(service.reconcile()).isZero();
+    }
+
+    @Test
+    @DisplayName("Deve somar todos os empréstimos quando várias transações criam a mesma linha ao mesmo tempo")
+    public void concurrentRowCreationTest() throws Exception {
+        LocalDate today = LocalDate.now();
+        Book book = bookRepository.save(Book.builder().isbn("123").author("Fulano").title("As aventuras").build());
+        List<Loan> loans = loanRepository.saveAll(IntStream.range(0, 8)
+                .mapToObj(i -> loan(book, today))
+                .collect(Collectors.toList()));
+
+        ExecutorService executor = Executors.newFixedThreadPool(loans.size());
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = loans.stream()
+                .map(loan -> executor.submit(() -> {
+                    start.await();
+                    service.loansOpened(Collections.singletonList(loan));
+                    return null;
+                }))
+                .collect(Collectors.toList());
+
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(10, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        assertThat(service.getOpenLoans()).isEqualTo(8);
+        assertThat(dailyStatsRepository.findById(today))
+                .hasValueSatisfying(stats -> assertThat(stats.getCheckouts()).isEqualTo(8));
+    }
+
+    private static Loan loan(Book book, LocalDate loanDate) {
+        return Loan.builder()
+                .book(book)
+                .customer("Pessoa")
+                .loanDate(loanDate)
+                .build();
+    }
+}
@@ -1,12 +1,19 @@
 package com.nhamparsomia.libraryapi.service;
 
+import com.nhamparsomia.libraryapi.api.dto.LoanBatchResultDTO;
 import com.nhamparsomia.libraryapi.api.dto.LoanFilterDTO;
+import com.nhamparsomia.libraryapi.api.dto.ReturnedLoanBatchDTO;
 import com.nhamparsomia.libraryapi.exception.BusinessException;
 import com.nhamparsomia.libraryapi.model.entity.Book;
 import com.nhamparsomia.libraryapi.model.entity.Loan;
+import com.nhamparsomia.libraryapi.model.repository.BookRepository;
 import com.nhamparsomia.libraryapi.model.repository.LoanRepository;
 
+import com.nhamparsomia.libraryapi.service.coalescing.SingleFlight;
 import com.nhamparsomia.libraryapi.service.impl.LoanServiceImpl;
+import com.nhamparsomia.libraryapi.service.journal.LoanEventType;
+import com.nhamparsomia.libraryapi.service.journal.LoanJournal;
+import com.nhamparsomia.libraryapi.service.notification.OverdueDigest;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
@@ -18,14 +25,20 @@ import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 
 import java.time.LocalDate;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
 
+import static com.nhamparsomia.libraryapi.service.impl.LoanServiceImpl.MAX_UNION_IDS;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.catchThrowable;
 
@@ -38,9 +51,18 @@ public class LoanServiceTest {
     @MockBean
     private LoanRepository repository;
 
+    @MockBean
+    private BookRepository bookRepository;
+
+    @MockBean
+    private LoanAnalyticsService analytics;
+
+    @MockBean
+    private LoanJournal journal;
+
     @BeforeEach
     public void setUp() {
-        this.service = new LoanServiceImpl(repository);
+        this.service = new LoanServiceImpl(repository, bookRepository, analytics, journal, new SingleFlight(false, 1000));
     }
 
     @Test
@@ -61,6 +83,9 @@ public class LoanServiceTest {
         assertThat(loan.getBook().getId()).isEqualTo(savedLoan.getBook().getId());
         assertThat(loan.getCustomer()).isEqualTo(savedLoan.getCustomer());
         assertThat(loan.getLoanDate()).isEqualTo(savedLoan.getLoanDate());
+        Mockito.verify(bookRepository, Mockito.times(1)).addLoanCounters(Collections.singleton(loan.getBook().getId()), 1, 1);
+        Mockito.verify(analytics, Mockito.times(1)).loansOpened(Collections.singletonList(savedLoan));
+        Mockito.verify(journal, Mockito.times(1)).record(LoanEventType.CHECKOUT, savedLoan.getId(), savedLoan.getBook().getId(), savedLoan.getCustomer());
     }
 
     @Test
@@ -79,6 +104,7 @@ public class LoanServiceTest {
                 .hasMessage("Book has already been taken by another customer");
 
         Mockito.verify(repository, Mockito.never()).save(loanReceivedByRequest);
+        Mockito.verify(bookRepository, Mockito.never()).addLoanCounters(Mockito.anyCollection(), Mockito.anyLong(), Mockito.anyLong());
     }
 
     @Test
@@ -119,7 +145,55 @@ public class LoanServiceTest {
     }
 
     @Test
-    @DisplayName("Deve filtrar empréstimos pelas propriedades")
+    @DisplayName("Deve marcar a devolução de um empréstimo sem carregá-lo e atualizar as estatísticas")
+    public void updateReturnedTest() {
+        LocalDate loanDate = LocalDate.now();
+
+        Mockito.when(repository.updateReturnedById(1L, true))
+                .thenReturn(1);
+        Mockito.when(repository.findLoanReferences(1L))
+                .thenReturn(Collections.singletonList(new Object[]{1L, 11L, "Pessoa", loanDate}));
+
+        int updated = service.updateReturned(1L, true);
+
+        assertThat(updated).isEqualTo(1);
+        Mockito.verify(repository, Mockito.never()).findOpenLoanReferences(Mockito.anyCollection());
+        Mockito.verify(bookRepository, Mockito.times(1)).addLoanCounters(Collections.singleton(11L), 0, -1);
+        Mockito.verify(analytics, Mockito.times(1)).loansReturned(Collections.singletonMap(loanDate, 1L));
+        Mockito.verify(journal, Mockito.times(1)).record(LoanEventType.RETURN, 1L, 11L, "Pessoa");
+        Mockito.verify(repository, Mockito.never()).findById(Mockito.anyLong());
+    }
+
+    @Test
+    @DisplayName("Deve retornar zero ao devolver um empréstimo inexistente")
+    public void updateReturnedNotFoundTest() {
+        Mockito.when(repository.existsById(1L))
+                .thenReturn(false);
+
+        int updated = service.updateReturned(1L, true);
+
+        assertThat(updated).isZero();
+        Mockito.verify(analytics, Mockito.never()).loansReturned(Mockito.anyMap());
+    }
+
+    @Test
+    @DisplayName("Deve ignorar a devolução de um empréstimo já devolvido sem alterar as estatísticas")
+    public void updateReturnedTwiceTest() {
+        Mockito.when(repository.updateReturnedById(1L, true))
+                .thenReturn(0);
+        Mockito.when(repository.existsById(1L))
+                .thenReturn(true);
+
+        int updated = service.updateReturned(1L, true);
+
+        assertThat(updated).isEqualTo(1);
+        Mockito.verify(repository, Mockito.never()).findLoanReferences(Mockito.anyLong());
+        Mockito.verifyNoInteractions(bookRepository, analytics);
+        Mockito.verify(journal, Mockito.never()).record(Mockito.any(), Mockito.anyLong(), Mockito.anyLong(), Mockito.anyString());
+    }
+
+    @Test
+    @DisplayName("Deve filtrar empréstimos pelo isbn ou pelo nome da pessoa")
     public void findLoanTest() {
         LoanFilterDTO loanFilterDTO = LoanFilterDTO.builder()
                 .customer("Pessoa")
@@ -132,17 +206,12 @@ public class LoanServiceTest {
         PageRequest pageRequest = PageRequest.of(0, 10);
         List<Loan> loanList = Arrays.asList(loan);
 
-        Page<Loan> page = new PageImpl<Loan>(
-                loanList,
-                pageRequest,
-                1
-        );
-
-        Mockito.when(repository.findBookByIsbnOrCustomer(
-                    Mockito.anyString(),
-                    Mockito.anyString(),
-                    Mockito.any(PageRequest.class)))
-                .thenReturn(page);
+        Mockito.when(repository.findIdsByIsbn(Mockito.eq("321"), Mockito.any(Pageable.class)))
+                .thenReturn(Arrays.asList(1L));
+        Mockito.when(repository.findIdsByCustomer(Mockito.eq("Pessoa"), Mockito.any(Pageable.class)))
+                .thenReturn(Arrays.asList(1L));
+        Mockito.when(repository.findByIdIn(Collections.singleton(1L), pageRequest))
+                .thenReturn(loanList);
 
         Page<Loan> result = service.find(loanFilterDTO, pageRequest);
 
@@ -152,6 +221,159 @@ public class LoanServiceTest {
         assertThat(result.getPageable().getPageSize()).isEqualTo(10);
     }
 
+    @Test
+    @DisplayName("Deve escolher a consulta conforme os filtros informados")
+    public void findLoanQueryShapeTest() {
+        PageRequest pageRequest = PageRequest.of(0, 10);
+        Page<Loan> page = new PageImpl<>(Arrays.asList(createLoan()), pageRequest, 1);
+
+        Mockito.when(repository.findAll(pageRequest)).thenReturn(page);
+        Mockito.when(repository.findByBookIsbn("321", pageRequest)).thenReturn(page);
+        Mockito.when(repository.findByCustomer("Pessoa", pageRequest)).thenReturn(page);
+        Mockito.when(repository.findByCustomerNormalizedStartingWith("pes", pageRequest)).thenReturn(page);
+        Mockito.when(repository.findByBookIsbnAndCustomer("321", "Pessoa", pageRequest)).thenReturn(page);
+
+        assertThat(service.find(new LoanFilterDTO(), pageRequest)).isEqualTo(page);
+        assertThat(service.find(LoanFilterDTO.builder().isbn("321").build(), pageRequest)).isEqualTo(page);
+        assertThat(service.find(LoanFilterDTO.builder().customer("Pessoa").build(), pageRequest)).isEqualTo(page);
+        assertThat(service.find(LoanFilterDTO.builder().customerPrefix(" PES").build(), pageRequest)).isEqualTo(page);
+        assertThat(service.find(LoanFilterDTO.builder().isbn("321").customer("Pessoa").matchAll(true).build(), pageRequest))
+                .isEqualTo(page);
+    }
+
+    @Test
+    @DisplayName("Deve escapar os curingas ao buscar pelo início do nome junto com o isbn")
+    public void findLoanByIsbnOrCustomerPrefixTest() {
+        PageRequest pageRequest = PageRequest.of(0, 10);
+
+        Mockito.when(repository.findIdsByIsbn(Mockito.eq("321"), Mockito.any(Pageable.class)))
+                .thenReturn(Collections.emptyList());
+        Mockito.when(repository.findIdsByCustomerPattern(Mockito.eq("pe\\_s%"), Mockito.any(Pageable.class)))
+                .thenReturn(Collections.emptyList());
+
+        Page<Loan> result = service.find(LoanFilterDTO.builder().isbn("321").customerPrefix("Pe_s").build(), pageRequest);
+
+        assertThat(result.getTotalElements()).isZero();
+        Mockito.verify(repository, Mockito.times(1)).findIdsByCustomerPattern(Mockito.eq("pe\\_s%"), Mockito.any(Pageable.class));
+        Mockito.verify(repository, Mockito.never()).findByIdIn(Mockito.anyCollection(), Mockito.any(Pageable.class));
+    }
+
+    @Test
+    @DisplayName("Deve deixar a paginação da união para o banco quando um dos filtros encontra empréstimos demais")
+    public void findLoanByIsbnOrCustomerLimitTest() {
+        PageRequest pageRequest = PageRequest.of(0, 10);
+        Page<Loan> page = new PageImpl<>(Arrays.asList(createLoan()), pageRequest, MAX_UNION_IDS + 1);
+        List<Long> manyIds = LongStream.rangeClosed(1, MAX_UNION_IDS + 1).boxed().collect(Collectors.toList());
+
+        Mockito.when(repository.findIdsByIsbn("321", PageRequest.of(0, MAX_UNION_IDS + 1)))
+                .thenReturn(Collections.singletonList(1L));
+        Mockito.when(repository.findIdsByCustomer("Pessoa", PageRequest.of(0, MAX_UNION_IDS + 1)))
+                .thenReturn(manyIds);
+        Mockito.when(repository.findByBookIsbnOrCustomer("321", "Pessoa", pageRequest))
+                .thenReturn(page);
+
+        Page<Loan> result = service.find(LoanFilterDTO.builder().isbn("321").customer("Pessoa").build(), pageRequest);
+
+        assertThat(result).isEqualTo(page);
+        Mockito.verify(repository, Mockito.never()).findByIdIn(Mockito.anyCollection(), Mockito.any(Pageable.class));
+    }
+
+    @Test
+    @DisplayName("Deve salvar empréstimos em lote recusando livros indisponíveis")
+    public void saveAllLoansTest() {
+        Loan firstLoan = createLoan();
+        Loan sameBookLoan = createLoan();
+
+        Mockito.when(repository.findTakenBookIds(Mockito.anyCollection()))
+                .thenReturn(Collections.emptyList());
+
+        Mockito.when(repository.saveAll(Mockito.anyList()))
+                .thenAnswer(invocation -> {
+                    firstLoan.setId(1L);
+                    return invocation.getArgument(0);
+                });
+
+        List<LoanBatchResultDTO> results = service.saveAll(Arrays.asList(firstLoan, sameBookLoan));
+
+        assertThat(results).hasSize(2);
+        assertThat(results.get(0).getId()).isEqualTo(1L);
+        assertThat(results.get(0).getStatus()).isEqualTo(201);
+        assertThat(results.get(1).getStatus()).isEqualTo(400);
+        assertThat(results.get(1).getError()).isEqualTo("Book has already been taken by another customer");
+
+        Mockito.verify(repository, Mockito.times(1)).saveAll(Arrays.asList(firstLoan));
+        Mockito.verify(bookRepository, Mockito.times(1)).addLoanCounters(Collections.singleton(firstLoan.getBook().getId()), 1, 1);
+    }
+
+    @Test
+    @DisplayName("Deve devolver empréstimos em lote informando os inexistentes")
+    public void updateReturnedLoansTest() {
+        List<ReturnedLoanBatchDTO> returnedLoans = Arrays.asList(
+                ReturnedLoanBatchDTO.builder().id(1L).returned(true).build(),
+                ReturnedLoanBatchDTO.builder().id(2L).returned(true).build()
+        );
+
+        Mockito.when(repository.findExistingIds(Mockito.anyCollection()))
+                .thenReturn(Arrays.asList(1L));
+
+        Mockito.when(repository.findOpenLoanReferences(Collections.singleton(1L)))
+                .thenReturn(Collections.singletonList(new Object[]{1L, 11L, "Pessoa", LocalDate.now()}));
+
+        List<LoanBatchResultDTO> results = service.updateReturned(returnedLoans);
+
+        assertThat(results).extracting(LoanBatchResultDTO::getStatus).containsExactly(200, 404);
+        Mockito.verify(repository, Mockito.times(1)).updateReturned(Collections.singleton(1L), true);
+    }
+
+    @Test
+    @DisplayName("Deve ajustar os empréstimos em aberto de cada livro com uma atualização por quantidade")
+    public void updateReturnedLoanCountersTest() {
+        Mockito.when(repository.findExistingIds(Mockito.anyCollection()))
+                .thenReturn(Arrays.asList(1L, 2L, 3L, 4L));
+        Mockito.when(repository.findReturnedLoanReferences(Mockito.anyCollection()))
+                .thenReturn(Arrays.asList(
+                        new Object[]{1L, 11L, "Pessoa", LocalDate.now()},
+                        new Object[]{2L, 12L, "Pessoa", LocalDate.now()},
+                        new Object[]{3L, 13L, "Pessoa", LocalDate.now()},
+                        new Object[]{4L, 13L, "Pessoa", LocalDate.now()}
+                ));
+
+        service.updateReturned(Arrays.asList(
+                ReturnedLoanBatchDTO.builder().id(1L).returned(false).build(),
+                ReturnedLoanBatchDTO.builder().id(2L).returned(false).build(),
+                ReturnedLoanBatchDTO.builder().id(3L).returned(false).build(),
+                ReturnedLoanBatchDTO.builder().id(4L).returned(false).build()
+        ));
+
+        Mockito.verify(bookRepository, Mockito.times(1)).addLoanCounters(new HashSet<>(Arrays.asList(11L, 12L)), 0, 1);
+        Mockito.verify(bookRepository, Mockito.times(1)).addLoanCounters(Collections.singleton(13L), 0, 2);
+        Mockito.verifyNoMoreInteractions(bookRepository);
+    }
+
+    @Test
+    @DisplayName("Deve montar um aviso de atraso por cliente e marcar os empréstimos como avisados")
+    public void overdueDigestsTest() {
+        LocalDate today = LocalDate.now();
+        Mockito.when(repository.findOverdueLoans(today.minusDays(LoanServiceImpl.LOAN_DAYS), today.minusDays(7), 0, 1))
+                .thenReturn(Arrays.asList(
+                        new Object[]{"pessoa@email.com", "Pessoa", 1L, 11L, LocalDate.of(2020, 1, 10), "Java World"},
+                        new Object[]{"pessoa@email.com", "Pessoa", 2L, 12L, LocalDate.of(2020, 1, 12), "Kotlin: a guide"}));
+
+        List<OverdueDigest> digests = service.getOverdueDigests(7, 0, 1);
+
+        assertThat(digests).hasSize(1);
+        OverdueDigest digest = digests.get(0);
+        assertThat(digest.getEmail()).isEqualTo("pessoa@email.com");
+        assertThat(digest.getCustomer()).isEqualTo("Pessoa");
+        assertThat(digest.getLoans()).extracting(OverdueDigest.OverdueLoan::getTitle).containsExactly("Java World", "Kotlin: a guide");
+        assertThat(digest.getLoans().get(1).getLoanDate()).isEqualTo(LocalDate.of(2020, 1, 12));
+
+        service.overdueNotified(digest);
+
+        Mockito.verify(repository, Mockito.times(1)).updateLastNotified(Arrays.asList(1L, 2L), today);
+        Mockito.verify(journal, Mockito.times(1)).record(LoanEventType.OVERDUE_NOTIFIED, 2L, 12L, "Pessoa");
+    }
+
     private Loan createLoan() {
         Book book = Book.builder().id(11L).build();
 
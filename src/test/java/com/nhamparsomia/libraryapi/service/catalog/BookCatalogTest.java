@@ -0,0 +1,105 @@
+package com.nhamparsomia.libraryapi.service.catalog;
+
+import com.nhamparsomia.libraryapi.model.entity.Book;
+import com.nhamparsomia.libraryapi.model.repository.BookRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Collections;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class BookCatalogTest {
+
+    private final BookRepository repository = Mockito.mock(BookRepository.class);
+    private final BookCatalog catalog = new BookCatalog(repository, true);
+
+    @BeforeEach
+    public void setUp() {
+        Mockito.when(repository.findAll())
+                .thenReturn(Collections.singletonList(Book.builder().id(1L).isbn("1").title("Java").author("Autor").build()));
+        catalog.rebuild();
+        TransactionSynchronizationManager.initSynchronization();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        TransactionSynchronizationManager.clearSynchronization();
+    }
+
+    @Test
+    @DisplayName("Deve publicar as alterações de livros apenas após o commit da transação")
+    public void publishAfterCommitTest() {
+        catalog.publish(Book.builder().id(2L).isbn("2").title("Kotlin").author("Autor").build());
+        catalog.remove(1L);
+
+        assertThat(catalog.current().get().findById(2L)).isEmpty();
+        assertThat(catalog.current().get().findById(1L)).isPresent();
+
+        TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+
+        assertThat(catalog.current().get().findById(2L)).isPresent();
+        assertThat(catalog.current().get().findById(1L)).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Deve descartar as alterações de livros de uma transação desfeita")
+    public void rollbackTest() {
+        catalog.update(1L, book -> book.setTitle("Alterado"));
+
+        TransactionSynchronizationManager.getSynchronizations()
+                .forEach(synchronization -> synchronization.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+
+        assertThat(catalog.current().get().findById(1L).map(Book::getTitle)).contains("Java");
+    }
+
+    @Test
+    @DisplayName("Deve recarregar no catálogo reconstruído apenas os livros alterados durante a carga")
+    public void rebuildWithConcurrentWriteTest() {
+        Book changed = Book.builder().id(1L).isbn("1").title("Alterado").author("Autor").build();
+        Mockito.when(repository.findAll()).thenAnswer(invocation -> {
+            committed(() -> catalog.publish(changed));
+            return Collections.singletonList(Book.builder().id(1L).isbn("1").title("Java").author("Autor").build());
+        });
+        Mockito.when(repository.findAllById(Collections.singleton(1L))).thenReturn(Collections.singletonList(changed));
+
+        catalog.rebuild();
+
+        assertThat(catalog.current().get().findById(1L).map(Book::getTitle)).contains("Alterado");
+        Mockito.verify(repository, Mockito.times(2)).findAll();
+    }
+
+    @Test
+    @DisplayName("Deve concluir a reconstrução mesmo com escritas contínuas durante a carga")
+    public void rebuildWithSteadyWritesTest() {
+        Book changed = Book.builder().id(1L).isbn("1").title("Alterado").author("Autor").build();
+        Mockito.when(repository.findAll()).thenAnswer(invocation -> {
+            committed(() -> catalog.publish(changed));
+            return Collections.emptyList();
+        });
+        Mockito.when(repository.findAllById(Mockito.anyCollection())).thenAnswer(invocation -> {
+            committed(() -> catalog.publish(changed));
+            return Collections.singletonList(changed);
+        });
+
+        catalog.rebuild();
+
+        assertThat(catalog.current().get().findById(1L)).isPresent();
+        Mockito.verify(repository, Mockito.times(2)).findAll();
+        Mockito.verify(repository, Mockito.times(BookCatalog.MAX_CATCH_UP_ROUNDS + 1)).findAllById(Mockito.anyCollection());
+    }
+
+    private static void committed(Runnable write) {
+        TransactionSynchronizationManager.clearSynchronization();
+        try {
+            write.run();
+        } finally {
+            TransactionSynchronizationManager.initSynchronization();
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package com.nhamparsomia.libraryapi.service.catalog;
+
+import com.nhamparsomia.libraryapi.model.entity.Book;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+
+import java.util.Arrays;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class BookSearchCacheTest {
+
+    private final BookSearchCache cache = new BookSearchCache(true, 100, 60000);
+
+    @Test
+    @DisplayName("Deve reaproveitar o resultado de filtros equivalentes e da mesma página")
+    public void hitTest() {
+        store(Book.builder().title("Java").build(), PageRequest.of(0, 10), 1L, 2L);
+
+        BookSearchCache.Lookup lookup = cache.lookup(Book.builder().title(" JAVA ").author("").build(), PageRequest.of(0, 10));
+
+        assertThat(lookup.isHit()).isTrue();
+        assertThat(lookup.getIds()).containsExactly(1L, 2L);
+        assertThat(lookup.getTotal()).isEqualTo(2);
+        assertThat(cache.lookup(Book.builder().title("Java").build(), PageRequest.of(1, 10)).isHit()).isFalse();
+        assertThat(cache.lookup(Book.builder().title("Java").build(), PageRequest.of(0, 10, Sort.by("isbn"))).isHit()).isFalse();
+    }
+
+    @Test
+    @DisplayName("Deve invalidar todas as pesquisas quando um livro for incluído ou removido")
+    public void invalidateAllTest() {
+        store(Book.builder().title("Java").build(), PageRequest.of(0, 10), 1L);
+        store(Book.builder().build(), PageRequest.of(0, 10), 1L, 2L);
+
+        cache.invalidateAll();
+
+        assertThat(cache.lookup(Book.builder().title("Java").build(), PageRequest.of(0, 10)).isHit()).isFalse();
+        assertThat(cache.lookup(Book.builder().build(), PageRequest.of(0, 10)).isHit()).isFalse();
+    }
+
+    @Test
+    @DisplayName("Deve invalidar apenas as pesquisas que filtram ou ordenam pelo campo alterado")
+    public void invalidateFieldTest() {
+        store(Book.builder().title("Java").build(), PageRequest.of(0, 10), 1L);
+        store(Book.builder().isbn("123").build(), PageRequest.of(0, 10), 2L);
+        store(Book.builder().isbn("123").build(), PageRequest.of(0, 10, Sort.by("title")), 2L);
+
+        cache.invalidate(BookSearchCache.Field.TITLE);
+
+        assertThat(cache.lookup(Book.builder().title("Java").build(), PageRequest.of(0, 10)).isHit()).isFalse();
+        assertThat(cache.lookup(Book.builder().isbn("123").build(), PageRequest.of(0, 10)).isHit()).isTrue();
+        assertThat(cache.lookup(Book.builder().isbn("123").build(), PageRequest.of(0, 10, Sort.by("title"))).isHit()).isFalse();
+    }
+
+    @Test
+    @DisplayName("Não deve guardar um resultado consultado antes de uma alteração concorrente")
+    public void raceWithWriteTest() {
+        Book filter = Book.builder().title("Java").build();
+        BookSearchCache.Lookup miss = cache.lookup(filter, PageRequest.of(0, 10));
+
+        cache.invalidateAll();
+        miss.store(page(PageRequest.of(0, 10), 1L));
+
+        assertThat(cache.lookup(filter, PageRequest.of(0, 10)).isHit()).isFalse();
+    }
+
+    @Test
+    @DisplayName("Deve descartar as entradas menos usadas ao exceder o peso máximo")
+    public void evictionTest() {
+        long[] manyIds = LongStream.rangeClosed(1, 40).toArray();
+        store(Book.builder().title("a").build(), PageRequest.of(0, 40), manyIds);
+        store(Book.builder().title("b").build(), PageRequest.of(0, 40), manyIds);
+        cache.lookup(Book.builder().title("a").build(), PageRequest.of(0, 40));
+
+        store(Book.builder().title("c").build(), PageRequest.of(0, 40), manyIds);
+
+        assertThat(cache.getWeight()).isLessThanOrEqualTo(100);
+        assertThat(cache.lookup(Book.builder().title("a").build(), PageRequest.of(0, 40)).isHit()).isTrue();
+        assertThat(cache.lookup(Book.builder().title("b").build(), PageRequest.of(0, 40)).isHit()).isFalse();
+    }
+
+    @Test
+    @DisplayName("Deve publicar a taxa de acertos do cache")
+    public void hitRatioTest() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        cache.bindTo(registry);
+
+        store(Book.builder().title("Java").build(), PageRequest.of(0, 10), 1L);
+        cache.lookup(Book.builder().title("Java").build(), PageRequest.of(0, 10));
+
+        assertThat(registry.get("library.book.search.cache").tag("result", "hit").functionCounter().count()).isEqualTo(1);
+        assertThat(registry.get("library.book.search.cache").tag("result", "miss").functionCounter().count()).isEqualTo(1);
+        assertThat(registry.get("library.book.search.cache.hit.ratio").gauge().value()).isEqualTo(0.5);
+    }
+
+    private void store(Book filter, Pageable pageable, long... ids) {
+        cache.lookup(filter, pageable).store(page(pageable, ids));
+    }
+
+    private static PageImpl<Book> page(Pageable pageable, long... ids) {
+        return new PageImpl<>(
+                Arrays.stream(ids).mapToObj(id -> Book.builder().id(id).build()).collect(Collectors.toList()),
+                pageable,
+                ids.length
+        );
+    }
+}
@@ -0,0 +1,75 @@
+package com.nhamparsomia.libraryapi.service.catalog;
+
+import com.nhamparsomia.libraryapi.model.entity.Book;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mapping.PropertyReferenceException;
+
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+
+public class CatalogSnapshotTest {
+
+    private final CatalogSnapshot snapshot = CatalogSnapshot.of(Arrays.asList(
+            book(3L, "Spring in Action", "Craig Walls", "333"),
+            book(1L, "Java World", "John Doe", "111"),
+            book(2L, "Effective Java", "Joshua Bloch", "222")
+    ));
+
+    @Test
+    @DisplayName("Deve encontrar livros pelo id e pelo isbn")
+    public void findByIdAndIsbnTest() {
+        assertThat(snapshot.findById(2L)).hasValueSatisfying(book -> assertThat(book.getIsbn()).isEqualTo("222"));
+        assertThat(snapshot.findByIsbn("333")).hasValueSatisfying(book -> assertThat(book.getId()).isEqualTo(3L));
+        assertThat(snapshot.findById(4L)).isEmpty();
+        assertThat(snapshot.findByIsbn("444")).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Deve filtrar, ordenar e paginar como a consulta do repositório")
+    public void findTest() {
+        Book filter = Book.builder().title("JAVA").build();
+
+        Page<Book> result = snapshot.find(filter, PageRequest.of(0, 1, Sort.by("title")));
+
+        assertThat(result.getTotalElements()).isEqualTo(2);
+        assertThat(result.getTotalPages()).isEqualTo(2);
+        assertThat(result.getContent()).extracting(Book::getId).containsExactly(2L);
+    }
+
+    @Test
+    @DisplayName("Deve recusar a ordenação por uma propriedade desconhecida como a consulta do repositório")
+    public void unknownSortTest() {
+        Throwable exception = catchThrowable(() -> snapshot.find(new Book(), PageRequest.of(0, 10, Sort.by("title", "inexistente"))));
+
+        assertThat(exception).isInstanceOf(PropertyReferenceException.class);
+        assertThat(CatalogSnapshot.canSort(Sort.by("title", "isbn"))).isTrue();
+        assertThat(CatalogSnapshot.canSort(Sort.by("totalLoans"))).isFalse();
+    }
+
+    @Test
+    @DisplayName("Deve publicar alterações em uma nova snapshot sem modificar a anterior")
+    public void copyOnWriteTest() {
+        CatalogSnapshot added = snapshot.withBook(book(4L, "Clean Code", "Robert Martin", "444"));
+        CatalogSnapshot updated = added.withBook(book(1L, "Java World 2", "John Doe", "111"));
+        CatalogSnapshot removed = updated.withoutBook(2L);
+
+        assertThat(snapshot.size()).isEqualTo(3);
+        assertThat(snapshot.findById(1L)).hasValueSatisfying(book -> assertThat(book.getTitle()).isEqualTo("Java World"));
+
+        assertThat(added.findByIsbn("444")).isPresent();
+        assertThat(updated.findById(1L)).hasValueSatisfying(book -> assertThat(book.getTitle()).isEqualTo("Java World 2"));
+        assertThat(removed.size()).isEqualTo(3);
+        assertThat(removed.findByIsbn("222")).isEmpty();
+        assertThat(removed.estimatedBytes()).isPositive();
+    }
+
+    private static Book book(Long id, String title, String author, String isbn) {
+        return Book.builder().id(id).title(title).author(author).isbn(isbn).build();
+    }
+}
@@ -0,0 +1,140 @@
+package com.nhamparsomia.libraryapi.service.changefeed;
+
+import com.nhamparsomia.libraryapi.model.entity.ChangeLogEntry;
+import com.nhamparsomia.libraryapi.model.repository.ChangeLogRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.springframework.data.domain.Pageable;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ChangeFeedTest {
+
+    private final ChangeLogRepository repository = Mockito.mock(ChangeLogRepository.class);
+    private final List<Set<Long>> received = new ArrayList<>();
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    private ChangeFeed feed;
+
+    @BeforeEach
+    public void setUp() {
+        ChangeListener listener = new ChangeListener() {
+            @Override
+            public String entity() {
+                return ChangeFeed.BOOK;
+            }
+
+            @Override
+            public void onChange(Set<Long> keys) {
+                received.add(keys);
+            }
+        };
+
+        feed = new ChangeFeed(repository, Collections.singletonList(listener), true, 500, 60000, 3600000);
+        feed.bindTo(registry);
+
+        Mockito.when(repository.findMaxId()).thenReturn(10L);
+        feed.poll();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    @DisplayName("Deve entregar uma única vez cada livro alterado em outra instância")
+    public void pollTest() {
+        returnEntries(entry(11, 1L, "other"), entry(12, 2L, "other"), entry(13, 1L, "other"));
+
+        feed.poll();
+
+        assertThat(received).containsExactly(new HashSet<>(Arrays.asList(1L, 2L)));
+        assertThat(feed.getHighWaterMark()).isEqualTo(13);
+        assertThat(registry.get("library.changefeed.propagation").timer().count()).isEqualTo(3);
+    }
+
+    @Test
+    @DisplayName("Não deve reprocessar as alterações feitas pela própria instância")
+    public void ownChangesTest() {
+        feed.record(ChangeFeed.BOOK, 5L);
+        ArgumentCaptor<List<ChangeLogEntry>> appended = ArgumentCaptor.forClass(List.class);
+        Mockito.verify(repository).saveAll(appended.capture());
+        ChangeLogEntry own = appended.getValue().get(0);
+        own.setId(11L);
+
+        returnEntries(own);
+        feed.poll();
+
+        assertThat(received).isEmpty();
+        assertThat(feed.getHighWaterMark()).isEqualTo(11);
+    }
+
+    @Test
+    @DisplayName("Deve aguardar uma transação ainda aberta antes de avançar a marca de leitura")
+    public void gapTest() {
+        returnEntries(entry(12, 2L, "other"));
+        feed.poll();
+
+        assertThat(received).containsExactly(Collections.singleton(2L));
+        assertThat(feed.getHighWaterMark()).isEqualTo(10);
+
+        returnEntries(entry(11, 1L, "other"), entry(12, 2L, "other"));
+        feed.poll();
+
+        assertThat(received).containsExactly(Collections.singleton(2L), Collections.singleton(1L));
+        assertThat(feed.getHighWaterMark()).isEqualTo(12);
+    }
+
+    @Test
+    @DisplayName("Deve gravar as alterações de uma transação em um único lote antes do commit")
+    public void recordInTransactionTest() {
+        TransactionSynchronizationManager.initSynchronization();
+
+        feed.record(ChangeFeed.BOOK, 1L);
+        feed.record(ChangeFeed.BOOK, 2L);
+        feed.record(ChangeFeed.BOOK, 1L);
+        Mockito.verify(repository, Mockito.never()).saveAll(Mockito.anyIterable());
+
+        for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+            synchronization.beforeCommit(false);
+            synchronization.afterCompletion(TransactionSynchronization.STATUS_COMMITTED);
+        }
+
+        ArgumentCaptor<List<ChangeLogEntry>> appended = ArgumentCaptor.forClass(List.class);
+        Mockito.verify(repository, Mockito.times(1)).saveAll(appended.capture());
+        assertThat(appended.getValue()).extracting(ChangeLogEntry::getEntityKey).containsExactly(1L, 2L);
+    }
+
+    private void returnEntries(ChangeLogEntry... entries) {
+        Mockito.when(repository.findByIdGreaterThanOrderById(Mockito.anyLong(), Mockito.any(Pageable.class)))
+                .thenReturn(Arrays.asList(entries));
+    }
+
+    private static ChangeLogEntry entry(long id, Long key, String origin) {
+        return ChangeLogEntry.builder()
+                .id(id)
+                .entity(ChangeFeed.BOOK)
+                .entityKey(key)
+                .origin(origin)
+                .changedAt(Instant.now())
+                .build();
+    }
+}
@@ -0,0 +1,159 @@
+package com.nhamparsomia.libraryapi.service.checkout;
+
+import com.nhamparsomia.libraryapi.api.dto.LoanBatchResultDTO;
+import com.nhamparsomia.libraryapi.exception.BusinessException;
+import com.nhamparsomia.libraryapi.model.entity.Book;
+import com.nhamparsomia.libraryapi.model.entity.Loan;
+import com.nhamparsomia.libraryapi.service.LoanService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static com.nhamparsomia.libraryapi.service.impl.LoanServiceImpl.BOOK_ALREADY_TAKEN;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+
+public class LoanCheckoutBatcherTest {
+
+    private final LoanService loanService = Mockito.mock(LoanService.class);
+    private LoanCheckoutBatcher batcher;
+
+    @AfterEach
+    public void tearDown() throws Exception {
+        batcher.destroy();
+    }
+
+    @Test
+    @DisplayName("Deve agrupar checkouts concorrentes em uma única transação e responder cada um")
+    public void groupCommitTest() throws Exception {
+        batcher = start(true, 3, 1000);
+        Loan first = loan(1L);
+        Loan taken = loan(1L);
+        Loan third = loan(2L);
+
+        Mockito.when(loanService.saveAll(Arrays.asList(first, taken, third)))
+                .thenReturn(Arrays.asList(
+                        LoanBatchResultDTO.builder().index(0).id(10L).status(201).build(),
+                        LoanBatchResultDTO.builder().index(1).status(400).error(BOOK_ALREADY_TAKEN).build(),
+                        LoanBatchResultDTO.builder().index(2).id(11L).status(201).build()));
+
+        CompletableFuture<Loan> firstResult = batcher.submit(first);
+        CompletableFuture<Loan> takenResult = batcher.submit(taken);
+        CompletableFuture<Loan> thirdResult = batcher.submit(third);
+
+        assertThat(firstResult.get(5, TimeUnit.SECONDS)).isSameAs(first);
+        assertThat(thirdResult.get(5, TimeUnit.SECONDS)).isSameAs(third);
+
+        Throwable exception = catchThrowable(() -> takenResult.get(5, TimeUnit.SECONDS));
+        assertThat(exception).isInstanceOf(ExecutionException.class);
+        assertThat(exception.getCause()).isInstanceOf(BusinessException.class).hasMessage(BOOK_ALREADY_TAKEN);
+
+        Mockito.verify(loanService, Mockito.times(1)).saveAll(Mockito.anyList());
+        Mockito.verify(loanService, Mockito.never()).save(Mockito.any(Loan.class));
+    }
+
+    @Test
+    @DisplayName("Deve gravar os checkouts um a um quando a transação do grupo falhar")
+    public void failedBatchTest() {
+        batcher = start(true, 2, 1000);
+        Loan saved = loan(1L);
+        Loan refused = loan(2L);
+
+        Mockito.when(loanService.saveAll(Mockito.anyList()))
+                .thenThrow(new IllegalStateException("deadlock"));
+        Mockito.when(loanService.save(saved)).thenReturn(saved);
+        Mockito.when(loanService.save(refused)).thenThrow(new BusinessException(BOOK_ALREADY_TAKEN));
+
+        CompletableFuture<Loan> savedResult = batcher.submit(saved);
+        Throwable exception = catchThrowable(() -> batcher.checkout(refused));
+
+        assertThat(savedResult.join()).isSameAs(saved);
+        assertThat(exception).isInstanceOf(BusinessException.class).hasMessage(BOOK_ALREADY_TAKEN);
+    }
+
+    @Test
+    @DisplayName("Deve gravar o checkout diretamente quando o agrupamento estiver desabilitado")
+    public void disabledTest() {
+        batcher = start(false, 50, 5);
+        Loan loan = loan(1L);
+
+        Mockito.when(loanService.save(loan)).thenReturn(loan);
+
+        assertThat(batcher.checkout(loan)).isSameAs(loan);
+        Mockito.verify(loanService, Mockito.never()).saveAll(Mockito.anyList());
+    }
+
+    @Test
+    @DisplayName("Deve continuar agrupando checkouts depois de um erro grave no grupo anterior")
+    public void errorTest() {
+        batcher = start(true, 1, 1000);
+        Loan failed = loan(1L);
+        Loan saved = loan(2L);
+
+        Mockito.when(loanService.saveAll(Arrays.asList(failed)))
+                .thenThrow(new AssertionError("boom"));
+        Mockito.when(loanService.saveAll(Arrays.asList(saved)))
+                .thenReturn(Arrays.asList(LoanBatchResultDTO.builder().index(0).id(10L).status(201).build()));
+
+        Throwable exception = catchThrowable(() -> batcher.checkout(failed));
+
+        assertThat(exception).isInstanceOf(AssertionError.class);
+        assertThat(batcher.checkout(saved)).isSameAs(saved);
+    }
+
+    @Test
+    @DisplayName("Deve responder 503 quando o grupo não for gravado dentro do tempo limite")
+    public void timeoutTest() {
+        batcher = start(true, 1, 1000, 100);
+        Mockito.when(loanService.saveAll(Mockito.anyList()))
+                .thenAnswer(invocation -> {
+                    Thread.sleep(1000);
+                    return Arrays.asList(LoanBatchResultDTO.builder().index(0).id(10L).status(201).build());
+                });
+
+        Throwable exception = catchThrowable(() -> batcher.checkout(loan(1L)));
+
+        assertThat(exception).isInstanceOf(ResponseStatusException.class);
+        assertThat(((ResponseStatusException) exception).getStatus()).isEqualTo(HttpStatus.SERVICE_UNAVAILABLE);
+    }
+
+    @Test
+    @DisplayName("Deve gravar diretamente os checkouts recebidos depois da parada")
+    public void stoppedTest() throws Exception {
+        batcher = start(true, 50, 5);
+        batcher.destroy();
+        Loan loan = loan(1L);
+
+        Mockito.when(loanService.save(loan)).thenReturn(loan);
+
+        assertThat(batcher.submit(loan).get(5, TimeUnit.SECONDS)).isSameAs(loan);
+    }
+
+    private LoanCheckoutBatcher start(boolean enabled, int maxBatch, long maxWaitMillis) {
+        return start(enabled, maxBatch, maxWaitMillis, 10_000);
+    }
+
+    private LoanCheckoutBatcher start(boolean enabled, int maxBatch, long maxWaitMillis, long timeoutMillis) {
+        LoanCheckoutBatcher batcher = new LoanCheckoutBatcher(loanService, Mockito.mock(ObjectProvider.class), enabled, maxBatch, maxWaitMillis, timeoutMillis);
+        batcher.afterPropertiesSet();
+        return batcher;
+    }
+
+    private static Loan loan(Long bookId) {
+        return Loan.builder()
+                .book(Book.builder().id(bookId).build())
+                .customer("Pessoa")
+                .loanDate(LocalDate.now())
+                .build();
+    }
+}
@@ -0,0 +1,172 @@
+package com.nhamparsomia.libraryapi.service.coalescing;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+
+public class SingleFlightTest {
+
+    private static final int CALLERS = 8;
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(CALLERS);
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    @AfterEach
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    @DisplayName("Deve compartilhar uma única consulta entre chamadas idênticas concorrentes")
+    public void coalesceTest() throws Exception {
+        SingleFlight singleFlight = singleFlight(5000);
+        AtomicInteger lookups = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+
+        List<Future<String>> results = callConcurrently(() -> singleFlight.execute("books.byId", 1L, () -> {
+            lookups.incrementAndGet();
+            await(release);
+            return "book";
+        }));
+        waitForWaiters();
+        release.countDown();
+
+        for (Future<String> result : results) {
+            assertThat(result.get(5, TimeUnit.SECONDS)).isEqualTo("book");
+        }
+        assertThat(lookups.get()).isEqualTo(1);
+        assertThat(count("executed")).isEqualTo(1);
+        assertThat(count("shared")).isEqualTo(CALLERS - 1);
+    }
+
+    @Test
+    @DisplayName("Deve entregar uma cópia própria do resultado compartilhado a cada chamada")
+    public void copyTest() throws Exception {
+        SingleFlight singleFlight = singleFlight(5000);
+        CountDownLatch release = new CountDownLatch(1);
+
+        List<Future<List<String>>> results = callConcurrently(() -> singleFlight.execute("books.byId", 1L, () -> {
+            await(release);
+            return new ArrayList<>(Collections.singletonList("book"));
+        }, ArrayList::new));
+        waitForWaiters();
+        release.countDown();
+
+        Set<List<String>> distinct = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (Future<List<String>> result : results) {
+            List<String> books = result.get(5, TimeUnit.SECONDS);
+            assertThat(books).containsExactly("book");
+            distinct.add(books);
+        }
+        assertThat(distinct.size()).isEqualTo(CALLERS);
+        assertThat(count("shared")).isEqualTo(CALLERS - 1);
+    }
+
+    @Test
+    @DisplayName("Deve propagar o erro da consulta compartilhada para todas as chamadas")
+    public void errorPropagationTest() throws Exception {
+        SingleFlight singleFlight = singleFlight(5000);
+        CountDownLatch release = new CountDownLatch(1);
+
+        List<Future<String>> results = callConcurrently(() -> singleFlight.execute("books.byId", 1L, () -> {
+            await(release);
+            throw new IllegalStateException("database unavailable");
+        }));
+        waitForWaiters();
+        release.countDown();
+
+        for (Future<String> result : results) {
+            Throwable exception = catchThrowable(() -> result.get(5, TimeUnit.SECONDS));
+            assertThat(exception).isInstanceOf(ExecutionException.class);
+            assertThat(exception.getCause()).isInstanceOf(IllegalStateException.class).hasMessage("database unavailable");
+        }
+    }
+
+    @Test
+    @DisplayName("Deve consultar por conta própria quando a consulta compartilhada demorar demais")
+    public void timeoutTest() throws Exception {
+        SingleFlight singleFlight = singleFlight(50);
+        CountDownLatch release = new CountDownLatch(1);
+
+        Future<String> slow = executor.submit(() -> singleFlight.execute("books.byId", 1L, () -> {
+            await(release);
+            return "slow";
+        }));
+        waitForWaiters();
+
+        assertThat(singleFlight.execute("books.byId", 1L, () -> "own")).isEqualTo("own");
+        assertThat(count("timeout")).isEqualTo(1);
+
+        release.countDown();
+        assertThat(slow.get(5, TimeUnit.SECONDS)).isEqualTo("slow");
+    }
+
+    @Test
+    @DisplayName("Não deve compartilhar consultas de chaves diferentes nem quando desabilitado")
+    public void distinctKeysTest() {
+        SingleFlight singleFlight = singleFlight(5000);
+        SingleFlight disabled = new SingleFlight(false, 5000);
+
+        assertThat(singleFlight.execute("books.byId", 1L, () -> "first")).isEqualTo("first");
+        assertThat(singleFlight.execute("books.byId", 2L, () -> "second")).isEqualTo("second");
+        assertThat(disabled.execute("books.byId", 1L, () -> "disabled")).isEqualTo("disabled");
+        assertThat(count("shared")).isZero();
+    }
+
+    private SingleFlight singleFlight(long timeoutMillis) {
+        SingleFlight singleFlight = new SingleFlight(true, timeoutMillis);
+        singleFlight.bindTo(registry);
+        return singleFlight;
+    }
+
+    private <T> List<Future<T>> callConcurrently(Supplier<T> call) {
+        List<Future<T>> results = new ArrayList<>();
+        for (int caller = 0; caller < CALLERS; caller++) {
+            results.add(executor.submit(call::get));
+        }
+        return results;
+    }
+
+    /**
+     * Waits until a lookup is in flight, then gives the other callers time to join it.
+     */
+    private void waitForWaiters() throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (registry.get("library.singleflight.in-flight").gauge().value() == 0 && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        Thread.sleep(200);
+    }
+
+    private double count(String outcome) {
+        return registry.find(SingleFlight.METRIC_NAME).tag("outcome", outcome).counters().stream()
+                .mapToDouble(counter -> counter.count())
+                .sum();
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
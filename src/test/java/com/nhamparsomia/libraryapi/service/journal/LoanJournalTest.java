@@ -0,0 +1,176 @@
+package com.nhamparsomia.libraryapi.service.journal;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.RandomAccessFile;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+import static org.assertj.core.api.Assertions.tuple;
+
+public class LoanJournalTest {
+
+    @TempDir
+    Path directory;
+
+    private final List<LoanJournal> journals = new ArrayList<>();
+
+    @AfterEach
+    public void tearDown() throws Exception {
+        for (LoanJournal journal : journals) {
+            journal.destroy();
+        }
+    }
+
+    @Test
+    @DisplayName("Deve gravar e reproduzir os eventos de empréstimo na ordem")
+    public void appendAndReplayTest() throws Exception {
+        LoanJournal journal = open(LoanJournal.MIN_SEGMENT_BYTES);
+
+        journal.record(LoanEventType.CHECKOUT, 1L, 10L, "Pessoa");
+        journal.record(LoanEventType.RETURN, 1L, 10L, "Pessoa");
+        journal.record(LoanEventType.OVERDUE_NOTIFIED, 2L, 20L, null);
+
+        assertThat(journal.flush().get(5, TimeUnit.SECONDS)).isEqualTo(3);
+
+        List<LoanEvent> events = replay(journal, 1);
+        assertThat(events)
+                .extracting(LoanEvent::getSequence, LoanEvent::getType, LoanEvent::getLoanId, LoanEvent::getBookId, LoanEvent::getCustomer)
+                .containsExactly(
+                        tuple(1L, LoanEventType.CHECKOUT, 1L, 10L, "Pessoa"),
+                        tuple(2L, LoanEventType.RETURN, 1L, 10L, "Pessoa"),
+                        tuple(3L, LoanEventType.OVERDUE_NOTIFIED, 2L, 20L, null));
+        assertThat(events.get(0).getTimestamp()).isPositive();
+
+        assertThat(replay(journal, 3)).extracting(LoanEvent::getSequence).containsExactly(3L);
+    }
+
+    @Test
+    @DisplayName("Deve abrir novos segmentos quando o atual estiver cheio")
+    public void segmentRollTest() throws Exception {
+        LoanJournal journal = open(LoanJournal.MIN_SEGMENT_BYTES);
+
+        for (long loanId = 1; loanId <= 500; loanId++) {
+            journal.record(LoanEventType.CHECKOUT, loanId, loanId, "Pessoa " + loanId);
+        }
+        journal.flush().get(5, TimeUnit.SECONDS);
+
+        assertThat(LoanJournalReader.segments(directory).size()).isGreaterThan(1);
+        assertThat(replay(journal, 1)).hasSize(500);
+        assertThat(replay(journal, 451)).extracting(LoanEvent::getLoanId).startsWith(451L).hasSize(50);
+    }
+
+    @Test
+    @DisplayName("Deve continuar a sequência após reabrir e descartar um registro incompleto")
+    public void recoveryTest() throws Exception {
+        LoanJournal journal = open(LoanJournal.MIN_SEGMENT_BYTES);
+        journal.record(LoanEventType.CHECKOUT, 1L, 10L, "Pessoa");
+        journal.record(LoanEventType.RETURN, 1L, 10L, "Pessoa");
+        journal.flush().get(5, TimeUnit.SECONDS);
+        journal.destroy();
+
+        Path segment = LoanJournalReader.segments(directory).get(0);
+        long end = 2L * (JournalFormat.LENGTH_BYTES + JournalFormat.FIXED_BODY_BYTES + "Pessoa".length() + JournalFormat.CHECKSUM_BYTES);
+        try (RandomAccessFile file = new RandomAccessFile(segment.toFile(), "rw")) {
+            file.seek(end);
+            file.writeInt(60);
+            file.write(new byte[]{1, 2, 3, 4, 5, 6, 7, 8});
+        }
+
+        LoanJournal reopened = open(LoanJournal.MIN_SEGMENT_BYTES);
+        reopened.record(LoanEventType.CHECKOUT, 2L, 20L, "Outra pessoa");
+        reopened.flush().get(5, TimeUnit.SECONDS);
+
+        assertThat(replay(reopened, 1))
+                .extracting(LoanEvent::getSequence, LoanEvent::getLoanId)
+                .containsExactly(tuple(1L, 1L), tuple(2L, 1L), tuple(3L, 2L));
+    }
+
+    @Test
+    @DisplayName("Não deve gravar nada quando o journal estiver desabilitado")
+    public void disabledTest() throws Exception {
+        LoanJournal journal = new LoanJournal(false, directory.resolve("disabled").toString(), LoanJournal.MIN_SEGMENT_BYTES, 16, 100, 0);
+        journal.afterPropertiesSet();
+
+        journal.record(LoanEventType.CHECKOUT, 1L, 10L, "Pessoa");
+
+        assertThat(journal.flush().get(5, TimeUnit.SECONDS)).isZero();
+        assertThat(LoanJournalReader.segments(directory.resolve("disabled"))).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Deve aguardar o fsync do lote ao registrar quando a espera estiver configurada")
+    public void syncTest() throws Exception {
+        LoanJournal journal = open(LoanJournal.MIN_SEGMENT_BYTES, 5_000);
+
+        journal.record(LoanEventType.CHECKOUT, 1L, 10L, "Pessoa");
+
+        assertThat(journal.getForcedSequence()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Deve gravar juntos os eventos de uma transação apenas depois do commit")
+    public void transactionTest() throws Exception {
+        LoanJournal journal = open(LoanJournal.MIN_SEGMENT_BYTES, 5_000);
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            journal.record(LoanEventType.CHECKOUT, 1L, 10L, "Pessoa");
+            journal.record(LoanEventType.CHECKOUT, 2L, 20L, "Pessoa");
+            journal.record(LoanEventType.CHECKOUT, 3L, 30L, "Pessoa");
+
+            List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+            assertThat(synchronizations).hasSize(1);
+            assertThat(journal.getForcedSequence()).isZero();
+
+            synchronizations.forEach(TransactionSynchronization::afterCommit);
+            synchronizations.forEach(synchronization -> synchronization.afterCompletion(TransactionSynchronization.STATUS_COMMITTED));
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        assertThat(journal.getForcedSequence()).isEqualTo(3);
+        assertThat(replay(journal, 1)).extracting(LoanEvent::getLoanId).containsExactly(1L, 2L, 3L);
+    }
+
+    @Test
+    @DisplayName("Deve recusar eventos e falhar o flush depois que o journal for fechado")
+    public void closedTest() throws Exception {
+        LoanJournal journal = open(LoanJournal.MIN_SEGMENT_BYTES);
+        journal.destroy();
+
+        journal.record(LoanEventType.CHECKOUT, 1L, 10L, "Pessoa");
+        Throwable exception = catchThrowable(() -> journal.flush().get(5, TimeUnit.SECONDS));
+
+        assertThat(journal.getDropped()).isEqualTo(1);
+        assertThat(exception).isInstanceOf(ExecutionException.class);
+        assertThat(exception.getCause()).isInstanceOf(IllegalStateException.class);
+    }
+
+    private LoanJournal open(int segmentBytes) throws Exception {
+        return open(segmentBytes, 0);
+    }
+
+    private LoanJournal open(int segmentBytes, long syncTimeoutMillis) throws Exception {
+        LoanJournal journal = new LoanJournal(true, directory.toString(), segmentBytes, 1024, 100, syncTimeoutMillis);
+        journal.afterPropertiesSet();
+        journals.add(journal);
+        return journal;
+    }
+
+    private static List<LoanEvent> replay(LoanJournal journal, long fromSequence) {
+        List<LoanEvent> events = new ArrayList<>();
+        journal.replay(fromSequence, events::add);
+        return events;
+    }
+}
@@ -0,0 +1,83 @@
+package com.nhamparsomia.libraryapi.service.memory;
+
+import com.nhamparsomia.libraryapi.exception.BusinessException;
+import com.nhamparsomia.libraryapi.loadtest.EmbeddedLibraryApi;
+import com.nhamparsomia.libraryapi.model.entity.Book;
+import com.nhamparsomia.libraryapi.model.entity.Loan;
+import com.nhamparsomia.libraryapi.service.BookService;
+import com.nhamparsomia.libraryapi.service.LibraryServicesContractTest;
+import com.nhamparsomia.libraryapi.service.LoanService;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * The service contract against the engine of the {@code in-memory} profile.
+ */
+public class InMemoryLibraryServicesTest extends LibraryServicesContractTest {
+
+    private static EmbeddedLibraryApi api;
+
+    @BeforeAll
+    public static void start() {
+        api = EmbeddedLibraryApi.start("spring.profiles.active=in-memory");
+    }
+
+    @AfterAll
+    public static void stop() {
+        api.close();
+    }
+
+    @Override
+    protected EmbeddedLibraryApi api() {
+        return api;
+    }
+
+    @Test
+    @DisplayName("Deve emprestar o livro a um único cliente entre pedidos simultâneos")
+    public void concurrentCheckoutTest() throws Exception {
+        Book book = api.context().getBean(BookService.class)
+                .save(Book.builder().isbn("concurrent").author("Autor").title("Simultâneo").build());
+        LoanService loanService = api.context().getBean(LoanService.class);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+
+        try {
+            List<Future<Loan>> attempts = IntStream.range(0, 16)
+                    .mapToObj(customer -> executor.submit(() -> {
+                        try {
+                            return loanService.save(Loan.builder()
+                                    .book(book)
+                                    .customer("Pessoa " + customer)
+                                    .customerEmail("pessoa@email.com")
+                                    .loanDate(LocalDate.now())
+                                    .build());
+                        } catch (BusinessException e) {
+                            return null;
+                        }
+                    }))
+                    .collect(Collectors.toList());
+
+            int lent = 0;
+            for (Future<Loan> attempt : attempts) {
+                lent += attempt.get(30, TimeUnit.SECONDS) == null ? 0 : 1;
+            }
+
+            assertThat(lent).isEqualTo(1);
+            assertThat(api.context().getBean(BookService.class).getById(book.getId()).map(Book::getActiveLoans)).contains(1L);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package com.nhamparsomia.libraryapi.service.scheduling;
+
+import com.nhamparsomia.libraryapi.loadtest.EmbeddedLibraryApi;
+import com.nhamparsomia.libraryapi.model.entity.Book;
+import com.nhamparsomia.libraryapi.model.entity.JobLease;
+import com.nhamparsomia.libraryapi.model.entity.Loan;
+import com.nhamparsomia.libraryapi.model.repository.JobLeaseRepository;
+import com.nhamparsomia.libraryapi.model.repository.LoanRepository;
+import com.nhamparsomia.libraryapi.service.LoanService;
+import com.nhamparsomia.libraryapi.service.notification.OverdueDigest;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Several application contexts sharing one embedded database, as several instances of the API
+ * would share one database server.
+ */
+public class ClusteredJobsTest {
+
+    private static final int NODES = 3;
+    private static final int SHARDS = 4;
+    private static final int CUSTOMERS = 20;
+
+    private static final List<EmbeddedLibraryApi> nodes = new ArrayList<>();
+
+    @BeforeAll
+    public static void startNodes() {
+        String database = "jdbc:h2:mem:cluster-" + System.nanoTime() + ";DB_CLOSE_DELAY=-1";
+
+        for (int node = 0; node < NODES; node++) {
+            nodes.add(EmbeddedLibraryApi.start(
+                    "spring.datasource.url=" + database,
+                    "spring.jpa.hibernate.ddl-auto=update",
+                    "application.jobs.cluster.enabled=true",
+                    "application.jobs.cluster.node-id=node-" + node,
+                    "application.jobs.cluster.lease-ms=1000",
+                    "application.jobs.cluster.renew-ms=200",
+                    "application.jobs.cluster.poll-ms=100",
+                    "application.jobs.cluster.max-wait-ms=10000"
+            ));
+        }
+
+        List<Book> books = nodes.get(0).seedBooks(CUSTOMERS);
+        List<Loan> loans = IntStream.range(0, CUSTOMERS)
+                .mapToObj(customer -> Loan.builder()
+                        .book(books.get(customer))
+                        .customer("Pessoa " + customer)
+                        .customerEmail("pessoa" + customer + "@email.com")
+                        .loanDate(LocalDate.now().minusDays(10))
+                        .build())
+                .collect(Collectors.toList());
+        nodes.get(0).context().getBean(LoanRepository.class).saveAll(loans);
+    }
+
+    @AfterAll
+    public static void stopNodes() {
+        nodes.forEach(EmbeddedLibraryApi::close);
+    }
+
+    @Test
+    @DisplayName("Deve executar cada partição de clientes em atraso uma única vez entre os nós")
+    public void shardedRunTest() throws Exception {
+        List<String> notified = Collections.synchronizedList(new ArrayList<>());
+        List<Integer> ran = runOnAllNodes("sharded", "2020-01-01", SHARDS, (node, shard) -> {
+            node.context().getBean(LoanService.class).getOverdueDigests(7, shard, SHARDS)
+                    .stream()
+                    .map(OverdueDigest::getEmail)
+                    .forEach(notified::add);
+            sleep(200);
+        });
+
+        assertThat(ran).containsExactlyInAnyOrder(0, 1, 2, 3);
+        assertThat(notified).hasSize(CUSTOMERS).doesNotHaveDuplicates();
+
+        List<Integer> rerun = runOnAllNodes("sharded", "2020-01-01", SHARDS, (node, shard) -> { });
+        assertThat(rerun).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Deve executar um job não particionado em apenas um dos nós")
+    public void singleLeaseTest() throws Exception {
+        List<Integer> ran = runOnAllNodes("single", "2020-01-01", 1, (node, shard) -> sleep(200));
+
+        assertThat(ran).containsExactly(0);
+    }
+
+    @Test
+    @DisplayName("Deve assumir a partição de um nó que parou de renovar o lease")
+    public void takeoverTest() {
+        JobLeaseRepository repository = nodes.get(0).context().getBean(JobLeaseRepository.class);
+        repository.save(JobLease.builder()
+                .name("takeover#0")
+                .owner("crashed-node")
+                .expiresAt(Instant.now().plusMillis(500))
+                .build());
+
+        ClusteredJobs jobs = nodes.get(1).context().getBean(ClusteredJobs.class);
+        List<Integer> ran = jobs.run("takeover", "2020-01-01", 1, shard -> { });
+
+        assertThat(ran).containsExactly(0);
+        JobLease lease = repository.findById("takeover#0").get();
+        assertThat(lease.getOwner()).isEqualTo("node-1");
+        assertThat(lease.getCompletedRun()).isEqualTo("2020-01-01");
+    }
+
+    @Test
+    @DisplayName("Deve liberar a partição cuja execução falhou para outro nó")
+    public void failedShardTest() {
+        ClusteredJobs failing = nodes.get(0).context().getBean(ClusteredJobs.class);
+        ClusteredJobs healthy = nodes.get(1).context().getBean(ClusteredJobs.class);
+
+        List<Integer> failed = failing.run("failing", "2020-01-01", 1, shard -> {
+            throw new IllegalStateException("smtp unavailable");
+        });
+        List<Integer> retried = healthy.run("failing", "2020-01-01", 1, shard -> { });
+
+        assertThat(failed).isEmpty();
+        assertThat(retried).containsExactly(0);
+    }
+
+    private interface ShardTask {
+        void run(EmbeddedLibraryApi node, int shard);
+    }
+
+    /**
+     * Triggers the same run on every node at once and returns every shard each node ran.
+     */
+    private List<Integer> runOnAllNodes(String job, String run, int shards, ShardTask task) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(NODES);
+        try {
+            List<Future<List<Integer>>> results = new ArrayList<>();
+            for (EmbeddedLibraryApi node : nodes) {
+                ClusteredJobs jobs = node.context().getBean(ClusteredJobs.class);
+                results.add(executor.submit(() -> jobs.run(job, run, shards, shard -> task.run(node, shard))));
+            }
+
+            List<Integer> ran = new ArrayList<>();
+            for (Future<List<Integer>> result : results) {
+                ran.addAll(result.get(30, TimeUnit.SECONDS));
+            }
+            return ran;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}